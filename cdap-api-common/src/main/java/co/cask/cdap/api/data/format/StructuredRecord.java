@@ -20,34 +20,49 @@ import co.cask.cdap.api.annotation.Beta;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TimeZone;
 import javax.annotation.Nullable;
 
 /**
- * Instance of a record structured by a {@link Schema}. Fields are accessible by name.
+ * Instance of a record structured by a {@link Schema}. Fields are accessible by name, or by their position
+ * in the {@link Schema#getFields() fields} of the record schema.
  */
 @Beta
 public class StructuredRecord implements Serializable {
   private static final SimpleDateFormat DEFAULT_FORMAT = new SimpleDateFormat("YYYY-MM-DD'T'HH:mm:ss z");
-  private final Schema schema;
-  private final Map<String, Object> fields;
+  private Schema schema;
+  // Field values, in the same order as the fields in the schema
+  private Object[] values;
 
   private static final long serialVersionUID = -4648752378975451591L;
 
+  // The serialized form stays as the schema and a map from field name to value,
+  // so that it is compatible with records serialized by older versions.
+  private static final ObjectStreamField[] serialPersistentFields = {
+    new ObjectStreamField("schema", Schema.class),
+    new ObjectStreamField("fields", Map.class)
+  };
+
   {
     DEFAULT_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
   }
 
-  private StructuredRecord(Schema schema, Map<String, Object> fields) {
+  private StructuredRecord(Schema schema, Object[] values) {
     this.schema = schema;
-    this.fields = fields;
+    this.values = values;
   }
 
   /**
@@ -68,7 +83,21 @@ public class StructuredRecord implements Serializable {
    */
   @SuppressWarnings("unchecked")
   public <T> T get(String fieldName) {
-    return (T) fields.get(fieldName);
+    int idx = schema.getFieldIndex(fieldName);
+    return idx < 0 ? null : (T) values[idx];
+  }
+
+  /**
+   * Get the value of a field in the record by the position of the field in the record schema.
+   *
+   * @param fieldIndex position of the field to get, as in {@link Schema#getFields()}.
+   * @param <T> type of object of the field value.
+   * @return value of the field.
+   * @throws IndexOutOfBoundsException if the given index is not a valid field position.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(int fieldIndex) {
+    return (T) values[fieldIndex];
   }
 
   /**
@@ -91,11 +120,13 @@ public class StructuredRecord implements Serializable {
    */
   public static class Builder {
     private final Schema schema;
-    private Map<String, Object> fields;
+    private final List<Schema.Field> schemaFields;
+    private final Object[] values;
 
     private Builder(Schema schema) {
       this.schema = schema;
-      this.fields = new HashMap<>();
+      this.schemaFields = schema.getFields();
+      this.values = new Object[schemaFields.size()];
     }
 
     /**
@@ -108,8 +139,29 @@ public class StructuredRecord implements Serializable {
      *                                   value is given
      */
     public Builder set(String fieldName, @Nullable Object value) {
-      validateAndGetField(fieldName, value);
-      fields.put(fieldName, value);
+      values[validateAndGetFieldIndex(fieldName, value)] = value;
+      return this;
+    }
+
+    /**
+     * Set the field at the given position to the given value. This avoids looking up the field by name and
+     * is preferred when setting all fields of a record in the order of the schema fields.
+     *
+     * @param fieldIndex Position of the field in {@link Schema#getFields()}
+     * @param value Value for the field
+     * @return This builder
+     * @throws UnexpectedFormatException if the index is not a valid field position, or the field is not nullable
+     *                                   but a null value is given
+     */
+    public Builder set(int fieldIndex, @Nullable Object value) {
+      if (fieldIndex < 0 || fieldIndex >= values.length) {
+        throw new UnexpectedFormatException("field index " + fieldIndex + " is not in the schema.");
+      }
+      if (value == null && !schemaFields.get(fieldIndex).getSchema().isNullable()) {
+        throw new UnexpectedFormatException("field " + schemaFields.get(fieldIndex).getName()
+                                              + " cannot be set to a null value.");
+      }
+      values[fieldIndex] = value;
       return this;
     }
 
@@ -141,19 +193,20 @@ public class StructuredRecord implements Serializable {
      */
     public Builder convertAndSet(String fieldName, @Nullable Date date,
                                  @Nullable DateFormat dateFormat) throws UnexpectedFormatException {
-      Schema.Field field = validateAndGetField(fieldName, date);
+      int idx = validateAndGetFieldIndex(fieldName, date);
+      Schema.Field field = schemaFields.get(idx);
       boolean isNullable = field.getSchema().isNullable();
       if (isNullable && date == null) {
-        fields.put(fieldName, null);
+        values[idx] = null;
         return this;
       }
 
       Schema.Type fieldType = isNullable ? field.getSchema().getNonNullable().getType() : field.getSchema().getType();
       if (fieldType == Schema.Type.LONG) {
-        fields.put(fieldName, date.getTime());
+        values[idx] = date.getTime();
       } else if (fieldType == Schema.Type.STRING) {
         DateFormat format = dateFormat == null ? DEFAULT_FORMAT : dateFormat;
-        fields.put(fieldName, format.format(date));
+        values[idx] = format.format(date);
       } else {
         throw new UnexpectedFormatException("Date must be either a long or a string, not a " + fieldType);
       }
@@ -171,8 +224,8 @@ public class StructuredRecord implements Serializable {
      *                                   value is given, or the string cannot be converted to the type for the field
      */
     public Builder convertAndSet(String fieldName, @Nullable String strVal) throws UnexpectedFormatException {
-      Schema.Field field = validateAndGetField(fieldName, strVal);
-      fields.put(fieldName, convertString(field.getSchema(), strVal));
+      int idx = validateAndGetFieldIndex(fieldName, strVal);
+      values[idx] = convertString(schemaFields.get(idx).getSchema(), strVal);
       return this;
     }
 
@@ -184,19 +237,16 @@ public class StructuredRecord implements Serializable {
      */
     public StructuredRecord build() throws UnexpectedFormatException {
       // check that all non-nullable fields have a value.
-      for (Schema.Field field : schema.getFields()) {
-        String fieldName = field.getName();
-        if (!fields.containsKey(fieldName)) {
-          // if the field is not nullable and there is no value set for the field, this is invalid.
+      // A non-nullable field can never be set to null, hence a null value means the field was not set.
+      for (int i = 0; i < values.length; i++) {
+        if (values[i] == null) {
+          Schema.Field field = schemaFields.get(i);
           if (!field.getSchema().isNullable()) {
-            throw new UnexpectedFormatException("Field " + fieldName + " must contain a value.");
-          } else {
-            // otherwise, set the value for the field to null
-            fields.put(fieldName, null);
+            throw new UnexpectedFormatException("Field " + field.getName() + " must contain a value.");
           }
         }
       }
-      return new StructuredRecord(schema, fields);
+      return new StructuredRecord(schema, values);
     }
 
     private Object convertString(Schema schema, String strVal) throws UnexpectedFormatException {
@@ -238,15 +288,15 @@ public class StructuredRecord implements Serializable {
       }
     }
 
-    private Schema.Field validateAndGetField(String fieldName, Object val) {
-      Schema.Field field = schema.getField(fieldName);
-      if (field == null) {
+    private int validateAndGetFieldIndex(String fieldName, Object val) {
+      int idx = schema.getFieldIndex(fieldName);
+      if (idx < 0) {
         throw new UnexpectedFormatException("field " + fieldName + " is not in the schema.");
       }
-      if (!field.getSchema().isNullable() && val == null) {
+      if (!schemaFields.get(idx).getSchema().isNullable() && val == null) {
         throw new UnexpectedFormatException("field " + fieldName + " cannot be set to a null value.");
       }
-      return field;
+      return idx;
     }
   }
 
@@ -261,12 +311,40 @@ public class StructuredRecord implements Serializable {
 
     StructuredRecord that = (StructuredRecord) o;
 
-    return Objects.equals(schema, that.schema) && Objects.equals(fields, that.fields);
+    return Objects.equals(schema, that.schema) && Arrays.equals(values, that.values);
 
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema, fields);
+    return 31 * Objects.hashCode(schema) + Arrays.hashCode(values);
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    Map<String, Object> fields = new HashMap<>();
+    List<Schema.Field> schemaFields = schema.getFields();
+    for (int i = 0; i < values.length; i++) {
+      fields.put(schemaFields.get(i).getName(), values[i]);
+    }
+    ObjectOutputStream.PutField putField = out.putFields();
+    putField.put("schema", schema);
+    putField.put("fields", fields);
+    out.writeFields();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField getField = in.readFields();
+    Schema schema = (Schema) getField.get("schema", null);
+    Map<?, ?> fields = (Map<?, ?>) getField.get("fields", null);
+    if (schema == null || fields == null) {
+      throw new IOException("Missing schema or fields in serialized StructuredRecord");
+    }
+    List<Schema.Field> schemaFields = schema.getFields();
+    Object[] values = new Object[schemaFields.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = fields.get(schemaFields.get(i).getName());
+    }
+    this.schema = schema;
+    this.values = values;
   }
 }
@@ -375,6 +375,8 @@ public final class Schema implements Serializable {
   private final String recordName;
   private final Map<String, Field> fieldMap;
   private final List<Field> fields;
+  // Mapping from field name to the position in the record. It is computed on demand.
+  private transient Map<String, Integer> fieldIndexes;
 
   private final List<Schema> unionSchemas;
 
@@ -485,6 +487,32 @@ public final class Schema implements Serializable {
     return fieldMap.get(name);
   }
 
+  /**
+   * Returns the position of the record {@link Field} of the given name in the {@link #getFields() fields} list.
+   *
+   * @param name Name of the field
+   * @return The 0-base index of the field or {@code -1} if there is no such field in this record
+   *         or this is not a {@link Type#RECORD RECORD} schema.
+   */
+  public int getFieldIndex(String name) {
+    if (fields == null) {
+      return -1;
+    }
+    // The follow logic is thread safe, as the fields list is immutable.
+    // It's possible that the index get computed multiple times, but they should yield the same result.
+    Map<String, Integer> indexes = fieldIndexes;
+    if (indexes == null) {
+      Map<String, Integer> map = new HashMap<>();
+      int idx = 0;
+      for (Field field : fields) {
+        map.put(field.getName(), idx++);
+      }
+      fieldIndexes = indexes = Collections.unmodifiableMap(map);
+    }
+    Integer idx = indexes.get(name);
+    return idx == null ? -1 : idx;
+  }
+
   /**
    * @return An immutable {@link List} of schemas inside this union
    *         or {@code null} if this is not a {@link Type#UNION UNION} schema.
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -40,4 +40,13 @@ public interface QueueReader<T> {
    * @throws InterruptedException If dequeue is interrupted.
    */
   InputDatum<T> dequeue(long timeout, TimeUnit timeoutUnit) throws IOException, InterruptedException;
+
+  /**
+   * Checks, without a transaction, if there may be input available for dequeue. Implementations should be
+   * conservative and only return {@code false} if it is known that a dequeue would return an empty input.
+   *
+   * @return {@code false} if there is no input available, {@code true} otherwise.
+   * @throws IOException If fails to check for input.
+   */
+  boolean mayHaveInput() throws IOException;
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -36,9 +36,11 @@ import java.util.concurrent.TimeUnit;
 public final class RoundRobinQueueReader<T> extends TimeTrackingQueueReader<T> {
 
   private final InputDatum<T> nullInput = new NullInputDatum<>();
+  private final Iterable<QueueReader<T>> allReaders;
   private final Iterator<QueueReader<T>> readers;
 
   public RoundRobinQueueReader(Iterable<QueueReader<T>> readers) {
+    this.allReaders = readers;
     this.readers = Iterables.cycle(readers).iterator();
   }
 
@@ -62,4 +64,14 @@ public final class RoundRobinQueueReader<T> extends TimeTrackingQueueReader<T> {
     }
     return input;
   }
+
+  @Override
+  public boolean mayHaveInput() throws IOException {
+    for (QueueReader<T> reader : allReaders) {
+      if (reader.mayHaveInput()) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
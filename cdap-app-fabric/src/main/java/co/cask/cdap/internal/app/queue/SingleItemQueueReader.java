@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -41,4 +41,9 @@ public class SingleItemQueueReader<T> implements QueueReader<T> {
     input.incrementRetry();
     return input;
   }
+
+  @Override
+  public boolean mayHaveInput() {
+    return true;
+  }
 }
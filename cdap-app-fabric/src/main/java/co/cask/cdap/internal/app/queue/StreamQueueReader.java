@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -72,4 +72,10 @@ public final class StreamQueueReader<T> implements QueueReader<T> {
     return new BasicInputDatum<>(QueueName.fromStream(consumer.getStreamId()),
                                  consumer.poll(batchSize, timeout, timeoutUnit), eventTransform);
   }
+
+  @Override
+  public boolean mayHaveInput() {
+    // Stream consumer always needs a transaction to find out if there are events available.
+    return true;
+  }
 }
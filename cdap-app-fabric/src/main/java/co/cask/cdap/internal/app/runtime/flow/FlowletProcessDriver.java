@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -222,6 +222,13 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     ProcessMethod<T> processMethod = entry.getProcessSpec().getProcessMethod();
     if (processMethod.needsInput()) {
       flowletContext.getProgramMetrics().increment("process.tuples.attempt.read", 1);
+
+      // Avoid starting a transaction if there is nothing to dequeue
+      if (!mayHaveInput(entry) && entry.skipDequeue()) {
+        entry.backOff();
+        flowletContext.getProgramMetrics().increment("process.tx.avoided", 1);
+        return false;
+      }
     }
 
     // Begin transaction and dequeue
@@ -268,6 +275,19 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
     return false;
   }
 
+  /**
+   * Checks if the queue of the given entry may have input without starting a transaction.
+   * Returns {@code true} if failed to check.
+   */
+  private boolean mayHaveInput(FlowletProcessEntry<?> entry) {
+    try {
+      return entry.getProcessSpec().getQueueReader().mayHaveInput();
+    } catch (Throwable t) {
+      LOG.debug("Failed to check for input in queue. Fallback to dequeue: {}", flowletContext, t);
+      return true;
+    }
+  }
+
   private void startTx(TransactionContext txContext) throws TransactionFailureException {
     txContext.start(flowletContext.getDefaultTxTimeout());
   }
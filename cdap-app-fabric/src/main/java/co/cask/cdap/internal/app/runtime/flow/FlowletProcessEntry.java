@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -40,6 +40,10 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
   // Doubling back-off time during exponential increase, up to maximum back-off time.
   private static final int BACKOFF_EXP = 2;
 
+  // Maximum number of consecutive dequeues that can be skipped because the queue has no input.
+  // After that, a dequeue is always performed, in case the queue check was not accurate.
+  private static final int MAX_SKIPPED_DEQUEUES = 100;
+
   private final ProcessSpecification<T> processSpec;
   private final ProcessSpecification<T> retrySpec;
   private final boolean isTick;
@@ -49,6 +53,7 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
    */
   private long nextDeque;
   private long currentBackOff = BACKOFF_MIN;
+  private int skippedDequeues;
 
   static <T> FlowletProcessEntry<T> create(ProcessSpecification<T> processSpec) {
     long nextDeque;
@@ -100,6 +105,7 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
   public void resetBackOff() {
     nextDeque = System.nanoTime() + processSpec.getCallDelay();
     currentBackOff = BACKOFF_MIN;
+    skippedDequeues = 0;
   }
 
   public void backOff() {
@@ -111,6 +117,20 @@ final class FlowletProcessEntry<T> implements Comparable<FlowletProcessEntry> {
     }
   }
 
+  /**
+   * Records a dequeue being skipped because there is no input available.
+   *
+   * @return {@code true} if the dequeue can be skipped, {@code false} if it should be performed regardless
+   */
+  public boolean skipDequeue() {
+    if (skippedDequeues >= MAX_SKIPPED_DEQUEUES) {
+      skippedDequeues = 0;
+      return false;
+    }
+    skippedDequeues++;
+    return true;
+  }
+
   public ProcessSpecification<T> getProcessSpec() {
     return retrySpec == null ? processSpec : retrySpec;
   }
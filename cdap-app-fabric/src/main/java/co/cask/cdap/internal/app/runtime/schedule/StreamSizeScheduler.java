@@ -45,12 +45,13 @@ import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.id.ScheduleId;
 import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.inject.Inject;
@@ -83,7 +84,6 @@ import javax.annotation.Nullable;
 @Singleton
 public class StreamSizeScheduler implements Scheduler {
   private static final Logger LOG = LoggerFactory.getLogger(StreamSizeScheduler.class);
-  private static final int STREAM_POLLING_THREAD_POOL_SIZE = 10;
   private static final int POLLING_AFTER_NOTIFICATION_RETRY = 3;
 
   private final long pollingDelay;
@@ -102,7 +102,7 @@ public class StreamSizeScheduler implements Scheduler {
   // Used to schedule polling of a stream only after a certain time - the time after which the metrics are updated
   private ScheduledExecutorService pollBookingExecutor;
 
-  // Scheduled executor used to poll stream at regular intervals, by querying the metric system
+  // Scheduled executor used to poll all streams at regular intervals, with one query to the metric system
   private ScheduledExecutorService streamPollingExecutor;
 
   private ListeningExecutorService taskExecutorService;
@@ -127,13 +127,19 @@ public class StreamSizeScheduler implements Scheduler {
   public void init() throws SchedulerException {
     sendPollingInfoExecutor = Executors.newCachedThreadPool(
       Threads.createDaemonThreadFactory("stream-size-scheduler-%d"));
-    streamPollingExecutor = Executors.newScheduledThreadPool(STREAM_POLLING_THREAD_POOL_SIZE,
-                                                             Threads.createDaemonThreadFactory("stream-polling-%d"));
+    streamPollingExecutor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("stream-polling"));
     pollBookingExecutor = Executors.newSingleThreadScheduledExecutor(
       Threads.createDaemonThreadFactory("polling-booking-executor"));
     taskExecutorService = MoreExecutors.listeningDecorator(
       Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("stream-schedule-task")));
     initializeScheduleStore();
+    streamPollingExecutor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        pollActiveStreams();
+      }
+    }, pollingDelay, pollingDelay, TimeUnit.MILLISECONDS);
   }
 
   void start() throws SchedulerException {
@@ -178,22 +184,113 @@ public class StreamSizeScheduler implements Scheduler {
       }
     }
 
-    // Poll all the Streams for active tasks
-    for (StreamSubscriber streamSubscriber : streamSubscribers.values()) {
-      if (streamSubscriber.getActiveTasksCount() <= 0) {
-        continue;
+    // Poll all the Streams for active tasks. Failing to poll should not make this init fail
+    pollActiveStreams();
+  }
+
+  /**
+   * Poll the size of all the streams that have active tasks and were not polled recently with a single metrics
+   * query, and send the sizes to the tasks. The cost of polling is therefore the same no matter how many streams
+   * have schedules.
+   */
+  private void pollActiveStreams() {
+    long now = System.currentTimeMillis();
+    Map<StreamId, StreamSubscriber> subscribers = Maps.newHashMap();
+    for (Map.Entry<StreamId, StreamSubscriber> entry : streamSubscribers.entrySet()) {
+      if (entry.getValue().isPollingDue(now)) {
+        subscribers.put(entry.getKey(), entry.getValue());
       }
+    }
+    if (subscribers.isEmpty()) {
+      return;
+    }
 
+    try {
+      Collection<MetricTimeSeries> metrics;
       try {
-        StreamSize streamSize = streamSubscriber.pollOnce();
-        streamSubscriber.sendPollingInfoToActiveTasks(streamSize);
-      } catch (IOException e) {
-        // Failing to poll should not make this init fail
-        LOG.warn("Could not poll size for stream '{}'", streamSubscriber.getStreamId(), e);
+        metrics = metricStore.query(createStreamSizesQuery(subscribers.keySet(), now));
+      } catch (Exception e) {
+        throw new IOException(e);
       }
+      // The metric store gives us 0 as the timestamp, hence we cannot use it here
+      long timestamp = System.currentTimeMillis();
+      for (Map.Entry<StreamId, Long> entry : getStreamSizes(metrics, subscribers.keySet()).entrySet()) {
+        StreamSubscriber subscriber = subscribers.get(entry.getKey());
+        StreamSize streamSize = subscriber.updatePollingInfo(new StreamSize(entry.getValue(), timestamp));
+        subscriber.sendPollingInfoToActiveTasks(streamSize);
+      }
+    } catch (IOException e) {
+      LOG.error("Could not poll size of {} streams", subscribers.size(), e);
+    } catch (Throwable t) {
+      // Catch everything, otherwise the scheduled polling would stop
+      LOG.error("Error in scheduled polling of {} streams", subscribers.size(), t);
     }
   }
 
+  /**
+   * Creates the query of the size of events ingested by the given streams, grouped by stream. The query is
+   * restricted to the namespace of the streams if they are all in the same namespace, and to the stream if there
+   * is only one.
+   *
+   * @param streams the streams to query, must not be empty
+   * @param endTimeMillis the end time of the query
+   */
+  @VisibleForTesting
+  static MetricDataQuery createStreamSizesQuery(Collection<StreamId> streams, long endTimeMillis) {
+    StreamId first = streams.iterator().next();
+    Map<String, String> sliceByTags = Maps.newHashMap();
+    sliceByTags.put(Constants.Metrics.Tag.NAMESPACE, first.getNamespace());
+    for (StreamId stream : streams) {
+      if (!stream.getNamespace().equals(first.getNamespace())) {
+        sliceByTags.clear();
+        break;
+      }
+    }
+    if (streams.size() == 1) {
+      sliceByTags.put(Constants.Metrics.Tag.STREAM, first.getStream());
+    }
+    return new MetricDataQuery(0L, TimeUnit.MILLISECONDS.toSeconds(endTimeMillis), Integer.MAX_VALUE,
+                               "system.collect.bytes", AggregationFunction.SUM, sliceByTags,
+                               ImmutableList.of(Constants.Metrics.Tag.NAMESPACE, Constants.Metrics.Tag.STREAM));
+  }
+
+  /**
+   * Returns the size of events ingested by each of the given streams so far, from the result of a query created
+   * by {@link #createStreamSizesQuery(Collection, long)}. A stream without a time series has not ingested any data
+   * yet, and has a size of zero. A stream with a malformed time series is logged and left out, so that it does not
+   * prevent the other streams from being polled.
+   */
+  @VisibleForTesting
+  static Map<StreamId, Long> getStreamSizes(@Nullable Collection<MetricTimeSeries> metrics,
+                                            Collection<StreamId> streams) {
+    Map<StreamId, Long> sizes = Maps.newHashMap();
+    for (StreamId stream : streams) {
+      sizes.put(stream, 0L);
+    }
+    if (metrics == null) {
+      return sizes;
+    }
+    for (MetricTimeSeries metric : metrics) {
+      String namespace = metric.getTagValues().get(Constants.Metrics.Tag.NAMESPACE);
+      String stream = metric.getTagValues().get(Constants.Metrics.Tag.STREAM);
+      if (namespace == null || stream == null) {
+        continue;
+      }
+      StreamId streamId = new StreamId(namespace, stream);
+      if (!sizes.containsKey(streamId)) {
+        continue;
+      }
+      List<TimeValue> timeValues = metric.getTimeValues();
+      if (timeValues == null || timeValues.size() != 1) {
+        LOG.warn("Ignoring size of stream '{}', which should have exactly one time value: {}", streamId, timeValues);
+        sizes.remove(streamId);
+        continue;
+      }
+      sizes.put(streamId, timeValues.get(0).getValue());
+    }
+    return sizes;
+  }
+
   public void stop() {
     for (StreamSubscriber subscriber : streamSubscribers.values()) {
       subscriber.stopAndWait();
@@ -403,11 +500,12 @@ public class StreamSizeScheduler implements Scheduler {
   /**
    * One instance of this class contains a list of {@link StreamSizeSchedule}s, which are all interested
    * in the same stream. This instance subscribes to the size notification of the stream, and polls the
-   * stream for its size whenever the schedules it references need the information.
+   * stream for its size whenever the schedules it references need the information. The regular polling of
+   * all the streams is done by the {@link StreamSizeScheduler}, which hands the sizes over to this instance.
    * The {@link StreamSizeScheduler} communicates with this class, which in turn communicates to the schedules
    * it contains to perform operations on the schedules - suspend, resume, etc.
    */
-  private final class StreamSubscriber extends AbstractScheduledService
+  private final class StreamSubscriber extends AbstractIdleService
     implements NotificationHandler<StreamSizeNotification> {
     // Key is the schedule ID
     private final ConcurrentMap<String, StreamSizeScheduleTask> scheduleTasks;
@@ -445,32 +543,6 @@ public class StreamSizeScheduler implements Scheduler {
       }
     }
 
-    @Override
-    protected void runOneIteration() throws Exception {
-      if (activeTasks.get() == 0) {
-        return;
-      }
-
-      try {
-        StreamSize streamSize = pollOnce();
-        sendPollingInfoToActiveTasks(streamSize);
-      } catch (IOException e) {
-        LOG.error("Could not poll stream {}", streamId.getId(), e);
-      } catch (Throwable t) {
-        LOG.error("Error in scheduled polling for stream {}", streamId.getId(), t);
-      }
-    }
-
-    @Override
-    protected Scheduler scheduler() {
-      return Scheduler.newFixedRateSchedule(pollingDelay, pollingDelay, TimeUnit.MILLISECONDS);
-    }
-
-    @Override
-    protected ScheduledExecutorService executor() {
-      return streamPollingExecutor;
-    }
-
     @Override
     public Type getNotificationType() {
       return StreamSizeNotification.class;
@@ -516,6 +588,15 @@ public class StreamSizeScheduler implements Scheduler {
       return activeTasks.get();
     }
 
+    /**
+     * @return {@code true} if this {@link StreamSubscriber} has active tasks, and its stream was not polled within
+     *         half of the polling delay, for example after a notification
+     */
+    private synchronized boolean isPollingDue(long now) {
+      return activeTasks.get() > 0
+        && (lastPollingInfo == null || now - lastPollingInfo.getTimestamp() >= pollingDelay / 2);
+    }
+
     /**
      * Poll the stream size using metrics after receiving a notification, either to set the delta between metric value
      * and notification value, or because the notification indicates that one {@link StreamSizeScheduleTask} will
@@ -734,7 +815,14 @@ public class StreamSizeScheduler implements Scheduler {
      * Poll the stream size using metrics.
      */
     private synchronized StreamSize pollOnce() throws IOException {
-      StreamSize streamSize = queryStreamEventsSize();
+      return updatePollingInfo(queryStreamEventsSize());
+    }
+
+    /**
+     * Update the last polled size of the stream. If the stream got smaller, because it was truncated,
+     * the tasks are reset.
+     */
+    private synchronized StreamSize updatePollingInfo(StreamSize streamSize) {
       if (lastPollingInfo != null && streamSize.getSize() < lastPollingInfo.getSize()) {
         delta = null;
         for (StreamSizeScheduleTask streamSizeScheduleTask : scheduleTasks.values()) {
@@ -79,7 +79,6 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -91,15 +90,13 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -117,6 +114,7 @@ import javax.annotation.Nullable;
 final class WorkflowDriver extends AbstractExecutionThreadService {
 
   private static final Logger LOG = LoggerFactory.getLogger(WorkflowDriver.class);
+  private static final long SCHEDULER_TERMINATION_TIMEOUT_SECONDS = 30L;
   private static final String ACTION_SCOPE = "action";
 
   private final Program program;
@@ -143,6 +141,7 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
   private final SecureStore secureStore;
   private final SecureStoreManager secureStoreManager;
   private final MessagingService messagingService;
+  private final WorkflowNodeScheduler nodeScheduler;
 
   private NettyHttpService httpService;
   private volatile Thread runningThread;
@@ -187,6 +186,8 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
     this.secureStore = secureStore;
     this.secureStoreManager = secureStoreManager;
     this.messagingService = messagingService;
+    this.nodeScheduler = new WorkflowNodeScheduler("workflow-fork-",
+                                                   cConf.getInt(Constants.AppFabric.WORKFLOW_FORK_PARALLELISM));
   }
 
   @Override
@@ -275,6 +276,10 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
 
   @Override
   protected void shutDown() throws Exception {
+    if (!nodeScheduler.shutdownNow(SCHEDULER_TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      LOG.warn("Fork branches of workflow run {} did not terminate within {} seconds",
+               workflowRunId.getRun(), SCHEDULER_TERMINATION_TIMEOUT_SECONDS);
+    }
     httpService.stopAndWait();
     deleteLocalDatasets();
     destroyWorkflow();
@@ -353,51 +358,33 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
     }
   }
 
-  private void executeFork(final ApplicationSpecification appSpec, WorkflowForkNode fork,
+  private void executeFork(final ApplicationSpecification appSpec, final WorkflowForkNode fork,
                            final InstantiatorFactory instantiator, final ClassLoader classLoader,
                            final WorkflowToken token) throws Exception {
 
-    CountDownLatch executorTerminateLatch = new CountDownLatch(1);
-    ExecutorService executorService = createExecutor(fork.getBranches().size(), executorTerminateLatch,
-                                                     "fork-" + fork.getNodeId() + "-%d");
-    CompletionService<Map.Entry<String, WorkflowToken>> completionService =
-      new ExecutorCompletionService<>(executorService);
+    List<Callable<WorkflowToken>> branches = new ArrayList<>();
+    for (final List<WorkflowNode> branch : fork.getBranches()) {
+      final long submitTime = System.nanoTime();
+      branches.add(new Callable<WorkflowToken>() {
+        @Override
+        public WorkflowToken call() throws Exception {
+          // The time that the branch waited for a thread is reported on the fork node
+          emitNodeMetric(fork.getNodeId(), "workflow.fork.queue.wait.ms", submitTime);
+          WorkflowToken copiedToken = ((BasicWorkflowToken) token).deepCopy();
+          executeAll(branch.iterator(), appSpec, instantiator, classLoader, copiedToken);
+          LOG.trace("Execution of branch {} for fork {} completed.", branch, fork);
+          return copiedToken;
+        }
+      });
+    }
 
     try {
-      for (final List<WorkflowNode> branch : fork.getBranches()) {
-        completionService.submit(new Callable<Map.Entry<String, WorkflowToken>>() {
-          @Override
-          public Map.Entry<String, WorkflowToken> call() throws Exception {
-            WorkflowToken copiedToken = ((BasicWorkflowToken) token).deepCopy();
-            executeAll(branch.iterator(), appSpec, instantiator, classLoader, copiedToken);
-            return Maps.immutableEntry(branch.toString(), copiedToken);
-          }
-        });
-      }
-
-      for (int i = 0; i < fork.getBranches().size(); i++) {
-        try {
-          Future<Map.Entry<String, WorkflowToken>> forkBranchResult = completionService.take();
-          Map.Entry<String, WorkflowToken> retValue = forkBranchResult.get();
-          String branchInfo = retValue.getKey();
-          WorkflowToken branchToken = retValue.getValue();
-          ((BasicWorkflowToken) token).mergeToken(branchToken);
-          LOG.trace("Execution of branch {} for fork {} completed.", branchInfo, fork);
-        } catch (InterruptedException e) {
-          // Due to workflow abortion, so just break the loop
-          break;
-        } catch (ExecutionException e) {
-          // Unwrap the cause
-          Throwables.propagateIfPossible(e.getCause(), Exception.class);
-          throw Throwables.propagate(e.getCause());
-        }
+      for (WorkflowToken branchToken : nodeScheduler.invokeAll(branches)) {
+        ((BasicWorkflowToken) token).mergeToken(branchToken);
       }
     } finally {
       // Update the WorkflowToken after the execution of the FORK node completes.
       runtimeStore.updateWorkflowToken(workflowRunId, token);
-      executorService.shutdownNow();
-      // Wait for the executor termination
-      executorTerminateLatch.await();
     }
   }
 
@@ -455,14 +442,32 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
                            ClassLoader classLoader, WorkflowToken token) throws Exception {
     WorkflowNodeType nodeType = node.getType();
     ((BasicWorkflowToken) token).setCurrentNode(node.getNodeId());
+    long startTime = System.nanoTime();
+    try {
+      executeNode(appSpec, node, nodeType, instantiator, classLoader, token);
+    } finally {
+      emitNodeMetric(node.getNodeId(), "workflow.node.run.ms", startTime);
+    }
+  }
+
+  private void executeNode(ApplicationSpecification appSpec, WorkflowNode node, WorkflowNodeType nodeType,
+                           final InstantiatorFactory instantiator, final ClassLoader classLoader,
+                           final WorkflowToken token) throws Exception {
     switch (nodeType) {
       case ACTION:
-        WorkflowActionNode actionNode = (WorkflowActionNode) node;
-        if (SchedulableProgramType.CUSTOM_ACTION == actionNode.getProgram().getProgramType()) {
-          executeCustomAction(actionNode, instantiator, classLoader, token);
-        } else {
-          executeAction(actionNode, token);
-        }
+        final WorkflowActionNode actionNode = (WorkflowActionNode) node;
+        // An action blocks until its program completes, which must not starve the branches of forks
+        nodeScheduler.executeBlocking(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            if (SchedulableProgramType.CUSTOM_ACTION == actionNode.getProgram().getProgramType()) {
+              executeCustomAction(actionNode, instantiator, classLoader, token);
+            } else {
+              executeAction(actionNode, token);
+            }
+            return null;
+          }
+        });
         break;
       case FORK:
         executeFork(appSpec, (WorkflowForkNode) node, instantiator, classLoader, token);
@@ -579,7 +584,7 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
 
   private void executeAll(Iterator<WorkflowNode> iterator, ApplicationSpecification appSpec,
                           InstantiatorFactory instantiator, ClassLoader classLoader, WorkflowToken token) {
-    while (iterator.hasNext() && runningThread != null) {
+    while (iterator.hasNext() && runningThread != null && !nodeScheduler.isCurrentBranchAborted()) {
       try {
         blockIfSuspended();
         WorkflowNode node = iterator.next();
@@ -615,6 +620,15 @@ final class WorkflowDriver extends AbstractExecutionThreadService {
     return httpService.getBindAddress();
   }
 
+  /**
+   * Emits the time elapsed since the given start time in milliseconds as a gauge metric of the given node.
+   */
+  private void emitNodeMetric(String nodeId, String metricName, long startNanos) {
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    basicWorkflowContext.getProgramMetrics().childContext(Constants.Metrics.Tag.NODE, nodeId)
+      .gauge(metricName, elapsedMillis);
+  }
+
   private BasicWorkflowContext createWorkflowContext(WorkflowActionSpecification actionSpec,
                                                      WorkflowToken token) {
     return new BasicWorkflowContext(workflowSpec, actionSpec, token,
@@ -0,0 +1,380 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.workflow;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A work-stealing scheduler for executing the branches of workflow fork nodes. A single instance is shared by
+ * all forks, including nested ones, of a workflow run, so that the number of threads used for running branches
+ * is bounded by the configured parallelism instead of growing with the fan-out of the workflow.
+ * <p>
+ * A thread that waits for the branches of a nested fork helps executing queued branches instead of blocking.
+ * If any branch fails, all other branches of the same fork (and of the forks nested under them) are aborted,
+ * which preserves the fail-fast semantics of a fork. An aborted branch is interrupted only while the thread
+ * executes the branch itself, and not a branch of another fork that the thread is helping with.
+ * </p>
+ * <p>
+ * Branches that block, for example while waiting for a program to complete, must do so through
+ * {@link #executeBlocking(Callable)}, so that the pool can add a spare worker while they block. Otherwise a fork
+ * wider than the parallelism could occupy all workers and starve the branches of the forks nested under it.
+ * </p>
+ */
+final class WorkflowNodeScheduler {
+
+  /**
+   * Tracks the fork group of the branch that the current thread is executing. Since a thread waiting for the
+   * branches of a nested fork may execute other branches while waiting, this is maintained as a stack.
+   */
+  private static final ThreadLocal<ForkGroup> CURRENT_GROUP = new ThreadLocal<>();
+
+  /**
+   * Tracks the branches that the current thread is executing.
+   */
+  private static final ThreadLocal<BranchRunner> CURRENT_RUNNER = new ThreadLocal<BranchRunner>() {
+    @Override
+    protected BranchRunner initialValue() {
+      return new BranchRunner(Thread.currentThread());
+    }
+  };
+
+  private final ForkJoinPool pool;
+
+  WorkflowNodeScheduler(final String threadNamePrefix, int parallelism) {
+    Preconditions.checkArgument(parallelism > 0, "Parallelism must be > 0. Got %s", parallelism);
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.pool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+      @Override
+      public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName(threadNamePrefix + threadCount.getAndIncrement());
+        return thread;
+      }
+    }, null, false);
+  }
+
+  /**
+   * Executes all the given branches and waits for their completion. Branches are queued to the shared pool and
+   * executed as soon as a worker is available. If any of the branches fails, the remaining ones are aborted
+   * and the failure of the first failing branch is thrown after all branches terminated.
+   *
+   * @param branches list of {@link Callable} to execute
+   * @return the results of the branches, in the same order as the given list
+   * @throws InterruptedException if the calling thread is interrupted while waiting
+   * @throws Exception the failure thrown by the first failing branch
+   */
+  <T> List<T> invokeAll(List<? extends Callable<T>> branches) throws Exception {
+    ForkGroup group = new ForkGroup(CURRENT_GROUP.get());
+    List<BranchTask<T>> tasks = new ArrayList<>(branches.size());
+    boolean inPool = ForkJoinTask.getPool() == pool;
+
+    try {
+      for (Callable<T> branch : branches) {
+        BranchTask<T> task = new BranchTask<>(group, branch);
+        tasks.add(task);
+        group.tasks.add(task);
+        if (inPool) {
+          task.fork();
+        } else {
+          pool.execute(task);
+        }
+      }
+
+      // Join in reverse order so that a worker thread can execute the branches it forked itself
+      InterruptedException interrupted = null;
+      for (int i = tasks.size() - 1; i >= 0; i--) {
+        BranchTask<T> task = tasks.get(i);
+        while (true) {
+          try {
+            task.get();
+            break;
+          } catch (InterruptedException e) {
+            // Abort all branches, but still wait for them to terminate
+            if (interrupted == null) {
+              interrupted = e;
+              group.abort();
+            }
+          } catch (CancellationException | ExecutionException e) {
+            // Failure of branches are recorded in the group
+            break;
+          }
+        }
+      }
+
+      if (interrupted != null) {
+        Thread.currentThread().interrupt();
+        throw interrupted;
+      }
+      Throwable failure = group.getFailure();
+      if (failure != null) {
+        Throwables.propagateIfPossible(failure, Exception.class);
+        throw Throwables.propagate(failure);
+      }
+
+      List<T> results = new ArrayList<>(tasks.size());
+      for (BranchTask<T> task : tasks) {
+        results.add(task.getRawResult());
+      }
+      return results;
+    } finally {
+      group.close();
+    }
+  }
+
+  /**
+   * Executes an operation that blocks the calling thread. If the calling thread is a worker of this scheduler,
+   * the operation is executed as a {@link ForkJoinPool.ManagedBlocker}, which allows the pool to add a spare
+   * worker while the operation blocks. Otherwise the operation is simply executed.
+   *
+   * @param callable the blocking operation
+   * @return the result of the operation
+   * @throws Exception the failure thrown by the operation
+   */
+  <T> T executeBlocking(Callable<T> callable) throws Exception {
+    if (ForkJoinTask.getPool() != pool) {
+      return callable.call();
+    }
+    BlockingCall<T> blockingCall = new BlockingCall<>(callable);
+    ForkJoinPool.managedBlock(blockingCall);
+    return blockingCall.getResult();
+  }
+
+  /**
+   * Returns {@code true} if the branch that is currently executed by the calling thread has been aborted.
+   */
+  boolean isCurrentBranchAborted() {
+    ForkGroup group = CURRENT_GROUP.get();
+    return group != null && group.isAborted();
+  }
+
+  /**
+   * Shuts down the scheduler, interrupts all running branches and waits for them to terminate.
+   *
+   * @return {@code true} if all branches terminated before the timeout elapsed
+   */
+  boolean shutdownNow(long timeout, TimeUnit unit) throws InterruptedException {
+    pool.shutdownNow();
+    return pool.awaitTermination(timeout, unit);
+  }
+
+  /**
+   * The set of branches forked by a single fork node execution.
+   */
+  private static final class ForkGroup {
+
+    @Nullable
+    private final ForkGroup parent;
+    private final Queue<BranchTask<?>> tasks = new ConcurrentLinkedQueue<>();
+    private final Queue<ForkGroup> children = new ConcurrentLinkedQueue<>();
+    private volatile boolean aborted;
+    private volatile Throwable failure;
+
+    ForkGroup(@Nullable ForkGroup parent) {
+      this.parent = parent;
+      if (parent != null) {
+        parent.children.add(this);
+      }
+    }
+
+    boolean isAborted() {
+      return aborted || (parent != null && parent.isAborted());
+    }
+
+    @Nullable
+    Throwable getFailure() {
+      return failure;
+    }
+
+    /**
+     * Records the failure of a branch and aborts all other branches in this group.
+     */
+    synchronized void fail(Throwable t) {
+      if (failure == null && !aborted) {
+        failure = t;
+      }
+      abort();
+    }
+
+    void abort() {
+      aborted = true;
+      for (BranchTask<?> task : tasks) {
+        task.interruptRunner();
+      }
+      for (ForkGroup child : children) {
+        child.abort();
+      }
+    }
+
+    void close() {
+      if (parent != null) {
+        parent.children.remove(this);
+      }
+    }
+  }
+
+  /**
+   * A {@link ForkJoinTask} for executing one branch of a fork. Failures are recorded in the {@link ForkGroup}
+   * instead of being propagated through the task.
+   */
+  private static final class BranchTask<T> extends RecursiveTask<T> {
+
+    private final ForkGroup group;
+    private final Callable<T> callable;
+    private BranchRunner runner;
+
+    BranchTask(ForkGroup group, Callable<T> callable) {
+      this.group = group;
+      this.callable = callable;
+    }
+
+    @Override
+    protected T compute() {
+      if (group.isAborted()) {
+        return null;
+      }
+      ForkGroup previousGroup = CURRENT_GROUP.get();
+      CURRENT_GROUP.set(group);
+      BranchRunner currentRunner = CURRENT_RUNNER.get();
+      currentRunner.enter(this);
+      synchronized (this) {
+        runner = currentRunner;
+      }
+      T result = null;
+      Throwable failure = null;
+      try {
+        result = callable.call();
+      } catch (Throwable t) {
+        failure = t;
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+        currentRunner.exit(this);
+        CURRENT_GROUP.set(previousGroup);
+      }
+
+      if (failure != null) {
+        group.fail(failure);
+      }
+      return result;
+    }
+
+    synchronized void interruptRunner() {
+      if (runner != null) {
+        runner.interrupt(this);
+      }
+    }
+  }
+
+  /**
+   * A {@link ForkJoinPool.ManagedBlocker} that executes a blocking {@link Callable} once, and records its result.
+   */
+  private static final class BlockingCall<T> implements ForkJoinPool.ManagedBlocker {
+
+    private final Callable<T> callable;
+    private boolean done;
+    private T result;
+    private Exception failure;
+
+    BlockingCall(Callable<T> callable) {
+      this.callable = callable;
+    }
+
+    @Override
+    public boolean block() {
+      try {
+        result = callable.call();
+      } catch (Exception e) {
+        failure = e;
+      }
+      done = true;
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return done;
+    }
+
+    T getResult() throws Exception {
+      if (failure != null) {
+        throw failure;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The branches executed by a thread. Since a thread waiting for the branches of a nested fork may execute
+   * branches of other forks while waiting, this is a stack, and an aborted branch is only interrupted while it
+   * is on the top of the stack. The interrupt is hidden from the branches executed on top of it, and is cleared
+   * once the aborted branch exits, so that it never leaks into other branches.
+   */
+  private static final class BranchRunner {
+
+    private final Thread thread;
+    private final Deque<BranchTask<?>> tasks = new ArrayDeque<>();
+    private final Set<BranchTask<?>> interruptedTasks = new HashSet<>();
+
+    BranchRunner(Thread thread) {
+      this.thread = thread;
+    }
+
+    synchronized void enter(BranchTask<?> task) {
+      if (interruptedTasks.contains(tasks.peek())) {
+        Thread.interrupted();
+      }
+      tasks.push(task);
+    }
+
+    synchronized void exit(BranchTask<?> task) {
+      tasks.pop();
+      if (interruptedTasks.remove(task)) {
+        Thread.interrupted();
+      }
+      if (interruptedTasks.contains(tasks.peek())) {
+        thread.interrupt();
+      }
+    }
+
+    synchronized void interrupt(BranchTask<?> task) {
+      if (interruptedTasks.add(task) && tasks.peek() == task) {
+        thread.interrupt();
+      }
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -43,6 +43,29 @@ public class FlowletProcessEntryTest {
     Assert.assertEquals(Long.MAX_VALUE, entry.getNextDeque());
   }
 
+  @Test
+  public void testSkipDequeue() {
+    FlowletProcessEntry entry = FlowletProcessEntry.create(
+      new ProcessSpecification<>(null, null, new TickObject(0)));
+    // Dequeue is forced periodically even if it can be skipped
+    int skipped = 0;
+    while (entry.skipDequeue()) {
+      skipped++;
+    }
+    Assert.assertTrue(skipped > 0);
+    Assert.assertTrue(entry.skipDequeue());
+
+    // Skipped count is reset after processing an input
+    for (int i = 0; i < skipped / 2; i++) {
+      Assert.assertTrue(entry.skipDequeue());
+    }
+    entry.resetBackOff();
+    for (int i = 0; i < skipped; i++) {
+      Assert.assertTrue(entry.skipDequeue());
+    }
+    Assert.assertFalse(entry.skipDequeue());
+  }
+
   private long floorNanosToSec(long nanoseconds) {
     return TimeUnit.SECONDS.toNanos(TimeUnit.NANOSECONDS.toSeconds(nanoseconds));
   }
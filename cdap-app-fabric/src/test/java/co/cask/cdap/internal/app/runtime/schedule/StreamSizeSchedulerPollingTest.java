@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,15 +16,27 @@
 
 package co.cask.cdap.internal.app.runtime.schedule;
 
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
 import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.test.XSlowTests;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
 import org.junit.BeforeClass;
+import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -39,6 +51,56 @@ public class StreamSizeSchedulerPollingTest extends SchedulerTestBase {
     SchedulerTestBase.init();
   }
 
+  @Test
+  public void testPollMultipleStreams() throws Exception {
+    StreamId stream1 = new NamespaceId("ns1").stream("pollStream1");
+    StreamId stream2 = new NamespaceId("ns1").stream("pollStream2");
+    StreamId stream3 = new NamespaceId("ns2").stream("pollStream3");
+    StreamId emptyStream = new NamespaceId("ns2").stream("pollEmptyStream");
+    createMetricsPublisher(stream1).increment(10);
+    createMetricsPublisher(stream1).increment(5);
+    createMetricsPublisher(stream2).increment(20);
+    createMetricsPublisher(stream3).increment(30);
+    long now = System.currentTimeMillis();
+
+    // the sizes of streams in different namespaces are queried at once
+    Set<StreamId> streams = ImmutableSet.of(stream1, stream2, stream3, emptyStream);
+    MetricDataQuery query = StreamSizeScheduler.createStreamSizesQuery(streams, now);
+    Assert.assertTrue(query.getSliceByTags().isEmpty());
+    Assert.assertEquals(ImmutableMap.of(stream1, 15L, stream2, 20L, stream3, 30L, emptyStream, 0L),
+                        StreamSizeScheduler.getStreamSizes(metricStore.query(query), streams));
+
+    // only the streams that are polled are queried
+    streams = ImmutableSet.of(stream1, stream2);
+    query = StreamSizeScheduler.createStreamSizesQuery(streams, now);
+    Assert.assertEquals(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "ns1"), query.getSliceByTags());
+    Assert.assertEquals(ImmutableMap.of(stream1, 15L, stream2, 20L),
+                        StreamSizeScheduler.getStreamSizes(metricStore.query(query), streams));
+
+    streams = ImmutableSet.of(stream3);
+    query = StreamSizeScheduler.createStreamSizesQuery(streams, now);
+    Assert.assertEquals(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "ns2",
+                                        Constants.Metrics.Tag.STREAM, "pollStream3"), query.getSliceByTags());
+    Assert.assertEquals(ImmutableMap.of(stream3, 30L),
+                        StreamSizeScheduler.getStreamSizes(metricStore.query(query), streams));
+
+    // a malformed time series only leaves out the size of its stream
+    streams = ImmutableSet.of(stream1, stream2, stream3);
+    List<MetricTimeSeries> metrics = Lists.newArrayList(
+      metricStore.query(StreamSizeScheduler.createStreamSizesQuery(streams, now)));
+    Collection<MetricTimeSeries> malformed = Lists.newArrayList();
+    for (MetricTimeSeries metric : metrics) {
+      if ("pollStream2".equals(metric.getTagValues().get(Constants.Metrics.Tag.STREAM))) {
+        malformed.add(new MetricTimeSeries(metric.getMetricName(), metric.getTagValues(),
+                                           ImmutableList.of(new TimeValue(0L, 20L), new TimeValue(1L, 20L))));
+      } else {
+        malformed.add(metric);
+      }
+    }
+    Assert.assertEquals(ImmutableMap.of(stream1, 15L, stream3, 30L),
+                        StreamSizeScheduler.getStreamSizes(malformed, streams));
+  }
+
   @Override
   protected StreamMetricsPublisher createMetricsPublisher(final StreamId streamId) {
     return new StreamMetricsPublisher() {
@@ -0,0 +1,224 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.workflow;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link WorkflowNodeScheduler}.
+ */
+public class WorkflowNodeSchedulerTest {
+
+  @Test(timeout = 30000)
+  public void testBoundedParallelism() throws Exception {
+    WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler("test-", 2);
+    try {
+      final AtomicInteger running = new AtomicInteger();
+      final AtomicInteger maxRunning = new AtomicInteger();
+      List<Callable<Integer>> branches = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        final int value = i;
+        branches.add(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            int current = running.incrementAndGet();
+            while (true) {
+              int max = maxRunning.get();
+              if (current <= max || maxRunning.compareAndSet(max, current)) {
+                break;
+              }
+            }
+            TimeUnit.MILLISECONDS.sleep(20);
+            running.decrementAndGet();
+            return value;
+          }
+        });
+      }
+      Assert.assertEquals(ImmutableList.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), scheduler.invokeAll(branches));
+      Assert.assertTrue(maxRunning.get() <= 2);
+    } finally {
+      scheduler.shutdownNow(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testNestedForks() throws Exception {
+    // With a parallelism of one, nested forks must be executed by the waiting thread itself
+    final WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler("test-", 1);
+    try {
+      List<Callable<Integer>> branches = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        final int outer = i;
+        branches.add(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            List<Callable<Integer>> nested = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+              final int inner = j;
+              nested.add(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                  return outer * 10 + inner;
+                }
+              });
+            }
+            int sum = 0;
+            for (int value : scheduler.invokeAll(nested)) {
+              sum += value;
+            }
+            return sum;
+          }
+        });
+      }
+      Assert.assertEquals(ImmutableList.of(3, 33, 63), scheduler.invokeAll(branches));
+    } finally {
+      scheduler.shutdownNow(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testBlockingBranches() throws Exception {
+    // Each branch blocks until all of them are running, which requires more threads than the parallelism
+    final WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler("test-", 1);
+    try {
+      final CountDownLatch running = new CountDownLatch(3);
+      List<Callable<Integer>> branches = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        final int value = i;
+        branches.add(new Callable<Integer>() {
+          @Override
+          public Integer call() throws Exception {
+            return scheduler.executeBlocking(new Callable<Integer>() {
+              @Override
+              public Integer call() throws Exception {
+                running.countDown();
+                running.await();
+                return value;
+              }
+            });
+          }
+        });
+      }
+      Assert.assertEquals(ImmutableList.of(0, 1, 2), scheduler.invokeAll(branches));
+    } finally {
+      scheduler.shutdownNow(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testFailureAbortsBranches() throws Exception {
+    final WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler("test-", 4);
+    try {
+      final CountDownLatch started = new CountDownLatch(1);
+      final AtomicInteger interrupted = new AtomicInteger();
+      List<Callable<Void>> branches = new ArrayList<>();
+      branches.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          started.countDown();
+          try {
+            TimeUnit.MINUTES.sleep(1);
+          } catch (InterruptedException e) {
+            interrupted.incrementAndGet();
+          }
+          Assert.assertTrue(scheduler.isCurrentBranchAborted());
+          return null;
+        }
+      });
+      branches.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          started.await();
+          throw new IllegalStateException("Branch failure");
+        }
+      });
+
+      try {
+        scheduler.invokeAll(branches);
+        Assert.fail("Expected branch failure");
+      } catch (IllegalStateException e) {
+        Assert.assertEquals("Branch failure", e.getMessage());
+      }
+      Assert.assertEquals(1, interrupted.get());
+    } finally {
+      scheduler.shutdownNow(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testAbortDoesNotInterruptOtherBranches() throws Exception {
+    // The thread of the outer branch runs the nested branch that it forked last, while the other thread
+    // executes the failing nested branch, which aborts it
+    final WorkflowNodeScheduler scheduler = new WorkflowNodeScheduler("test-", 2);
+    try {
+      Callable<Boolean> outer = new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          List<Callable<Void>> nested = new ArrayList<>();
+          nested.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              throw new IllegalStateException("Branch failure");
+            }
+          });
+          nested.add(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              TimeUnit.MINUTES.sleep(1);
+              return null;
+            }
+          });
+          try {
+            scheduler.invokeAll(nested);
+            Assert.fail("Expected branch failure");
+          } catch (IllegalStateException e) {
+            Assert.assertEquals("Branch failure", e.getMessage());
+          }
+          // The outer branch is not aborted, and the interrupt of the nested branch must not leak into it
+          return Thread.currentThread().isInterrupted() || scheduler.isCurrentBranchAborted();
+        }
+      };
+      Assert.assertEquals(ImmutableList.of(false), scheduler.invokeAll(ImmutableList.of(outer)));
+
+      // The worker thread is not interrupted when it executes the next branches
+      Assert.assertEquals(ImmutableList.of(false, false), scheduler.invokeAll(ImmutableList.of(
+        new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return Thread.currentThread().isInterrupted();
+          }
+        },
+        new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return Thread.currentThread().isInterrupted();
+          }
+        })));
+    } finally {
+      scheduler.shutdownNow(10, TimeUnit.SECONDS);
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,6 +21,7 @@ import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data2.audit.AuditModule;
 import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.messaging.MessagingService;
@@ -45,7 +46,6 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.inject.Injector;
 import org.junit.AfterClass;
-import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -56,6 +56,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests audit publishing.
@@ -119,7 +121,16 @@ public class AuditPublishTest {
     // Deploy application
     AppFabricTestHelper.deployApplication(Id.Namespace.DEFAULT, WordCountApp.class, null, cConf);
 
-    // Verify audit messages
+    // Verify audit messages, which are published asynchronously
+    Tasks.waitFor(expectedAuditEntities, new Callable<Multimap<AuditType, EntityId>>() {
+      @Override
+      public Multimap<AuditType, EntityId> call() throws Exception {
+        return getAuditEntities();
+      }
+    }, 10, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+  }
+
+  private Multimap<AuditType, EntityId> getAuditEntities() throws TopicNotFoundException, IOException {
     List<AuditMessage> publishedMessages = fetchAuditMessages();
 
     Multimap<AuditType, EntityId> actualAuditEntities = HashMultimap.create();
@@ -138,7 +149,7 @@ public class AuditPublishTest {
       }
       actualAuditEntities.put(message.getType(), entityId);
     }
-    Assert.assertEquals(expectedAuditEntities, actualAuditEntities);
+    return actualAuditEntities;
   }
 
   private List<AuditMessage> fetchAuditMessages() throws TopicNotFoundException, IOException {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -140,7 +140,8 @@ public class MapReduceTransformExecutorFactory<T> extends TransformExecutorFacto
       taskContext.getDataTracer(stageName).isEnabled() && BatchSource.PLUGIN_TYPE.equals(pluginType) && isMapPhase;
     return new TrackedTransform(
       isLimitingSource ? new LimitingTransform(transformation, numberOfRecordsPreview) : transformation,
-      stageMetrics, taskContext.getDataTracer(stageName));
+      stageMetrics, TrackedTransform.RECORDS_IN, TrackedTransform.RECORDS_OUT, taskContext.getDataTracer(stageName),
+      true);
   }
 
   /**
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -59,4 +59,12 @@ public class DefaultEmitter<T> implements Emitter<T> {
     entryList.clear();
     errorList.clear();
   }
+
+  /**
+   * Removes the values and errors that were emitted after the given number of values and errors.
+   */
+  void truncate(int entriesSize, int errorsSize) {
+    entryList.subList(entriesSize, entryList.size()).clear();
+    errorList.subList(errorsSize, errorList.size()).clear();
+  }
 }
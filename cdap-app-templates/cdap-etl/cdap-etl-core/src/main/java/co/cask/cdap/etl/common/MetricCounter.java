@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.StageMetrics;
+
+/**
+ * Counter of a stage metric that is incremented locally. A buffered counter only adds its count to the
+ * {@link StageMetrics} once {@link #MAX_PENDING_COUNT} increments are pending, or when the first pending increment
+ * is older than {@link #MAX_PENDING_MILLIS}. The pending count must be flushed with {@link #flush()} once the
+ * stage is done, for the metric to be exact.
+ */
+final class MetricCounter {
+
+  static final int MAX_PENDING_COUNT = 1000;
+  static final long MAX_PENDING_MILLIS = 1000L;
+
+  private final StageMetrics metrics;
+  private final String name;
+  private final int maxPendingCount;
+  private int pendingCount;
+  private long flushTime;
+
+  MetricCounter(StageMetrics metrics, String name, boolean buffered) {
+    this.metrics = metrics;
+    this.name = name;
+    this.maxPendingCount = buffered ? MAX_PENDING_COUNT : 1;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  void increment() {
+    if (pendingCount == 0) {
+      if (maxPendingCount == 1) {
+        metrics.count(name, 1);
+        return;
+      }
+      flushTime = System.currentTimeMillis() + MAX_PENDING_MILLIS;
+    }
+    if (++pendingCount >= maxPendingCount || System.currentTimeMillis() >= flushTime) {
+      flush();
+    }
+  }
+
+  void flush() {
+    if (pendingCount > 0) {
+      int count = pendingCount;
+      pendingCount = 0;
+      metrics.count(name, count);
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -27,34 +27,60 @@ import co.cask.cdap.etl.api.StageMetrics;
  * @param <T> the type of object to emit
  */
 public class TrackedEmitter<T> implements Emitter<T> {
-  private static final String RECORDS_ERROR = "records.error";
+  static final String RECORDS_ERROR = "records.error";
   private final Emitter<T> delegate;
-  private final StageMetrics stageMetrics;
-  private final String emitMetricName;
+  private final MetricCounter emitCounter;
+  private final MetricCounter errorCounter;
   private final DataTracer dataTracer;
 
   public TrackedEmitter(Emitter<T> delegate, StageMetrics stageMetrics, String emitMetricName, DataTracer dataTracer) {
+    this(delegate, stageMetrics, emitMetricName, dataTracer, false);
+  }
+
+  /**
+   * Creates a tracked emitter. If the metrics are buffered, {@link #flushMetrics()} must be called once
+   * the emitter is not used anymore.
+   */
+  public TrackedEmitter(Emitter<T> delegate, StageMetrics stageMetrics, String emitMetricName, DataTracer dataTracer,
+                        boolean bufferMetrics) {
+    this(delegate, new MetricCounter(stageMetrics, emitMetricName, bufferMetrics),
+         new MetricCounter(stageMetrics, RECORDS_ERROR, bufferMetrics), dataTracer);
+  }
+
+  TrackedEmitter(Emitter<T> delegate, MetricCounter emitCounter, MetricCounter errorCounter, DataTracer dataTracer) {
     this.delegate = delegate;
-    this.stageMetrics = stageMetrics;
-    this.emitMetricName = emitMetricName;
+    this.emitCounter = emitCounter;
+    this.errorCounter = errorCounter;
     this.dataTracer = dataTracer;
   }
 
   @Override
   public void emit(T value) {
-    stageMetrics.count(emitMetricName, 1);
+    emitCounter.increment();
     if (dataTracer.isEnabled()) {
-      dataTracer.info(emitMetricName, value);
+      dataTracer.info(emitCounter.getName(), value);
     }
     delegate.emit(value);
   }
 
   @Override
   public void emitError(InvalidEntry<T> value) {
-    stageMetrics.count(RECORDS_ERROR, 1);
+    errorCounter.increment();
     if (dataTracer.isEnabled()) {
       dataTracer.info(RECORDS_ERROR, value);
     }
     delegate.emitError(value);
   }
+
+  /**
+   * Adds the counts of the records that were emitted since the last flush to the metrics.
+   */
+  public void flushMetrics() {
+    emitCounter.flush();
+    errorCounter.flush();
+  }
+
+  Emitter<T> getDelegate() {
+    return delegate;
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -35,10 +35,11 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
   public static final String RECORDS_IN = "records.in";
   public static final String RECORDS_OUT = "records.out";
   private final Transformation<IN, OUT> transform;
-  private final StageMetrics metrics;
-  private final String metricInName;
-  private final String metricOutName;
+  private final MetricCounter inCounter;
+  private final MetricCounter outCounter;
+  private final MetricCounter errorCounter;
   private final DataTracer dataTracer;
+  private TrackedEmitter<OUT> trackedEmitter;
 
   public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics, DataTracer dataTracer) {
     this(transform, metrics, RECORDS_IN, RECORDS_OUT, dataTracer);
@@ -46,26 +47,57 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
 
   public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics,
                           @Nullable String metricInName, @Nullable String metricOutName, DataTracer dataTracer) {
+    this(transform, metrics, metricInName, metricOutName, dataTracer, false);
+  }
+
+  /**
+   * Creates a tracked transform. If the metrics are buffered, they are only added to the {@link StageMetrics}
+   * every few records, and the transform must be destroyed for them to be exact.
+   */
+  public TrackedTransform(Transformation<IN, OUT> transform, StageMetrics metrics,
+                          @Nullable String metricInName, @Nullable String metricOutName, DataTracer dataTracer,
+                          boolean bufferMetrics) {
     this.transform = transform;
-    this.metrics = metrics;
-    this.metricInName = metricInName;
-    this.metricOutName = metricOutName;
+    this.inCounter = metricInName == null ? null : new MetricCounter(metrics, metricInName, bufferMetrics);
+    this.outCounter = metricOutName == null ? null : new MetricCounter(metrics, metricOutName, bufferMetrics);
+    this.errorCounter = new MetricCounter(metrics, TrackedEmitter.RECORDS_ERROR, bufferMetrics);
     this.dataTracer = dataTracer;
   }
 
   @Override
   public void transform(IN input, Emitter<OUT> emitter) throws Exception {
-    if (metricInName != null) {
-      metrics.count(metricInName, 1);
+    if (inCounter != null) {
+      inCounter.increment();
+    }
+    transform.transform(input, outCounter == null ? emitter : getTrackedEmitter(emitter));
+  }
+
+  /**
+   * Adds the counts of the records that were transformed since the last flush to the metrics.
+   */
+  public void flushMetrics() {
+    if (inCounter != null) {
+      inCounter.flush();
+    }
+    if (outCounter != null) {
+      outCounter.flush();
     }
-    transform.transform(input, metricOutName == null ? emitter :
-      new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer));
+    errorCounter.flush();
   }
 
   @Override
   public void destroy() {
+    flushMetrics();
     if (transform instanceof Destroyable) {
       ((Destroyable) transform).destroy();
     }
   }
+
+  private Emitter<OUT> getTrackedEmitter(Emitter<OUT> emitter) {
+    // the same emitter is usually given for every input, so the tracked emitter around it is reused
+    if (trackedEmitter == null || trackedEmitter.getDelegate() != emitter) {
+      trackedEmitter = new TrackedEmitter<>(emitter, outCounter, errorCounter, dataTracer);
+    }
+    return trackedEmitter;
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -60,6 +60,13 @@ public class TransformDetail implements Emitter<Object> {
     defaultEmitter.reset();
   }
 
+  /**
+   * Removes the entries and errors that were emitted after the given number of entries and errors.
+   */
+  void truncate(int entriesSize, int errorsSize) {
+    defaultEmitter.truncate(entriesSize, errorsSize);
+  }
+
   public void destroy() {
     if (transformation instanceof Destroyable) {
       Destroyables.destroyQuietly((Destroyable) transformation);
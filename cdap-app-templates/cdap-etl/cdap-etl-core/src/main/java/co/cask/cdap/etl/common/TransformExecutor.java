@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,12 +17,16 @@
 package co.cask.cdap.etl.common;
 
 import co.cask.cdap.etl.api.Destroyable;
+import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.Transformation;
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Preconditions;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -31,68 +35,109 @@ import java.util.Set;
  * Executes Transforms one iteration at a time, tracking how many records were input into and output from
  * each transform.
  *
+ * <p>The stages are compiled into a chain of emitters that push every record they receive to the transform of
+ * the next stage. Only the terminal stages collect their records, and a stage with several next stages buffers its
+ * records until it processed all of its input, so that every stage receives its records in the same order as if
+ * the stages were executed one after the other. If a transform fails, the records and errors that were emitted
+ * for the input are discarded.</p>
+ *
  * @param <IN> the type of input object to the first transform
  *
  */
 public class TransformExecutor<IN> implements Destroyable {
 
-  private final Set<String> startingPoints;
   private final Map<String, TransformDetail> transformDetailMap;
+  private final List<Stage> startStages;
+  private final Map<String, Collection<Object>> terminalNodeEntriesMap;
+  // sizes of the entries and errors of each stage before an iteration, to discard them if the iteration fails
+  private final TransformDetail[] transformDetails;
+  private final int[] entriesSizes;
+  private final int[] errorsSizes;
 
   public TransformExecutor(Map<String, TransformDetail> transformDetailMap, Set<String> startingPoints) {
     this.transformDetailMap = transformDetailMap;
-    this.startingPoints = startingPoints;
-  }
 
-  public TransformResponse runOneIteration(IN input) throws Exception {
+    Map<String, Stage> stages = new HashMap<>();
+    List<Stage> startStages = new ArrayList<>(startingPoints.size());
     for (String stageName : startingPoints) {
-      // no prevStage for starting points
-      executeTransformation(stageName, ImmutableList.of(input));
+      startStages.add(compile(stageName, stages));
     }
+    this.startStages = startStages;
 
+    // the entries of terminal nodes are only cleared by resetEmitter(), so the same collections are returned
     Map<String, Collection<Object>> terminalNodeEntriesMap = new HashMap<>();
-    Map<String, Collection<InvalidEntry<Object>>> errors = new HashMap<>();
-
     for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetailMap.entrySet()) {
       if (transformDetailEntry.getValue().getNextStages().isEmpty()) {
-        // terminal node
-        Collection<Object> entries = transformDetailEntry.getValue().getEntries();
-        if (entries != null) {
-          terminalNodeEntriesMap.put(transformDetailEntry.getKey(), entries);
-        }
-      }
-
-      if (!transformDetailEntry.getValue().getErrors().isEmpty()) {
-        errors.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getErrors());
+        terminalNodeEntriesMap.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getEntries());
       }
     }
-    return new TransformResponse(terminalNodeEntriesMap, errors);
+    this.terminalNodeEntriesMap = Collections.unmodifiableMap(terminalNodeEntriesMap);
+
+    this.transformDetails = transformDetailMap.values().toArray(new TransformDetail[transformDetailMap.size()]);
+    this.entriesSizes = new int[transformDetails.length];
+    this.errorsSizes = new int[transformDetails.length];
   }
 
-  private <T> void executeTransformation(final String stageName,
-                                         Collection<T> input) throws Exception {
-    if (input == null) {
-      return;
+  public TransformResponse runOneIteration(IN input) throws Exception {
+    for (int i = 0; i < transformDetails.length; i++) {
+      entriesSizes[i] = transformDetails[i].getEntries().size();
+      errorsSizes[i] = transformDetails[i].getErrors().size();
     }
 
-    TransformDetail transformDetail = transformDetailMap.get(stageName);
-    Transformation<T, Object> transformation = transformDetail.getTransformation();
-
-
-    // clear old data for this stageName if its not a terminal node
-    if (!transformDetail.getNextStages().isEmpty()) {
-      transformDetail.getEntries().clear();
+    try {
+      for (Stage stage : startStages) {
+        stage.process(input);
+        stage.flush();
+      }
+    } catch (Exception e) {
+      for (int i = 0; i < transformDetails.length; i++) {
+        transformDetails[i].truncate(entriesSizes[i], errorsSizes[i]);
+      }
+      if (e instanceof StageFailureException) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
     }
 
-    for (T inputEntry : input) {
-      transformation.transform(inputEntry, transformDetail);
+    Map<String, Collection<InvalidEntry<Object>>> errors = null;
+    for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetailMap.entrySet()) {
+      if (!transformDetailEntry.getValue().getErrors().isEmpty()) {
+        if (errors == null) {
+          errors = new HashMap<>();
+        }
+        errors.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getErrors());
+      }
     }
+    return new TransformResponse(terminalNodeEntriesMap,
+                                 errors == null ? Collections.<String, Collection<InvalidEntry<Object>>>emptyMap()
+                                   : errors);
+  }
 
-    Collection<String> nextStages = transformDetail.getNextStages();
-    for (String nextStage : nextStages) {
-      executeTransformation(nextStage, transformDetail.getEntries());
+  /**
+   * Compiles the given stage, and all the stages after it, into {@link Stage}s.
+   */
+  private Stage compile(String stageName, Map<String, Stage> stages) {
+    Stage stage = stages.get(stageName);
+    if (stage != null) {
+      return stage;
     }
 
+    TransformDetail transformDetail = transformDetailMap.get(stageName);
+    Preconditions.checkArgument(transformDetail != null, "No transform found for stage '%s'.", stageName);
+    Collection<String> nextStageNames = transformDetail.getNextStages();
+    if (nextStageNames.isEmpty()) {
+      stage = new TerminalStage(transformDetail);
+    } else if (nextStageNames.size() == 1) {
+      stage = new ChainedStage(transformDetail, compile(nextStageNames.iterator().next(), stages));
+    } else {
+      List<Stage> nextStages = new ArrayList<>(nextStageNames.size());
+      for (String nextStageName : nextStageNames) {
+        nextStages.add(compile(nextStageName, stages));
+      }
+      stage = new FanOutStage(transformDetail, nextStages);
+    }
+    stages.put(stageName, stage);
+    return stage;
   }
 
   public void resetEmitter() {
@@ -107,4 +152,149 @@ public class TransformExecutor<IN> implements Destroyable {
       transformDetailEntry.destroy();
     }
   }
+
+  /**
+   * A compiled stage, which is the emitter of its own transform.
+   */
+  private abstract static class Stage implements Emitter<Object> {
+    private final TransformDetail transformDetail;
+    private final Transformation<Object, Object> transformation;
+
+    @SuppressWarnings("unchecked")
+    Stage(TransformDetail transformDetail) {
+      this.transformDetail = transformDetail;
+      this.transformation = transformDetail.getTransformation();
+    }
+
+    void process(Object input) throws Exception {
+      transformation.transform(input, this);
+    }
+
+    /**
+     * Called after the stage processed all the records of one input of the previous stage.
+     */
+    abstract void flush() throws Exception;
+
+    /**
+     * @return whether {@link #flush()} needs to be called on this stage
+     */
+    abstract boolean needsFlush();
+
+    @Override
+    public void emit(Object value) {
+      transformDetail.emit(value);
+    }
+
+    @Override
+    public void emitError(InvalidEntry<Object> invalidEntry) {
+      transformDetail.emitError(invalidEntry);
+    }
+  }
+
+  /**
+   * A stage without next stages, which collects the records it emits.
+   */
+  private static final class TerminalStage extends Stage {
+
+    TerminalStage(TransformDetail transformDetail) {
+      super(transformDetail);
+    }
+
+    @Override
+    void flush() {
+      // nothing is buffered
+    }
+
+    @Override
+    boolean needsFlush() {
+      return false;
+    }
+  }
+
+  /**
+   * A stage with a single next stage, which pushes every record it emits to the next stage.
+   */
+  private static final class ChainedStage extends Stage {
+    private final Stage nextStage;
+    private final boolean flushNextStage;
+
+    ChainedStage(TransformDetail transformDetail, Stage nextStage) {
+      super(transformDetail);
+      this.nextStage = nextStage;
+      this.flushNextStage = nextStage.needsFlush();
+    }
+
+    @Override
+    public void emit(Object value) {
+      try {
+        nextStage.process(value);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new StageFailureException(e);
+      }
+    }
+
+    @Override
+    void flush() throws Exception {
+      if (flushNextStage) {
+        nextStage.flush();
+      }
+    }
+
+    @Override
+    boolean needsFlush() {
+      return flushNextStage;
+    }
+  }
+
+  /**
+   * A stage with several next stages, which buffers the records it emits, and pushes them to each of the next
+   * stages in turn once it processed all of its input.
+   */
+  private static final class FanOutStage extends Stage {
+    private final List<Stage> nextStages;
+    private final List<Object> buffer;
+
+    FanOutStage(TransformDetail transformDetail, List<Stage> nextStages) {
+      super(transformDetail);
+      this.nextStages = nextStages;
+      this.buffer = new ArrayList<>();
+    }
+
+    @Override
+    public void emit(Object value) {
+      buffer.add(value);
+    }
+
+    @Override
+    void flush() throws Exception {
+      try {
+        for (Stage nextStage : nextStages) {
+          for (Object value : buffer) {
+            nextStage.process(value);
+          }
+          if (nextStage.needsFlush()) {
+            nextStage.flush();
+          }
+        }
+      } finally {
+        buffer.clear();
+      }
+    }
+
+    @Override
+    boolean needsFlush() {
+      return true;
+    }
+  }
+
+  /**
+   * Carries a checked exception of a transform through the emitters of the stages before it.
+   */
+  private static final class StageFailureException extends RuntimeException {
+    StageFailureException(Exception cause) {
+      super(cause);
+    }
+  }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.app.preview.DataTracerFactory;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
+import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.internal.app.preview.NoopDataTracerFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TrackedTransform}.
+ */
+public class TrackedTransformTest {
+  private final DataTracerFactory dataTracerFactory = new NoopDataTracerFactory();
+
+  @Test
+  public void testUnbufferedMetrics() throws Exception {
+    MockMetrics mockMetrics = new MockMetrics();
+    TrackedTransform<Integer, Integer> transform =
+      new TrackedTransform<>(new EvenFilter(), new DefaultStageMetrics(mockMetrics, "filter"),
+                             dataTracerFactory.getDataTracer(null, "filter"));
+    DefaultEmitter<Integer> emitter = new DefaultEmitter<>();
+    for (int i = 0; i < 5; i++) {
+      transform.transform(i, emitter);
+    }
+    Assert.assertEquals(5, mockMetrics.getCount("filter.records.in"));
+    Assert.assertEquals(3, mockMetrics.getCount("filter.records.out"));
+    Assert.assertEquals(2, mockMetrics.getCount("filter.records.error"));
+    Assert.assertEquals(3, emitter.getEntries().size());
+    Assert.assertEquals(2, emitter.getErrors().size());
+  }
+
+  @Test
+  public void testBufferedMetrics() throws Exception {
+    MockMetrics mockMetrics = new MockMetrics();
+    TrackedTransform<Integer, Integer> transform =
+      new TrackedTransform<>(new EvenFilter(), new DefaultStageMetrics(mockMetrics, "filter"),
+                             TrackedTransform.RECORDS_IN, TrackedTransform.RECORDS_OUT,
+                             dataTracerFactory.getDataTracer(null, "filter"), true);
+    DefaultEmitter<Integer> emitter = new DefaultEmitter<>();
+    int count = MetricCounter.MAX_PENDING_COUNT + 10;
+    for (int i = 0; i < count; i++) {
+      transform.transform(i, emitter);
+    }
+    // the records in are counted once enough of them are pending, and the other counts are still pending,
+    // unless flushing took longer than the maximum delay
+    Assert.assertTrue(mockMetrics.getCount("filter.records.in") >= MetricCounter.MAX_PENDING_COUNT);
+    Assert.assertTrue(mockMetrics.getCount("filter.records.in") < count);
+
+    // the emitter given to the transform changes
+    DefaultEmitter<Integer> otherEmitter = new DefaultEmitter<>();
+    transform.transform(count, otherEmitter);
+    transform.transform(count + 1, otherEmitter);
+    Assert.assertEquals(count / 2, emitter.getEntries().size());
+    Assert.assertEquals(1, otherEmitter.getEntries().size());
+
+    // all the metrics are exact once the transform is destroyed
+    transform.destroy();
+    Assert.assertEquals(count + 2, mockMetrics.getCount("filter.records.in"));
+    Assert.assertEquals(count / 2 + 1, mockMetrics.getCount("filter.records.out"));
+    Assert.assertEquals(count / 2 + 1, mockMetrics.getCount("filter.records.error"));
+    transform.destroy();
+    Assert.assertEquals(count + 2, mockMetrics.getCount("filter.records.in"));
+  }
+
+  /**
+   * Emits even numbers, and emits odd numbers as errors.
+   */
+  private static class EvenFilter extends Transform<Integer, Integer> {
+
+    @Override
+    public void transform(Integer input, Emitter<Integer> emitter) throws Exception {
+      if (input % 2 == 0) {
+        emitter.emit(input);
+      } else {
+        emitter.emitError(new InvalidEntry<>(1, "odd", input));
+      }
+    }
+  }
+}
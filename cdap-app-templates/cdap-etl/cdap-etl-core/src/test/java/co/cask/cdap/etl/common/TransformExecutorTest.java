@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,7 @@ import co.cask.cdap.app.preview.DataTracerFactory;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.etl.api.Transformation;
 import co.cask.cdap.internal.app.preview.NoopDataTracerFactory;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -27,10 +28,15 @@ import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 /**
  */
@@ -292,6 +298,93 @@ public class TransformExecutorTest {
     Assert.assertEquals(3, mockMetrics.getCount("sink3.records.out"));
   }
 
+  @Test
+  public void testSameResultsAsStagewiseExecution() throws Exception {
+    Random random = new Random(0);
+    for (int pipeline = 0; pipeline < 500; pipeline++) {
+      // each stage only outputs to stages after it, so that the stages form a DAG
+      int numStages = 1 + random.nextInt(8);
+      Map<String, List<String>> nextStages = new HashMap<>();
+      Set<String> startingPoints = new HashSet<>();
+      for (int i = 0; i < numStages; i++) {
+        List<String> outputs = new ArrayList<>();
+        for (int j = i + 1; j < numStages; j++) {
+          if (random.nextInt(3) == 0) {
+            outputs.add("stage" + j);
+          }
+        }
+        nextStages.put("stage" + i, outputs);
+        if (i == 0 || random.nextInt(4) == 0) {
+          startingPoints.add("stage" + i);
+        }
+      }
+
+      TransformExecutor<String> executor = new TransformExecutor<>(createDetails(nextStages), startingPoints);
+      StagewiseTransformExecutor expectedExecutor = new StagewiseTransformExecutor(createDetails(nextStages),
+                                                                                   startingPoints);
+      for (int i = 0; i < 20; i++) {
+        TransformResponse expected = expectedExecutor.runOneIteration("input" + i);
+        TransformResponse actual = executor.runOneIteration("input" + i);
+        Assert.assertEquals(toLists(expected.getSinksResults()), toLists(actual.getSinksResults()));
+        Assert.assertEquals(toLists(expected.getMapTransformIdToErrorEmitter()),
+                            toLists(actual.getMapTransformIdToErrorEmitter()));
+        if (random.nextBoolean()) {
+          expectedExecutor.resetEmitter();
+          executor.resetEmitter();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFailedIteration() throws Exception {
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+    transformationMap.put("conversion", new TransformDetail(new IntToDouble(), ImmutableList.of("failing")));
+    transformationMap.put("failing", new TransformDetail(new Transform<Double, Double>() {
+      @Override
+      public void transform(Double input, Emitter<Double> emitter) throws Exception {
+        if (input > 100d) {
+          throw new IOException("Failed to transform " + input);
+        }
+        emitter.emitError(new InvalidEntry<>(100, "less than threshold ", input));
+        emitter.emit(input);
+      }
+    }, ImmutableList.of("sink")));
+    transformationMap.put("sink", new TransformDetail(new DoubleToString(), ImmutableList.<String>of()));
+
+    TransformExecutor<Integer> executor = new TransformExecutor<>(transformationMap, ImmutableSet.of("conversion"));
+    assertResults(executor.runOneIteration(1).getSinksResults(), ImmutableMap.of("sink", 3));
+    try {
+      executor.runOneIteration(2);
+      Assert.fail("Expected the transform to fail");
+    } catch (IOException e) {
+      // expected, and the records and errors emitted for the input are discarded
+    }
+    TransformResponse transformResponse = executor.runOneIteration(0);
+    assertResults(transformResponse.getSinksResults(), ImmutableMap.of("sink", 6));
+    assertResults(transformResponse.getMapTransformIdToErrorEmitter(), ImmutableMap.of("failing", 6));
+  }
+
+  private Map<String, TransformDetail> createDetails(Map<String, List<String>> nextStages) {
+    Map<String, TransformDetail> transformationMap = new HashMap<>();
+    for (Map.Entry<String, List<String>> entry : nextStages.entrySet()) {
+      transformationMap.put(entry.getKey(), new TransformDetail(new Scramble(entry.getKey()), entry.getValue()));
+    }
+    return transformationMap;
+  }
+
+  private <T> Map<String, List<String>> toLists(Map<String, Collection<T>> results) {
+    Map<String, List<String>> lists = new HashMap<>();
+    for (Map.Entry<String, Collection<T>> entry : results.entrySet()) {
+      List<String> list = new ArrayList<>();
+      for (T value : entry.getValue()) {
+        list.add(value instanceof InvalidEntry ? "error " + ((InvalidEntry) value).getInvalidRecord() : (String) value);
+      }
+      lists.put(entry.getKey(), list);
+    }
+    return lists;
+  }
+
   private <T> void assertResults(Map<String, Collection<T>> results, Map<String, Integer> expectedListsSize) {
     Assert.assertEquals(expectedListsSize.size(), results.size());
     for (Map.Entry<String, Integer> entry : expectedListsSize.entrySet()) {
@@ -344,6 +437,81 @@ public class TransformExecutorTest {
     }
   }
 
+  /**
+   * Emits zero to two records and possibly an error for each input, depending on the input and the stage name.
+   */
+  private static class Scramble extends Transform<String, String> {
+    private final String stageName;
+
+    Scramble(String stageName) {
+      this.stageName = stageName;
+    }
+
+    @Override
+    public void transform(String input, Emitter<String> emitter) throws Exception {
+      int hash = (input + stageName).hashCode() & Integer.MAX_VALUE;
+      for (int i = 0; i < hash % 3; i++) {
+        emitter.emit(input + "/" + stageName + "." + i);
+      }
+      if (hash % 5 == 0) {
+        emitter.emitError(new InvalidEntry<>(1, stageName, input));
+      }
+    }
+  }
+
+  /**
+   * Executes each stage on all of its input before the next stages, which is how the {@link TransformExecutor}
+   * used to execute the stages.
+   */
+  private static final class StagewiseTransformExecutor {
+    private final Set<String> startingPoints;
+    private final Map<String, TransformDetail> transformDetailMap;
+
+    StagewiseTransformExecutor(Map<String, TransformDetail> transformDetailMap, Set<String> startingPoints) {
+      this.transformDetailMap = transformDetailMap;
+      this.startingPoints = startingPoints;
+    }
+
+    TransformResponse runOneIteration(Object input) throws Exception {
+      for (String stageName : startingPoints) {
+        executeTransformation(stageName, ImmutableList.of(input));
+      }
+
+      Map<String, Collection<Object>> terminalNodeEntriesMap = new HashMap<>();
+      Map<String, Collection<InvalidEntry<Object>>> errors = new HashMap<>();
+      for (Map.Entry<String, TransformDetail> transformDetailEntry : transformDetailMap.entrySet()) {
+        if (transformDetailEntry.getValue().getNextStages().isEmpty()) {
+          terminalNodeEntriesMap.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getEntries());
+        }
+        if (!transformDetailEntry.getValue().getErrors().isEmpty()) {
+          errors.put(transformDetailEntry.getKey(), transformDetailEntry.getValue().getErrors());
+        }
+      }
+      return new TransformResponse(terminalNodeEntriesMap, errors);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeTransformation(String stageName, Collection<Object> input) throws Exception {
+      TransformDetail transformDetail = transformDetailMap.get(stageName);
+      Transformation<Object, Object> transformation = transformDetail.getTransformation();
+      if (!transformDetail.getNextStages().isEmpty()) {
+        transformDetail.getEntries().clear();
+      }
+      for (Object inputEntry : input) {
+        transformation.transform(inputEntry, transformDetail);
+      }
+      for (String nextStage : transformDetail.getNextStages()) {
+        executeTransformation(nextStage, transformDetail.getEntries());
+      }
+    }
+
+    void resetEmitter() {
+      for (TransformDetail transformDetail : transformDetailMap.values()) {
+        transformDetail.resetEmitter();
+      }
+    }
+  }
+
   private static class DoubleToString extends Transform<Double, String> {
 
     @Override
@@ -116,6 +116,8 @@ public class ETLWorker extends AbstractWorker {
   private String sourceStageName;
   private Map<String, RealtimeSink> sinks;
   private TransformExecutor transformExecutor;
+  // Tracked transforms of all stages, whose buffered metrics are flushed after each poll of the source
+  private List<TrackedTransform<?, ?>> trackedTransforms;
   private String stateStoreKey;
   private byte[] stateStoreKeyBytes;
   private String appName;
@@ -212,6 +214,7 @@ public class ETLWorker extends AbstractWorker {
 
     PipelinePhase pipeline = GSON.fromJson(properties.get(Constants.PIPELINEID), PipelinePhase.class);
     Map<String, TransformDetail> transformationMap = new HashMap<>();
+    trackedTransforms = new ArrayList<>();
 
     initializeSource(context, pipeline);
 
@@ -261,7 +264,8 @@ public class ETLWorker extends AbstractWorker {
       TrackedTransform trackedTransform = new TrackedTransform(identityTransformation,
                                                                new DefaultStageMetrics(metrics, sinkName),
                                                                TrackedTransform.RECORDS_IN,
-                                                               null, context.getDataTracer(sinkName));
+                                                               null, context.getDataTracer(sinkName), true);
+      trackedTransforms.add(trackedTransform);
       transformationMap.put(sinkInfo.getName(), new TransformDetail(trackedTransform, new HashSet<String>()));
       sinks.put(sinkInfo.getName(), sink);
     }
@@ -284,9 +288,12 @@ public class ETLWorker extends AbstractWorker {
         LOG.debug("Transform Class : {}", transform.getClass().getName());
         transform.initialize(transformContext);
         StageMetrics stageMetrics = new DefaultStageMetrics(metrics, transformName);
-        transformDetailMap.put(transformName, new TransformDetail(
-          new TrackedTransform<>(transform, stageMetrics, context.getDataTracer(transformName)),
-          pipeline.getStageOutputs(transformName)));
+        TrackedTransform<?, ?> trackedTransform =
+          new TrackedTransform<>(transform, stageMetrics, TrackedTransform.RECORDS_IN, TrackedTransform.RECORDS_OUT,
+                                 context.getDataTracer(transformName), true);
+        trackedTransforms.add(trackedTransform);
+        transformDetailMap.put(transformName, new TransformDetail(trackedTransform,
+                                                                  pipeline.getStageOutputs(transformName)));
         if (transformInfo.getErrorDatasetName() != null) {
           tranformIdToDatasetName.put(transformName, transformInfo.getErrorDatasetName());
         }
@@ -324,7 +331,7 @@ public class ETLWorker extends AbstractWorker {
     TrackedEmitter<Object> trackedSourceEmitter =
       new TrackedEmitter<>(sourceEmitter,
                            new DefaultStageMetrics(metrics, sourceStageName),
-                           TrackedTransform.RECORDS_OUT, context.getDataTracer(sourceStageName));
+                           TrackedTransform.RECORDS_OUT, context.getDataTracer(sourceStageName), true);
     while (!stopped) {
       // Invoke poll method of the source to fetch data
       try {
@@ -336,6 +343,7 @@ public class ETLWorker extends AbstractWorker {
         // Continue since the source threw an exception. No point in processing records and state is not changed.
         LOG.warn("Exception thrown during polling of Source for data", e);
         sourceEmitter.reset();
+        flushMetrics(trackedSourceEmitter);
         continue;
       }
 
@@ -439,10 +447,19 @@ public class ETLWorker extends AbstractWorker {
         for (List<InvalidEntry> invalidEntryList : transformIdToErrorRecords.values()) {
           invalidEntryList.clear();
         }
+        // the stage metrics are buffered, so they are flushed for each poll, to be reported even when it is slow
+        flushMetrics(trackedSourceEmitter);
       }
     }
   }
 
+  private void flushMetrics(TrackedEmitter<Object> trackedSourceEmitter) {
+    trackedSourceEmitter.flushMetrics();
+    for (TrackedTransform<?, ?> trackedTransform : trackedTransforms) {
+      trackedTransform.flushMetrics();
+    }
+  }
+
   private Map<String, List<InvalidEntry>> intializeTransformIdToErrorsList() {
     Map<String, List<InvalidEntry>> transformIdToErrorListMap = new HashMap<>();
     for (String transformId : tranformIdToDatasetName.keySet()) {
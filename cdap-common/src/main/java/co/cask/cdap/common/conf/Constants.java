@@ -224,6 +224,11 @@ public final class Constants {
      */
     public static final String WORKFLOW_TOKEN_MAX_SIZE_MB = "workflow.token.max.size.mb";
 
+    /**
+     * Configuration setting for the maximum number of workflow fork branches that run concurrently in a workflow run
+     */
+    public static final String WORKFLOW_FORK_PARALLELISM = "workflow.fork.parallelism";
+
     /**
      * Name of the property used to identify whether the dataset is local or not.
      */
@@ -434,7 +439,10 @@ public final class Constants {
     public static final String CONSUMER_TABLE_PRESPLITS = "stream.consumer.table.presplits";
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
+    public static final String INGEST_MAX_EVENT_SIZE = "stream.ingest.max.event.size";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
+    public static final String COMPRESSION = "stream.file.compression";
+    public static final String WRITER_SHARDS = "stream.writer.shards";
 
     // Stream http service configurations.
     public static final String STREAM_HANDLER = "stream.handler";
@@ -559,6 +567,8 @@ public final class Constants {
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
+    public static final String ENTITY_CACHE_SIZE = "metrics.data.entity.cache.size";
+    public static final String ENTITY_CACHE_WARMUP_COUNT = "metrics.data.entity.cache.warmup.count";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
     public static final String TIME_SERIES_TABLE_ROLL_TIME = "metrics.data.table.ts.rollTime";
 
@@ -567,6 +577,9 @@ public final class Constants {
 
     public static final String SERVER_ADDRESS = "metrics.query.bind.address";
     public static final String SERVER_PORT = "metrics.query.bind.port";
+    public static final String QUERY_CACHE_MAX_TIME_VALUES = "metrics.query.cache.max.time.values";
+    public static final String QUERY_CACHE_IMMUTABLE_DELAY_SECONDS = "metrics.query.cache.immutable.delay.seconds";
+    public static final String QUERY_CACHE_MAX_ENTRY_AGE_SECONDS = "metrics.query.cache.max.entry.age.seconds";
 
     public static final String TOPIC_PREFIX = "metrics.topic.prefix";
     public static final String KAFKA_TOPIC_PREFIX = "metrics.kafka.topic.prefix";
@@ -590,10 +603,18 @@ public final class Constants {
       ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
                       Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS_PROCESSOR);
 
+    public static final Map<String, String> METRICS_QUERY_CONTEXT =
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS);
+
     public static final Map<String, String> TRANSACTION_MANAGER_CONTEXT =
       ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
                       Constants.Metrics.Tag.COMPONENT, Constants.Service.TRANSACTION);
 
+    public static final Map<String, String> AUDIT_PUBLISHER_CONTEXT =
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.MASTER_SERVICES);
+
     /**
      * Metric's dataset related constants.
      */
@@ -654,6 +675,9 @@ public final class Constants {
       // For TMS
       public static final String TABLE = "tbl";
       public static final String TOPIC = "tpc";
+
+      // For Kafka consumers
+      public static final String PARTITION = "ptn";
     }
 
     /**
@@ -770,6 +794,7 @@ public final class Constants {
     public static final String KAFKA_TOPIC = "log.kafka.topic";
     public static final String NUM_PARTITIONS = "log.publish.num.partitions";
     public static final String LOG_PUBLISH_PARTITION_KEY = "log.publish.partition.key";
+    public static final String LOG_PUBLISH_COMPRESSION = "log.publish.compression";
 
     public static final String PIPELINE_CONFIG_DIR = "log.process.pipeline.config.dir";
     public static final String PIPELINE_LIBRARY_DIR = "log.process.pipeline.lib.dir";
@@ -839,6 +864,8 @@ public final class Constants {
     public static final String TOKEN_DIGEST_KEY_EXPIRATION = "security.token.digest.key.expiration.ms";
     /** Parent znode used for secret key distribution in ZooKeeper. */
     public static final String DIST_KEY_PARENT_ZNODE = "security.token.distributed.parent.znode";
+    /** Maximum number of valid access tokens to cache, so that they are not verified for every request. */
+    public static final String TOKEN_VALIDATION_CACHE_SIZE = "security.token.validation.cache.size";
     /** Deprecated. Use AUTH_SERVER_BIND_ADDRESS instead. **/
     @Deprecated
     public static final String AUTH_SERVER_ADDRESS = "security.auth.server.address";
@@ -1221,6 +1248,9 @@ public final class Constants {
     public static final String ENABLED = "audit.enabled";
     public static final String TOPIC = "audit.topic";
     public static final String PUBLISH_TIMEOUT_MS = "audit.publish.timeout.ms";
+    public static final String PUBLISH_QUEUE_SIZE = "audit.publish.queue.size";
+    public static final String PUBLISH_BATCH_SIZE = "audit.publish.batch.size";
+    public static final String PUBLISH_BATCH_DELAY_MS = "audit.publish.batch.delay.ms";
   }
 
   /**
@@ -29,13 +29,16 @@ import java.lang.reflect.Type;
 /**
  * A {@link FieldAccessorFactory} that uses ASM to generate a specific {@link FieldAccessor} class
  * for each field. The resulting {@link FieldAccessor} instance will be cached and reused.
+ *
+ * <p>The cached {@link FieldAccessor} instances are only weakly referenced, as they are held by the classes using
+ * them. This way a factory shared across programs does not keep the {@link ClassLoader} of the accessed types.</p>
  */
 public final class ASMFieldAccessorFactory implements FieldAccessorFactory {
 
   private final LoadingCache<FieldEntry, FieldAccessor> fieldAccessorCache;
 
   public ASMFieldAccessorFactory() {
-    this.fieldAccessorCache = CacheBuilder.newBuilder().build(new FieldAccessorLoader());
+    this.fieldAccessorCache = CacheBuilder.newBuilder().weakValues().build(new FieldAccessorLoader());
   }
 
   @Override
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A factory class for creating {@link ObjectRowMapper} instances for different data types and schemas, using
+ * classes generated by {@link ObjectRowMapperGenerator}.
+ *
+ * <p>Generated classes are cached for all factory instances, per {@link ClassLoader} of the mapped type and per
+ * schema. The cache only holds the {@link ClassLoader} of the mapped type weakly, and the generated classes do not
+ * refer to the mapped type, so that program ClassLoaders can still be garbage collected.</p>
+ */
+public final class ASMObjectRowMapperFactory {
+
+  private static final LoadingCache<ClassLoader, MapperClasses> MAPPER_CLASSES = CacheBuilder.newBuilder()
+    .weakKeys()
+    .build(new CacheLoader<ClassLoader, MapperClasses>() {
+      @Override
+      public MapperClasses load(ClassLoader classLoader) {
+        return new MapperClasses();
+      }
+    });
+
+  private final FieldAccessorFactory fieldAccessorFactory;
+
+  public ASMObjectRowMapperFactory(FieldAccessorFactory fieldAccessorFactory) {
+    this.fieldAccessorFactory = fieldAccessorFactory;
+  }
+
+  /**
+   * Creates a {@link ObjectRowMapper} that maps objects of the given type with the given {@link Schema}.
+   * The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the objects to map
+   * @param schema Schema of the objects, which must be a record of simple or nullable simple fields
+   * @param <T> Type of the objects
+   * @return A {@link ObjectRowMapper} instance.
+   * @throws IllegalArgumentException if no mapper can be generated for the type and schema
+   */
+  @SuppressWarnings("unchecked")
+  public <T> ObjectRowMapper<T> create(TypeToken<T> type, Schema schema) {
+    ClassLoader classLoader = type.getRawType().getClassLoader();
+    if (classLoader == null) {
+      classLoader = ASMObjectRowMapperFactory.class.getClassLoader();
+    }
+    Class<?> mapperClass = MAPPER_CLASSES.getUnchecked(classLoader).get(type, schema);
+    try {
+      return (ObjectRowMapper<T>) mapperClass.getConstructor(Schema.class, TypeToken.class, FieldAccessorFactory.class)
+                                             .newInstance(schema, type, fieldAccessorFactory);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * The generated mapper classes for the types of one {@link ClassLoader}.
+   */
+  private static final class MapperClasses {
+
+    private final ByteCodeClassLoader classLoader;
+    // Keyed by type name rather than type, to not refer to the ClassLoader of the type
+    private final Cache<CacheKey, Class<?>> classes;
+
+    MapperClasses() {
+      // The ClassLoader of the generated mappers has CDAP system ClassLoader as parent, as they only refer to
+      // the mapped types through Object.
+      this.classLoader = new ByteCodeClassLoader(ASMObjectRowMapperFactory.class.getClassLoader());
+      this.classes = CacheBuilder.newBuilder().build();
+    }
+
+    Class<?> get(final TypeToken<?> type, final Schema schema) {
+      try {
+        return classes.get(new CacheKey(type.getRawType().getName(), schema), new Callable<Class<?>>() {
+          @Override
+          public Class<?> call() throws Exception {
+            ClassDefinition classDef = new ObjectRowMapperGenerator().generate(type, schema);
+            return classLoader.addClass(classDef).loadClass(classDef.getClassName());
+          }
+        });
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+  }
+
+  private static final class CacheKey {
+    private final String typeName;
+    private final Schema schema;
+
+    private CacheKey(String typeName, Schema schema) {
+      this.typeName = typeName;
+      this.schema = schema;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return typeName.equals(cacheKey.typeName) && schema.equals(cacheKey.schema);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(typeName, schema);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.table.Put;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import com.google.common.primitives.Longs;
+import com.google.common.reflect.TypeToken;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+
+/**
+ * Base class of the {@link ObjectRowMapper} classes generated by {@link ObjectRowMapperGenerator}. It holds the
+ * column name and the {@link FieldAccessor} of every schema field, in schema order, and provides the value
+ * conversions used by the generated code. The conversions are the same as the ones of {@link ReflectionPutWriter}
+ * and {@link ReflectionRowReader}. The methods reading boxed values all take the class of the target field, so
+ * that the generated code can call them in the same way for every type.
+ *
+ * @param <T> the type of objects mapped
+ */
+public abstract class AbstractObjectRowMapper<T> implements ObjectRowMapper<T> {
+
+  protected final byte[][] columns;
+  protected final FieldAccessor[] accessors;
+  protected final Instantiator<?> instantiator;
+
+  protected AbstractObjectRowMapper(Schema schema, TypeToken<?> type, FieldAccessorFactory accessorFactory) {
+    List<Schema.Field> fields = schema.getFields();
+    this.columns = new byte[fields.size()][];
+    this.accessors = new FieldAccessor[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      String name = fields.get(i).getName();
+      columns[i] = Bytes.toBytes(name);
+      accessors[i] = accessorFactory.getFieldAccessor(type, name);
+    }
+    this.instantiator = new InstantiatorFactory(true).get(type);
+  }
+
+  protected static void writeBooleanValue(Put put, byte[] column,
+                                          @Nullable Object value, boolean nullable) throws IOException {
+    if (value == null) {
+      writeNull(put, column, nullable);
+    } else {
+      put.add(column, (Boolean) value);
+    }
+  }
+
+  protected static void writeIntValue(Put put, byte[] column,
+                                      @Nullable Object value, boolean nullable) throws IOException {
+    if (value == null) {
+      writeNull(put, column, nullable);
+    } else {
+      put.add(column, ((Number) value).intValue());
+    }
+  }
+
+  protected static void writeLongValue(Put put, byte[] column,
+                                       @Nullable Object value, boolean nullable) throws IOException {
+    if (value == null) {
+      writeNull(put, column, nullable);
+    } else {
+      put.add(column, ((Number) value).longValue());
+    }
+  }
+
+  protected static void writeFloatValue(Put put, byte[] column,
+                                        @Nullable Object value, boolean nullable) throws IOException {
+    if (value == null) {
+      writeNull(put, column, nullable);
+    } else {
+      put.add(column, (Float) value);
+    }
+  }
+
+  protected static void writeDoubleValue(Put put, byte[] column,
+                                         @Nullable Object value, boolean nullable) throws IOException {
+    if (value == null) {
+      writeNull(put, column, nullable);
+    } else {
+      put.add(column, (Double) value);
+    }
+  }
+
+  protected static void writeStringValue(Put put, byte[] column,
+                                         @Nullable Object value, boolean nullable) throws IOException {
+    if (value == null) {
+      writeNull(put, column, nullable);
+    } else {
+      put.add(column, value.toString());
+    }
+  }
+
+  protected static void writeBytesValue(Put put, byte[] column,
+                                        @Nullable Object value, boolean nullable) throws IOException {
+    if (value == null) {
+      writeNull(put, column, nullable);
+    } else if (value instanceof ByteBuffer) {
+      put.add(column, Bytes.toBytes((ByteBuffer) value));
+    } else if (value instanceof UUID) {
+      UUID uuid = (UUID) value;
+      ByteBuffer buffer = ByteBuffer.allocate(Longs.BYTES * 2);
+      buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+      put.add(column, buffer.array());
+    } else {
+      put.add(column, (byte[]) value);
+    }
+  }
+
+  private static void writeNull(Put put, byte[] column, boolean nullable) throws IOException {
+    if (!nullable) {
+      throw new IOException("No value for non-nullable field " + Bytes.toString(column) + ".");
+    }
+    // write a null value, to make sure to delete any existing value
+    put.add(column, (byte[]) null);
+  }
+
+  protected static boolean readBoolean(Row row, byte[] column) throws IOException {
+    return validateNotNull(row.getBoolean(column), column);
+  }
+
+  protected static int readInt(Row row, byte[] column) throws IOException {
+    return validateNotNull(row.getInt(column), column);
+  }
+
+  protected static long readLong(Row row, byte[] column) throws IOException {
+    return validateNotNull(row.getLong(column), column);
+  }
+
+  protected static float readFloat(Row row, byte[] column) throws IOException {
+    return validateNotNull(row.getFloat(column), column);
+  }
+
+  protected static double readDouble(Row row, byte[] column) throws IOException {
+    return validateNotNull(row.getDouble(column), column);
+  }
+
+  @Nullable
+  protected static Object readBooleanValue(Row row, byte[] column,
+                                           boolean nullable, Class<?> targetClass) throws IOException {
+    return validateNullable(row.getBoolean(column), column, nullable);
+  }
+
+  @Nullable
+  protected static Object readIntValue(Row row, byte[] column,
+                                       boolean nullable, Class<?> targetClass) throws IOException {
+    Integer value = validateNullable(row.getInt(column), column, nullable);
+    if (value == null) {
+      return null;
+    }
+    if (targetClass.equals(byte.class) || targetClass.equals(Byte.class)) {
+      return value.byteValue();
+    }
+    if (targetClass.equals(char.class) || targetClass.equals(Character.class)) {
+      return (char) value.intValue();
+    }
+    if (targetClass.equals(short.class) || targetClass.equals(Short.class)) {
+      return value.shortValue();
+    }
+    return value;
+  }
+
+  @Nullable
+  protected static Object readLongValue(Row row, byte[] column,
+                                        boolean nullable, Class<?> targetClass) throws IOException {
+    return validateNullable(row.getLong(column), column, nullable);
+  }
+
+  @Nullable
+  protected static Object readFloatValue(Row row, byte[] column,
+                                         boolean nullable, Class<?> targetClass) throws IOException {
+    return validateNullable(row.getFloat(column), column, nullable);
+  }
+
+  @Nullable
+  protected static Object readDoubleValue(Row row, byte[] column,
+                                          boolean nullable, Class<?> targetClass) throws IOException {
+    return validateNullable(row.getDouble(column), column, nullable);
+  }
+
+  @Nullable
+  protected static Object readStringValue(Row row, byte[] column,
+                                          boolean nullable, Class<?> targetClass) throws IOException {
+    String value = validateNullable(row.getString(column), column, nullable);
+    if (value == null) {
+      return null;
+    }
+    if (targetClass.equals(URI.class)) {
+      return URI.create(value);
+    }
+    if (targetClass.equals(URL.class)) {
+      return new URL(value);
+    }
+    return value;
+  }
+
+  @Nullable
+  protected static Object readBytesValue(Row row, byte[] column,
+                                         boolean nullable, Class<?> targetClass) throws IOException {
+    byte[] value = validateNullable(row.get(column), column, nullable);
+    if (value == null || targetClass.equals(byte[].class)) {
+      return value;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(value);
+    if (targetClass.equals(UUID.class) && value.length == Longs.BYTES * 2) {
+      return new UUID(buffer.getLong(), buffer.getLong());
+    }
+    return buffer;
+  }
+
+  private static <V> V validateNotNull(@Nullable V value, byte[] column) throws IOException {
+    if (value == null) {
+      throw new IOException("No value for " + Bytes.toString(column) + " exists.");
+    }
+    return value;
+  }
+
+  @Nullable
+  private static <V> V validateNullable(@Nullable V value, byte[] column, boolean nullable) throws IOException {
+    return nullable ? value : validateNotNull(value, column);
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.dataset.table.Put;
+import co.cask.cdap.api.dataset.table.Row;
+
+import java.io.IOException;
+
+/**
+ * Maps objects with a record schema of simple fields to table columns, with one column per field. The columns
+ * written and read are the same as the ones of {@link ReflectionPutWriter} and {@link ReflectionRowReader}.
+ *
+ * @param <T> the type of objects mapped
+ */
+public interface ObjectRowMapper<T> {
+
+  /**
+   * Adds a column for every field of the given object to the given {@link Put}.
+   */
+  void write(T object, Put put) throws IOException;
+
+  /**
+   * Creates an object from the columns of the given {@link Row}.
+   */
+  T read(Row row) throws IOException;
+}
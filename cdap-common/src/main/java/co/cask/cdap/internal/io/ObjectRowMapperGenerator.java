@@ -0,0 +1,298 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.table.Put;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.reflect.TypeToken;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link ObjectRowMapper} bytecodes using ASM. The class generated extends
+ * {@link AbstractObjectRowMapper} and has one statement per schema field in each method, with the value
+ * conversion chosen when generating. For example, the class generated for a type with an {@code int id} field of
+ * schema int and a {@code String name} field of nullable string schema will look like this after decompile.
+ * <pre>
+ * {@code
+ *
+ *   public final class comexampleUserObjectRowMapper64D3F3E4B3AEE6D7E0C9BD8D8F2C6AB0
+ *     extends AbstractObjectRowMapper {
+ *
+ *     public comexampleUserObjectRowMapper64D3F3E4B3AEE6D7E0C9BD8D8F2C6AB0(Schema paramSchema,
+ *                                                                         TypeToken paramTypeToken,
+ *                                                                         FieldAccessorFactory paramFactory) {
+ *       super(paramSchema, paramTypeToken, paramFactory);
+ *     }
+ *
+ *     public void write(Object paramObject, Put paramPut) throws IOException {
+ *       paramPut.add(this.columns[0], this.accessors[0].getInt(paramObject));
+ *       writeStringValue(paramPut, this.columns[1], this.accessors[1].get(paramObject), true);
+ *     }
+ *
+ *     public Object read(Row paramRow) throws IOException {
+ *       Object localObject = this.instantiator.create();
+ *       this.accessors[0].setInt(localObject, readInt(paramRow, this.columns[0]));
+ *       this.accessors[1].set(localObject, readStringValue(paramRow, this.columns[1], true, String.class));
+ *       return localObject;
+ *     }
+ *   }
+ * }
+ * </pre>
+ *
+ * The generated class only refers to the mapped type through {@link Object}, hence it does not need to be loaded
+ * by the {@link ClassLoader} of the mapped type.
+ */
+@NotThreadSafe
+final class ObjectRowMapperGenerator {
+
+  private static final Type BASE_TYPE = Type.getType(AbstractObjectRowMapper.class);
+  private static final Type FIELD_ACCESSOR_TYPE = Type.getType(FieldAccessor.class);
+
+  private ClassWriter classWriter;
+
+  /**
+   * Generates a {@link ObjectRowMapper} class for mapping objects of the given type with the given schema.
+   *
+   * @param type Type information of the objects to map
+   * @param schema Schema of the objects, which must be a record of simple or nullable simple fields
+   * @return A {@link ClassDefinition} that contains generated class information.
+   * @throws IllegalArgumentException if the schema is not supported, or if the type has no field for a schema field
+   */
+  ClassDefinition generate(TypeToken<?> type, Schema schema) {
+    Preconditions.checkArgument(schema.getType() == Schema.Type.RECORD, "Schema must be a record.");
+    List<Schema.Field> fields = schema.getFields();
+    Preconditions.checkArgument(!fields.isEmpty(), "Record must contain at least one field.");
+
+    // Resolve all fields first, so that no bytecode is generated for unsupported types
+    List<Class<?>> fieldTypes = Lists.newArrayListWithCapacity(fields.size());
+    for (Schema.Field field : fields) {
+      Preconditions.checkArgument(field.getSchema().isSimpleOrNullableSimple(),
+                                  "Field %s is not of a simple or nullable simple type.", field.getName());
+      try {
+        fieldTypes.add(Fields.findField(type.getType(), field.getName()).getType());
+      } catch (NoSuchFieldException e) {
+        throw new IllegalArgumentException(e.getMessage(), e);
+      }
+    }
+
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    String className = getClassName(type, schema);
+    classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, null, BASE_TYPE.getInternalName(), null);
+
+    generateConstructor();
+    generateWrite(fields, fieldTypes);
+    generateRead(fields, fieldTypes);
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), className);
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature
+   * {@code (Schema, TypeToken, FieldAccessorFactory)} and calls the same constructor of the base class.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", Schema.class, TypeToken.class, FieldAccessorFactory.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+    mg.loadThis();
+    mg.loadArgs();
+    mg.invokeConstructor(BASE_TYPE, constructor);
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link ObjectRowMapper#write(Object, Put)} method.
+   */
+  private void generateWrite(List<Schema.Field> fields, List<Class<?>> fieldTypes) {
+    Method method = getMethod(void.class, "write", Object.class, Put.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, method, null,
+                                               new Type[] { Type.getType(IOException.class) }, classWriter);
+    for (int i = 0; i < fields.size(); i++) {
+      Schema fieldSchema = fields.get(i).getSchema();
+      Schema.Type schemaType = getValueType(fieldSchema);
+      Class<?> fieldType = fieldTypes.get(i);
+      if (schemaType == Schema.Type.NULL) {
+        // Nothing to write
+        continue;
+      }
+
+      mg.loadArg(1);
+      loadColumn(mg, i);
+      loadAccessor(mg, i);
+      mg.loadArg(0);
+      if (isPrimitiveOf(fieldType, schemaType)) {
+        // put.add(columns[i], accessors[i].getXXX(object));
+        mg.invokeInterface(FIELD_ACCESSOR_TYPE, getMethod(fieldType, "get" + getPrimitiveName(fieldType),
+                                                          Object.class));
+        Class<?> valueType = schemaType == Schema.Type.INT ? int.class : fieldType;
+        mg.invokeVirtual(Type.getType(Put.class), getMethod(Put.class, "add", byte[].class, valueType));
+        mg.pop();
+      } else {
+        // writeXXXValue(put, columns[i], accessors[i].get(object), nullable);
+        mg.invokeInterface(FIELD_ACCESSOR_TYPE, getMethod(Object.class, "get", Object.class));
+        mg.push(fieldSchema.isNullable());
+        mg.invokeStatic(BASE_TYPE, getMethod(void.class, "write" + getTypeName(schemaType) + "Value",
+                                             Put.class, byte[].class, Object.class, boolean.class));
+      }
+    }
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link ObjectRowMapper#read(Row)} method.
+   */
+  private void generateRead(List<Schema.Field> fields, List<Class<?>> fieldTypes) {
+    Method method = getMethod(Object.class, "read", Row.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, method, null,
+                                               new Type[] { Type.getType(IOException.class) }, classWriter);
+
+    // Object object = instantiator.create();
+    int object = mg.newLocal(Type.getType(Object.class));
+    mg.loadThis();
+    mg.getField(BASE_TYPE, "instantiator", Type.getType(Instantiator.class));
+    mg.invokeInterface(Type.getType(Instantiator.class), getMethod(Object.class, "create"));
+    mg.storeLocal(object);
+
+    for (int i = 0; i < fields.size(); i++) {
+      Schema fieldSchema = fields.get(i).getSchema();
+      Schema.Type schemaType = getValueType(fieldSchema);
+      Class<?> fieldType = fieldTypes.get(i);
+
+      loadAccessor(mg, i);
+      mg.loadLocal(object);
+      if (schemaType == Schema.Type.NULL) {
+        // accessors[i].set(object, null);
+        mg.push((String) null);
+        mg.invokeInterface(FIELD_ACCESSOR_TYPE, getMethod(void.class, "set", Object.class, Object.class));
+      } else if (isPrimitiveOf(fieldType, schemaType)) {
+        // accessors[i].setXXX(object, readXXX(row, columns[i]));
+        Class<?> valueType = schemaType == Schema.Type.INT ? int.class : fieldType;
+        mg.loadArg(0);
+        loadColumn(mg, i);
+        mg.invokeStatic(BASE_TYPE, getMethod(valueType, "read" + getTypeName(schemaType), Row.class, byte[].class));
+        if (valueType != fieldType) {
+          mg.cast(Type.INT_TYPE, Type.getType(fieldType));
+        }
+        mg.invokeInterface(FIELD_ACCESSOR_TYPE, getMethod(void.class, "set" + getPrimitiveName(fieldType),
+                                                          Object.class, fieldType));
+      } else {
+        // accessors[i].set(object, readXXXValue(row, columns[i], nullable, fieldClass));
+        mg.loadArg(0);
+        loadColumn(mg, i);
+        mg.push(fieldSchema.isNullable());
+        // Only types of the bootstrap ClassLoader are converted, and other types are not visible to this class
+        mg.push(Type.getType(fieldType.getClassLoader() == null ? fieldType : Object.class));
+        mg.invokeStatic(BASE_TYPE, getMethod(Object.class, "read" + getTypeName(schemaType) + "Value",
+                                             Row.class, byte[].class, boolean.class, Class.class));
+        mg.invokeInterface(FIELD_ACCESSOR_TYPE, getMethod(void.class, "set", Object.class, Object.class));
+      }
+    }
+
+    mg.loadLocal(object);
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Pushes {@code this.columns[index]} to the stack.
+   */
+  private void loadColumn(GeneratorAdapter mg, int index) {
+    mg.loadThis();
+    mg.getField(BASE_TYPE, "columns", Type.getType(byte[][].class));
+    mg.push(index);
+    mg.arrayLoad(Type.getType(byte[].class));
+  }
+
+  /**
+   * Pushes {@code this.accessors[index]} to the stack.
+   */
+  private void loadAccessor(GeneratorAdapter mg, int index) {
+    mg.loadThis();
+    mg.getField(BASE_TYPE, "accessors", Type.getType(FieldAccessor[].class));
+    mg.push(index);
+    mg.arrayLoad(FIELD_ACCESSOR_TYPE);
+  }
+
+  /**
+   * Returns the type of the non-null values of the given simple or nullable simple schema.
+   */
+  private Schema.Type getValueType(Schema schema) {
+    return schema.isNullable() ? schema.getNonNullable().getType() : schema.getType();
+  }
+
+  /**
+   * Returns whether the given field type is a primitive type that can be written and read with the given schema
+   * type without boxing.
+   */
+  private boolean isPrimitiveOf(Class<?> fieldType, Schema.Type schemaType) {
+    switch (schemaType) {
+      case BOOLEAN:
+        return fieldType == boolean.class;
+      case INT:
+        return fieldType == int.class || fieldType == short.class || fieldType == byte.class;
+      case LONG:
+        return fieldType == long.class;
+      case FLOAT:
+        return fieldType == float.class;
+      case DOUBLE:
+        return fieldType == double.class;
+      default:
+        return false;
+    }
+  }
+
+  private String getTypeName(Schema.Type schemaType) {
+    String name = schemaType.name();
+    return name.charAt(0) + name.substring(1).toLowerCase();
+  }
+
+  private String getPrimitiveName(Class<?> primitiveType) {
+    String name = primitiveType.getName();
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private String getClassName(TypeToken<?> type, Schema schema) {
+    String typeName = type.getRawType().getName().replace(".", "").replace("$", "");
+    return String.format("%s/%s%s%s", ObjectRowMapper.class.getPackage().getName().replace('.', '/'),
+                         typeName, ObjectRowMapper.class.getSimpleName(), schema.getSchemaHash());
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+}
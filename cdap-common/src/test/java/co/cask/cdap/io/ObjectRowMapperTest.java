@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.table.Put;
+import co.cask.cdap.api.dataset.table.Result;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.ASMObjectRowMapperFactory;
+import co.cask.cdap.internal.io.ObjectRowMapper;
+import co.cask.cdap.internal.io.ReflectionPutWriter;
+import co.cask.cdap.internal.io.ReflectionRowReader;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Objects;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Tests for the {@link ObjectRowMapper} generated by {@link ASMObjectRowMapperFactory}.
+ */
+public class ObjectRowMapperTest {
+
+  private static final byte[] ROW = Bytes.toBytes("row");
+
+  private final ASMObjectRowMapperFactory factory = new ASMObjectRowMapperFactory(new ASMFieldAccessorFactory());
+
+  @Test
+  public void testSameColumnsAsReflection() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(Record.class);
+    ObjectRowMapper<Record> mapper = factory.create(TypeToken.of(Record.class), schema);
+
+    Record record = new Record(true, (short) 12, Integer.MIN_VALUE, Long.MAX_VALUE, 1.5f, Double.MIN_VALUE,
+                               Integer.MAX_VALUE, 2.5f, "foo", URI.create("http://cask.co/foo"),
+                               Bytes.toBytes("bar"), ByteBuffer.wrap(Bytes.toBytes("baz")), UUID.randomUUID());
+    assertSameColumns(mapper, schema, record);
+
+    // nullable fields are written as null values
+    Record nullRecord = new Record(false, (short) -1, 0, 0L, 0f, 0d, null, null, null, null, null, null, null);
+    assertSameColumns(mapper, schema, nullRecord);
+  }
+
+  @Test
+  public void testSuperClassFields() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(SubRecord.class);
+    ObjectRowMapper<SubRecord> mapper = factory.create(TypeToken.of(SubRecord.class), schema);
+
+    SubRecord record = new SubRecord(false, (short) 1, 2, 3L, 4f, 5d, 6, 7f, "8", URI.create("http://cask.co/9"),
+                                     new byte[] { 10 }, ByteBuffer.wrap(new byte[] { 11 }), UUID.randomUUID(), 12L);
+    assertSameColumns(mapper, schema, record);
+  }
+
+  @Test
+  public void testMissingColumn() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(Record.class);
+    ObjectRowMapper<Record> mapper = factory.create(TypeToken.of(Record.class), schema);
+
+    Put put = new Put(ROW);
+    mapper.write(new Record(true, (short) 1, 2, 3L, 4f, 5d, null, null, null, null, null, null, null), put);
+    Map<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    columns.putAll(put.getValues());
+    columns.remove(Bytes.toBytes("longValue"));
+    try {
+      mapper.read(new Result(ROW, columns));
+      Assert.fail("Expected IOException for a missing non-nullable column");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testGeneratedClassReused() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(Record.class);
+    ObjectRowMapper<Record> mapper1 = factory.create(TypeToken.of(Record.class), schema);
+    ObjectRowMapper<Record> mapper2 = new ASMObjectRowMapperFactory(new ASMFieldAccessorFactory())
+      .create(TypeToken.of(Record.class), schema);
+    Assert.assertNotSame(mapper1, mapper2);
+    Assert.assertSame(mapper1.getClass(), mapper2.getClass());
+
+    Schema subSchema = new ReflectionSchemaGenerator().generate(SubRecord.class);
+    Assert.assertNotSame(mapper1.getClass(), factory.create(TypeToken.of(SubRecord.class), subSchema).getClass());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFieldNotInType() throws Exception {
+    // the schema has a field that Record does not have
+    Schema schema = new ReflectionSchemaGenerator().generate(SubRecord.class);
+    factory.create(TypeToken.of(Record.class), schema);
+  }
+
+  /**
+   * Writes the given object with both the generated mapper and reflection, and verifies that both write the same
+   * columns, and that both the generated mapper and reflection read the object back.
+   */
+  private <T> void assertSameColumns(ObjectRowMapper<T> mapper, Schema schema, T object) throws IOException {
+    Put put = new Put(ROW);
+    mapper.write(object, put);
+    Put reflectionPut = new Put(ROW);
+    new ReflectionPutWriter<T>(schema).write(object, reflectionPut);
+
+    Assert.assertEquals(reflectionPut.getValues().size(), put.getValues().size());
+    for (Map.Entry<byte[], byte[]> entry : reflectionPut.getValues().entrySet()) {
+      Assert.assertTrue(Bytes.toString(entry.getKey()), put.getValues().containsKey(entry.getKey()));
+      Assert.assertArrayEquals(Bytes.toString(entry.getKey()), entry.getValue(), put.getValues().get(entry.getKey()));
+    }
+
+    Row row = new Result(ROW, put.getValues());
+    @SuppressWarnings("unchecked")
+    TypeToken<T> type = (TypeToken<T>) TypeToken.of(object.getClass());
+    Assert.assertEquals(object, mapper.read(row));
+    Assert.assertEquals(object, new ReflectionRowReader<>(schema, type).read(row, schema));
+  }
+
+  /**
+   * Record with all supported field types.
+   */
+  @SuppressWarnings("unused")
+  public static class Record {
+    private boolean boolValue;
+    private short shortValue;
+    private int intValue;
+    private long longValue;
+    private float floatValue;
+    private double doubleValue;
+    private Integer boxedInt;
+    private Float boxedFloat;
+    private String string;
+    private URI uri;
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private UUID uuid;
+
+    public Record(boolean boolValue, short shortValue, int intValue, long longValue, float floatValue,
+                  double doubleValue, Integer boxedInt, Float boxedFloat, String string, URI uri, byte[] bytes,
+                  ByteBuffer buffer, UUID uuid) {
+      this.boolValue = boolValue;
+      this.shortValue = shortValue;
+      this.intValue = intValue;
+      this.longValue = longValue;
+      this.floatValue = floatValue;
+      this.doubleValue = doubleValue;
+      this.boxedInt = boxedInt;
+      this.boxedFloat = boxedFloat;
+      this.string = string;
+      this.uri = uri;
+      this.bytes = bytes;
+      this.buffer = buffer;
+      this.uuid = uuid;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Record that = (Record) o;
+      return boolValue == that.boolValue
+        && shortValue == that.shortValue
+        && intValue == that.intValue
+        && longValue == that.longValue
+        && Float.compare(floatValue, that.floatValue) == 0
+        && Double.compare(doubleValue, that.doubleValue) == 0
+        && Objects.equal(boxedInt, that.boxedInt)
+        && Objects.equal(boxedFloat, that.boxedFloat)
+        && Objects.equal(string, that.string)
+        && Objects.equal(uri, that.uri)
+        && Arrays.equals(bytes, that.bytes)
+        && Objects.equal(buffer, that.buffer)
+        && Objects.equal(uuid, that.uuid);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(boolValue, shortValue, intValue, longValue, floatValue, doubleValue, boxedInt,
+                              boxedFloat, string, uri, Arrays.hashCode(bytes), buffer, uuid);
+    }
+  }
+
+  /**
+   * Record with fields in a super class.
+   */
+  public static final class SubRecord extends Record {
+    private long extra;
+
+    public SubRecord(boolean boolValue, short shortValue, int intValue, long longValue, float floatValue,
+                     double doubleValue, Integer boxedInt, Float boxedFloat, String string, URI uri, byte[] bytes,
+                     ByteBuffer buffer, UUID uuid, long extra) {
+      super(boolValue, shortValue, intValue, longValue, floatValue, doubleValue, boxedInt, boxedFloat, string, uri,
+            bytes, buffer, uuid);
+      this.extra = extra;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return super.equals(o) && extra == ((SubRecord) o).extra;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * super.hashCode() + (int) extra;
+    }
+  }
+}
@@ -994,6 +994,223 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  /**
+   * Test for reading events in batches into the columnar buffers of {@link StreamEventBatch}.
+   */
+  @Test
+  public void testReadBatch() throws Exception {
+    for (StreamBlockCodec codec : ImmutableList.of(StreamBlockCodec.NONE, StreamBlockCodec.LZ4)) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      // Creates a stream file with a default header (key=value)
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10000L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.EVENT_HEADER_PREFIX + "key", "value"), codec);
+
+      // Write 100 events in 10 timestamps, with some of them having headers that override the default one
+      for (int i = 0; i < 100; i++) {
+        Map<String, String> headers = ImmutableMap.of();
+        if (i % 3 == 1) {
+          headers = ImmutableMap.of("user", "user" + (i % 2));
+        } else if (i % 3 == 2) {
+          headers = ImmutableMap.of("key", "override", "user", "user" + (i % 2));
+        }
+        writer.append(new StreamEvent(headers, Charsets.UTF_8.encode("Message " + i), i / 10));
+      }
+      writer.close();
+
+      // Read all events through the read method for comparison
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> expected = Lists.newArrayList();
+      Assert.assertEquals(100, reader.read(expected, 1000, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      // Read in batches of 7 events, with a filter that skips the timestamp 5
+      reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      StreamEventBatch batch = new StreamEventBatch(7);
+      ReadFilter filter = new ReadFilter() {
+        @Override
+        public boolean acceptTimestamp(long timestamp) {
+          return timestamp != 5L;
+        }
+      };
+      int count = 0;
+      int size = reader.readBatch(batch, 0, TimeUnit.SECONDS, filter);
+      while (size > 0) {
+        Assert.assertEquals(size, batch.size());
+        for (int i = 0; i < batch.size(); i++, count++) {
+          PositionStreamEvent event = expected.get(count < 50 ? count : count + 10);
+          Assert.assertEquals(event.getTimestamp(), batch.getTimestamp(i));
+          Assert.assertEquals(event.getStart(), batch.getPosition(i));
+          Assert.assertEquals(event.getBody(), batch.getBody(i));
+          Assert.assertEquals(event.getBody(), ByteBuffer.wrap(batch.getBodyArray(), batch.getBodyOffset(i),
+                                                               batch.getBodyLength(i)));
+          Assert.assertEquals(event.getHeaders(), batch.getHeaders(i));
+          Assert.assertEquals("value", batch.getDefaultHeaders().get("key"));
+
+          // Verify the dictionary encoded headers
+          for (int j = 0; j < batch.getHeaderCount(i); j++) {
+            String key = batch.getDictionaryValue(batch.getHeaderKeyId(i, j));
+            Assert.assertEquals(event.getHeaders().get(key),
+                                batch.getDictionaryValue(batch.getHeaderValueId(i, j)));
+          }
+        }
+        size = reader.readBatch(batch, 0, TimeUnit.SECONDS, filter);
+      }
+      Assert.assertEquals(-1, size);
+      Assert.assertEquals(90, count);
+      reader.close();
+    }
+  }
+
+  /**
+   * Test for the block compressed file format, including seeking by offset and by time.
+   */
+  @Test
+  public void testCompressedBlocks() throws Exception {
+    for (StreamBlockCodec codec : StreamBlockCodec.values()) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                             Locations.newOutputSupplier(indexFile), 10L,
+                                                             ImmutableMap.<String, String>of(), codec);
+      // Write 50 timestamps with 20 compressible events each, with a flush in the middle
+      for (int i = 0; i < 50; i++) {
+        for (int j = 0; j < 20; j++) {
+          writer.append(StreamFileTestUtils.createEvent(i, "{\"user\":\"user" + j + "\",\"action\":\"click\"}"));
+        }
+        if (i == 25) {
+          writer.flush();
+        }
+      }
+      writer.close();
+
+      // Read all events and verify positions are strictly increasing
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(1000, reader.read(events, 1000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(-1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      long lastPosition = -1L;
+      for (int i = 0; i < events.size(); i++) {
+        PositionStreamEvent event = events.get(i);
+        Assert.assertEquals(i / 20, event.getTimestamp());
+        Assert.assertEquals("{\"user\":\"user" + (i % 20) + "\",\"action\":\"click\"}",
+                            Charsets.UTF_8.decode(event.getBody()).toString());
+        Assert.assertTrue(event.getStart() > lastPosition);
+        lastPosition = event.getStart();
+      }
+
+      // Opening a reader at each event position should read that event
+      for (int i = 0; i < events.size(); i += 7) {
+        PositionStreamEvent event = events.get(i);
+        reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                       Locations.newInputSupplier(indexFile), event.getStart());
+        List<PositionStreamEvent> readEvents = Lists.newArrayList();
+        Assert.assertEquals(1, reader.read(readEvents, 1, 0, TimeUnit.SECONDS));
+        Assert.assertEquals(event.getStart(), readEvents.get(0).getStart());
+
+        // Resuming from the reader position should read the next event
+        long position = reader.getPosition();
+        reader.close();
+        if (i + 1 < events.size()) {
+          reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                         Locations.newInputSupplier(indexFile), position);
+          readEvents.clear();
+          Assert.assertEquals(1, reader.read(readEvents, 1, 0, TimeUnit.SECONDS));
+          Assert.assertEquals(events.get(i + 1).getStart(), readEvents.get(0).getStart());
+          reader.close();
+        }
+      }
+
+      // Read by start time
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), 30L);
+      List<PositionStreamEvent> readEvents = Lists.newArrayList();
+      Assert.assertEquals(400, reader.read(readEvents, 1000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(events.get(600).getStart(), readEvents.get(0).getStart());
+      reader.close();
+    }
+  }
+
+  /**
+   * Compares the file size and write throughput of the different block codecs on compressible events.
+   */
+  @Test
+  public void testCompressionSize() throws Exception {
+    long uncompressedSize = -1L;
+    int numEvents = 100000;
+    for (StreamBlockCodec codec : StreamBlockCodec.values()) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                             Locations.newOutputSupplier(indexFile), 10000L,
+                                                             ImmutableMap.<String, String>of(), codec);
+      Stopwatch stopwatch = new Stopwatch().start();
+      for (int i = 0; i < numEvents; i++) {
+        writer.append(StreamFileTestUtils.createEvent(i / 100, "{\"user\":\"user" + (i % 1000)
+          + "\",\"page\":\"/product/" + (i % 37) + "\",\"action\":\"click\",\"referrer\":\"search\"}"));
+      }
+      writer.close();
+      long elapsed = stopwatch.elapsedTime(TimeUnit.MILLISECONDS);
+
+      long size = eventFile.length();
+      LOG.info("Codec {}: {} bytes/event, {} events/sec", codec, (double) size / numEvents,
+               numEvents * 1000L / Math.max(1L, elapsed));
+
+      if (codec == StreamBlockCodec.NONE) {
+        uncompressedSize = size;
+      } else {
+        Assert.assertTrue(size < uncompressedSize / 2);
+      }
+
+      // Verify the content can be read back
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(numEvents, reader.read(events, numEvents, 0, TimeUnit.SECONDS));
+      reader.close();
+    }
+  }
+
+  /**
+   * Test that a file with compressed blocks can be tailed while it is being written.
+   */
+  @Test
+  public void testCompressedTail() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    StreamDataFileWriter writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
+                                                           Locations.newOutputSupplier(indexFile), 10000L,
+                                                           ImmutableMap.<String, String>of(), StreamBlockCodec.LZ4);
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    List<PositionStreamEvent> events = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 10; j++) {
+        writer.append(StreamFileTestUtils.createEvent(i, "Tailing compressed event " + i));
+      }
+      writer.flush();
+
+      events.clear();
+      Assert.assertEquals(10, reader.read(events, 100, 0, TimeUnit.SECONDS));
+      for (PositionStreamEvent event : events) {
+        Assert.assertEquals("Tailing compressed event " + i, Charsets.UTF_8.decode(event.getBody()).toString());
+      }
+    }
+    writer.close();
+    events.clear();
+    Assert.assertEquals(-1, reader.read(events, 100, 0, TimeUnit.SECONDS));
+    reader.close();
+  }
+
   private FileWriter<StreamEvent> createWriter(StreamConfig config, String prefix) {
     return new TimePartitionedStreamFileWriter(config.getLocation(), config.getPartitionDuration(),
                                                prefix, config.getIndexInterval(), config.getStreamId(),
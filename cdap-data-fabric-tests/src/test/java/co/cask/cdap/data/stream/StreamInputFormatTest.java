@@ -326,8 +326,8 @@ public class StreamInputFormatTest {
 
     // create a record reader for the 2nd split
     StreamRecordReader<LongWritable, StreamEvent> recordReader =
-      new StreamRecordReader<>(new IdentityStreamEventDecoder(), new NoOpAuthorizer(), new AuthenticationTestContext(),
-                               DUMMY_ID);
+      new StreamRecordReader<>(new IdentityStreamEventDecoder(), 1024, new NoOpAuthorizer(),
+                               new AuthenticationTestContext(), DUMMY_ID);
     recordReader.initialize(splits.get(1), context);
 
     // check that we read the 2nd stream event
@@ -137,6 +137,72 @@ public abstract class ConcurrentStreamWriterTestBase {
     streamWriter.close();
   }
 
+  @Test
+  public void testShardedWrite() throws Exception {
+    final String streamName = "testShardedWrite";
+    NamespaceId namespace = new NamespaceId("namespace");
+    StreamId streamId = namespace.stream(streamName);
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
+    int threads = Runtime.getRuntime().availableProcessors() * 4;
+    int appendThreads = 8;
+    int shards = 4;
+
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    StreamConfig streamConfig = streamAdmin.getConfig(streamId);
+    streamConfig.getLocation().mkdirs();
+    final ConcurrentStreamWriter streamWriter = new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
+                                                                           fileWriterFactory, threads, shards,
+                                                                           new TestMetricsCollectorFactory(),
+                                                                           impersonator);
+
+    // Prepare the files to append, each with the same number of events as written by a writer thread
+    final int msgPerThread = 1000;
+    List<FileInfo> fileInfos = Lists.newArrayList();
+    for (int i = 0; i < appendThreads; i++) {
+      fileInfos.add(generateFile(getNamespacedLocationFactory(), threads + i, msgPerThread));
+    }
+
+    // Starts n threads to write events through stream writer, half of them write one by one, half in batches,
+    // while other threads append files, which go through different shards if they were selected by thread
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch completion = new CountDownLatch(threads + appendThreads);
+    ExecutorService executor = Executors.newFixedThreadPool(threads + appendThreads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(createWriterTask(streamId, streamWriter,
+                                        i, msgPerThread, i % 2 == 0 ? 1 : 10, startLatch, completion));
+    }
+    for (FileInfo fileInfo : fileInfos) {
+      executor.execute(createAppendFileTask(streamId, streamWriter, fileInfo, startLatch, completion));
+    }
+    startLatch.countDown();
+    Assert.assertTrue(completion.await(120, TimeUnit.SECONDS));
+    executor.shutdown();
+    streamWriter.close();
+
+    // Verify all events are in the files of the stream, without losing or duplicating any
+    Location partitionLocation = streamAdmin.getConfig(streamId).getLocation().list().get(0);
+    List<StreamEvent> events = Lists.newArrayListWithCapacity((threads + appendThreads) * msgPerThread);
+    for (Location location : partitionLocation.list()) {
+      if (StreamFileType.getType(location.getName()) != StreamFileType.EVENT) {
+        continue;
+      }
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(location));
+      reader.read(events, Integer.MAX_VALUE, 0, TimeUnit.SECONDS);
+      reader.close();
+    }
+    Assert.assertEquals((threads + appendThreads) * msgPerThread, events.size());
+    Assert.assertTrue(verifyEvents(threads + appendThreads, msgPerThread, events));
+
+    // Every appended file got its own sequence id of the first shard
+    String filePrefix = fileWriterFactory.getFileNamePrefix();
+    int sequences = StreamUtils.getNextSequenceId(partitionLocation, filePrefix);
+    Assert.assertTrue(sequences >= appendThreads);
+    for (int sequence = 0; sequence < sequences; sequence++) {
+      Assert.assertTrue(StreamUtils.createStreamLocation(partitionLocation, filePrefix,
+                                                         sequence, StreamFileType.INDEX).exists());
+    }
+  }
+
   @Test
   public void testConcurrentAppendFile() throws Exception {
     final String streamName = "testConcurrentFile";
@@ -19,12 +19,14 @@ package co.cask.cdap.data2.transaction.stream;
 import co.cask.cdap.api.data.format.FormatSpecification;
 import co.cask.cdap.api.data.stream.StreamSpecification;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.common.test.AppJarHelper;
 import co.cask.cdap.data.file.FileWriter;
+import co.cask.cdap.data.stream.StreamBlockCodec;
 import co.cask.cdap.data.stream.StreamFileWriterFactory;
 import co.cask.cdap.data.stream.StreamUtils;
 import co.cask.cdap.data2.audit.InMemoryAuditPublisher;
@@ -258,6 +260,31 @@ public abstract class StreamAdminTest {
     streamAdmin.drop(stream);
   }
 
+  @Test
+  public void testCompression() throws Exception {
+    StreamAdmin streamAdmin = getStreamAdmin();
+    grantAndAssertSuccess(FOO_NAMESPACE, USER, ImmutableSet.of(Action.WRITE));
+
+    StreamId lz4Stream = FOO_NAMESPACE.stream("lz4Stream");
+    Properties properties = new Properties();
+    properties.put(Constants.Stream.COMPRESSION, "lz4");
+    streamAdmin.create(lz4Stream, properties);
+    Assert.assertEquals(StreamBlockCodec.LZ4, streamAdmin.getConfig(lz4Stream).getCompression());
+
+    // an invalid codec is rejected, and the stream is not created
+    StreamId invalidStream = FOO_NAMESPACE.stream("invalidCompressionStream");
+    properties.put(Constants.Stream.COMPRESSION, "snappy");
+    try {
+      streamAdmin.create(invalidStream, properties);
+      Assert.fail("Expected the stream creation to fail with an invalid compression");
+    } catch (BadRequestException e) {
+      // expected
+    }
+    Assert.assertFalse(streamAdmin.exists(invalidStream));
+
+    streamAdmin.drop(lz4Stream);
+  }
+
   @Test
   public void testOwner() throws Exception {
     // crate a stream with owner
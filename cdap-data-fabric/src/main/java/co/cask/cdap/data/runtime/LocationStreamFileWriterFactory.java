@@ -54,7 +54,13 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
   }
 
   @Override
-  public FileWriter<StreamEvent> create(final StreamConfig config, final int generation) throws IOException {
+  public FileWriter<StreamEvent> create(StreamConfig config, int generation) throws IOException {
+    return create(config, generation, 0);
+  }
+
+  @Override
+  public FileWriter<StreamEvent> create(final StreamConfig config, final int generation,
+                                        int shard) throws IOException {
     try {
       Preconditions.checkNotNull(config.getLocation(), "Location for stream %s is unknown.", config.getStreamId());
 
@@ -69,7 +75,8 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
       });
 
       return new TimePartitionedStreamFileWriter(baseLocation, config.getPartitionDuration(),
-                                                 filePrefix, config.getIndexInterval(),
+                                                 StreamUtils.getShardFilePrefix(filePrefix, shard),
+                                                 config.getIndexInterval(), config.getCompression(),
                                                  config.getStreamId(), impersonator);
     } catch (Exception e) {
       Throwables.propagateIfPossible(e, IOException.class);
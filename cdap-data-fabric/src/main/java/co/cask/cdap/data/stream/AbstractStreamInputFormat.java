@@ -108,6 +108,8 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
   private static final String DECODER_TYPE = "input.streaminputformat.decoder.type";
   private static final String BODY_FORMAT = "input.streaminputformat.stream.body.format";
   private static final String STREAM_ID = "input.streaminputformat.stream.id";
+  private static final String READ_BATCH_SIZE = "input.streaminputformat.read.batch.size";
+  private static final int DEFAULT_READ_BATCH_SIZE = 1024;
 
   /**
    * Sets the TTL for the stream events.
@@ -175,6 +177,18 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
     conf.setLong(MIN_SPLIT_SIZE, minSplits);
   }
 
+  /**
+   * Sets the number of events to decode at a time from the stream files. Events are decoded in batches into
+   * reusable columnar buffers before handing to the {@link StreamEventDecoder} one by one.
+   *
+   * @param conf The conf to modify.
+   * @param batchSize Number of events in each batch.
+   */
+  public static void setReadBatchSize(Configuration conf, int batchSize) {
+    Preconditions.checkArgument(batchSize > 0, "Batch size must be > 0");
+    conf.setInt(READ_BATCH_SIZE, batchSize);
+  }
+
   /**
    * Sets the class name for the {@link StreamEventDecoder}.
    *
@@ -267,6 +281,7 @@ public abstract class AbstractStreamInputFormat<K, V> extends InputFormat<K, V>
   public RecordReader<K, V> createRecordReader(InputSplit split,
                                                TaskAttemptContext context) throws IOException, InterruptedException {
     return new StreamRecordReader<>(createStreamEventDecoder(context.getConfiguration()),
+                                    context.getConfiguration().getInt(READ_BATCH_SIZE, DEFAULT_READ_BATCH_SIZE),
                                     getAuthorizationEnforcer(context),
                                     getAuthenticationContext(context),
                                     GSON.fromJson(context.getConfiguration().get(STREAM_ID), StreamId.class));
@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression codecs for the data blocks in stream files. All codecs are implemented in pure Java.
+ * The {@link #getId() id} of the codec is written as the first byte of each data block.
+ */
+public enum StreamBlockCodec {
+
+  /**
+   * No compression. Files written with this codec use the uncompressed file format.
+   */
+  NONE(0) {
+    @Override
+    public int maxCompressedLength(int length) {
+      return length;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+      System.arraycopy(src, srcOff, dest, destOff, srcLen);
+      return srcLen;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen,
+                           byte[] dest, int destOff, int destLen) throws IOException {
+      if (srcLen != destLen) {
+        throw new IOException("Expected block size to be " + destLen + ", but got " + srcLen);
+      }
+      System.arraycopy(src, srcOff, dest, destOff, srcLen);
+    }
+  },
+
+  /**
+   * Compression with the {@link Deflater} using the fastest compression level.
+   */
+  DEFLATE(1) {
+    @Override
+    public int maxCompressedLength(int length) {
+      // Same as the deflateBound of zlib, plus the zlib header and trailer
+      return length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + 6;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        deflater.setInput(src, srcOff, srcLen);
+        deflater.finish();
+        int len = 0;
+        int maxLen = dest.length - destOff;
+        while (!deflater.finished() && len < maxLen) {
+          len += deflater.deflate(dest, destOff + len, maxLen - len);
+        }
+        if (!deflater.finished()) {
+          throw new IllegalArgumentException("Destination buffer is too small for deflating " + srcLen + " bytes");
+        }
+        return len;
+      } finally {
+        deflater.end();
+      }
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen,
+                           byte[] dest, int destOff, int destLen) throws IOException {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(src, srcOff, srcLen);
+        int len = 0;
+        while (len < destLen && !inflater.finished()) {
+          int inflated = inflater.inflate(dest, destOff + len, destLen - len);
+          if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+            break;
+          }
+          len += inflated;
+        }
+        if (len != destLen) {
+          throw new IOException("Expected to inflate " + destLen + " bytes, but only " + len + " was inflated");
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Failed to inflate stream data block", e);
+      } finally {
+        inflater.end();
+      }
+    }
+  },
+
+  /**
+   * Compression with LZ4, using the fastest pure Java implementation available.
+   */
+  LZ4(2) {
+    @Override
+    public int maxCompressedLength(int length) {
+      return LZ4_FACTORY.fastCompressor().maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff) {
+      return LZ4_FACTORY.fastCompressor().compress(src, srcOff, srcLen, dest, destOff, dest.length - destOff);
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int srcLen,
+                           byte[] dest, int destOff, int destLen) throws IOException {
+      try {
+        int len = LZ4_FACTORY.safeDecompressor().decompress(src, srcOff, srcLen, dest, destOff, destLen);
+        if (len != destLen) {
+          throw new IOException("Expected to decompress " + destLen + " bytes, but only " + len + " was decompressed");
+        }
+      } catch (LZ4Exception e) {
+        throw new IOException("Failed to decompress stream data block", e);
+      }
+    }
+  };
+
+  private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestJavaInstance();
+
+  private final byte id;
+
+  StreamBlockCodec(int id) {
+    this.id = (byte) id;
+  }
+
+  /**
+   * Returns the id of this codec as stored in the stream file.
+   */
+  public byte getId() {
+    return id;
+  }
+
+  /**
+   * Returns the maximum number of bytes that compressing the given number of bytes can produce.
+   */
+  public abstract int maxCompressedLength(int length);
+
+  /**
+   * Compresses the given bytes.
+   *
+   * @param src the bytes to compress
+   * @param srcOff offset in the source array to start with
+   * @param srcLen number of bytes to compress
+   * @param dest the destination array, which must have at least {@link #maxCompressedLength(int)} bytes
+   *             available after the destination offset
+   * @param destOff offset in the destination array to start writing to
+   * @return number of bytes written to the destination array
+   */
+  public abstract int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff);
+
+  /**
+   * Decompresses the given bytes.
+   *
+   * @param src the compressed bytes
+   * @param srcOff offset in the source array to start with
+   * @param srcLen number of compressed bytes
+   * @param dest the destination array
+   * @param destOff offset in the destination array to start writing to
+   * @param destLen expected number of bytes after decompression
+   * @throws IOException if the compressed data is corrupted
+   */
+  public abstract void decompress(byte[] src, int srcOff, int srcLen,
+                                  byte[] dest, int destOff, int destLen) throws IOException;
+
+  /**
+   * Returns the {@link StreamBlockCodec} of the given id.
+   *
+   * @throws IOException if the id doesn't represent any known codec
+   */
+  public static StreamBlockCodec fromId(byte id) throws IOException {
+    for (StreamBlockCodec codec : values()) {
+      if (codec.id == id) {
+        return codec;
+      }
+    }
+    throw new IOException("Unsupported stream data block codec " + id);
+  }
+}
@@ -53,6 +53,9 @@ import javax.annotation.concurrent.NotThreadSafe;
 @NotThreadSafe
 public final class StreamDataFileReader implements FileReader<PositionStreamEvent, Long> {
 
+  // Number of events to decode at a time when reading through the FileReader interface
+  private static final int READ_BATCH_SIZE = 256;
+
   private final InputSupplier<? extends SeekableInputStream> eventInputSupplier;
   private final InputSupplier<? extends InputStream> indexInputSupplier;
   private final long startTime;
@@ -67,6 +70,8 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   private boolean eof;
   private Decoder decoder;
   private StreamEvent eventTemplate;
+  private int fileVersion;
+  private StreamEventBatch eventBatch;
 
   /**
    * Opens a new {@link StreamDataFileReader} with the given inputs.
@@ -169,6 +174,46 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   @Override
   public int read(Collection<? super PositionStreamEvent> events, int maxEvents,
                   long timeout, TimeUnit unit, ReadFilter readFilter) throws IOException, InterruptedException {
+    if (eventBatch == null) {
+      eventBatch = new StreamEventBatch(READ_BATCH_SIZE);
+    }
+    eventBatch.clear();
+    return read(eventBatch, events, maxEvents, timeout, unit, readFilter);
+  }
+
+  /**
+   * Reads events into the given {@link StreamEventBatch}, replacing the events that are already in the batch.
+   * Events are decoded one data block at a time into the columnar buffers of the batch, without creating
+   * objects for individual events.
+   *
+   * @param batch the batch to read into
+   * @param timeout Maximum of time to spend on trying to read up to the capacity of the batch
+   * @param unit Unit for the timeout
+   * @param readFilter Filter to determine whether an event is read or skipped
+   * @return Number of events read, could be {@code 0}, or {@code -1} if there is no more event to read
+   * @throws IOException If there is IO error while reading
+   * @throws InterruptedException If the read operation is interrupted
+   */
+  public int readBatch(StreamEventBatch batch, long timeout, TimeUnit unit,
+                       ReadFilter readFilter) throws IOException, InterruptedException {
+    batch.clear();
+    return read(batch, null, batch.getCapacity(), timeout, unit, readFilter);
+  }
+
+  /**
+   * Reads events into the given {@link StreamEventBatch}. Same as calling
+   * {@link #readBatch(StreamEventBatch, long, TimeUnit, ReadFilter)} with {@link ReadFilter#ALWAYS_ACCEPT}.
+   */
+  public int readBatch(StreamEventBatch batch, long timeout, TimeUnit unit) throws IOException, InterruptedException {
+    return readBatch(batch, timeout, unit, ReadFilter.ALWAYS_ACCEPT);
+  }
+
+  /**
+   * Reads events into the given batch. If a collection is provided, events are drained from the batch to the
+   * collection whenever the batch is full and when the read completes.
+   */
+  private int read(StreamEventBatch batch, @Nullable Collection<? super PositionStreamEvent> events, int maxEvents,
+                   long timeout, TimeUnit unit, ReadFilter readFilter) throws IOException, InterruptedException {
     if (closed) {
       throw new IOException("Reader already closed.");
     }
@@ -186,10 +231,11 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
             doOpen();
           }
 
-          PositionStreamEvent event = nextStreamEvent(readFilter);
-          if (event != null) {
-            events.add(event);
+          if (nextStreamEvent(batch, readFilter)) {
             eventCount++;
+            if (events != null && batch.isFull()) {
+              batch.drainTo(events);
+            }
           } else if (eof) {
             break;
           }
@@ -221,6 +267,9 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
         }
       }
 
+      if (events != null) {
+        batch.drainTo(events);
+      }
       return (eventCount == 0 && eof) ? -1 : eventCount;
 
     } catch (IOException e) {
@@ -293,7 +342,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     byte[] magic = new byte[StreamDataFileConstants.MAGIC_HEADER_SIZE];
     ByteStreams.readFully(eventInput, magic);
 
-    int fileVersion = decodeFileVersion(magic);
+    fileVersion = decodeFileVersion(magic);
 
     // Read the properties map.
     Map<String, String> properties = StreamUtils.decodeMap(new BinaryDecoder(eventInput));
@@ -323,10 +372,14 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V2)) {
       return 2;
     }
+    if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V3)) {
+      return 3;
+    }
     throw new IOException(
-      String.format("Unsupported stream file format. First two bytes must be %s or %s",
+      String.format("Unsupported stream file format. First two bytes must be %s, %s or %s",
                     Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V1),
-                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2))
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2),
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V3))
     );
   }
 
@@ -432,11 +485,13 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
       // search for the exact StreamData position within the bound.
       eventInput.seek(position);
       readDataBlock(ReadFilter.ALWAYS_ACCEPT);
+      // Events are always rejected, hence nothing will be added to the batch
+      StreamEventBatch skipBatch = new StreamEventBatch(1);
       while (position < positionBound) {
         if (condition.apply(streamEventBuffer.getPosition(), timestamp)) {
           break;
         }
-        nextStreamEvent(ReadFilter.ALWAYS_REJECT_OFFSET);
+        nextStreamEvent(skipBatch, ReadFilter.ALWAYS_REJECT_OFFSET);
       }
     } catch (IOException e) {
       // It's ok if hitting EOF, meaning it's could be a live stream file or closed by a dead stream handler.
@@ -474,7 +529,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   }
 
   private void readDataBlock(ReadFilter filter) throws IOException {
-    // Data block is <timestamp> <length> <stream_data>+
+    // Data block is <timestamp> <length> <stream_data>+, or <timestamp> <length> <block> for compressed file
     position = eventInput.getPos();
     long timestamp = readTimestamp();
     if (timestamp < 0) {
@@ -485,7 +540,11 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     // Use the template timestamp if available
     timestamp = eventTemplate.getTimestamp() >= 0 ? eventTemplate.getTimestamp() : timestamp;
     if (acceptTimestamp(filter, timestamp)) {
-      streamEventBuffer.fillBuffer(eventInput, readLength());
+      if (fileVersion >= 3) {
+        streamEventBuffer.fillBlock(eventInput, readLength());
+      } else {
+        streamEventBuffer.fillBuffer(eventInput, readLength());
+      }
       this.timestamp = timestamp;
       return;
     }
@@ -514,21 +573,24 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   /**
    * Reads or skips a {@link StreamEvent}.
    *
+   * @param batch the batch to add the event to
    * @param filter to determine to accept or skip a stream event by offset
    *               and accept or skip a stream event block by timestamp.
-   * @return The next StreamEvent or {@code null} if the event is rejected by the filter or reached EOF.
+   * @return {@code true} if an event is added to the batch, or {@code false} if the event is rejected by the
+   *         filter or reached EOF.
    */
-  private PositionStreamEvent nextStreamEvent(ReadFilter filter) throws IOException {
+  private boolean nextStreamEvent(StreamEventBatch batch, ReadFilter filter) throws IOException {
     while (!eof && !(streamEventBuffer.hasEvent() && acceptTimestamp(filter, timestamp))) {
       readDataBlock(filter);
     }
     if (eof) {
-      return null;
+      return false;
     }
 
-    PositionStreamEvent event = streamEventBuffer.nextEvent(timestamp, eventTemplate.getHeaders(), filter);
+    batch.setDefaultHeaders(eventTemplate.getHeaders());
+    boolean accepted = streamEventBuffer.nextEvent(timestamp, batch, filter);
     position = streamEventBuffer.getPosition();
-    return event;
+    return accepted;
   }
 
   private boolean acceptTimestamp(ReadFilter filter, long timestamp) {
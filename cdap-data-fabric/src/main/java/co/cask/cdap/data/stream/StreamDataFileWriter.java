@@ -32,6 +32,7 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -59,6 +60,28 @@ import javax.annotation.concurrent.NotThreadSafe;
  * }
  * </pre>
  *
+ * Stream event file with block compression:
+ *
+ * <pre>
+ * {@code
+ *
+ * event_file = <header> <data>* <end_marker>
+ * header = "E" "3" <properties>
+ * data = <timestamp> <length> <block>
+ * length = Avro encoded int32 for size in bytes of the <block>
+ * block = <codec> <stream_event>+ | <codec> <raw_length> <compressed_events>
+ * codec = 1 byte id of the StreamBlockCodec used for the block, with 0 meaning the block is not compressed
+ * raw_length = 4 bytes int32 for size in bytes of the uncompressed <stream_event>s
+ * compressed_events = <stream_event>+ compressed with the block codec
+ *
+ * }
+ * </pre>
+ *
+ * Since events in a compressed block don't have a file offset, the position of the n-th event (zero-based) in a
+ * compressed block is defined as the offset of the block's {@code <codec>} plus n. A block is only compressed if
+ * it is larger than the number of events in it, so that event positions stay unique and smaller than the position
+ * of the next block.
+ *
  * Stream index file:
  *
  * <pre>
@@ -84,6 +107,10 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final StreamBlockCodec codec;
+  private final BlockBuffer blockBuffer;
+  private byte[] compressedBuffer;
+  private int blockEvents;
 
   // Timestamp for the current block
   private long currentTimestamp;
@@ -116,6 +143,24 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
                               OutputSupplier<? extends OutputStream> indexOutputSupplier,
                               long indexInterval, Map<String, String> properties) throws IOException {
+    this(eventOutputSupplier, indexOutputSupplier, indexInterval, properties, StreamBlockCodec.NONE);
+  }
+
+  /**
+   * Constructs a new instance that writes to given outputs, with data blocks compressed by the given codec.
+   *
+   * @param eventOutputSupplier the provider of the {@link OutputStream} for writing events
+   * @param indexOutputSupplier the provider of the {@link OutputStream} for writing the index
+   * @param indexInterval the time interval in milliseconds for emitting a new index entry
+   * @param properties the property set that will be stored as file properties
+   * @param codec the {@link StreamBlockCodec} for compressing data blocks. If it is {@link StreamBlockCodec#NONE},
+   *              the file is written in the uncompressed file format
+   * @throws IOException if there is an error in preparing the output streams
+   */
+  public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
+                              OutputSupplier<? extends OutputStream> indexOutputSupplier,
+                              long indexInterval, Map<String, String> properties,
+                              StreamBlockCodec codec) throws IOException {
     this.eventOutput = eventOutputSupplier.getOutput();
     try {
       this.indexOutput = indexOutputSupplier.getOutput();
@@ -130,6 +175,9 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     Function<OutputStream, Encoder> encoderFactory = createEncoderFactory();
     this.encoder = new BufferedEncoder(BUFFER_SIZE, encoderFactory);
     this.lengthEncoder = new BufferedEncoder(5, encoderFactory);
+    this.codec = codec;
+    this.blockBuffer = codec == StreamBlockCodec.NONE ? null : new BlockBuffer();
+    this.compressedBuffer = new byte[0];
 
     try {
       init(properties);
@@ -222,6 +270,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      blockEvents++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -235,7 +284,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
   private void init(Map<String, String> properties) throws IOException {
     // Writes the header for event file
-    encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
+    encoder.writeRaw(codec == StreamBlockCodec.NONE ? StreamDataFileConstants.MAGIC_HEADER_V2
+                                                    : StreamDataFileConstants.MAGIC_HEADER_V3);
 
     Map<String, String> headers = Maps.newHashMap(properties);
     headers.put(StreamDataFileConstants.Property.Key.SCHEMA, StreamEventDataCodec.STREAM_DATA_SCHEMA.toString());
@@ -278,16 +328,21 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
-
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
+    if (codec == StreamBlockCodec.NONE) {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    } else {
+      position += writeCompressedBlock();
+    }
+    blockEvents = 0;
     if (sync) {
       sync(eventOutput);
     }
@@ -310,6 +365,45 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Writes the buffered events as a compressed data block.
+   *
+   * @return number of bytes written
+   */
+  private int writeCompressedBlock() throws IOException {
+    int rawSize = encoder.size();
+    encoder.writeTo(blockBuffer);
+    byte[] rawBlock = blockBuffer.getBuffer();
+
+    int maxLength = codec.maxCompressedLength(rawSize);
+    if (compressedBuffer.length < maxLength) {
+      compressedBuffer = new byte[maxLength];
+    }
+    int compressedSize = codec.compress(rawBlock, 0, rawSize, compressedBuffer, 0);
+
+    // Only write the compressed block if it is smaller and it can give each event a unique position
+    StreamBlockCodec blockCodec = codec;
+    int blockSize = 1 + Bytes.SIZEOF_INT + compressedSize;
+    if (blockSize > rawSize || blockSize < blockEvents) {
+      blockCodec = StreamBlockCodec.NONE;
+      blockSize = 1 + rawSize;
+    }
+
+    lengthEncoder.writeInt(blockSize);
+    int size = lengthEncoder.size();
+    lengthEncoder.writeTo(eventOutput);
+
+    eventOutput.write(blockCodec.getId());
+    if (blockCodec == StreamBlockCodec.NONE) {
+      eventOutput.write(rawBlock, 0, rawSize);
+    } else {
+      eventOutput.write(Bytes.toBytes(rawSize));
+      eventOutput.write(compressedBuffer, 0, compressedSize);
+    }
+    blockBuffer.reset();
+    return size + blockSize;
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -329,6 +423,16 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     throw ex;
   }
 
+  /**
+   * A {@link ByteArrayOutputStream} that exposes the underlying buffer for compression.
+   */
+  private static final class BlockBuffer extends ByteArrayOutputStream {
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
   private static Function<OutputStream, Encoder> createEncoderFactory() {
     return new Function<OutputStream, Encoder>() {
       @Override
@@ -0,0 +1,444 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.api.stream.StreamEventData;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A batch of stream events decoded into columnar buffers by {@link StreamDataFileReader#readBatch}.
+ * <p>
+ * Timestamps and positions are stored in {@code long} arrays, and the bodies of all events are stored in a
+ * single backing array, with each body addressed by an offset and length. Event headers are dictionary encoded,
+ * so that each distinct header key or value is decoded into a {@link String} only once, even across batches.
+ * All buffers are reused when the batch is filled again, hence data obtained from a batch is only valid until
+ * the next time the batch is filled.
+ * </p>
+ */
+@NotThreadSafe
+public final class StreamEventBatch {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  // Maximum number of distinct header keys and values to keep in the dictionary across batches
+  private static final int MAX_DICTIONARY_SIZE = 16384;
+  private static final byte[] EMPTY_BYTES = new byte[0];
+
+  private final int capacity;
+  private final HeaderDictionary dictionary;
+
+  private Map<String, String> defaultHeaders;
+  private int size;
+  private long[] timestamps;
+  private long[] positions;
+  private int[] bodyOffsets;
+  private int[] bodyLengths;
+  private byte[] bodies;
+  private int bodiesSize;
+  private int bodiesCapacityHint;
+
+  // The header ids of event i are stored in headerIds[headerStarts[i]] until headerIds[headerStarts[i + 1]],
+  // as pairs of key and value id. A value id of -1 represents a null value.
+  private int[] headerStarts;
+  private int[] headerIds;
+  private int headerIdsSize;
+
+  // The last header map created by getHeaders, together with the header ids it was created from
+  private Map<String, String> lastHeaders;
+  private int[] lastHeaderIds;
+
+  /**
+   * Creates a batch that holds up to 1024 events.
+   */
+  public StreamEventBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a batch that holds up to the given number of events.
+   */
+  public StreamEventBatch(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Capacity must be > 0. Got %s", capacity);
+    this.capacity = capacity;
+    this.dictionary = new HeaderDictionary();
+    this.defaultHeaders = ImmutableMap.of();
+    this.timestamps = new long[capacity];
+    this.positions = new long[capacity];
+    this.bodyOffsets = new int[capacity];
+    this.bodyLengths = new int[capacity];
+    this.bodies = EMPTY_BYTES;
+    this.headerStarts = new int[capacity + 1];
+    this.headerIds = new int[16];
+    this.lastHeaderIds = new int[0];
+  }
+
+  /**
+   * Returns the maximum number of events this batch can hold.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of events in this batch.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the timestamp of the given event.
+   */
+  public long getTimestamp(int event) {
+    checkIndex(event);
+    return timestamps[event];
+  }
+
+  /**
+   * Returns the position in the stream file of the given event.
+   */
+  public long getPosition(int event) {
+    checkIndex(event);
+    return positions[event];
+  }
+
+  /**
+   * Returns the array that backs the bodies of all events in this batch.
+   */
+  public byte[] getBodyArray() {
+    return bodies;
+  }
+
+  /**
+   * Returns the offset in the {@link #getBodyArray() body array} of the body of the given event.
+   */
+  public int getBodyOffset(int event) {
+    checkIndex(event);
+    return bodyOffsets[event];
+  }
+
+  /**
+   * Returns the length of the body of the given event.
+   */
+  public int getBodyLength(int event) {
+    checkIndex(event);
+    return bodyLengths[event];
+  }
+
+  /**
+   * Returns the body of the given event as a {@link ByteBuffer} backed by the {@link #getBodyArray() body array}.
+   */
+  public ByteBuffer getBody(int event) {
+    checkIndex(event);
+    return ByteBuffer.wrap(bodies, bodyOffsets[event], bodyLengths[event]).slice();
+  }
+
+  /**
+   * Returns the number of headers encoded with the given event, which doesn't include the default headers of
+   * the stream file.
+   */
+  public int getHeaderCount(int event) {
+    checkIndex(event);
+    return (headerStarts[event + 1] - headerStarts[event]) / 2;
+  }
+
+  /**
+   * Returns the dictionary id of the key of a header encoded with the given event. Equal keys have the same id.
+   */
+  public int getHeaderKeyId(int event, int header) {
+    return headerIds[headerIndex(event, header)];
+  }
+
+  /**
+   * Returns the dictionary id of the value of a header encoded with the given event, or {@code -1} if the
+   * value is {@code null}. Equal values have the same id.
+   */
+  public int getHeaderValueId(int event, int header) {
+    return headerIds[headerIndex(event, header) + 1];
+  }
+
+  /**
+   * Returns the key or value represented by the given dictionary id.
+   */
+  @Nullable
+  public String getDictionaryValue(int id) {
+    return id < 0 ? null : dictionary.get(id);
+  }
+
+  /**
+   * Returns the default headers of the stream file that the events in this batch were read from.
+   */
+  public Map<String, String> getDefaultHeaders() {
+    return defaultHeaders;
+  }
+
+  /**
+   * Returns all headers of the given event, which are the default headers of the stream file overridden by
+   * the headers encoded with the event. Events having the same set of headers may share the same unmodifiable map.
+   */
+  public Map<String, String> getHeaders(int event) {
+    checkIndex(event);
+    int start = headerStarts[event];
+    int end = headerStarts[event + 1];
+    if (start == end) {
+      return defaultHeaders;
+    }
+    if (lastHeaders != null && sameHeaderIds(start, end)) {
+      return lastHeaders;
+    }
+
+    Map<String, String> headers = new HashMap<>(defaultHeaders);
+    for (int i = start; i < end; i += 2) {
+      headers.put(dictionary.get(headerIds[i]), getDictionaryValue(headerIds[i + 1]));
+    }
+    lastHeaders = Collections.unmodifiableMap(headers);
+    lastHeaderIds = Arrays.copyOfRange(headerIds, start, end);
+    return lastHeaders;
+  }
+
+  /**
+   * Returns {@code true} if this batch cannot take more events.
+   */
+  boolean isFull() {
+    return size == capacity;
+  }
+
+  /**
+   * Removes all events from this batch.
+   */
+  void clear() {
+    size = 0;
+    bodiesSize = 0;
+    headerIdsSize = 0;
+    // Bound the dictionary to avoid unlimited growth when header values are all distinct
+    if (dictionary.size() > MAX_DICTIONARY_SIZE) {
+      dictionary.clear();
+      lastHeaders = null;
+    }
+  }
+
+  void setDefaultHeaders(Map<String, String> defaultHeaders) {
+    if (this.defaultHeaders != defaultHeaders) {
+      this.defaultHeaders = defaultHeaders;
+      lastHeaders = null;
+    }
+  }
+
+  /**
+   * Adds an event to this batch. The headers of the event are added by calling
+   * {@link #addHeader(byte[], int, int, int, int)} after this method.
+   *
+   * @param timestamp timestamp of the event
+   * @param position position of the event in the stream file
+   * @param src array that contains the event body
+   * @param offset offset of the body in the array
+   * @param length length of the body
+   */
+  void addEvent(long timestamp, long position, byte[] src, int offset, int length) {
+    Preconditions.checkState(size < capacity, "Batch is full.");
+    ensureBodiesCapacity(bodiesSize + length);
+    System.arraycopy(src, offset, bodies, bodiesSize, length);
+
+    timestamps[size] = timestamp;
+    positions[size] = position;
+    bodyOffsets[size] = bodiesSize;
+    bodyLengths[size] = length;
+    bodiesSize += length;
+    size++;
+    headerStarts[size] = headerIdsSize;
+  }
+
+  /**
+   * Adds a header to the last event added to this batch. Both key and value are UTF-8 encoded.
+   *
+   * @param src array that contains the header key and value
+   * @param keyOffset offset of the key in the array
+   * @param keyLength length of the key
+   * @param valueOffset offset of the value in the array, or {@code -1} if the value is {@code null}
+   * @param valueLength length of the value
+   */
+  void addHeader(byte[] src, int keyOffset, int keyLength, int valueOffset, int valueLength) {
+    if (headerIdsSize + 2 > headerIds.length) {
+      headerIds = Arrays.copyOf(headerIds, headerIds.length * 2);
+    }
+    headerIds[headerIdsSize++] = dictionary.getId(src, keyOffset, keyLength);
+    headerIds[headerIdsSize++] = valueOffset < 0 ? -1 : dictionary.getId(src, valueOffset, valueLength);
+    headerStarts[size] = headerIdsSize;
+  }
+
+  /**
+   * Removes the last event added to this batch.
+   */
+  void removeLast() {
+    Preconditions.checkState(size > 0, "Batch is empty.");
+    size--;
+    bodiesSize = bodyOffsets[size];
+    headerIdsSize = headerStarts[size];
+  }
+
+  /**
+   * Adds all events in this batch to the given collection as {@link PositionStreamEvent} and clears this batch.
+   * The bodies of the events share one array, which is handed over to the events instead of being reused.
+   */
+  void drainTo(Collection<? super PositionStreamEvent> events) {
+    for (int i = 0; i < size; i++) {
+      events.add(new PositionStreamEvent(new StreamEventData(getHeaders(i), getBody(i)), timestamps[i], positions[i]));
+    }
+    if (bodiesSize > 0) {
+      bodiesCapacityHint = bodiesSize;
+      bodies = EMPTY_BYTES;
+    }
+    clear();
+  }
+
+  private void ensureBodiesCapacity(int required) {
+    if (required <= bodies.length) {
+      return;
+    }
+    int newCapacity = Math.max(required, Math.max(bodiesCapacityHint, bodies.length * 2));
+    bodies = Arrays.copyOf(bodies, newCapacity);
+  }
+
+  private boolean sameHeaderIds(int start, int end) {
+    if (end - start != lastHeaderIds.length) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (headerIds[i] != lastHeaderIds[i - start]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int headerIndex(int event, int header) {
+    checkIndex(event);
+    int index = headerStarts[event] + header * 2;
+    if (header < 0 || index >= headerStarts[event + 1]) {
+      throw new IndexOutOfBoundsException("Header index " + header + " out of bound for event " + event);
+    }
+    return index;
+  }
+
+  private void checkIndex(int event) {
+    if (event < 0 || event >= size) {
+      throw new IndexOutOfBoundsException("Event index " + event + " out of bound. Batch size is " + size);
+    }
+  }
+
+  /**
+   * A dictionary that maps UTF-8 encoded strings to integer ids, using open addressing on the encoded bytes
+   * so that no {@link String} is created for strings that are already in the dictionary.
+   */
+  private static final class HeaderDictionary {
+
+    private int size;
+    // Each slot stores id + 1 of the string, with 0 means empty
+    private int[] slots = new int[64];
+    private int[] hashes = new int[32];
+    private byte[][] encoded = new byte[32][];
+    private String[] values = new String[32];
+
+    int size() {
+      return size;
+    }
+
+    String get(int id) {
+      return values[id];
+    }
+
+    int getId(byte[] src, int offset, int length) {
+      int hash = hash(src, offset, length);
+      int mask = slots.length - 1;
+      int slot = hash & mask;
+      while (slots[slot] != 0) {
+        int id = slots[slot] - 1;
+        if (hashes[id] == hash && equals(encoded[id], src, offset, length)) {
+          return id;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      if (size == values.length) {
+        hashes = Arrays.copyOf(hashes, size * 2);
+        encoded = Arrays.copyOf(encoded, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      int id = size++;
+      hashes[id] = hash;
+      encoded[id] = Arrays.copyOfRange(src, offset, offset + length);
+      values[id] = new String(src, offset, length, Charsets.UTF_8);
+      slots[slot] = id + 1;
+
+      // Keep the load factor under 0.5
+      if (size * 2 > slots.length) {
+        rehash(slots.length * 2);
+      }
+      return id;
+    }
+
+    void clear() {
+      Arrays.fill(slots, 0);
+      Arrays.fill(encoded, 0, size, null);
+      Arrays.fill(values, 0, size, null);
+      size = 0;
+    }
+
+    private void rehash(int newSize) {
+      slots = new int[newSize];
+      int mask = newSize - 1;
+      for (int id = 0; id < size; id++) {
+        int slot = hashes[id] & mask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+      }
+    }
+
+    private static int hash(byte[] src, int offset, int length) {
+      int hash = 1;
+      for (int i = offset; i < offset + length; i++) {
+        hash = 31 * hash + src[i];
+      }
+      // Spread the higher bits to the lower bits, since slots are selected by the lower bits
+      return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] bytes, byte[] src, int offset, int length) {
+      if (bytes.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (bytes[i] != src[offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
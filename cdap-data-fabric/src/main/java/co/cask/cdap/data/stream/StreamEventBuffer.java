@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.common.io.BinaryDecoder;
 import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.io.Decoder;
@@ -27,7 +28,6 @@ import co.cask.common.io.ByteBufferInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Map;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -42,12 +42,17 @@ final class StreamEventBuffer {
 
   private ByteBuffer buffer;
   private long basePosition;
+  private byte[] compressedBlock;
+  private boolean compressed;
+  private int blockSize;
+  private int eventIndex;
 
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
     this.bufferInput = new ByteBufferInputStream(buffer);
     this.decoder = new BinaryDecoder(bufferInput);
     this.basePosition = -1L;
+    this.compressedBlock = new byte[0];
   }
 
   /**
@@ -61,17 +66,11 @@ final class StreamEventBuffer {
   void fillBuffer(SeekableInputStream input, int size) throws IOException {
     buffer.clear();
     buffer = ensureCapacity(buffer, size);
+    compressed = false;
 
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
-        }
-        bytesRead += len;
-      }
+      readFully(input, buffer.array(), size);
       buffer.limit(size);
       bufferInput.reset(buffer);
     } catch (IOException e) {
@@ -82,6 +81,54 @@ final class StreamEventBuffer {
     }
   }
 
+  /**
+   * Fills the internal buffer by reading a data block from a block compressed stream file. The block is
+   * decompressed according to the codec recorded in the first byte of the block.
+   *
+   * @param input input stream to read from
+   * @param size size of the data block
+   * @throws IOException if failed to read from the stream or to decompress the block
+   * @throws EOFException if failed to read the given number of bytes from the input
+   */
+  void fillBlock(SeekableInputStream input, int size) throws IOException {
+    long blockStart = input.getPos();
+    int codecId = input.read();
+    if (codecId < 0) {
+      throw new EOFException("Expected to read the codec of the data block at " + blockStart);
+    }
+    StreamBlockCodec codec = StreamBlockCodec.fromId((byte) codecId);
+    if (codec == StreamBlockCodec.NONE) {
+      fillBuffer(input, size - 1);
+      return;
+    }
+
+    buffer.clear();
+    try {
+      int compressedSize = size - 1;
+      if (compressedBlock.length < compressedSize) {
+        compressedBlock = new byte[compressedSize];
+      }
+      readFully(input, compressedBlock, compressedSize);
+
+      int rawSize = Bytes.toInt(compressedBlock, 0);
+      buffer = ensureCapacity(buffer, rawSize);
+      codec.decompress(compressedBlock, Bytes.SIZEOF_INT, compressedSize - Bytes.SIZEOF_INT,
+                       buffer.array(), 0, rawSize);
+      buffer.limit(rawSize);
+      bufferInput.reset(buffer);
+
+      basePosition = blockStart;
+      blockSize = size;
+      eventIndex = 0;
+      compressed = true;
+    } catch (IOException e) {
+      // Make the buffer has nothing to read
+      buffer.position(buffer.limit());
+      basePosition = -1L;
+      throw e;
+    }
+  }
+
   /**
    * Returns {@code true} if there are events in the buffer, {@code false} otherwise.
    */
@@ -94,7 +141,14 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (!compressed) {
+      return basePosition + buffer.position();
+    }
+    // For compressed block, the event position is the block start plus the event index.
+    return buffer.hasRemaining() ? basePosition + eventIndex : basePosition + blockSize;
   }
 
   /**
@@ -102,30 +156,92 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    return compressed ? basePosition + blockSize : basePosition + buffer.limit();
   }
 
   /**
-   * Decodes a stream event from the buffer.
+   * Decodes a stream event from the buffer into the given {@link StreamEventBatch}. The event body and headers
+   * are copied from the buffer directly, without creating intermediate objects.
    *
-   * @param timestamp timestamp of the {@link PositionStreamEvent} created
-   * @param defaultHeaders the set of headers that will used as the default for the stream event
+   * @param timestamp timestamp of the event
+   * @param batch the batch to add the event to
    * @param filter filter to apply to decide reading or skipping event
-   * @return A {@link PositionStreamEvent} if the filter accept it, or {@code null} if rejected by the filter
+   * @return {@code true} if the event is accepted by the filter and added to the batch, {@code false} otherwise
    * @throws IOException if fails to decode event from the buffer
    */
-  PositionStreamEvent nextEvent(long timestamp,
-                                Map<String, String> defaultHeaders, ReadFilter filter) throws IOException {
+  boolean nextEvent(long timestamp, StreamEventBatch batch, ReadFilter filter) throws IOException {
     if (!hasEvent()) {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
-    if (filter.acceptOffset(eventPos)) {
-      return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
+    long eventPos = getPosition();
+    eventIndex++;
+    if (!filter.acceptOffset(eventPos)) {
+      StreamEventDataCodec.skip(decoder);
+      return false;
+    }
+
+    // The encoding is defined by StreamEventDataCodec, which is the body bytes followed by a map of headers
+    byte[] array = buffer.array();
+    int bodyLength = decoder.readInt();
+    batch.addEvent(timestamp, eventPos, array, advance(bodyLength), bodyLength);
+
+    try {
+      int len = decoder.readInt();
+      while (len != 0) {
+        for (int i = 0; i < len; i++) {
+          int keyLength = decoder.readInt();
+          int keyOffset = advance(keyLength);
+          int valueLength = 0;
+          int valueOffset = -1;
+          if (decoder.readInt() == 0) {
+            valueLength = decoder.readInt();
+            valueOffset = advance(valueLength);
+          }
+          batch.addHeader(array, keyOffset, keyLength, valueOffset, valueLength);
+        }
+        len = decoder.readInt();
+      }
+    } catch (IOException e) {
+      // Don't leave a partially decoded event in the batch
+      batch.removeLast();
+      throw e;
+    }
+    return true;
+  }
+
+  /**
+   * Advances the buffer position by the given number of bytes.
+   *
+   * @return the offset in the backing array before advancing
+   */
+  private int advance(int length) throws IOException {
+    if (length < 0) {
+      throw new IOException("Invalid length " + length);
+    }
+    if (length > buffer.remaining()) {
+      throw new EOFException("Expected to read " + length + " bytes, but only " + buffer.remaining() + " available");
+    }
+    int offset = buffer.arrayOffset() + buffer.position();
+    buffer.position(buffer.position() + length);
+    return offset;
+  }
+
+  /**
+   * Reads the given number of bytes from the input into the given array.
+   */
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
     }
-    StreamEventDataCodec.skip(decoder);
-    return null;
   }
 
   /**
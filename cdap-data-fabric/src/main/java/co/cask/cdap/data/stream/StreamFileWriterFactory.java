@@ -32,4 +32,14 @@ public interface StreamFileWriterFactory {
   String getFileNamePrefix();
 
   FileWriter<StreamEvent> create(StreamConfig config, int generation) throws IOException;
+
+  /**
+   * Creates a {@link FileWriter} for the given write shard. Each shard writes to its own set of stream files,
+   * with the file name prefix given by {@link StreamUtils#getShardFilePrefix(String, int)}.
+   *
+   * @param config configuration of the stream
+   * @param generation generation of the stream
+   * @param shard the write shard, starting from {@code 0}
+   */
+  FileWriter<StreamEvent> create(StreamConfig config, int generation, int shard) throws IOException;
 }
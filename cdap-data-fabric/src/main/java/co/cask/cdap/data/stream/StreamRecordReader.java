@@ -15,27 +15,32 @@
  */
 package co.cask.cdap.data.stream;
 
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.api.stream.StreamEventDecoder;
 import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.ReadFilter;
+import co.cask.cdap.data.stream.decoder.BytesStreamEventDecoder;
+import co.cask.cdap.data.stream.decoder.StringStreamEventDecoder;
+import co.cask.cdap.data.stream.decoder.TextStreamEventDecoder;
 import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import com.google.common.base.Throwables;
-import com.google.common.collect.Lists;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
 import java.io.IOException;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 /**
- * A {@link RecordReader} for reading stream events.
+ * A {@link RecordReader} for reading stream events. Events are read from the stream file in batches
+ * through {@link StreamDataFileReader#readBatch}.
  *
  * @param <K> Key type read by this record reader.
  * @param <V> Value type read by this record reader.
@@ -43,7 +48,9 @@ import java.util.concurrent.TimeUnit;
 final class StreamRecordReader<K, V> extends RecordReader<K, V> {
 
   private final StreamEventDecoder<K, V> decoder;
-  private final List<PositionStreamEvent> events;
+  private final StreamEventBatch batch;
+  // Whether the event body can be backed by the batch buffer, which is reused for the next batch
+  private final boolean shareBody;
   private final Principal principal;
   private final StreamId streamId;
   private final AuthorizationEnforcer authorizationEnforcer;
@@ -52,16 +59,21 @@ final class StreamRecordReader<K, V> extends RecordReader<K, V> {
   private StreamInputSplit inputSplit;
   private StreamEventDecoder.DecodeResult<K, V> currentEntry;
   private ReadFilter readFilter;
+  private int batchIndex;
 
   /**
    * Construct a {@link StreamRecordReader} with a given {@link StreamEventDecoder}.
    *
    * @param decoder The decoder to use for decoding stream events.
+   * @param batchSize Number of events to read from the stream file at a time.
    */
-  StreamRecordReader(StreamEventDecoder<K, V> decoder, AuthorizationEnforcer authorizationEnforcer,
+  StreamRecordReader(StreamEventDecoder<K, V> decoder, int batchSize, AuthorizationEnforcer authorizationEnforcer,
                      AuthenticationContext authenticationContext, StreamId streamId) {
     this.decoder = decoder;
-    this.events = Lists.newArrayListWithCapacity(1);
+    this.batch = new StreamEventBatch(batchSize);
+    // These decoders always copy the body, hence the event body doesn't need to outlive the batch
+    this.shareBody = decoder instanceof TextStreamEventDecoder || decoder instanceof StringStreamEventDecoder
+      || decoder instanceof BytesStreamEventDecoder;
     this.currentEntry = new StreamEventDecoder.DecodeResult<>();
     this.authorizationEnforcer = authorizationEnforcer;
     // cache the principal since it is created for every MR job
@@ -88,14 +100,25 @@ final class StreamRecordReader<K, V> extends RecordReader<K, V> {
       throw new IOException(e);
     }
 
-    events.clear();
-    if (reader.read(events, 1, 0, TimeUnit.SECONDS, readFilter) <= 0) {
-      return false;
+    if (batchIndex >= batch.size()) {
+      batchIndex = 0;
+      if (reader.readBatch(batch, 0, TimeUnit.SECONDS, readFilter) <= 0) {
+        return false;
+      }
     }
-    PositionStreamEvent streamEvent = events.get(0);
-    if (streamEvent.getStart() - inputSplit.getStart() >= inputSplit.getLength()) {
+    int index = batchIndex++;
+    if (batch.getPosition(index) - inputSplit.getStart() >= inputSplit.getLength()) {
       return false;
     }
+
+    ByteBuffer body;
+    if (shareBody) {
+      body = batch.getBody(index);
+    } else {
+      int offset = batch.getBodyOffset(index);
+      body = ByteBuffer.wrap(Arrays.copyOfRange(batch.getBodyArray(), offset, offset + batch.getBodyLength(index)));
+    }
+    StreamEvent streamEvent = new StreamEvent(batch.getHeaders(index), body, batch.getTimestamp(index));
     currentEntry = decoder.decode(streamEvent, currentEntry);
     return true;
   }
@@ -358,6 +358,18 @@ public final class StreamUtils {
     return genId;
   }
 
+  /**
+   * Returns the file name prefix of the stream files written by the given write shard of a stream writer.
+   * The first shard uses the writer file prefix as is, so that stream files are named the same as without sharding.
+   *
+   * @param filePrefix file name prefix of the stream writer
+   * @param shard the write shard, starting from {@code 0}
+   * @return the file name prefix for the write shard
+   */
+  public static String getShardFilePrefix(String filePrefix, int shard) {
+    return shard == 0 ? filePrefix : filePrefix + '.' + shard;
+  }
+
   /**
    * Finds the next sequence id for the given partition with the given file prefix.
    *
@@ -371,7 +383,8 @@ public final class StreamUtils {
     int maxSequence = -1;
     for (Location location : partitionLocation.list()) {
       String fileName = location.getName();
-      if (!fileName.startsWith(filePrefix)) {
+      // Files of other write shards share the same prefix, hence need to compare the full prefix
+      if (!fileName.startsWith(filePrefix) || !filePrefix.equals(getNamePrefix(fileName))) {
         continue;
       }
       StreamUtils.getSequenceId(fileName);
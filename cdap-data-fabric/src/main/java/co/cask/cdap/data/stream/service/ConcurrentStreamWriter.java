@@ -32,6 +32,7 @@ import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import co.cask.cdap.proto.id.StreamId;
 import co.cask.cdap.security.impersonation.Impersonator;
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -63,6 +64,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -90,17 +92,25 @@ import javax.annotation.concurrent.ThreadSafe;
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
  *
+ * To allow a single stream to use more than one core and one file pipeline, writes to each stream can be
+ * sharded. With more than one shard, each shard has its own event queue, stream files and a dedicated writer
+ * thread that performs step 4-7 for all the events in the shard queue. Request threads enqueue to the shard selected
+ * by the thread id and wait for the writer thread to complete the request, hence each group of events drained
+ * by the writer thread is persisted with a single flush.
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentStreamWriter.class);
+  // Maximum time to wait for the shard writer thread before checking if the shard is closed
+  private static final long SHARD_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
 
   private final StreamCoordinatorClient streamCoordinatorClient;
   private final StreamAdmin streamAdmin;
   private final int workerThreads;
+  private final int writeShards;
   private final StreamMetricsCollectorFactory metricsCollectorFactory;
-  private final ConcurrentMap<StreamId, EventQueue> eventQueues;
+  private final ConcurrentMap<StreamId, ShardedEventQueue> eventQueues;
   private final StreamFileFactory streamFileFactory;
   private final Set<StreamId> generationWatched;
   private final List<Cancellable> cancellables;
@@ -110,9 +120,17 @@ public final class ConcurrentStreamWriter implements Closeable {
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
                          StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
+    this(streamCoordinatorClient, streamAdmin, writerFactory, workerThreads, 1, metricsCollectorFactory, impersonator);
+  }
+
+  ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
+                         StreamFileWriterFactory writerFactory, int workerThreads, int writeShards,
+                         StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
+    Preconditions.checkArgument(writeShards > 0, "Number of write shards must be > 0. Got %s", writeShards);
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
     this.workerThreads = workerThreads;
+    this.writeShards = writeShards;
     this.metricsCollectorFactory = metricsCollectorFactory;
     this.eventQueues = new MapMaker().concurrencyLevel(workerThreads).makeMap();
     this.streamFileFactory = new StreamFileFactory(writerFactory, impersonator);
@@ -126,7 +144,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     AbstractScheduledService scheduledService = new AbstractScheduledService() {
       @Override
       protected void runOneIteration() throws Exception {
-        for (EventQueue eventQueue : eventQueues.values()) {
+        for (ShardedEventQueue eventQueue : eventQueues.values()) {
           try {
             eventQueue.refresh();
           } catch (Throwable t) {
@@ -171,7 +189,7 @@ public final class ConcurrentStreamWriter implements Closeable {
    */
   public void enqueue(StreamId streamId,
                       Map<String, String> headers, ByteBuffer body) throws IOException, NotFoundException {
-    EventQueue eventQueue = getEventQueue(streamId);
+    EventQueue eventQueue = getEventQueue(streamId).select();
     WriteRequest writeRequest = eventQueue.append(headers, body);
     persistUntilCompleted(streamId, eventQueue, writeRequest);
   }
@@ -186,7 +204,7 @@ public final class ConcurrentStreamWriter implements Closeable {
    */
   public void enqueue(StreamId streamId,
                       Iterator<? extends StreamEventData> events) throws IOException, NotFoundException {
-    EventQueue eventQueue = getEventQueue(streamId);
+    EventQueue eventQueue = getEventQueue(streamId).select();
     WriteRequest writeRequest = eventQueue.append(events);
     persistUntilCompleted(streamId, eventQueue, writeRequest);
   }
@@ -206,7 +224,7 @@ public final class ConcurrentStreamWriter implements Closeable {
                            Map<String, String> headers, ByteBuffer body,
                            Executor executor) throws IOException, NotFoundException {
     // Put the event to the queue first and then execute the write asynchronously
-    final EventQueue eventQueue = getEventQueue(streamId);
+    final EventQueue eventQueue = getEventQueue(streamId).select();
     final WriteRequest writeRequest = eventQueue.append(headers, body);
     executor.execute(new Runnable() {
       @Override
@@ -234,7 +252,7 @@ public final class ConcurrentStreamWriter implements Closeable {
   public void appendFile(StreamId streamId,
                          Location eventFile, Location indexFile, long eventCount,
                          TimestampCloseable timestampCloseable) throws IOException, NotFoundException {
-    EventQueue eventQueue = getEventQueue(streamId);
+    EventQueue eventQueue = getEventQueue(streamId).selectForAppend();
     StreamConfig config = streamAdmin.getConfig(streamId);
     while (!eventQueue.tryAppendFile(config, eventFile, indexFile, eventCount, timestampCloseable)) {
       Thread.yield();
@@ -247,7 +265,7 @@ public final class ConcurrentStreamWriter implements Closeable {
       cancellable.cancel();
     }
 
-    for (EventQueue queue : eventQueues.values()) {
+    for (ShardedEventQueue queue : eventQueues.values()) {
       try {
         queue.close();
       } catch (IOException e) {
@@ -258,8 +276,8 @@ public final class ConcurrentStreamWriter implements Closeable {
     eventQueueRefreshService.stopAndWait();
   }
 
-  private EventQueue getEventQueue(StreamId streamId) throws IOException, NotFoundException {
-    EventQueue eventQueue = eventQueues.get(streamId);
+  private ShardedEventQueue getEventQueue(StreamId streamId) throws IOException, NotFoundException {
+    ShardedEventQueue eventQueue = eventQueues.get(streamId);
     if (eventQueue != null) {
       return eventQueue;
     }
@@ -281,7 +299,7 @@ public final class ConcurrentStreamWriter implements Closeable {
         cancellables.add(streamCoordinatorClient.addListener(streamId, streamFileFactory));
       }
 
-      eventQueue = new EventQueue(streamId, metricsCollectorFactory.createMetricsCollector(streamId));
+      eventQueue = new ShardedEventQueue(streamId, metricsCollectorFactory.createMetricsCollector(streamId));
       eventQueues.put(streamId, eventQueue);
 
       return eventQueue;
@@ -305,7 +323,10 @@ public final class ConcurrentStreamWriter implements Closeable {
   private void persistUntilCompleted(StreamId streamId, EventQueue eventQueue, WriteRequest request)
     throws IOException {
     while (!request.isCompleted()) {
-      if (!eventQueue.tryWrite()) {
+      if (eventQueue.hasWriterThread() && !eventQueue.isClosed()) {
+        // The shard writer thread will write the request
+        request.awaitCompletion(SHARD_WAIT_NANOS);
+      } else if (!eventQueue.tryWrite()) {
         Thread.yield();
       }
     }
@@ -316,7 +337,7 @@ public final class ConcurrentStreamWriter implements Closeable {
   }
 
   private void closeEventQueue(StreamId streamId) {
-    EventQueue eventQueue = eventQueues.remove(streamId);
+    ShardedEventQueue eventQueue = eventQueues.remove(streamId);
     if (eventQueue != null) {
       try {
         eventQueue.close();
@@ -356,10 +377,11 @@ public final class ConcurrentStreamWriter implements Closeable {
      * Creates a new {@link FileWriter} for the given stream.
      *
      * @param streamId identifier of the stream
+     * @param shard the write shard to create the writer for
      * @return A {@link FileWriter} for writing {@link StreamEvent} to the given stream
      * @throws IOException if failed to create the file writer
      */
-    private FileWriter<StreamEvent> create(StreamId streamId) throws IOException {
+    private FileWriter<StreamEvent> create(StreamId streamId, int shard) throws IOException {
       final StreamConfig streamConfig = streamAdmin.getConfig(streamId);
       int generation;
       try {
@@ -375,8 +397,8 @@ public final class ConcurrentStreamWriter implements Closeable {
         throw Throwables.propagate(e);
       }
 
-      LOG.info("Create stream writer for {} with generation {}", streamId, generation);
-      return writerFactory.create(streamConfig, generation);
+      LOG.info("Create stream writer for {} with generation {} and shard {}", streamId, generation, shard);
+      return writerFactory.create(streamConfig, generation, shard);
     }
 
     /**
@@ -435,12 +457,74 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
   }
 
+  /**
+   * The {@link EventQueue}s of a stream, one for each write shard.
+   */
+  private final class ShardedEventQueue implements Closeable {
+
+    private final EventQueue[] shards;
+
+    ShardedEventQueue(StreamId streamId, StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
+      this.shards = new EventQueue[writeShards];
+      for (int i = 0; i < shards.length; i++) {
+        shards[i] = new EventQueue(this, streamId, i, metricsCollector);
+      }
+      if (shards.length > 1) {
+        for (EventQueue shard : shards) {
+          shard.startWriterThread();
+        }
+      }
+    }
+
+    /**
+     * Selects the shard for the calling thread. The same thread always writes to the same shard.
+     */
+    EventQueue select() {
+      return shards.length == 1 ? shards[0] : shards[(int) (Thread.currentThread().getId() % shards.length)];
+    }
+
+    /**
+     * Selects the shard for appending files. Appended files get the file name prefix of the first shard, so the
+     * append must always go through it, to not race with the files created by its writer.
+     */
+    EventQueue selectForAppend() {
+      return shards[0];
+    }
+
+    void refresh() throws Exception {
+      for (EventQueue shard : shards) {
+        shard.refresh();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      IOException failure = null;
+      for (EventQueue shard : shards) {
+        try {
+          shard.close();
+        } catch (IOException e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
   /**
    * For buffering StreamEvents and doing batch write to stream file.
    */
   private final class EventQueue implements Closeable {
 
+    private final ShardedEventQueue owner;
     private final StreamId streamId;
+    private final int shard;
     private final StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector;
     private final Queue<WriteRequest> queue;
     private final AtomicBoolean writerFlag;
@@ -448,10 +532,14 @@ public final class ConcurrentStreamWriter implements Closeable {
     private final MutableStreamEvent streamEvent;
     private final Function<StreamEventData, StreamEvent> eventTransformer;
     private FileWriter<StreamEventData> fileWriter;
-    private boolean closed;
+    private volatile boolean closed;
+    private Thread writerThread;
 
-    EventQueue(StreamId streamId, StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
+    EventQueue(ShardedEventQueue owner, StreamId streamId, int shard,
+               StreamMetricsCollectorFactory.StreamMetricsCollector metricsCollector) {
+      this.owner = owner;
       this.streamId = streamId;
+      this.shard = shard;
       this.streamEvent = new MutableStreamEvent();
       this.queue = new ConcurrentLinkedQueue<>();
       this.writerFlag = new AtomicBoolean(false);
@@ -475,6 +563,7 @@ public final class ConcurrentStreamWriter implements Closeable {
     WriteRequest append(Map<String, String> headers, ByteBuffer body) {
       WriteRequest request = new SingleWriteRequest(headers, body);
       queue.add(request);
+      wakeupWriterThread();
       return request;
     }
 
@@ -488,9 +577,48 @@ public final class ConcurrentStreamWriter implements Closeable {
     WriteRequest append(Iterator<? extends StreamEventData> events) {
       WriteRequest request = new BatchWriteRequest(events);
       queue.add(request);
+      wakeupWriterThread();
       return request;
     }
 
+    /**
+     * Starts a dedicated thread for writing the events in this queue.
+     */
+    void startWriterThread() {
+      writerThread = new Thread("stream-writer-" + streamId.getNamespace() + "-" + streamId.getEntityName()
+                                  + "-" + shard) {
+        @Override
+        public void run() {
+          while (!closed) {
+            if (queue.isEmpty()) {
+              LockSupport.park(this);
+            } else if (!tryWrite()) {
+              Thread.yield();
+            }
+          }
+        }
+      };
+      writerThread.setDaemon(true);
+      writerThread.start();
+    }
+
+    /**
+     * Returns {@code true} if events in this queue are written by a dedicated thread.
+     */
+    boolean hasWriterThread() {
+      return writerThread != null;
+    }
+
+    boolean isClosed() {
+      return closed;
+    }
+
+    private void wakeupWriterThread() {
+      if (writerThread != null) {
+        LockSupport.unpark(writerThread);
+      }
+    }
+
     /**
      * Attempts to append a file to the stream.
      *
@@ -565,7 +693,7 @@ public final class ConcurrentStreamWriter implements Closeable {
           eventsWritten = metrics.eventsWritten;
         } catch (Throwable t) {
           // On exception, remove this EventQueue from the map and close this event queue
-          eventQueues.remove(streamId, this);
+          eventQueues.remove(streamId, owner);
           doClose();
 
           for (WriteRequest processed : processQueue) {
@@ -576,6 +704,10 @@ public final class ConcurrentStreamWriter implements Closeable {
         writerFlag.set(false);
       }
 
+      // Close the other shards as well, after releasing the writer flag of this shard
+      if (closed && owner.shards.length > 1) {
+        Closeables.closeQuietly(owner);
+      }
       metricsCollector.emitMetrics(bytesWritten, eventsWritten);
       return true;
     }
@@ -608,7 +740,7 @@ public final class ConcurrentStreamWriter implements Closeable {
         throw new IOException("Stream writer already closed");
       }
       if (fileWriter == null) {
-        fileWriter = transform(streamFileFactory.create(streamId), eventTransformer);
+        fileWriter = transform(streamFileFactory.create(streamId, shard), eventTransformer);
       }
       return fileWriter;
     }
@@ -631,6 +763,7 @@ public final class ConcurrentStreamWriter implements Closeable {
           writerFlag.set(false);
         }
       }
+      wakeupWriterThread();
     }
 
     private void doClose() {
@@ -730,7 +863,9 @@ public final class ConcurrentStreamWriter implements Closeable {
       }
     }
 
-    private State state = State.PENDING;
+    // Volatile since the request can be completed by a shard writer thread while the request thread is waiting
+    private volatile State state = State.PENDING;
+    private volatile Thread waiter;
     private Throwable failure;
 
     boolean isCompleted() {
@@ -742,8 +877,22 @@ public final class ConcurrentStreamWriter implements Closeable {
     }
 
     void completed(Throwable failure) {
-      this.state = State.COMPLETED;
       this.failure = failure;
+      this.state = State.COMPLETED;
+      Thread waiter = this.waiter;
+      if (waiter != null) {
+        LockSupport.unpark(waiter);
+      }
+    }
+
+    /**
+     * Waits for this request to complete, up to the given amount of time.
+     */
+    void awaitCompletion(long nanos) {
+      waiter = Thread.currentThread();
+      if (!isCompleted()) {
+        LockSupport.parkNanos(this, nanos);
+      }
     }
 
     Throwable getFailure() {
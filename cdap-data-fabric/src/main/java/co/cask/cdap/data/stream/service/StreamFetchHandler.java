@@ -298,13 +298,16 @@ public final class StreamFetchHandler extends AbstractHttpHandler {
 
     List<StreamFileOffset> fileOffsets = Lists.newArrayList();
     int instances = cConf.getInt(Constants.Stream.CONTAINER_INSTANCES);
+    int shards = cConf.getInt(Constants.Stream.WRITER_SHARDS, 1);
     String filePrefix = cConf.get(Constants.Stream.FILE_PREFIX);
     for (int i = 0; i < instances; i++) {
-      // The actual file prefix is formed by file prefix in cConf + writer instance id
-      String streamFilePrefix = filePrefix + '.' + i;
-      Location eventLocation = StreamUtils.createStreamLocation(startPartition, streamFilePrefix,
-                                                                0, StreamFileType.EVENT);
-      fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
+      for (int shard = 0; shard < shards; shard++) {
+        // The actual file prefix is formed by file prefix in cConf + writer instance id + write shard
+        String streamFilePrefix = StreamUtils.getShardFilePrefix(filePrefix + '.' + i, shard);
+        Location eventLocation = StreamUtils.createStreamLocation(startPartition, streamFilePrefix,
+                                                                  0, StreamFileType.EVENT);
+        fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
+      }
     }
 
     MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, fileOffsets);
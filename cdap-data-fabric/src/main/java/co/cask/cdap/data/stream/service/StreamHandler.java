@@ -32,6 +32,7 @@ import co.cask.cdap.common.security.AuditPolicy;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
 import co.cask.cdap.data.stream.StreamFileWriterFactory;
 import co.cask.cdap.data.stream.service.upload.ContentWriterFactory;
+import co.cask.cdap.data.stream.service.upload.DirectContentWriterFactory;
 import co.cask.cdap.data.stream.service.upload.LengthBasedContentWriterFactory;
 import co.cask.cdap.data.stream.service.upload.StreamBodyConsumerFactory;
 import co.cask.cdap.data2.transaction.stream.StreamAdmin;
@@ -113,6 +114,7 @@ public final class StreamHandler extends AbstractHttpHandler {
   private final LoadingCache<NamespaceId, MetricsContext> streamMetricsCollectors;
   private final ConcurrentStreamWriter streamWriter;
   private final long batchBufferThreshold;
+  private final int ingestMaxEventSize;
   private final StreamBodyConsumerFactory streamBodyConsumerFactory;
   private final NamespaceQueryAdmin namespaceQueryAdmin;
 
@@ -135,6 +137,7 @@ public final class StreamHandler extends AbstractHttpHandler {
     this.streamAdmin = streamAdmin;
     this.sizeCollector = sizeCollector;
     this.batchBufferThreshold = cConf.getLong(Constants.Stream.BATCH_BUFFER_THRESHOLD);
+    this.ingestMaxEventSize = cConf.getInt(Constants.Stream.INGEST_MAX_EVENT_SIZE);
     this.streamBodyConsumerFactory = new StreamBodyConsumerFactory();
     this.streamHandlerMetricsContext = metricsCollectionService.getContext(getStreamHandlerMetricsContext());
     streamMetricsCollectors = CacheBuilder.newBuilder()
@@ -147,6 +150,7 @@ public final class StreamHandler extends AbstractHttpHandler {
     StreamMetricsCollectorFactory metricsCollectorFactory = createStreamMetricsCollectorFactory();
     this.streamWriter = new ConcurrentStreamWriter(streamCoordinatorClient, streamAdmin, writerFactory,
                                                    cConf.getInt(Constants.Stream.WORKER_THREADS),
+                                                   cConf.getInt(Constants.Stream.WRITER_SHARDS, 1),
                                                    metricsCollectorFactory, impersonator);
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.impersonator = impersonator;
@@ -289,6 +293,31 @@ public final class StreamHandler extends AbstractHttpHandler {
     }
   }
 
+  /**
+   * Ingests framed events from the request body. Events are decoded from each chunk of the body as it arrives
+   * and are written to the stream chunk by chunk, without buffering the whole body.
+   */
+  @POST
+  @Path("/{stream}/ingest")
+  public BodyConsumer ingest(HttpRequest request, HttpResponder responder,
+                             @PathParam("namespace-id") String namespaceId,
+                             @PathParam("stream") String stream) throws Exception {
+    StreamId streamId = validateAndGetStreamId(namespaceId, stream);
+    checkStreamExists(streamId);
+    authorizationEnforcer.enforce(streamId, authenticationContext.getPrincipal(), Action.WRITE);
+    try {
+      ContentWriterFactory contentWriterFactory = new DirectContentWriterFactory(streamId, streamWriter,
+                                                                                 getHeaders(request, stream));
+      MetricsContext metricsContext = streamMetricsCollectors.getUnchecked(streamId.getParent())
+        .childContext(Constants.Metrics.Tag.STREAM, streamId.getEntityName());
+      return streamBodyConsumerFactory.createFramed(request, contentWriterFactory,
+                                                    ingestMaxEventSize, metricsContext);
+    } catch (UnsupportedOperationException e) {
+      responder.sendString(HttpResponseStatus.NOT_ACCEPTABLE, e.getMessage());
+      return null;
+    }
+  }
+
   @POST
   @Path("/{stream}/truncate")
   public void truncate(HttpRequest request, HttpResponder responder,
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -85,12 +85,15 @@ final class BufferedContentWriter implements ContentWriter, Iterable<ByteBuffer>
     return bodies.iterator();
   }
 
-  private static final class StreamEventDataIterator extends AbstractIterator<StreamEventData> {
+  /**
+   * An {@link Iterator} of {@link StreamEventData} that has the same headers and bodies provided by another iterator.
+   */
+  static final class StreamEventDataIterator extends AbstractIterator<StreamEventData> {
 
     private final Iterator<? extends ByteBuffer> bodies;
     private final MutableStreamEventData streamEventData;
 
-    private StreamEventDataIterator(Map<String, String> headers, Iterator<? extends ByteBuffer> bodies) {
+    StreamEventDataIterator(Map<String, String> headers, Iterator<? extends ByteBuffer> bodies) {
       this.bodies = bodies;
       this.streamEventData = new MutableStreamEventData().setHeaders(headers);
     }
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service.upload;
+
+import co.cask.cdap.common.NotFoundException;
+import co.cask.cdap.data.stream.service.ConcurrentStreamWriter;
+import co.cask.cdap.proto.id.StreamId;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A {@link ContentWriter} that writes events to the {@link ConcurrentStreamWriter} on every append call.
+ * Each call returns only after the events are persisted, hence the memory used is bounded by the size
+ * of a single append call. Since events are persisted as they are appended, {@link #cancel()} cannot
+ * undo events that were already written.
+ */
+final class DirectContentWriter implements ContentWriter {
+
+  private final StreamId streamId;
+  private final ConcurrentStreamWriter streamWriter;
+  private final Map<String, String> headers;
+
+  DirectContentWriter(StreamId streamId, ConcurrentStreamWriter streamWriter, Map<String, String> headers) {
+    this.streamId = streamId;
+    this.streamWriter = streamWriter;
+    this.headers = ImmutableMap.copyOf(headers);
+  }
+
+  @Override
+  public void append(ByteBuffer body, boolean immutable) throws IOException {
+    appendAll(Iterators.singletonIterator(body), immutable);
+  }
+
+  @Override
+  public void appendAll(Iterator<ByteBuffer> bodies, boolean immutable) throws IOException {
+    // No need to copy mutable buffers since the events are persisted before this method returns
+    try {
+      streamWriter.enqueue(streamId, new BufferedContentWriter.StreamEventDataIterator(headers, bodies));
+    } catch (NotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    // No-op
+  }
+
+  @Override
+  public void cancel() {
+    // No-op
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service.upload;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.BadRequestException;
+import co.cask.cdap.proto.id.StreamId;
+import co.cask.http.BodyConsumer;
+import co.cask.http.HttpResponder;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link BodyConsumer} that decodes framed events incrementally from each chunk of the request body and
+ * writes the complete events of each chunk with one call to the {@link ContentWriter}. Only an event that spans
+ * across chunks is buffered, hence the memory used is bounded by the chunk size and the maximum event size,
+ * regardless of the size of the request body.
+ */
+@NotThreadSafe
+final class FramedStreamBodyConsumer extends BodyConsumer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FramedStreamBodyConsumer.class);
+
+  /**
+   * The supported framing of events.
+   */
+  enum Framing {
+    /**
+     * Each event body is prefixed with its length as a four bytes big-endian integer.
+     */
+    LENGTH_PREFIXED {
+      @Override
+      long readLength(ChannelBuffer buffer) {
+        return buffer.readableBytes() < 4 ? -1L : buffer.readUnsignedInt();
+      }
+    },
+
+    /**
+     * Each event body is encoded as an Avro {@code bytes}, which is the body prefixed with its length
+     * as a zig-zag encoded variable length long.
+     */
+    AVRO {
+      @Override
+      long readLength(ChannelBuffer buffer) throws BadRequestException {
+        int start = buffer.readerIndex();
+        long value = 0;
+        for (int shift = 0; buffer.readable(); shift += 7) {
+          if (shift > 63) {
+            throw new BadRequestException("Invalid event length encoding at offset " + start);
+          }
+          int b = buffer.readUnsignedByte();
+          value |= (long) (b & 0x7f) << shift;
+          if ((b & 0x80) == 0) {
+            long length = (value >>> 1) ^ -(value & 1);
+            if (length < 0) {
+              throw new BadRequestException("Invalid negative event length " + length);
+            }
+            return length;
+          }
+        }
+        // Not enough bytes to decode the length
+        buffer.readerIndex(start);
+        return -1L;
+      }
+    };
+
+    /**
+     * Reads the length of the next event body from the given buffer. If there are not enough bytes for the
+     * length, the reader index of the buffer will be left unchanged.
+     *
+     * @return the length of the event body or {@code -1} if more bytes are needed to decode the length
+     * @throws BadRequestException if the length is invalid
+     */
+    abstract long readLength(ChannelBuffer buffer) throws BadRequestException;
+  }
+
+  private final StreamId streamId;
+  private final ContentWriterFactory contentWriterFactory;
+  private final Framing framing;
+  private final int maxEventSize;
+  private final MetricsContext metricsContext;
+  private final List<ByteBuffer> bodies;
+
+  private ContentWriter contentWriter;
+  private boolean failed;
+  // Bytes that are not enough for decoding the length of the next event
+  private ChannelBuffer leftover = ChannelBuffers.EMPTY_BUFFER;
+  // Body of the event that spans across chunks
+  private ChannelBuffer partialBody;
+
+  FramedStreamBodyConsumer(ContentWriterFactory contentWriterFactory, Framing framing,
+                           int maxEventSize, MetricsContext metricsContext) {
+    this.streamId = contentWriterFactory.getStream();
+    this.contentWriterFactory = contentWriterFactory;
+    this.framing = framing;
+    this.maxEventSize = maxEventSize;
+    this.metricsContext = metricsContext;
+    this.bodies = new ArrayList<>();
+  }
+
+  @Override
+  public void chunk(ChannelBuffer chunk, HttpResponder responder) {
+    if (failed) {
+      return;
+    }
+    try {
+      processChunk(chunk);
+    } catch (BadRequestException e) {
+      failed = true;
+      LOG.debug("Invalid framed content uploaded to stream {}", streamId, e);
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+      throw Throwables.propagate(e);
+    } catch (Exception e) {
+      failed = true;
+      LOG.error("Failed to write upload content to stream {}", streamId, e);
+      responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Failed to write uploaded content");
+      // Propagate the exception so that the netty http service will terminate the handling
+      throw Throwables.propagate(e);
+    }
+  }
+
+  @Override
+  public void finished(HttpResponder responder) {
+    if (failed) {
+      return;
+    }
+    if (leftover.readable() || partialBody != null) {
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, "Incomplete event at the end of the uploaded content");
+      return;
+    }
+    try {
+      getContentWriter().close();
+      responder.sendStatus(HttpResponseStatus.OK);
+    } catch (Exception e) {
+      // Just log and response. No need to propagate since it's the end of upload already.
+      LOG.error("Failed to write upload content to stream {}", streamId, e);
+      responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Failed to write uploaded content");
+    }
+  }
+
+  @Override
+  public void handleError(Throwable cause) {
+    // Nothing other than log
+    LOG.warn("Failed to handle upload to stream {}", streamId, cause);
+  }
+
+  /**
+   * Decodes all complete events from the given chunk and writes them to the {@link ContentWriter}.
+   */
+  private void processChunk(ChannelBuffer chunk) throws IOException, BadRequestException {
+    long startTime = System.nanoTime();
+    bodies.clear();
+
+    ChannelBuffer content = chunk;
+    if (partialBody != null) {
+      content.readBytes(partialBody, Math.min(partialBody.writableBytes(), content.readableBytes()));
+      if (partialBody.writable()) {
+        return;
+      }
+      bodies.add(partialBody.toByteBuffer());
+      partialBody = null;
+    } else if (leftover.readable()) {
+      content = ChannelBuffers.wrappedBuffer(leftover, chunk);
+      leftover = ChannelBuffers.EMPTY_BUFFER;
+    }
+
+    while (content.readable()) {
+      long length = framing.readLength(content);
+      if (length < 0) {
+        // Only a few bytes are left, copy them so that the chunk can be released
+        leftover = ChannelBuffers.copiedBuffer(content);
+        break;
+      }
+      if (length > maxEventSize) {
+        throw new BadRequestException("Event size " + length + " is larger than the maximum allowed size "
+                                        + maxEventSize);
+      }
+      if (content.readableBytes() < length) {
+        partialBody = ChannelBuffers.buffer((int) length);
+        content.readBytes(partialBody, content.readableBytes());
+        break;
+      }
+      // The chunk buffer is never reused by the http service, hence no need to copy
+      bodies.add(content.readSlice((int) length).toByteBuffer());
+    }
+
+    if (!bodies.isEmpty()) {
+      getContentWriter().appendAll(bodies.iterator(), true);
+      metricsContext.increment("collect.chunks", 1);
+      metricsContext.increment("collect.chunk.events", bodies.size());
+      metricsContext.gauge("collect.chunk.latency.ms",
+                           TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+    bodies.clear();
+  }
+
+  private ContentWriter getContentWriter() throws IOException {
+    if (contentWriter == null) {
+      contentWriter = contentWriterFactory.create(ImmutableMap.<String, String>of());
+    }
+    return contentWriter;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data.stream.service.upload;
 
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.http.BodyConsumer;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
@@ -25,6 +26,16 @@ import org.jboss.netty.handler.codec.http.HttpRequest;
  */
 public class StreamBodyConsumerFactory {
 
+  /**
+   * Content type of framed events where each event body is prefixed with a four bytes big-endian length.
+   */
+  public static final String LENGTH_PREFIXED_CONTENT_TYPE = "application/x-cdap-length-prefixed";
+
+  /**
+   * Content type of framed events where each event body is encoded as an Avro {@code bytes}.
+   */
+  public static final String AVRO_FRAMED_CONTENT_TYPE = "application/x-cdap-avro-framed";
+
   /**
    * Creates a {@link BodyConsumer} to handle the given batch request.
    *
@@ -47,4 +58,26 @@ public class StreamBodyConsumerFactory {
     }
     throw new UnsupportedOperationException("Unsupported content type " + contentType);
   }
+
+  /**
+   * Creates a {@link BodyConsumer} to handle the given framed events ingest request. Events are decoded from
+   * each chunk of the request body and written through the {@link ContentWriter} chunk by chunk.
+   *
+   * @param maxEventSize maximum size in bytes of a single event
+   * @param metricsContext the {@link MetricsContext} for emitting per chunk ingest metrics
+   * @throws UnsupportedOperationException if the request content type is not a supported framing
+   */
+  public BodyConsumer createFramed(HttpRequest request, ContentWriterFactory contentWriterFactory,
+                                   int maxEventSize, MetricsContext metricsContext) {
+    String contentType = request.getHeader(HttpHeaders.Names.CONTENT_TYPE);
+    if (LENGTH_PREFIXED_CONTENT_TYPE.equals(contentType)) {
+      return new FramedStreamBodyConsumer(contentWriterFactory, FramedStreamBodyConsumer.Framing.LENGTH_PREFIXED,
+                                          maxEventSize, metricsContext);
+    }
+    if (AVRO_FRAMED_CONTENT_TYPE.equals(contentType)) {
+      return new FramedStreamBodyConsumer(contentWriterFactory, FramedStreamBodyConsumer.Framing.AVRO,
+                                          maxEventSize, metricsContext);
+    }
+    throw new UnsupportedOperationException("Unsupported content type " + contentType);
+  }
 }
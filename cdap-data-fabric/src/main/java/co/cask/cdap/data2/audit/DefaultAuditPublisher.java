@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,6 +17,8 @@
 package co.cask.cdap.data2.audit;
 
 import co.cask.cdap.api.messaging.TopicNotFoundException;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.RetryStrategies;
@@ -31,25 +33,46 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import co.cask.cdap.security.spi.authentication.SecurityRequestContext;
 import com.google.common.base.Objects;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A default implementation of {@link AuditPublisher} that publishes to TMS.
+ *
+ * <p>While this service is running, and unless {@link Constants.Audit#PUBLISH_QUEUE_SIZE} is zero, audit messages
+ * are added to a bounded queue and published in batches by the service thread, so that callers never wait for TMS.
+ * A batch is published when it reaches {@link Constants.Audit#PUBLISH_BATCH_SIZE} messages, or when its first
+ * message has waited for {@link Constants.Audit#PUBLISH_BATCH_DELAY_MS}. Messages are dropped while the queue is
+ * full. Stopping the service publishes the messages that are still queued. Messages are published synchronously
+ * before the service is started and after it is stopped, so the process that owns the publisher must start and stop
+ * it together with its other services.</p>
  */
-public final class DefaultAuditPublisher implements AuditPublisher {
+public final class DefaultAuditPublisher extends AbstractExecutionThreadService implements AuditPublisher {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultAuditPublisher.class);
   private static final Gson GSON = new Gson();
+  // how often the publisher thread checks whether it is stopped while it waits for messages
+  private static final long STOP_CHECK_MILLIS = 1000L;
 
   private final MessagingService messagingService;
   private final TopicId auditTopic;
   private final RetryStrategy retryStrategy;
+  private final BlockingQueue<AuditMessage> queue;
+  private final int batchSize;
+  private final long batchDelayMillis;
+  private final CountDownLatch stopLatch = new CountDownLatch(1);
+  private volatile MetricsContext metricsContext;
 
   @Inject
   DefaultAuditPublisher(CConfiguration cConf, MessagingService messagingService) {
@@ -58,21 +81,132 @@ public final class DefaultAuditPublisher implements AuditPublisher {
     this.retryStrategy = RetryStrategies.timeLimit(
       cConf.getLong(Constants.Audit.PUBLISH_TIMEOUT_MS), TimeUnit.MILLISECONDS,
       RetryStrategies.exponentialDelay(10, 200, TimeUnit.MILLISECONDS));
+    int queueSize = cConf.getInt(Constants.Audit.PUBLISH_QUEUE_SIZE);
+    this.queue = queueSize > 0 ? new LinkedBlockingQueue<AuditMessage>(queueSize) : null;
+    this.batchSize = Math.max(1, cConf.getInt(Constants.Audit.PUBLISH_BATCH_SIZE));
+    this.batchDelayMillis = Math.max(0L, cConf.getLong(Constants.Audit.PUBLISH_BATCH_DELAY_MS));
+  }
+
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    this.metricsContext = metricsCollectionService.getContext(Constants.Metrics.AUDIT_PUBLISHER_CONTEXT);
   }
 
   @Override
   public void publish(EntityId entityId, AuditType auditType, AuditPayload auditPayload) {
     String userId = Objects.firstNonNull(SecurityRequestContext.getUserId(), "");
     AuditMessage auditMessage = new AuditMessage(System.currentTimeMillis(), entityId, userId, auditType, auditPayload);
-    LOG.trace("Publishing audit message {}", auditMessage);
+
+    if (queue == null || !isRunning()) {
+      LOG.trace("Publishing audit message {}", auditMessage);
+      publish(new AuditMessage[] { auditMessage });
+      return;
+    }
+
+    if (queue.offer(auditMessage)) {
+      LOG.trace("Queued audit message {}", auditMessage);
+      // the queue may have been drained for the last time while the message was added
+      if (!isRunning() && queue.remove(auditMessage)) {
+        publish(new AuditMessage[] { auditMessage });
+      }
+    } else {
+      LOG.warn("Dropping audit message {} because the audit publish queue is full", auditMessage);
+      incrementMetric("audit.dropped", 1);
+    }
+    gaugeMetric("audit.queue.size", queue.size());
+  }
+
+  @Override
+  protected String getServiceName() {
+    return "audit-publisher";
+  }
+
+  @Override
+  protected void run() throws Exception {
+    if (queue == null) {
+      // every message is published synchronously, there is nothing to do until the service is stopped
+      stopLatch.await();
+      return;
+    }
+    List<AuditMessage> batch = new ArrayList<>(batchSize);
+    while (isRunning()) {
+      AuditMessage first = queue.poll(STOP_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+      if (first == null) {
+        continue;
+      }
+      batch.add(first);
+      long deadline = System.currentTimeMillis() + batchDelayMillis;
+      while (batch.size() < batchSize && isRunning()) {
+        queue.drainTo(batch, batchSize - batch.size());
+        long wait = deadline - System.currentTimeMillis();
+        if (batch.size() >= batchSize || wait <= 0) {
+          break;
+        }
+        AuditMessage message = queue.poll(Math.min(wait, STOP_CHECK_MILLIS), TimeUnit.MILLISECONDS);
+        if (message != null) {
+          batch.add(message);
+        }
+      }
+      gaugeMetric("audit.queue.size", queue.size());
+      publish(batch.toArray(new AuditMessage[batch.size()]));
+      batch.clear();
+    }
+  }
+
+  @Override
+  protected void triggerShutdown() {
+    stopLatch.countDown();
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    if (queue == null) {
+      return;
+    }
+    // publish the messages that were queued while the service thread was stopping
+    List<AuditMessage> batch = new ArrayList<>(batchSize);
+    while (queue.drainTo(batch, batchSize) > 0) {
+      publish(batch.toArray(new AuditMessage[batch.size()]));
+      batch.clear();
+    }
+  }
+
+  /**
+   * Publishes the given messages to TMS in a single request, retrying on failure.
+   */
+  private void publish(AuditMessage[] auditMessages) {
+    byte[][] payloads = new byte[auditMessages.length][];
+    for (int i = 0; i < auditMessages.length; i++) {
+      payloads[i] = GSON.toJson(auditMessages[i]).getBytes(StandardCharsets.UTF_8);
+    }
 
     try {
-      MessagingServices.publishWithRetry(messagingService, auditTopic, retryStrategy,
-                                         GSON.toJson(auditMessage).getBytes(StandardCharsets.UTF_8));
+      MessagingServices.publishWithRetry(messagingService, auditTopic, retryStrategy, payloads);
+      incrementMetric("audit.published", auditMessages.length);
+      return;
     } catch (TopicNotFoundException e) {
       LOG.error("Missing topic for audit publish: {}", auditTopic);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.error("Interrupted while publishing {} audit messages", auditMessages.length);
     } catch (Exception e) {
-      LOG.error("Got exception publishing audit message {}. Exception:", auditMessage, e);
+      LOG.error("Got exception publishing {} audit messages. Exception:", auditMessages.length, e);
+    }
+    incrementMetric("audit.dropped", auditMessages.length);
+  }
+
+  private void incrementMetric(String metricName, long value) {
+    MetricsContext context = metricsContext;
+    if (context != null) {
+      context.increment(metricName, value);
+    }
+  }
+
+  private void gaugeMetric(String metricName, long value) {
+    MetricsContext context = metricsContext;
+    if (context != null) {
+      context.gauge(metricName, value);
     }
   }
 }
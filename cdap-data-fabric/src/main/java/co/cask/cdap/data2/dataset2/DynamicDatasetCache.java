@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -58,6 +58,12 @@ import javax.annotation.Nullable;
  */
 public abstract class DynamicDatasetCache implements DatasetContext, Supplier<TransactionContext>, AutoCloseable {
 
+  /**
+   * Runtime argument for the number of threads used for persisting the changes of datasets concurrently
+   * when committing a transaction. Datasets are persisted one by one if it is not set or is not positive.
+   */
+  public static final String TX_PERSIST_THREADS = "system.data.tx.persist.threads";
+
   protected final SystemDatasetInstantiator instantiator;
   protected final TransactionSystemClient txClient;
   protected final NamespaceId namespace;
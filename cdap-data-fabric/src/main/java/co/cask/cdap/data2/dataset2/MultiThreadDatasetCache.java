@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -33,10 +33,15 @@ import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TransactionContext;
 import org.apache.tephra.TransactionFailureException;
 import org.apache.tephra.TransactionSystemClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -44,11 +49,30 @@ import javax.annotation.ParametersAreNonnullByDefault;
  * Implementation of {@link DynamicDatasetCache} that performs all operations on a per-thread basis.
  * That is, every thread is guaranteed to receive its own distinct copy of every dataset; every thread
  * has its own transaction context, etc.
+ *
+ * <p>When a thread terminates, its per-thread cache is kept in a bounded pool, unless it was left with an
+ * active transaction, and handed to the next thread that needs one. Datasets are therefore only instantiated
+ * once per pooled cache instead of once for every thread, which matters for programs that use short-lived
+ * threads. A pooled cache is never shared by two live threads.</p>
  */
 public class MultiThreadDatasetCache extends DynamicDatasetCache {
 
+  private static final Logger LOG = LoggerFactory.getLogger(MultiThreadDatasetCache.class);
+
+  /**
+   * Runtime argument for the maximum number of per-thread caches that are kept after their threads terminated,
+   * to be reused by new threads. Defaults to {@link #DEFAULT_POOL_SIZE}; caches are not reused if it is not positive.
+   */
+  public static final String POOL_SIZE = "system.data.dataset.cache.pool.size";
+  public static final int DEFAULT_POOL_SIZE = 16;
+
   // maintains a single threaded factory for each thread.
   private final LoadingCache<Thread, SingleThreadDatasetCache> perThreadMap;
+  // the caches of terminated threads, most recently released first; null if caches are not reused
+  private final BlockingDeque<SingleThreadDatasetCache> releasedCaches;
+  // shared by all per-thread caches, so that the number of persist threads does not grow with the number of threads
+  private final ExecutorService persistExecutor;
+  private volatile boolean closed;
 
   /**
    * See {@link DynamicDatasetCache}.
@@ -69,15 +93,18 @@ public class MultiThreadDatasetCache extends DynamicDatasetCache {
                                  @Nullable final Map<String, Map<String, String>> staticDatasets,
                                  final MultiThreadTransactionAware<?>...multiThreadTxAwares) {
     super(instantiator, txClient, namespace, runtimeArguments);
+    int poolSize = getPoolSize(runtimeArguments);
+    this.releasedCaches = poolSize > 0 ? new LinkedBlockingDeque<SingleThreadDatasetCache>(poolSize) : null;
+    this.persistExecutor = SingleThreadDatasetCache.createPersistExecutor(runtimeArguments);
     this.perThreadMap = CacheBuilder.newBuilder()
       .weakKeys()
-      .removalListener(new RemovalListener<Thread, DynamicDatasetCache>() {
+      .removalListener(new RemovalListener<Thread, SingleThreadDatasetCache>() {
         @Override
         @ParametersAreNonnullByDefault
-        public void onRemoval(RemovalNotification<Thread, DynamicDatasetCache> notification) {
-          DynamicDatasetCache cache = notification.getValue();
+        public void onRemoval(RemovalNotification<Thread, SingleThreadDatasetCache> notification) {
+          SingleThreadDatasetCache cache = notification.getValue();
           if (cache != null) {
-            cache.close();
+            release(cache);
           }
         }
       })
@@ -86,8 +113,12 @@ public class MultiThreadDatasetCache extends DynamicDatasetCache {
           @Override
           @ParametersAreNonnullByDefault
           public SingleThreadDatasetCache load(Thread thread) throws Exception {
-            SingleThreadDatasetCache cache = new SingleThreadDatasetCache(
-              instantiator, txClient, namespace, runtimeArguments, metricsContext, staticDatasets);
+            SingleThreadDatasetCache cache = releasedCaches == null ? null : releasedCaches.pollFirst();
+            if (cache != null) {
+              return cache;
+            }
+            cache = new SingleThreadDatasetCache(instantiator, txClient, namespace, runtimeArguments,
+                                                 metricsContext, staticDatasets, persistExecutor, false);
             for (MultiThreadTransactionAware<?> txAware : multiThreadTxAwares) {
               cache.addExtraTransactionAware(txAware);
             }
@@ -104,8 +135,13 @@ public class MultiThreadDatasetCache extends DynamicDatasetCache {
 
   @Override
   public void close() {
+    closed = true;
     super.close();
     perThreadMap.invalidateAll();
+    closeReleasedCaches();
+    if (persistExecutor != null) {
+      persistExecutor.shutdown();
+    }
   }
 
   @Override
@@ -155,14 +191,74 @@ public class MultiThreadDatasetCache extends DynamicDatasetCache {
   }
 
   private DynamicDatasetCache entryForCurrentThread() {
+    Thread thread = Thread.currentThread();
+    DynamicDatasetCache cache = perThreadMap.getIfPresent(thread);
+    if (cache != null) {
+      return cache;
+    }
+    // the current thread needs a new entry: release the entries of terminated threads first, so it can reuse one
+    releaseTerminatedThreads();
     try {
-      return perThreadMap.get(Thread.currentThread());
+      return perThreadMap.get(thread);
     } catch (ExecutionException e) {
       // this should never happen because all we do in the cache loader is crete a new entry.
       throw Throwables.propagate(e);
     }
   }
 
+  /**
+   * Removes the entries of all threads that have terminated or were garbage collected from the per-thread map,
+   * which releases their caches through the removal listener.
+   */
+  private void releaseTerminatedThreads() {
+    perThreadMap.cleanUp();
+    for (Thread thread : perThreadMap.asMap().keySet()) {
+      if (!thread.isAlive()) {
+        perThreadMap.invalidate(thread);
+      }
+    }
+  }
+
+  /**
+   * Adds the cache of a terminated thread to the pool of released caches, or closes it if it cannot be reused.
+   */
+  private void release(SingleThreadDatasetCache cache) {
+    if (releasedCaches != null && !closed && !cache.isTransactionActive()) {
+      cache.dismissTransactionContext();
+      if (releasedCaches.offerFirst(cache)) {
+        // this cache may have been added after close() drained the pool
+        if (closed) {
+          closeReleasedCaches();
+        }
+        return;
+      }
+    }
+    cache.close();
+  }
+
+  private void closeReleasedCaches() {
+    if (releasedCaches == null) {
+      return;
+    }
+    SingleThreadDatasetCache cache;
+    while ((cache = releasedCaches.pollFirst()) != null) {
+      cache.close();
+    }
+  }
+
+  private static int getPoolSize(@Nullable Map<String, String> runtimeArguments) {
+    String value = runtimeArguments == null ? null : runtimeArguments.get(POOL_SIZE);
+    if (value == null) {
+      return DEFAULT_POOL_SIZE;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      LOG.warn("Ignoring invalid value '{}' for runtime argument {}", value, POOL_SIZE);
+      return DEFAULT_POOL_SIZE;
+    }
+  }
+
   @VisibleForTesting
   public Collection<Thread> getCacheKeys() {
     perThreadMap.cleanUp();
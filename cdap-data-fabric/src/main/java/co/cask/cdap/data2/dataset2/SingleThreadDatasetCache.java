@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -44,6 +44,7 @@ import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TransactionContext;
 import org.apache.tephra.TransactionFailureException;
 import org.apache.tephra.TransactionSystemClient;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +55,10 @@ import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -73,6 +78,8 @@ public class SingleThreadDatasetCache extends DynamicDatasetCache {
   private final Map<DatasetCacheKey, TransactionAware> activeTxAwares = new HashMap<>();
   private final Map<DatasetCacheKey, Dataset> staticDatasets = new HashMap<>();
   private final Deque<TransactionAware> extraTxAwares = new LinkedList<>();
+  private final ExecutorService persistExecutor;
+  private final boolean ownsPersistExecutor;
 
   private DelayedDiscardingTransactionContext txContext = null;
 
@@ -89,6 +96,21 @@ public class SingleThreadDatasetCache extends DynamicDatasetCache {
                                   Map<String, String> runtimeArguments,
                                   @Nullable final MetricsContext metricsContext,
                                   @Nullable Map<String, Map<String, String>> staticDatasets) {
+    this(instantiator, txClient, namespace, runtimeArguments, metricsContext, staticDatasets,
+         createPersistExecutor(runtimeArguments), true);
+  }
+
+  /**
+   * Creates a cache that persists datasets with the given executor. The executor is only shut down by
+   * {@link #close()} if this cache owns it.
+   */
+  SingleThreadDatasetCache(final SystemDatasetInstantiator instantiator,
+                           final TransactionSystemClient txClient,
+                           final NamespaceId namespace,
+                           Map<String, String> runtimeArguments,
+                           @Nullable final MetricsContext metricsContext,
+                           @Nullable Map<String, Map<String, String>> staticDatasets,
+                           @Nullable ExecutorService persistExecutor, boolean ownsPersistExecutor) {
     super(instantiator, txClient, namespace, runtimeArguments);
     this.datasetLoader = new CacheLoader<DatasetCacheKey, Dataset>() {
       @Override
@@ -114,6 +136,8 @@ public class SingleThreadDatasetCache extends DynamicDatasetCache {
       .build(datasetLoader);
 
     this.datasetCache = new LineageRecordingDatasetCache(delegate, instantiator, namespace);
+    this.persistExecutor = persistExecutor;
+    this.ownsPersistExecutor = ownsPersistExecutor;
 
     // add all the static datasets to the cache. This makes sure that a) the cache is preloaded and
     // b) if any static datasets cannot be loaded, the problem show right away (and not later). See
@@ -267,10 +291,17 @@ public class SingleThreadDatasetCache extends DynamicDatasetCache {
                                               txContext.getCurrentTransaction().getTransactionId());
     }
     dismissTransactionContext();
-    txContext = new DelayedDiscardingTransactionContext(txClient, activeTxAwares.values());
+    txContext = new DelayedDiscardingTransactionContext(txClient, activeTxAwares.values(), persistExecutor);
     return txContext;
   }
 
+  /**
+   * Returns whether a transaction was started and not yet finished in the current transaction context.
+   */
+  boolean isTransactionActive() {
+    return txContext != null && txContext.getCurrentTransaction() != null;
+  }
+
   @Override
   public void dismissTransactionContext() {
     if (txContext != null) {
@@ -343,9 +374,42 @@ public class SingleThreadDatasetCache extends DynamicDatasetCache {
       }
     }
     invalidate();
+    if (persistExecutor != null && ownsPersistExecutor) {
+      persistExecutor.shutdown();
+    }
     super.close();
   }
 
+  /**
+   * Creates the {@link ExecutorService} for persisting datasets concurrently based on the
+   * {@link #TX_PERSIST_THREADS} runtime argument.
+   *
+   * @return the executor or {@code null} if datasets should be persisted sequentially
+   */
+  @Nullable
+  static ExecutorService createPersistExecutor(@Nullable Map<String, String> runtimeArguments) {
+    String value = runtimeArguments == null ? null : runtimeArguments.get(TX_PERSIST_THREADS);
+    if (value == null) {
+      return null;
+    }
+    int threads;
+    try {
+      threads = Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      LOG.warn("Ignoring invalid value '{}' for runtime argument {}", value, TX_PERSIST_THREADS);
+      return null;
+    }
+    if (threads <= 0) {
+      return null;
+    }
+    // Threads will be terminated when idle, so that an idle dataset cache doesn't hold up threads
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         Threads.createDaemonThreadFactory("tx-persist-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   /**
    * This is an implementation of TransactionContext that delays the discarding of a transaction-aware
    * dataset until after the transaction is complete. This is needed in cases where a client calls
@@ -360,8 +424,9 @@ public class SingleThreadDatasetCache extends DynamicDatasetCache {
     private final Set<TransactionAware> toDiscard;
     private final Iterable<TransactionAware> allTxAwares;
 
-    DelayedDiscardingTransactionContext(TransactionSystemClient txClient, Iterable<TransactionAware> txAwares) {
-      super(txClient);
+    DelayedDiscardingTransactionContext(TransactionSystemClient txClient, Iterable<TransactionAware> txAwares,
+                                        @Nullable ExecutorService persistExecutor) {
+      super(txClient, persistExecutor);
       this.regularTxAwares = Sets.newIdentityHashSet();
       this.toDiscard = Sets.newIdentityHashSet();
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -33,20 +33,17 @@ import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -209,13 +206,14 @@ public class DefaultCube implements Cube, MeteredDataset {
 
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
-    FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    // the facts may be partially aggregated by the table already, which the aggregator then merges
+    FactScanner scanner = table.scan(scan, query.getGroupByDimensions(), query.getMeasurements());
+    TimeSeriesAggregator aggregator = getTimeSeries(query, scanner);
 
     incrementMetric("cube.query.request.success.count", 1);
-    incrementMetric("cube.query.result.size", resultMap.size());
+    incrementMetric("cube.query.result.size", aggregator.size());
 
-    Collection<TimeSeries> timeSeries = convertToQueryResult(query, resultMap);
+    Collection<TimeSeries> timeSeries = convertToQueryResult(query, aggregator);
     incrementMetric("cube.query.result.timeseries.count", timeSeries.size());
 
     return timeSeries;
@@ -329,105 +327,52 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
+  private TimeSeriesAggregator getTimeSeries(CubeQuery query, FactScanner scanner) {
     // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+    TimeSeriesAggregator result = new TimeSeriesAggregator(query.getGroupByDimensions(), query.getMeasurements(),
+                                                           query.getResolution());
 
+    // metrics are counted locally and emitted once per query
+    int scanned = 0;
+    int skipped = 0;
     int count = 0;
     while (scanner.hasNext()) {
       FactScanResult next = scanner.next();
-      incrementMetric("cube.query.scan.records.count", 1);
-
-      boolean skip = false;
-      // using tree map, as we are using it as a key for a map
-      Map<String, String> seriesDimensions = Maps.newTreeMap();
-      for (String dimensionName : query.getGroupByDimensions()) {
-        // todo: use Map<String, String> instead of List<DimensionValue> into a String, String, everywhere
-        for (DimensionValue dimensionValue : next.getDimensionValues()) {
-          if (dimensionName.equals(dimensionValue.getName())) {
-            if (dimensionValue.getValue() == null) {
-              // Currently, we do NOT return null as grouped by value.
-              // Depending on whether dimension is required or not the records with null value in it may or may not be
-              // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
-              // potentially null may or may not be included in results, depending on the aggregation selected
-              // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
-              // so don't return nulls in any of those cases.
-              skip = true;
-              continue;
-            }
-            seriesDimensions.put(dimensionName, dimensionValue.getValue());
-            break;
-          }
-        }
-      }
-
-      if (skip) {
-        incrementMetric("cube.query.scan.skipped.count", 1);
+      scanned++;
+      if (!result.add(next)) {
+        skipped++;
         continue;
       }
-
-      for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
-        if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
-        }
-
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
-        } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
-        }
-      }
       if (++count >= MAX_RECORDS_TO_SCAN) {
         break;
       }
     }
+    incrementMetric("cube.query.scan.records.count", scanned);
+    if (skipped > 0) {
+      incrementMetric("cube.query.scan.skipped.count", skipped);
+    }
     return result;
   }
 
-  private Collection<TimeSeries> convertToQueryResult(CubeQuery query,
-                                                      Table<Map<String, String>, String,
-                                                        Map<Long, Long>> resultTable) {
+  private Collection<TimeSeries> convertToQueryResult(CubeQuery query, TimeSeriesAggregator aggregator) {
 
     List<TimeSeries> result = Lists.newArrayList();
-    // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
-      // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
-        // generating time series for a grouping and a measure
-        int count = 0;
-        List<TimeValue> timeValues = Lists.newArrayList();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
-        }
-        Collections.sort(timeValues);
-        PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-          new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
-        List<TimeValue> resultTimeValues = Lists.newArrayList();
-        while (timeValueItor.hasNext()) {
-          TimeValue timeValue = timeValueItor.next();
-          resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
-          if (++count >= query.getLimit()) {
-            break;
-          }
+    // iterating each groupValue dimensions and measure
+    for (TimeSeries timeSeries : aggregator.getTimeSeries()) {
+      // the time values are already sorted
+      int count = 0;
+      PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
+        new TimeSeriesInterpolator(timeSeries.getTimeValues(), query.getInterpolator(),
+                                   query.getResolution()).iterator());
+      List<TimeValue> resultTimeValues = Lists.newArrayList();
+      while (timeValueItor.hasNext()) {
+        TimeValue timeValue = timeValueItor.next();
+        resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
+        if (++count >= query.getLimit()) {
+          break;
         }
-        result.add(new TimeSeries(measureEntry.getKey(), row.getKey(), resultTimeValues));
       }
+      result.add(new TimeSeries(timeSeries.getMeasureName(), timeSeries.getDimensionValues(), resultTimeValues));
     }
     return result;
   }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,8 +16,11 @@
 
 package co.cask.cdap.data2.dataset2.lib.cube;
 
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Increment;
 import co.cask.cdap.api.dataset.table.Put;
+import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
@@ -25,9 +28,12 @@ import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
+import java.util.TreeMap;
 import javax.annotation.Nullable;
 
 /**
@@ -46,6 +52,22 @@ class MetricsTableOnTable implements MetricsTable {
     return table.get(row, column);
   }
 
+  @Override
+  public SortedMap<byte[], byte[]> get(List<byte[]> rows, byte[] column) {
+    List<Get> gets = new ArrayList<>(rows.size());
+    for (byte[] row : rows) {
+      gets.add(new Get(row, column));
+    }
+    SortedMap<byte[], byte[]> result = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Row row : table.get(gets)) {
+      byte[] value = row.get(column);
+      if (value != null) {
+        result.put(row.getRow(), value);
+      }
+    }
+    return result;
+  }
+
   @Override
   public void put(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
     for (Map.Entry<byte[], ? extends SortedMap<byte[], Long>> rowUpdate : updates.entrySet()) {
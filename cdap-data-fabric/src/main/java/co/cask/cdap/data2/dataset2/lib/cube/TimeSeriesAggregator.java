@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import co.cask.cdap.data2.dataset2.lib.timeseries.TimeValueAggregator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the time values of {@link FactScanResult}s into one time series per measure and combination of
+ * group-by dimension values, applying the {@link AggregationFunction} of each measure to values with the same
+ * timestamp.
+ *
+ * <p>Every series is looked up once per scan result, by an interned series id, and its values are aggregated in
+ * place by a {@link TimeValueAggregator}.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ */
+public final class TimeSeriesAggregator {
+
+  private final List<String> groupByDimensions;
+  private final Map<String, AggregationFunction> measurements;
+  private final int resolution;
+  private final Map<SeriesKey, Integer> seriesIds;
+  private final List<Series> series;
+
+  /**
+   * Creates an aggregator.
+   *
+   * @param groupByDimensions names of the dimensions to group by
+   * @param measurements the aggregation function of each measure name
+   * @param resolution the resolution of the timestamps in seconds
+   */
+  public TimeSeriesAggregator(List<String> groupByDimensions,
+                              Map<String, AggregationFunction> measurements, int resolution) {
+    this.groupByDimensions = groupByDimensions;
+    this.measurements = measurements;
+    this.resolution = resolution;
+    this.seriesIds = Maps.newHashMap();
+    this.series = Lists.newArrayList();
+  }
+
+  /**
+   * Adds the time values of the given scan result to the series of its measure and group-by dimension values.
+   *
+   * @return {@code false} if the scan result was skipped, because it has a {@code null} value for a group-by
+   *         dimension
+   */
+  public boolean add(FactScanResult result) {
+    String[] groupByValues = new String[groupByDimensions.size()];
+    for (int i = 0; i < groupByValues.length; i++) {
+      String dimensionName = groupByDimensions.get(i);
+      // todo: use Map<String, String> instead of List<DimensionValue> into a String, String, everywhere
+      for (DimensionValue dimensionValue : result.getDimensionValues()) {
+        if (dimensionName.equals(dimensionValue.getName())) {
+          if (dimensionValue.getValue() == null) {
+            // Currently, we do NOT return null as grouped by value.
+            // Depending on whether dimension is required or not the records with null value in it may or may not be
+            // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
+            // potentially null may or may not be included in results, depending on the aggregation selected
+            // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
+            // so don't return nulls in any of those cases.
+            return false;
+          }
+          groupByValues[i] = dimensionValue.getValue();
+          break;
+        }
+      }
+    }
+
+    Iterator<TimeValue> timeValues = result.iterator();
+    if (!timeValues.hasNext()) {
+      return true;
+    }
+    Series target = series.get(getSeriesId(result.getMeasureName(), groupByValues));
+    while (timeValues.hasNext()) {
+      TimeValue timeValue = timeValues.next();
+      target.values.add(timeValue.getTimestamp(), timeValue.getValue());
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of series.
+   */
+  public int size() {
+    return series.size();
+  }
+
+  /**
+   * Returns the aggregated series, with time values in increasing timestamp order.
+   */
+  public List<TimeSeries> getTimeSeries() {
+    List<TimeSeries> result = Lists.newArrayListWithCapacity(series.size());
+    for (Series s : series) {
+      result.add(new TimeSeries(s.measureName, s.getDimensions(groupByDimensions), s.values.getTimeValues()));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the id of the series of the given measure and group-by dimension values, creating it if needed.
+   */
+  private int getSeriesId(String measureName, String[] groupByValues) {
+    SeriesKey key = new SeriesKey(measureName, groupByValues);
+    Integer id = seriesIds.get(key);
+    if (id == null) {
+      AggregationFunction function = measurements.get(measureName);
+      if (function == null) {
+        // should never happen: developer error
+        throw new RuntimeException("Unknown measure: " + measureName);
+      }
+      id = series.size();
+      series.add(new Series(measureName, groupByValues, function, resolution));
+      seriesIds.put(key, id);
+    }
+    return id;
+  }
+
+  /**
+   * Key of a series, with a hash code computed once.
+   */
+  private static final class SeriesKey {
+    private final String measureName;
+    private final String[] groupByValues;
+    private final int hashCode;
+
+    SeriesKey(String measureName, String[] groupByValues) {
+      this.measureName = measureName;
+      this.groupByValues = groupByValues;
+      this.hashCode = 31 * measureName.hashCode() + Arrays.hashCode(groupByValues);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey) o;
+      return measureName.equals(other.measureName) && Arrays.equals(groupByValues, other.groupByValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * The aggregated values of one series.
+   */
+  private static final class Series {
+    private final String measureName;
+    // null for dimensions that are not present in the scan results
+    private final String[] groupByValues;
+    private final TimeValueAggregator values;
+
+    Series(String measureName, String[] groupByValues, AggregationFunction function, int resolution) {
+      this.measureName = measureName;
+      this.groupByValues = groupByValues;
+      this.values = new TimeValueAggregator(function, resolution);
+    }
+
+    Map<String, String> getDimensions(List<String> dimensionNames) {
+      // using tree map, as it is used as a key of the result series
+      Map<String, String> dimensions = Maps.newTreeMap();
+      for (int i = 0; i < groupByValues.length; i++) {
+        if (groupByValues[i] != null) {
+          dimensions.put(dimensionNames.get(i), groupByValues[i]);
+        }
+      }
+      return dimensions;
+    }
+  }
+}
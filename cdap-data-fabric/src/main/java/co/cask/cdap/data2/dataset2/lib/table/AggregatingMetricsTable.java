@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactAggregation;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactAggregator;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MetricsTable} that can aggregate the rows of a scan where the data is stored, so that only the partial
+ * results have to be returned.
+ */
+public interface AggregatingMetricsTable extends MetricsTable {
+
+  /**
+   * Get a scanner for the rows of a table, partially aggregated by a {@link FactAggregator}.
+   * Implementations may return some rows without aggregating them. Callers must check
+   * {@link FactAggregator#isPartialRow(byte[])} for every row returned.
+   * @param start the row key of the first row to scan. If null, the scan begins at the first row of the table.
+   * @param stop the row key of the last row to scan. If null, the scan goes to the last row of the table.
+   * @param filter if non-null, a fuzzy row filter used to efficiently skip over entire rows.
+   * @param aggregation how to aggregate the rows
+   */
+  Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter,
+               FactAggregation aggregation);
+}
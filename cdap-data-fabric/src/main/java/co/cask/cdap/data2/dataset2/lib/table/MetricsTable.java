@@ -19,6 +19,7 @@ package co.cask.cdap.data2.dataset2.lib.table;
 import co.cask.cdap.api.dataset.Dataset;
 import co.cask.cdap.api.dataset.table.Scanner;
 
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
@@ -35,6 +36,12 @@ public interface MetricsTable extends Dataset {
   @Nullable
   byte[] get(byte[] row, byte[] column);
 
+  /**
+   * Read single column of multiple rows in one batch.
+   * @return a map from row key to the value of the column. Rows that don't have the column are not included.
+   */
+  SortedMap<byte[], byte[]> get(List<byte[]> rows, byte[] column);
+
   /**
    * Write multiple rows, each with multiple individual columns to write.
    */
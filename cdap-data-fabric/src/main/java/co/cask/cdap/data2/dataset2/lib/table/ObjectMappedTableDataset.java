@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -36,6 +36,9 @@ import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.ASMObjectRowMapperFactory;
+import co.cask.cdap.internal.io.ObjectRowMapper;
 import co.cask.cdap.internal.io.ReflectionPutWriter;
 import co.cask.cdap.internal.io.ReflectionRowReader;
 import co.cask.cdap.internal.io.TypeRepresentation;
@@ -52,18 +55,28 @@ import javax.annotation.Nullable;
 /**
  * Default implementation for {@link ObjectMappedTable}.
  *
+ * <p>Objects are mapped to and from rows with an {@link ObjectRowMapper} generated for the object type and schema.
+ * If no mapper can be generated for them, objects are mapped through reflection instead.</p>
+ *
  * @param <T> the type of objects in the table
  */
 @Beta
 public class ObjectMappedTableDataset<T> extends AbstractDataset implements ObjectMappedTable<T> {
   private static final Logger LOG = LoggerFactory.getLogger(ObjectMappedTableDataset.class);
+  // shared by all instances, so that the field accessors of a type are generated only once
+  private static final ASMObjectRowMapperFactory ROW_MAPPER_FACTORY =
+    new ASMObjectRowMapperFactory(new ASMFieldAccessorFactory());
 
   private final Table table;
   private final Schema objectSchema;
   private final TypeRepresentation typeRepresentation;
   private final ReflectionPutWriter<T> putWriter;
+  // the mapper for the class of the objects last written, or null if none can be generated for that class
+  private Class<?> writeMapperClass;
+  private ObjectRowMapper<Object> writeMapper;
   // we get this lazily, since we may not have the actual Type when using this as a RecordScannable,
   // but we do expect to have it when using it in a program context
+  private ObjectRowMapper<T> readMapper;
   private ReflectionRowReader<T> rowReader;
 
   // schema is passed in as an argument because it is a required dataset property for validation purposes, so
@@ -79,13 +92,40 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
     this.putWriter = new ReflectionPutWriter<>(objectSchema);
   }
 
+  /**
+   * Returns the {@link ObjectRowMapper} for the given type, or {@code null} if none can be generated for it.
+   */
+  @Nullable
+  private <V> ObjectRowMapper<V> createRowMapper(TypeToken<V> type) {
+    try {
+      return ROW_MAPPER_FACTORY.create(type, objectSchema);
+    } catch (RuntimeException e) {
+      LOG.debug("Using reflection to map objects of type {} with schema {} for dataset {}.",
+                type, objectSchema, getName(), e);
+      return null;
+    }
+  }
+
+  @Nullable
   @SuppressWarnings("unchecked")
-  private ReflectionRowReader<T> getReflectionRowReader() {
-    if (rowReader == null) {
+  private ObjectRowMapper<Object> getWriteMapper(Class<?> objectClass) {
+    if (objectClass != writeMapperClass) {
+      writeMapper = createRowMapper(TypeToken.of((Class<Object>) objectClass));
+      writeMapperClass = objectClass;
+    }
+    return writeMapper;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void initializeRowReader() {
+    if (readMapper == null && rowReader == null) {
       try {
         // this can throw a runtime exception from a ClassNotFoundException
-        Type type = typeRepresentation.toType();
-        rowReader = new ReflectionRowReader<>(objectSchema, (TypeToken<T>) TypeToken.of(type));
+        TypeToken<T> type = (TypeToken<T>) TypeToken.of(typeRepresentation.toType());
+        readMapper = createRowMapper(type);
+        if (readMapper == null) {
+          rowReader = new ReflectionRowReader<>(objectSchema, type);
+        }
       } catch (RuntimeException e) {
         String missingClass = isClassNotFoundException(e);
         if (missingClass != null) {
@@ -96,7 +136,6 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
         throw e;
       }
     }
-    return rowReader;
   }
 
   private String isClassNotFoundException(Throwable e) {
@@ -120,7 +159,12 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
   public void write(byte[] key, T object) {
     Put put = new Put(key);
     try {
-      putWriter.write(object, put);
+      ObjectRowMapper<Object> mapper = object == null ? null : getWriteMapper(object.getClass());
+      if (mapper == null) {
+        putWriter.write(object, put);
+      } else {
+        mapper.write(object, put);
+      }
       table.put(put);
     } catch (IOException e) {
       // should never happen
@@ -267,7 +311,8 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
       if (row.isEmpty()) {
         return null;
       }
-      return getReflectionRowReader().read(row, objectSchema);
+      initializeRowReader();
+      return readMapper == null ? rowReader.read(row, objectSchema) : readMapper.read(row);
     } catch (Exception e) {
       // should not happen. Can happen if somebody changes the type in an incompatible way?
       throw new DataSetException("Failed to decode object: " + e.getMessage(), e);
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -32,6 +32,7 @@ import co.cask.cdap.data2.util.hbase.PutBuilder;
 import co.cask.cdap.data2.util.hbase.ScanBuilder;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
@@ -43,6 +44,7 @@ import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.util.Pair;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -89,6 +91,28 @@ public class HBaseMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public SortedMap<byte[], byte[]> get(List<byte[]> rows, byte[] column) {
+    try {
+      List<Get> gets = new ArrayList<>(rows.size());
+      for (byte[] row : rows) {
+        gets.add(tableUtil.buildGet(row)
+                   .addColumn(columnFamily, column)
+                   .setMaxVersions(1)
+                   .build());
+      }
+      SortedMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Result getResult : hTable.get(gets)) {
+        if (!getResult.isEmpty()) {
+          result.put(getResult.getRow(), getResult.getValue(columnFamily, column));
+        }
+      }
+      return result;
+    } catch (IOException e) {
+      throw new DataSetException("Get failed on table " + tableId, e);
+    }
+  }
+
   @Override
   public void put(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
     List<Put> puts = Lists.newArrayList();
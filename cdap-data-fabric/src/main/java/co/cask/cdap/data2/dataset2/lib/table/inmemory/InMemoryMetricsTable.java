@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,14 +20,17 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.data2.dataset2.lib.table.AggregatingMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
-import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.cdap.data2.dataset2.lib.table.Updates;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactAggregation;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactAggregator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
@@ -36,7 +39,7 @@ import javax.annotation.Nullable;
 /**
  * Implements the metrics table API in-memory.
  */
-public class InMemoryMetricsTable implements MetricsTable {
+public class InMemoryMetricsTable implements AggregatingMetricsTable {
 
   private final String tableName;
 
@@ -67,6 +70,18 @@ public class InMemoryMetricsTable implements MetricsTable {
     return null;
   }
 
+  @Override
+  public SortedMap<byte[], byte[]> get(List<byte[]> rows, byte[] column) {
+    SortedMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (byte[] row : rows) {
+      byte[] value = get(row, column);
+      if (value != null) {
+        result.put(row, value);
+      }
+    }
+    return result;
+  }
+
   @Override
   public void put(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
     SortedMap<byte[], SortedMap<byte[], Update>> convertedUpdates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
@@ -126,6 +141,12 @@ public class InMemoryMetricsTable implements MetricsTable {
     return new InMemoryScanner(rows.entrySet().iterator(), filter, null);
   }
 
+  @Override
+  public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter,
+                      FactAggregation aggregation) {
+    return FactAggregator.aggregate(scan(start, stop, filter), aggregation);
+  }
+
   private NavigableMap<byte[], NavigableMap<byte[], byte[]>> getLatest(
     NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> versionedRows) {
     NavigableMap<byte[], NavigableMap<byte[], byte[]>> rows = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
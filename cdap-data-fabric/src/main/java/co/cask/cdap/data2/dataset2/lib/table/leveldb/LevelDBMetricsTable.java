@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -21,14 +21,17 @@ import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.data2.dataset2.lib.table.AggregatingMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
-import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactAggregation;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactAggregator;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
@@ -37,7 +40,7 @@ import javax.annotation.Nullable;
 /**
  * A metrics table client based on leveldb.
  */
-public class LevelDBMetricsTable implements MetricsTable {
+public class LevelDBMetricsTable implements AggregatingMetricsTable {
 
   private static final Function<Long, byte[]> LONG_TO_BYTES = new Function<Long, byte[]>() {
     @Override
@@ -76,6 +79,18 @@ public class LevelDBMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public SortedMap<byte[], byte[]> get(List<byte[]> rows, byte[] column) {
+    SortedMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (byte[] row : rows) {
+      byte[] value = get(row, column);
+      if (value != null) {
+        result.put(row, value);
+      }
+    }
+    return result;
+  }
+
   @Override
   public void put(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
     SortedMap<byte[], ? extends SortedMap<byte[], byte[]>> convertedUpdates =
@@ -153,6 +168,12 @@ public class LevelDBMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter,
+                      FactAggregation aggregation) {
+    return FactAggregator.aggregate(scan(start, stop, filter), aggregation);
+  }
+
   @Override
   public void close() throws IOException {
     // Do nothing
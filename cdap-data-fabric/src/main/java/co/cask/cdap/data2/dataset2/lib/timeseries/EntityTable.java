@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,9 +16,12 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -27,6 +30,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import javax.annotation.Nullable;
 
@@ -44,6 +53,11 @@ import javax.annotation.Nullable;
  * <h5>Entity mapping rows</h5>
  * Each entity would have two rows. One is keyed by {@code [type].[entityName]} and have one "id" column which
  * stores the unique ID. The other is a reverse map from {@code [type].id} to entity name in "name" column.
+ *
+ * <h5>Caching</h5>
+ * Both mappings are cached with a bounded size. Names of a batch of entities can be resolved with
+ * {@link #getIds(String, Collection)}, which reads all the cache misses with one batch get. The cache can also be
+ * pre-populated with the most recently assigned IDs by calling {@link #warmUp(Collection, int)}.
  */
 public final class EntityTable implements Closeable {
 
@@ -55,6 +69,8 @@ public final class EntityTable implements Closeable {
   private static final byte[] DOT = { '.' };
   // max number of distinct values of entity of a single type
   private static final long MAX_ID_COUNT = 0x1000000L;
+  // default max number of entries in each of the name to id and id to name caches
+  public static final int DEFAULT_CACHE_SIZE = 100000;
 
   private final MetricsTable table;
   private final LoadingCache<EntityName, Long> entityCache;
@@ -64,12 +80,21 @@ public final class EntityTable implements Closeable {
 
 
   /**
-   * Creates an EntityTable with max id = 16777215.
+   * Creates an EntityTable with max id = 16777215 and the default cache size.
    *
-   * See {@link #EntityTable(MetricsTable, long)}.
+   * See {@link #EntityTable(MetricsTable, long, int)}.
    */
   public EntityTable(MetricsTable table) {
-    this(table, MAX_ID_COUNT);
+    this(table, DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates an EntityTable with max id = 16777215.
+   *
+   * See {@link #EntityTable(MetricsTable, long, int)}.
+   */
+  public EntityTable(MetricsTable table, int cacheSize) {
+    this(table, MAX_ID_COUNT, cacheSize);
   }
 
   /**
@@ -77,14 +102,16 @@ public final class EntityTable implements Closeable {
    *
    * @param table The storage table
    * @param maxId Maximum ID (exclusive) that can be generated.
+   * @param cacheSize Maximum number of entries in each of the name to id and id to name caches.
    */
-  EntityTable(MetricsTable table, long maxId) {
+  EntityTable(MetricsTable table, long maxId, int cacheSize) {
     Preconditions.checkArgument(table != null, "Table cannot be null.");
     Preconditions.checkArgument(maxId > 0, "maxId must be > 0.");
+    Preconditions.checkArgument(cacheSize > 0, "cacheSize must be > 0.");
 
     this.table = table;
-    this.entityCache = CacheBuilder.newBuilder().build(createEntityCacheLoader());
-    this.idCache = CacheBuilder.newBuilder().build(createIdCacheLoader());
+    this.entityCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(createEntityCacheLoader());
+    this.idCache = CacheBuilder.newBuilder().maximumSize(cacheSize).build(createIdCacheLoader());
     this.maxId = maxId;
     this.size = computeSize(maxId);
   }
@@ -101,6 +128,96 @@ public final class EntityTable implements Closeable {
     return entityCache.getUnchecked(new EntityName(type, name)) % maxId;
   }
 
+  /**
+   * Returns unique ids for the given names of the same type. Names that are not in the cache are looked up
+   * with one batch get, and new IDs are generated only for names that don't have an ID yet.
+   *
+   * @param type The type of the entities.
+   * @param names The names to lookup. Can contain {@code null}, which is mapped to the ID {@code 0}, which stands
+   *              for any entity of the type.
+   * @return A map from name to unique ID, which is the same as calling {@link #getId(String, String)} for each name.
+   */
+  public Map<String, Long> getIds(String type, Collection<String> names) {
+    Map<String, Long> ids = new HashMap<>();
+    List<EntityName> misses = new ArrayList<>();
+    List<byte[]> missRowKeys = new ArrayList<>();
+
+    for (String name : names) {
+      if (name == null) {
+        ids.put(null, 0L);
+        continue;
+      }
+      EntityName entityName = new EntityName(type, name);
+      Long id = entityCache.getIfPresent(entityName);
+      if (id != null) {
+        ids.put(name, id % maxId);
+      } else if (!ids.containsKey(name)) {
+        // Use the ids map to dedup the misses
+        ids.put(name, null);
+        misses.add(entityName);
+        missRowKeys.add(getRowKey(entityName));
+      }
+    }
+
+    if (misses.isEmpty()) {
+      return ids;
+    }
+
+    Map<byte[], byte[]> found = table.get(missRowKeys, ID);
+    for (int i = 0; i < misses.size(); i++) {
+      final EntityName entityName = misses.get(i);
+      final byte[] rowKey = missRowKeys.get(i);
+      byte[] result = found.get(rowKey);
+      long id;
+      if (result != null) {
+        id = Bytes.toLong(result);
+        entityCache.put(entityName, id);
+      } else {
+        try {
+          id = entityCache.get(entityName, new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+              return generateId(entityName, rowKey);
+            }
+          });
+        } catch (ExecutionException e) {
+          throw Throwables.propagate(e.getCause());
+        }
+      }
+      ids.put(entityName.getName(), id % maxId);
+    }
+    return ids;
+  }
+
+  /**
+   * Populates the caches with the most recently assigned IDs of each of the given types, by scanning
+   * the reverse mapping rows. This avoids reading the table one entity at a time for the entities that are
+   * likely to be used again, for example after a restart.
+   *
+   * @param types The types of entities to warm up the cache for.
+   * @param count Maximum number of IDs per type to load.
+   */
+  public void warmUp(Collection<String> types, int count) {
+    if (count <= 0) {
+      return;
+    }
+    for (String type : types) {
+      byte[] result = table.get(Bytes.toBytes(type + ".maxId"), MAX_ID);
+      if (result == null) {
+        continue;
+      }
+      long lastId = Math.min(Bytes.toLong(result), maxId - 1);
+      long firstId = Math.max(1L, lastId - count + 1);
+      int loaded = warmUp(type, firstId, lastId);
+      // IDs are recycled after reaching the maxId, hence the most recent ones can be at the end of the ID range
+      long remaining = count - (lastId - firstId + 1);
+      if (remaining > 0 && lastId < maxId - 1) {
+        loaded += warmUp(type, Math.max(lastId + 1, maxId - remaining), maxId - 1);
+      }
+      LOG.debug("Loaded {} entities of type {} into the cache", loaded, type);
+    }
+  }
+
   /**
    * Returns the entity name for the given id and type.
    * @param id The id to lookup
@@ -127,11 +244,45 @@ public final class EntityTable implements Closeable {
     return size;
   }
 
+  /**
+   * Loads the reverse mapping of IDs in the range of {@code [firstId, lastId]} of the given type into the caches.
+   *
+   * @return the number of entities loaded
+   */
+  private int warmUp(String type, long firstId, long lastId) {
+    if (firstId > lastId) {
+      return 0;
+    }
+    byte[] typePrefix = Bytes.concat(Bytes.toBytes(type), DOT);
+    int loaded = 0;
+    try (Scanner scanner = table.scan(Bytes.concat(typePrefix, Bytes.toBytes(firstId)),
+                                      Bytes.concat(typePrefix, Bytes.toBytes(lastId + 1)), null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        byte[] rowKey = row.getRow();
+        byte[] name = row.get(NAME);
+        if (name == null || rowKey.length != typePrefix.length + Bytes.SIZEOF_LONG) {
+          continue;
+        }
+        long id = Bytes.toLong(rowKey, typePrefix.length);
+        EntityName entityName = new EntityName(type, Bytes.toString(name));
+        entityCache.put(entityName, id);
+        idCache.put(new EntityId(id, type), entityName);
+        loaded++;
+      }
+    }
+    return loaded;
+  }
+
+  private byte[] getRowKey(EntityName key) {
+    return Bytes.toBytes(key.getType() + '.' + key.getName());
+  }
+
   private CacheLoader<EntityName, Long> createEntityCacheLoader() {
     return new CacheLoader<EntityName, Long>() {
       @Override
       public Long load(EntityName key) throws Exception {
-        byte[] rowKey = Bytes.toBytes(key.getType() + '.' + key.getName());
+        byte[] rowKey = getRowKey(key);
 
         byte[] result = table.get(rowKey, ID);
 
@@ -139,53 +290,62 @@ public final class EntityTable implements Closeable {
         if (result != null) {
           return Bytes.toLong(result);
         }
+        return generateId(key, rowKey);
+      }
+    };
+  }
 
-        // Not found, generate a new ID
-        byte[] maxIdRowKey = Bytes.toBytes(key.getType() + ".maxId");
-        long newId = table.incrementAndGet(maxIdRowKey, MAX_ID, 1L);
-
-        /* we recycle the id's after reaching max-id to let the id's start from 1 again.
-        this most likely won't happen for any entity other than run-id,
-        Even for run-id - its okay to recycle, as we would have truncated the old data when we reach 16777215 runs,
-        as our max TTL is 30 days currently. The reasoning is the likelihood for running 16777215 programs
-        under 30 days is low. For mapping the id -> name , we use (id % maxId) */
-        if (newId % maxId == 0) {
-          newId = 1L;
-          table.swap(maxIdRowKey, MAX_ID, Bytes.toBytes(maxId), Bytes.toBytes(newId));
-        }
-
-        if (key.getName() == null || key.getName().isEmpty()) {
-          LOG.warn("Adding mapping for " + (key.getName() == null ? "null" : "empty") + " name, " +
-                     " with type " + key.getType() + ", new id is " + newId);
-        }
-
-        // Save the mapping
-        if (table.swap(rowKey, ID, null, Bytes.toBytes(newId))) {
-          // Save the reverse mapping from r.type.id => name as well
-          rowKey = Bytes.concat(Bytes.toBytes(key.getType()), DOT, Bytes.toBytes(newId));
-
-          // It is wrong to have forward mapping set when reverse mapping failed to set, always try to overwrite it.
-          byte[] oldName = null;
-          while (!table.swap(rowKey, NAME, oldName, Bytes.toBytes(key.getName()))) {
-            result = table.get(rowKey, NAME);
-            if (result == null) {
-              throw new IllegalStateException("Fail to set reverse mapping from id to name.");
-            }
-            oldName = result;
-          }
+  /**
+   * Generates a new ID for the given entity that doesn't have an ID in the table yet.
+   *
+   * @param key the entity name
+   * @param rowKey the row key of the forward mapping of the entity
+   * @return the ID of the entity, which can be assigned by another client concurrently
+   */
+  private long generateId(EntityName key, byte[] rowKey) {
+    byte[] maxIdRowKey = Bytes.toBytes(key.getType() + ".maxId");
+    long newId = table.incrementAndGet(maxIdRowKey, MAX_ID, 1L);
+
+    /* we recycle the id's after reaching max-id to let the id's start from 1 again.
+    this most likely won't happen for any entity other than run-id,
+    Even for run-id - its okay to recycle, as we would have truncated the old data when we reach 16777215 runs,
+    as our max TTL is 30 days currently. The reasoning is the likelihood for running 16777215 programs
+    under 30 days is low. For mapping the id -> name , we use (id % maxId) */
+    if (newId % maxId == 0) {
+      newId = 1L;
+      table.swap(maxIdRowKey, MAX_ID, Bytes.toBytes(maxId), Bytes.toBytes(newId));
+    }
 
-          return newId;
-        }
+    if (key.getName() == null || key.getName().isEmpty()) {
+      LOG.warn("Adding mapping for " + (key.getName() == null ? "null" : "empty") + " name, " +
+                 " with type " + key.getType() + ", new id is " + newId);
+    }
 
-        // Get the value if CAS failed.
-        result = table.get(rowKey, ID);
+    // Save the mapping
+    if (table.swap(rowKey, ID, null, Bytes.toBytes(newId))) {
+      // Save the reverse mapping from r.type.id => name as well
+      byte[] reverseRowKey = Bytes.concat(Bytes.toBytes(key.getType()), DOT, Bytes.toBytes(newId));
 
+      // It is wrong to have forward mapping set when reverse mapping failed to set, always try to overwrite it.
+      byte[] oldName = null;
+      while (!table.swap(reverseRowKey, NAME, oldName, Bytes.toBytes(key.getName()))) {
+        byte[] result = table.get(reverseRowKey, NAME);
         if (result == null) {
-          throw new IllegalStateException("ID not found for " + key);
+          throw new IllegalStateException("Fail to set reverse mapping from id to name.");
         }
-        return Bytes.toLong(result);
+        oldName = result;
       }
-    };
+
+      return newId;
+    }
+
+    // Get the value if CAS failed.
+    byte[] result = table.get(rowKey, ID);
+
+    if (result == null) {
+      throw new IllegalStateException("ID not found for " + key);
+    }
+    return Bytes.toLong(result);
   }
 
   private CacheLoader<EntityId, EntityName> createIdCacheLoader() {
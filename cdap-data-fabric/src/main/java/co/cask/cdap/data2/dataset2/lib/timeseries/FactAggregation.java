@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.timeseries;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Defines how the facts returned by a scan of a {@link FactTable} are aggregated by a {@link FactAggregator}, in
+ * terms of the encoded row keys, so that it can be done by the table that stores the data, without access to the
+ * {@link EntityTable}.
+ */
+public final class FactAggregation {
+
+  private final int idSize;
+  private final int resolution;
+  private final long startTs;
+  private final long endTs;
+  // position of each group by dimension in the fact row keys, or -1 if the rows don't have the dimension
+  private final int[] groupByPositions;
+  // encoded measure name to aggregation function
+  private final Map<Long, AggregationFunction> measures;
+
+  public FactAggregation(int idSize, int resolution, long startTs, long endTs, int[] groupByPositions,
+                         Map<Long, AggregationFunction> measures) {
+    this.idSize = idSize;
+    this.resolution = resolution;
+    this.startTs = startTs;
+    this.endTs = endTs;
+    this.groupByPositions = Arrays.copyOf(groupByPositions, groupByPositions.length);
+    this.measures = Collections.unmodifiableMap(new HashMap<>(measures));
+  }
+
+  /**
+   * Returns the number of bytes of the encoded entities in the row keys.
+   */
+  public int getIdSize() {
+    return idSize;
+  }
+
+  /**
+   * Returns the resolution of the fact table in seconds.
+   */
+  public int getResolution() {
+    return resolution;
+  }
+
+  public long getStartTs() {
+    return startTs;
+  }
+
+  public long getEndTs() {
+    return endTs;
+  }
+
+  /**
+   * Returns the position of each group by dimension in the fact row keys, or -1 for dimensions that the rows don't
+   * have.
+   */
+  public int[] getGroupByPositions() {
+    return Arrays.copyOf(groupByPositions, groupByPositions.length);
+  }
+
+  /**
+   * Returns the aggregation function of each encoded measure name. Facts of other measures are not aggregated.
+   */
+  public Map<Long, AggregationFunction> getMeasures() {
+    return measures;
+  }
+
+  int getGroupByPosition(int index) {
+    return groupByPositions[index];
+  }
+
+  int getGroupByCount() {
+    return groupByPositions.length;
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.timeseries;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.dataset.table.Result;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.data2.dataset2.lib.table.AggregatingMetricsTable;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Partially aggregates the rows of a {@link FactTable} scan, by the group by dimensions and measures of a
+ * {@link FactAggregation}, in the {@link AggregatingMetricsTable} that stores them.
+ *
+ * <p>The result is one partial row per measure and combination of group by dimension values. Its row key is
+ * {@link #PARTIAL_ROW_PREFIX}, followed by the encoded measure name and the encoded value of each group by dimension,
+ * which is all zeroes for dimensions that the scanned rows don't have. Its columns are the timestamps, with the
+ * aggregated values, both encoded as longs. Rows with a {@code null} value for a group by dimension are skipped,
+ * same as {@link FactScanner} users do. Partial rows can be merged by applying the same aggregation functions
+ * again, in the order of the scanned rows they are computed from.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ */
+public final class FactAggregator {
+
+  /**
+   * First byte of the row keys of partial rows. Fact row keys start with the codec version, which is never this.
+   */
+  public static final byte PARTIAL_ROW_PREFIX = (byte) 0xff;
+
+  // see FactCodec for the format of fact row keys
+  private static final int FACT_ROW_VERSION_LENGTH = 1;
+
+  private final FactAggregation aggregation;
+  private final int idSize;
+  private final int resolution;
+  private final NavigableMap<byte[], TimeValueAggregator> series;
+
+  // series and time base of the current row, or null if the current row is skipped
+  private TimeValueAggregator current;
+  private long currentTimeBase;
+
+  public FactAggregator(FactAggregation aggregation) {
+    this.aggregation = aggregation;
+    this.idSize = aggregation.getIdSize();
+    this.resolution = aggregation.getResolution();
+    this.series = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  }
+
+  /**
+   * Returns whether the given row key is the key of a partial row created by a {@link FactAggregator}.
+   */
+  public static boolean isPartialRow(byte[] rowKey) {
+    return rowKey.length > 0 && rowKey[0] == PARTIAL_ROW_PREFIX;
+  }
+
+  /**
+   * Aggregates all rows of the given scanner and closes it.
+   *
+   * @return a {@link Scanner} of the partial rows, in row key order
+   */
+  public static Scanner aggregate(Scanner scanner, FactAggregation aggregation) {
+    FactAggregator aggregator = new FactAggregator(aggregation);
+    try {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        aggregator.add(row);
+      }
+    } finally {
+      scanner.close();
+    }
+    final Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> partialRows =
+      aggregator.getPartialRows().entrySet().iterator();
+    return new Scanner() {
+      @Nullable
+      @Override
+      public Row next() {
+        if (!partialRows.hasNext()) {
+          return null;
+        }
+        Map.Entry<byte[], NavigableMap<byte[], byte[]>> partialRow = partialRows.next();
+        return new Result(partialRow.getKey(), partialRow.getValue());
+      }
+
+      @Override
+      public void close() {
+        // no-op
+      }
+    };
+  }
+
+  /**
+   * Aggregates all columns of the given fact row.
+   */
+  public void add(Row row) {
+    if (!startRow(row.getRow())) {
+      return;
+    }
+    for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+      addColumn(column.getKey(), 0, column.getValue(), 0);
+    }
+  }
+
+  /**
+   * Starts the aggregation of the columns of a fact row, which are then added with
+   * {@link #addColumn(byte[], int, byte[], int)}.
+   *
+   * @return {@code false} if the row is skipped, because it has a {@code null} value for a group by dimension, or
+   *         its measure is not aggregated
+   */
+  public boolean startRow(byte[] rowKey) {
+    current = null;
+    // the measure name is the last encoded entity
+    long measure = readEncoded(rowKey, rowKey.length - idSize);
+    AggregationFunction function = aggregation.getMeasures().get(measure);
+    if (function == null) {
+      return false;
+    }
+
+    byte[] seriesKey = new byte[1 + (aggregation.getGroupByCount() + 1) * idSize];
+    seriesKey[0] = PARTIAL_ROW_PREFIX;
+    System.arraycopy(rowKey, rowKey.length - idSize, seriesKey, 1, idSize);
+    for (int i = 0; i < aggregation.getGroupByCount(); i++) {
+      int position = aggregation.getGroupByPosition(i);
+      if (position < 0) {
+        // leave the dimension as all zeroes
+        continue;
+      }
+      // dimension values go right after the version, encoded agg group and time base
+      int offset = FACT_ROW_VERSION_LENGTH + idSize * (position + 1) + Bytes.SIZEOF_INT;
+      if (readEncoded(rowKey, offset) == 0) {
+        // null value, see DefaultCube for why these are not returned
+        return false;
+      }
+      System.arraycopy(rowKey, offset, seriesKey, 1 + (i + 1) * idSize, idSize);
+    }
+
+    TimeValueAggregator values = series.get(seriesKey);
+    if (values == null) {
+      values = new TimeValueAggregator(function, resolution);
+      series.put(seriesKey, values);
+    }
+    current = values;
+    currentTimeBase = Bytes.toInt(rowKey, FACT_ROW_VERSION_LENGTH + idSize);
+    return true;
+  }
+
+  /**
+   * Aggregates a column of the row started with the last call to {@link #startRow(byte[])}.
+   *
+   * @param column buffer of the column name, which is the time delta of a fact
+   * @param columnOffset offset of the column name in the buffer
+   * @param value buffer of the column value, which is a long
+   * @param valueOffset offset of the column value in the buffer
+   */
+  public void addColumn(byte[] column, int columnOffset, byte[] value, int valueOffset) {
+    if (current == null) {
+      return;
+    }
+    long ts = currentTimeBase + Bytes.toShort(column, columnOffset) * resolution;
+    if (ts < aggregation.getStartTs() || ts > aggregation.getEndTs()) {
+      return;
+    }
+    current.add(ts, Bytes.toLong(value, valueOffset));
+  }
+
+  /**
+   * Returns the partial rows, in row key order.
+   */
+  public NavigableMap<byte[], NavigableMap<byte[], byte[]>> getPartialRows() {
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> rows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], TimeValueAggregator> entry : series.entrySet()) {
+      if (entry.getValue().isEmpty()) {
+        continue;
+      }
+      NavigableMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (TimeValue timeValue : entry.getValue().getTimeValues()) {
+        columns.put(Bytes.toBytes(timeValue.getTimestamp()), Bytes.toBytes(timeValue.getValue()));
+      }
+      rows.put(entry.getKey(), columns);
+    }
+    return rows;
+  }
+
+  private long readEncoded(byte[] bytes, int offset) {
+    long id = 0;
+    for (int i = 0; i < idSize; i++) {
+      id |= (bytes[offset + i] & 0xff) << ((idSize - i - 1) * 8);
+    }
+    return id;
+  }
+}
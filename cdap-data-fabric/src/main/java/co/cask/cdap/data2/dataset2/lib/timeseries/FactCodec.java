@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,14 +18,22 @@ package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.SetMultimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -54,6 +62,42 @@ public class FactCodec {
     this.deltaCache = createDeltaCache(rollTimebaseInterval);
   }
 
+  /**
+   * Returns the types of entities in the {@link EntityTable} that are used by row keys with the given dimension names.
+   */
+  public static Set<String> getEntityTypes(Collection<String> dimensionNames) {
+    Set<String> types = new LinkedHashSet<>();
+    types.add(TYPE_DIMENSIONS_GROUP);
+    types.add(TYPE_MEASURE_NAME);
+    types.addAll(dimensionNames);
+    return types;
+  }
+
+  /**
+   * Resolves the IDs of all the entities used by the row keys of the given facts, with one batch lookup
+   * per entity type, so that the following {@link #createRowKey(List, String, long)} calls for these facts
+   * don't need to lookup the {@link EntityTable} one entity at a time.
+   */
+  public void resolveEntityIds(Collection<Fact> facts) {
+    SetMultimap<String, String> entities = HashMultimap.create();
+    for (Fact fact : facts) {
+      StringBuilder aggGroup = new StringBuilder();
+      for (DimensionValue dimensionValue : fact.getDimensionValues()) {
+        aggGroup.append(dimensionValue.getName()).append(".");
+        if (dimensionValue.getValue() != null) {
+          entities.put(dimensionValue.getName(), dimensionValue.getValue());
+        }
+      }
+      entities.put(TYPE_DIMENSIONS_GROUP, aggGroup.toString());
+      for (Measurement measurement : fact.getMeasurements()) {
+        entities.put(TYPE_MEASURE_NAME, measurement.getName());
+      }
+    }
+    for (Map.Entry<String, Collection<String>> entry : entities.asMap().entrySet()) {
+      entityTable.getIds(entry.getKey(), entry.getValue());
+    }
+  }
+
   /**
    * Builds row key for write and get operations.
    * @param dimensionValues dimension values
@@ -263,6 +307,33 @@ public class FactCodec {
     return dimensions;
   }
 
+  /**
+   * Decodes a partial row created by {@link FactAggregator}.
+   * @param rowKey row key of the partial row
+   * @param columns columns of the partial row
+   * @param groupByDimensions names of the group by dimensions of the {@link FactAggregation}
+   * @return the scan result with the aggregated time values of the partial row
+   */
+  public FactScanResult getPartialResult(byte[] rowKey, Map<byte[], byte[]> columns, List<String> groupByDimensions) {
+    int idSize = entityTable.getIdSize();
+    // see FactAggregator for the row format
+    String measureName = entityTable.getName(readEncoded(rowKey, 1), TYPE_MEASURE_NAME);
+    List<DimensionValue> dimensions = Lists.newArrayListWithCapacity(groupByDimensions.size());
+    for (int i = 0; i < groupByDimensions.size(); i++) {
+      long encodedDimensionValue = readEncoded(rowKey, 1 + idSize * (i + 1));
+      // zero means that the facts don't have the dimension
+      if (encodedDimensionValue != 0) {
+        String dimensionName = groupByDimensions.get(i);
+        dimensions.add(new DimensionValue(dimensionName, entityTable.getName(encodedDimensionValue, dimensionName)));
+      }
+    }
+    List<TimeValue> timeValues = Lists.newArrayListWithCapacity(columns.size());
+    for (Map.Entry<byte[], byte[]> column : columns.entrySet()) {
+      timeValues.add(new TimeValue(Bytes.toLong(column.getKey()), Bytes.toLong(column.getValue())));
+    }
+    return new FactScanResult(measureName, dimensions, timeValues);
+  }
+
   public long getTimestamp(byte[] rowKey, byte[] column) {
     // timebase is encoded as int after the encoded agg group
     int timebase = Bytes.toInt(rowKey, VERSION.length + entityTable.getIdSize());
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -30,6 +30,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Scans facts in a {@link FactTable}.
@@ -51,16 +52,30 @@ public final class FactScanner implements Iterator<FactScanResult> {
   // set of measureNames - useful to process measures that are requested while scanning.
   private final Set<String> measureNames;
 
+  // group by dimensions of the partial rows returned by the scanner, null if the scan is not aggregated
+  @Nullable
+  private final List<String> groupByDimensions;
+
   /**
    * Construct a FactScanner. Should only be called by FactTable.
    */
   FactScanner(Scanner scanner, FactCodec codec, long startTs, long endTs, Collection<String> measureNames) {
+    this(scanner, codec, startTs, endTs, measureNames, null);
+  }
+
+  /**
+   * Construct a FactScanner for a scan that may return partial rows created by {@link FactAggregator}.
+   * Should only be called by FactTable.
+   */
+  FactScanner(Scanner scanner, FactCodec codec, long startTs, long endTs, Collection<String> measureNames,
+              @Nullable List<String> groupByDimensions) {
     this.scanner = scanner;
     this.codec = codec;
     this.internalIterator = createIterator();
     this.startTs = startTs;
     this.endTs = endTs;
     this.measureNames = ImmutableSet.copyOf(measureNames);
+    this.groupByDimensions = groupByDimensions;
   }
 
   public void close() {
@@ -95,6 +110,11 @@ public final class FactScanner implements Iterator<FactScanResult> {
           rowScanned++;
           byte[] rowKey = rowResult.getRow();
 
+          if (groupByDimensions != null && FactAggregator.isPartialRow(rowKey)) {
+            // already filtered by measure names and time range when aggregating
+            return codec.getPartialResult(rowKey, rowResult.getColumns(), groupByDimensions);
+          }
+
           // Decode context and metric from key
           String measureName = codec.getMeasureName(rowKey);
           // if measureNames is empty we include all metrics
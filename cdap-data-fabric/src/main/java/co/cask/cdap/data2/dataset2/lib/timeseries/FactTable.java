@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import co.cask.cdap.api.dataset.lib.cube.MeasureType;
 import co.cask.cdap.api.dataset.lib.cube.Measurement;
@@ -23,6 +24,7 @@ import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.table.AggregatingMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import com.google.common.base.Function;
@@ -122,6 +124,8 @@ public final class FactTable implements Closeable {
     // Simply collecting all rows/cols/values that need to be put to the underlying table.
     NavigableMap<byte[], NavigableMap<byte[], byte[]>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     NavigableMap<byte[], NavigableMap<byte[], byte[]>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    // Resolve the entity IDs in batch instead of one by one when creating the row keys
+    codec.resolveEntityIds(facts);
     for (Fact fact : facts) {
       for (Measurement measurement : fact.getMeasurements()) {
         byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
@@ -164,7 +168,46 @@ public final class FactTable implements Closeable {
   }
 
   public FactScanner scan(FactScan scan) {
-    return new FactScanner(getScanner(scan), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames());
+    return new FactScanner(getScanner(scan, null), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames());
+  }
+
+  /**
+   * Scans the facts and partially aggregates them by the given dimensions and measures, if the underlying table
+   * supports it. The {@link FactScanResult}s returned may be partial aggregates of many facts, which must be
+   * aggregated again with the same functions, in the order they are returned. Otherwise, this is the same as
+   * {@link #scan(FactScan)}.
+   *
+   * @param scan the facts to scan
+   * @param groupByDimensions names of the dimensions to group by
+   * @param measurements the aggregation function of each measure of the scan
+   */
+  public FactScanner scan(FactScan scan, List<String> groupByDimensions,
+                          Map<String, AggregationFunction> measurements) {
+    if (!(timeSeriesTable instanceof AggregatingMetricsTable) || measurements.isEmpty()
+      || !measurements.keySet().containsAll(scan.getMeasureNames())) {
+      return scan(scan);
+    }
+
+    int[] groupByPositions = new int[groupByDimensions.size()];
+    for (int i = 0; i < groupByPositions.length; i++) {
+      groupByPositions[i] = -1;
+      for (int position = 0; position < scan.getDimensionValues().size(); position++) {
+        if (scan.getDimensionValues().get(position).getName().equals(groupByDimensions.get(i))) {
+          groupByPositions[i] = position;
+          break;
+        }
+      }
+    }
+    Map<Long, AggregationFunction> measures = new HashMap<>();
+    for (Map.Entry<String, AggregationFunction> measurement : measurements.entrySet()) {
+      if (scan.getMeasureNames().isEmpty() || scan.getMeasureNames().contains(measurement.getKey())) {
+        measures.put(codec.getMeasureEntityId(measurement.getKey()), measurement.getValue());
+      }
+    }
+    FactAggregation aggregation = new FactAggregation(entityTable.getIdSize(), resolution, scan.getStartTs(),
+                                                      scan.getEndTs(), groupByPositions, measures);
+    return new FactScanner(getScanner(scan, aggregation), codec, scan.getStartTs(), scan.getEndTs(),
+                           scan.getMeasureNames(), groupByDimensions);
   }
 
   private List<String> getSortedMeasures(Collection<String> measures) {
@@ -180,7 +223,7 @@ public final class FactTable implements Closeable {
     return measureNames;
   }
 
-  private Scanner getScanner(FactScan scan) {
+  private Scanner getScanner(FactScan scan, @Nullable FactAggregation aggregation) {
 
     // sort the measures based on their entity ids and based on that get the start and end row key metric names
     List<String> measureNames = getSortedMeasures(scan.getMeasureNames());
@@ -211,6 +254,9 @@ public final class FactTable implements Closeable {
                 timeSeriesTable, scan, toPrettyLog(startRow), toPrettyLog(endRow), fuzzyRowFilter);
     }
 
+    if (aggregation != null) {
+      return ((AggregatingMetricsTable) timeSeriesTable).scan(startRow, endRow, fuzzyRowFilter, aggregation);
+    }
     return timeSeriesTable.scan(startRow, endRow, fuzzyRowFilter);
   }
 
@@ -219,7 +265,7 @@ public final class FactTable implements Closeable {
    * @param scan specifies deletion criteria
    */
   public void delete(FactScan scan) {
-    try (Scanner scanner = getScanner(scan)) {
+    try (Scanner scanner = getScanner(scan, null)) {
       Row row;
       while ((row = scanner.next()) != null) {
         List<byte[]> columns = Lists.newArrayList();
@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.timeseries;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Aggregates the values of one time series, applying an {@link AggregationFunction} to values with the same
+ * timestamp.
+ *
+ * <p>Values are kept in a {@code long[]} indexed by time bucket, where the buckets are {@code resolution} seconds
+ * apart starting from the first timestamp added, and are aggregated in place. Timestamps that are not on that grid,
+ * which only happens if the time base of the fact table rows is not a multiple of the resolution, are aggregated in
+ * a separate map, so that the result is always exact. If the series spans many more buckets than it has values,
+ * all values are moved to that map instead of growing the arrays.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ */
+public final class TimeValueAggregator {
+
+  private static final int INITIAL_CAPACITY = 16;
+  // some VMs reserve header words in arrays
+  private static final long MAX_CAPACITY = Integer.MAX_VALUE - 8;
+  // the arrays always grow up to this capacity
+  private static final long MIN_SPARSE_CAPACITY = 1024;
+  // above the minimum capacity, the values are moved to the map if there are more buckets per value than this
+  private static final long MAX_BUCKETS_PER_VALUE = 8;
+
+  private final AggregationFunction function;
+  private final int resolution;
+
+  // timestamp of bucket 0, which is the first timestamp added
+  private long baseTs;
+  // bucket of values[0]
+  private long firstBucket;
+  private long[] values;
+  private boolean[] present;
+  // number of buckets that are present
+  private int count;
+  // true once all values are kept in the map, in which case the arrays are null
+  private boolean sparse;
+  // values with timestamps that are not a multiple of the resolution away from baseTs, or all values if sparse
+  private TreeMap<Long, Long> mapValues;
+
+  public TimeValueAggregator(AggregationFunction function, int resolution) {
+    this.function = function;
+    this.resolution = resolution;
+  }
+
+  /**
+   * Aggregates the given value with the value of the same timestamp, if any.
+   */
+  public void add(long ts, long value) {
+    if (sparse) {
+      addToMap(ts, value);
+      return;
+    }
+    if (values == null) {
+      baseTs = ts;
+      values = new long[INITIAL_CAPACITY];
+      present = new boolean[INITIAL_CAPACITY];
+    }
+    long delta = ts - baseTs;
+    if (delta % resolution != 0) {
+      addToMap(ts, value);
+      return;
+    }
+    int index = getIndex(delta / resolution);
+    if (index < 0) {
+      addToMap(ts, value);
+    } else if (present[index]) {
+      values[index] = aggregate(values[index], value);
+    } else {
+      present[index] = true;
+      values[index] = value;
+      count++;
+    }
+  }
+
+  /**
+   * Returns {@code true} if no value was added.
+   */
+  public boolean isEmpty() {
+    return values == null && mapValues == null;
+  }
+
+  /**
+   * Returns the aggregated time values in increasing timestamp order.
+   */
+  public List<TimeValue> getTimeValues() {
+    List<TimeValue> timeValues = new ArrayList<>();
+    Iterator<Map.Entry<Long, Long>> mapIterator = mapValues == null ? null : mapValues.entrySet().iterator();
+    Map.Entry<Long, Long> nextMapValue = nextOrNull(mapIterator);
+
+    for (int i = 0; values != null && i < values.length; i++) {
+      if (!present[i]) {
+        continue;
+      }
+      long ts = baseTs + (firstBucket + i) * resolution;
+      while (nextMapValue != null && nextMapValue.getKey() < ts) {
+        timeValues.add(new TimeValue(nextMapValue.getKey(), nextMapValue.getValue()));
+        nextMapValue = nextOrNull(mapIterator);
+      }
+      timeValues.add(new TimeValue(ts, values[i]));
+    }
+    while (nextMapValue != null) {
+      timeValues.add(new TimeValue(nextMapValue.getKey(), nextMapValue.getValue()));
+      nextMapValue = nextOrNull(mapIterator);
+    }
+    return timeValues;
+  }
+
+  private void addToMap(long ts, long value) {
+    if (mapValues == null) {
+      mapValues = new TreeMap<>();
+    }
+    Long current = mapValues.get(ts);
+    mapValues.put(ts, current == null ? value : aggregate(current, value));
+  }
+
+  private long aggregate(long current, long value) {
+    switch (function) {
+      case SUM:
+        return current + value;
+      case MAX:
+        return Math.max(current, value);
+      case MIN:
+        return Math.min(current, value);
+      case LATEST:
+        return value;
+      default:
+        // should never happen: developer error
+        throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+  }
+
+  /**
+   * Returns the index in the values array for the given bucket, growing the arrays if needed.
+   *
+   * @return the index, or {@code -1} if the series is too sparse for the arrays, in which case all values were
+   *         moved to the map
+   */
+  private int getIndex(long bucket) {
+    long index = bucket - firstBucket;
+    if (index >= 0 && index < values.length) {
+      return (int) index;
+    }
+
+    long lastBucket = firstBucket + values.length - 1;
+    long required = Math.max(lastBucket, bucket) - Math.min(firstBucket, bucket) + 1;
+    if (required > MAX_CAPACITY
+      || (required > MIN_SPARSE_CAPACITY && required / MAX_BUCKETS_PER_VALUE > count + 1)) {
+      moveToMap();
+      return -1;
+    }
+    int capacity = (int) Math.min(MAX_CAPACITY, Math.max(required, 2L * values.length));
+    // leave the extra room on the side the series grows to
+    long newFirstBucket = bucket < firstBucket ? lastBucket - capacity + 1 : firstBucket;
+    int offset = (int) (firstBucket - newFirstBucket);
+
+    long[] newValues = new long[capacity];
+    boolean[] newPresent = new boolean[capacity];
+    System.arraycopy(values, 0, newValues, offset, values.length);
+    System.arraycopy(present, 0, newPresent, offset, present.length);
+    values = newValues;
+    present = newPresent;
+    firstBucket = newFirstBucket;
+    return (int) (bucket - firstBucket);
+  }
+
+  /**
+   * Moves the values of the arrays to the map, which then keeps all values.
+   */
+  private void moveToMap() {
+    for (int i = 0; i < values.length; i++) {
+      if (present[i]) {
+        addToMap(baseTs + (firstBucket + i) * resolution, values[i]);
+      }
+    }
+    sparse = true;
+    values = null;
+    present = null;
+  }
+
+  @Nullable
+  private static <T> T nextOrNull(@Nullable Iterator<T> iterator) {
+    return iterator != null && iterator.hasNext() ? iterator.next() : null;
+  }
+}
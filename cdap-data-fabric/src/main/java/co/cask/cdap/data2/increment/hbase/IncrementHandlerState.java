@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -131,6 +131,13 @@ public class IncrementHandlerState {
     return false;
   }
 
+  /**
+   * Returns whether the given column family is transactional.
+   */
+  public boolean isTransactionalFamily(byte[] familyName) {
+    return txnlFamilies.contains(familyName);
+  }
+
   /**
    * Returns a unique timestamp for the current operation.
    *
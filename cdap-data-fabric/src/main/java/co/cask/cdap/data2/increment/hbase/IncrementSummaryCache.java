@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.increment.hbase;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Query;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FuzzyRowFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.tephra.TxConstants;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Region-local view of the partially summed readless increment columns, shared by the HBase version-specific
+ * {@code IncrementHandler} coprocessor implementations. The summaries of all regions are kept in one
+ * {@link IncrementSummaryStore} per RegionServer.
+ *
+ * <p>A {@link Summary} records the sum of all cells of a column up to and including a given timestamp, where a
+ * cell with exactly that timestamp was read when the summary was created. Only cells that can no longer change for
+ * any reader are summarized: all cells of non-transactional families, and the cells of transactional families at
+ * or below the transaction visibility upper bound. These are the same cells that flush and compaction are allowed
+ * to merge, and since a merged cell always takes the newest timestamp of the cells it replaces, the sum of the
+ * cells up to a summarized timestamp does not change while a cell with that timestamp still exists. A read that
+ * finds the summarized cell can therefore use the summary in its place, without reading any older cells.</p>
+ *
+ * <p>Families with a time-to-live are never summarized, as expiring cells would change the sum. Mutations that
+ * write or delete cells at or below the summarized timestamps must be reported through {@link #invalidate(Map)}.
+ * Since the store is shared, {@link #close()} must be called when the region is closed.</p>
+ */
+public class IncrementSummaryCache {
+  /**
+   * Operation attribute set by the transaction coprocessor on reads whose own filter does not filter out individual
+   * cells. Once the transaction filter is applied the original filter can no longer be inspected.
+   */
+  public static final String CELL_FILTER_FREE_ATTRIBUTE = "cdap.increment.cell.filter.free";
+
+  private static final byte[] TRUE = Bytes.toBytes(true);
+
+  private final IncrementHandlerState state;
+  private final IncrementSummaryStore store;
+  private final long id;
+  // part of every key, and incremented on every invalidation, so that older summaries are no longer found and are
+  // eventually evicted from the store, and sums computed by reads started before it are not cached
+  private final AtomicLong generation = new AtomicLong();
+
+  public IncrementSummaryCache(IncrementHandlerState state, IncrementSummaryStore store) {
+    this.state = state;
+    this.store = store;
+    this.id = store.nextCacheId();
+  }
+
+  /**
+   * Sets or clears the {@link #CELL_FILTER_FREE_ATTRIBUTE} on the given read, based on its current filter.
+   */
+  public static void markCellFilterFree(Query query) {
+    query.setAttribute(CELL_FILTER_FREE_ATTRIBUTE, isCellFilterFree(query.getFilter()) ? TRUE : null);
+  }
+
+  /**
+   * Returns whether the given filter either includes or excludes entire rows, and therefore cannot change the sum
+   * of a column.
+   */
+  public static boolean isCellFilterFree(@Nullable Filter filter) {
+    if (filter == null || filter instanceof FuzzyRowFilter) {
+      return true;
+    }
+    if (filter instanceof FilterList && ((FilterList) filter).getOperator() == FilterList.Operator.MUST_PASS_ALL) {
+      for (Filter child : ((FilterList) filter).getFilters()) {
+        if (!isCellFilterFree(child)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns a {@link Reader} to use the cache for the given scan, or {@code null} if the cache cannot be used with
+   * it. Must be called before any increment filter is added to the scan.
+   */
+  @Nullable
+  public Reader newReader(Scan scan) {
+    if (scan.getTimeRange().getMin() > 0) {
+      return null;
+    }
+    boolean visibilityFiltered = scan.getAttribute(TxConstants.TX_OPERATION_ATTRIBUTE_KEY) != null;
+    if (visibilityFiltered ? scan.getAttribute(CELL_FILTER_FREE_ATTRIBUTE) == null
+                           : !isCellFilterFree(scan.getFilter())) {
+      return null;
+    }
+    return new Reader(visibilityFiltered, generation.get());
+  }
+
+  /**
+   * Invalidates all summaries if the given mutation writes or deletes cells of a transactional family at or below
+   * the transaction visibility upper bound. Writes to non-transactional families are always assigned new
+   * timestamps, and never affect existing summaries.
+   *
+   * @param familyCellMap the cells of the mutation, by family
+   */
+  public void invalidate(Map<byte[], List<Cell>> familyCellMap) {
+    for (Map.Entry<byte[], List<Cell>> entry : familyCellMap.entrySet()) {
+      if (!state.isTransactionalFamily(entry.getKey())) {
+        continue;
+      }
+      long upperBound = state.getCompactionBound(entry.getKey());
+      for (Cell cell : entry.getValue()) {
+        if (cell.getTimestamp() <= upperBound) {
+          invalidateAll();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Invalidates all summaries.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+  }
+
+  /**
+   * Removes all summaries of this region from the store.
+   */
+  public void close() {
+    generation.incrementAndGet();
+    store.removeAll(id);
+  }
+
+  private ByteBuffer getKey(long keyGeneration, Cell cell) {
+    ByteBuffer key = ByteBuffer.allocate(Bytes.SIZEOF_LONG + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT +
+                                           cell.getRowLength() + Bytes.SIZEOF_INT + cell.getFamilyLength() +
+                                           cell.getQualifierLength());
+    // the store relies on the id being first
+    key.putLong(id).putLong(keyGeneration);
+    key.putInt(cell.getRowLength()).put(cell.getRowArray(), cell.getRowOffset(), cell.getRowLength());
+    key.putInt(cell.getFamilyLength()).put(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength());
+    key.put(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength());
+    key.flip();
+    return key;
+  }
+
+  /**
+   * Access to the cache for a single read operation. Instances are not thread-safe.
+   */
+  public final class Reader {
+    private final boolean visibilityFiltered;
+    private final long readGeneration;
+    private byte[] lastFamily;
+    private long lastUpperBound;
+
+    private Reader(boolean visibilityFiltered, long readGeneration) {
+      this.visibilityFiltered = visibilityFiltered;
+      this.readGeneration = readGeneration;
+    }
+
+    /**
+     * Returns the newest timestamp up to which cells of the given cell's family can be summarized by this read,
+     * or {@code -1} if they cannot be summarized.
+     */
+    public long getUpperBound(Cell cell) {
+      if (lastFamily == null || !Bytes.equals(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength(),
+                                               lastFamily, 0, lastFamily.length)) {
+        lastFamily = CellUtil.cloneFamily(cell);
+        if (state.getFamilyTTL(lastFamily) > 0) {
+          lastUpperBound = -1;
+        } else if (state.isTransactionalFamily(lastFamily)) {
+          lastUpperBound = visibilityFiltered ? state.getCompactionBound(lastFamily) : -1;
+        } else {
+          lastUpperBound = Long.MAX_VALUE;
+        }
+      }
+      return lastUpperBound;
+    }
+
+    /**
+     * Returns the summary for the column of the given cell, or {@code null} if there is none.
+     */
+    @Nullable
+    public Summary get(Cell cell) {
+      return getUpperBound(cell) < 0 ? null : store.get(getKey(generation.get(), cell));
+    }
+
+    /**
+     * Stores a summary for the column of the given cell.
+     *
+     * @param cell any cell of the column
+     * @param timestamp timestamp of the newest summarized cell, which must not be newer than the upper bound
+     * @param sum the sum of all cells of the column up to and including the timestamp
+     */
+    public void put(Cell cell, long timestamp, long sum) {
+      // if an invalidation happens after this check, the summary is stored for a generation that is not read anymore
+      if (generation.get() == readGeneration) {
+        store.put(getKey(readGeneration, cell), new Summary(timestamp, sum));
+      }
+    }
+  }
+
+  /**
+   * The sum of the cells of a column up to and including a timestamp.
+   */
+  public static final class Summary {
+    private final long timestamp;
+    private final long sum;
+
+    public Summary(long timestamp, long sum) {
+      this.timestamp = timestamp;
+      this.sum = sum;
+    }
+
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public long getSum() {
+      return sum;
+    }
+  }
+}
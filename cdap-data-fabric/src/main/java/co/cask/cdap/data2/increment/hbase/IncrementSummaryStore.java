@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.increment.hbase;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.AbstractIdleService;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Stores the summaries of all {@link IncrementSummaryCache} instances of a RegionServer, within a single bound on
+ * the number of bytes they take. Obtained through {@link IncrementSummaryStoreSupplier}, so that all regions share
+ * one instance.
+ *
+ * <p>Keys start with the id of the {@link IncrementSummaryCache} that owns them, as returned by
+ * {@link #nextCacheId()}.</p>
+ */
+public class IncrementSummaryStore extends AbstractIdleService {
+  /**
+   * Property set in the HBase configuration of the RegionServers for the maximum number of bytes taken by the
+   * summaries of all regions of a RegionServer. A value of zero or less disables the cache.
+   */
+  public static final String PROPERTY_MAX_SIZE_BYTES = "dataset.table.readless.increment.summary.cache.max.size.bytes";
+  public static final long DEFAULT_MAX_SIZE_BYTES = 32 * 1024 * 1024;
+
+  // approximate size of a cache entry, the key buffer and the summary, in addition to the bytes of the key
+  private static final int ENTRY_OVERHEAD = 128;
+
+  private final AtomicLong nextCacheId = new AtomicLong();
+  private final Cache<ByteBuffer, IncrementSummaryCache.Summary> summaries;
+
+  public IncrementSummaryStore(long maxSizeBytes) {
+    this.summaries = CacheBuilder.newBuilder()
+      .maximumWeight(maxSizeBytes)
+      .weigher(new Weigher<ByteBuffer, IncrementSummaryCache.Summary>() {
+        @Override
+        public int weigh(ByteBuffer key, IncrementSummaryCache.Summary summary) {
+          return ENTRY_OVERHEAD + key.capacity();
+        }
+      })
+      .build();
+  }
+
+  /**
+   * Returns a new id for an {@link IncrementSummaryCache}, unique within this store.
+   */
+  long nextCacheId() {
+    return nextCacheId.incrementAndGet();
+  }
+
+  @Nullable
+  IncrementSummaryCache.Summary get(ByteBuffer key) {
+    return summaries.getIfPresent(key);
+  }
+
+  void put(ByteBuffer key, IncrementSummaryCache.Summary summary) {
+    summaries.put(key, summary);
+  }
+
+  /**
+   * Removes all summaries of the {@link IncrementSummaryCache} with the given id.
+   */
+  void removeAll(long cacheId) {
+    Iterator<ByteBuffer> keys = summaries.asMap().keySet().iterator();
+    while (keys.hasNext()) {
+      if (keys.next().getLong(0) == cacheId) {
+        keys.remove();
+      }
+    }
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    // nothing to do
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    summaries.invalidateAll();
+  }
+}
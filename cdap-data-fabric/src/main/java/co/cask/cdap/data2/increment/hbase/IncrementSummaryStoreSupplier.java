@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.increment.hbase;
+
+import co.cask.cdap.data2.transaction.coprocessor.CacheSupplier;
+import co.cask.cdap.data2.util.ReferenceCountedSupplier;
+import com.google.common.base.Supplier;
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Supplies the {@link IncrementSummaryStore} shared by all regions of a RegionServer. The store is created with the
+ * size configured in the HBase configuration of the first region that gets it, and is dropped when the last region
+ * releases it.
+ */
+public class IncrementSummaryStoreSupplier implements CacheSupplier<IncrementSummaryStore> {
+  private static final ReferenceCountedSupplier<IncrementSummaryStore> referenceCountedSupplier
+    = new ReferenceCountedSupplier<>(IncrementSummaryStore.class.getSimpleName());
+
+  private final Supplier<IncrementSummaryStore> supplier;
+
+  public IncrementSummaryStoreSupplier(final Configuration hConf) {
+    this.supplier = new Supplier<IncrementSummaryStore>() {
+      @Override
+      public IncrementSummaryStore get() {
+        return new IncrementSummaryStore(hConf.getLong(IncrementSummaryStore.PROPERTY_MAX_SIZE_BYTES,
+                                                       IncrementSummaryStore.DEFAULT_MAX_SIZE_BYTES));
+      }
+    };
+  }
+
+  @Override
+  public IncrementSummaryStore get() {
+    return referenceCountedSupplier.getOrCreate(supplier);
+  }
+
+  @Override
+  public void release() {
+    referenceCountedSupplier.release();
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -48,4 +48,13 @@ public interface QueueConsumer extends Closeable {
    * @return A {@link DequeueResult}.
    */
   DequeueResult<byte[]> dequeue(int maxBatchSize) throws IOException;
+
+  /**
+   * Checks if there may be entries available for this consumer to dequeue. This method can be called outside of
+   * a transaction and is meant to be cheap. It is conservative: it returns {@code false} only if it is known that
+   * a dequeue would return an empty result, and may return {@code true} even if nothing can be dequeued.
+   *
+   * @return {@code false} if there is no entry available for dequeue, {@code true} otherwise.
+   */
+  boolean mayHaveEntries() throws IOException;
 }
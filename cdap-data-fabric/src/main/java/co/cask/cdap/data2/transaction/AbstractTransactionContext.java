@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,7 +17,10 @@
 package co.cask.cdap.data2.transaction;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.lang.ClassLoaders;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TransactionConflictException;
@@ -25,8 +28,15 @@ import org.apache.tephra.TransactionContext;
 import org.apache.tephra.TransactionFailureException;
 import org.apache.tephra.TransactionSystemClient;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import javax.annotation.Nullable;
 
 /**
@@ -36,16 +46,35 @@ import javax.annotation.Nullable;
  *
  * This abstract class extends from {@link TransactionContext} just for inheriting the type and public methods
  * signatures. It is not using any functionality from the parent class.
+ *
+ * Optionally, an {@link Executor} can be provided for persisting the changes of all {@link TransactionAware}s
+ * concurrently, so that the persist latency is bounded by the slowest {@link TransactionAware} instead of the
+ * sum of all of them. This is only correct if the {@link TransactionAware}s don't depend on the order of
+ * {@link TransactionAware#commitTx()} among each other. If any of them fails to persist, all of them
+ * are rolled back after all concurrent persists completed, same as the sequential case.
  */
 public abstract class AbstractTransactionContext extends TransactionContext {
 
   private final TransactionSystemClient txClient;
+  private final Executor persistExecutor;
   private Transaction currentTx;
 
   protected AbstractTransactionContext(TransactionSystemClient txClient) {
+    this(txClient, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param txClient the {@link TransactionSystemClient} for talking to the transaction service
+   * @param persistExecutor if not {@code null}, the {@link Executor} for persisting changes of
+   *                        {@link TransactionAware}s concurrently
+   */
+  protected AbstractTransactionContext(TransactionSystemClient txClient, @Nullable Executor persistExecutor) {
     // Passing null to parent to make sure nothing in parent class would work
     super(null);
     this.txClient = txClient;
+    this.persistExecutor = persistExecutor;
   }
 
   /**
@@ -258,20 +287,99 @@ public abstract class AbstractTransactionContext extends TransactionContext {
    * Calls {@link TransactionAware#commitTx()} on all {@link TransactionAware} to persist pending changes.
    */
   private void persist() throws TransactionFailureException {
+    if (persistExecutor != null) {
+      List<TransactionAware> txAwares = ImmutableList.copyOf(getTransactionAwares());
+      if (txAwares.size() > 1) {
+        persistConcurrently(txAwares);
+        return;
+      }
+    }
+
     for (TransactionAware txAware : getTransactionAwares()) {
-      boolean success = false;
-      Throwable cause = null;
+      TransactionFailureException failure = persist(txAware, currentTx.getTransactionId());
+      if (failure != null) {
+        abort(failure);
+      }
+    }
+  }
+
+  /**
+   * Calls {@link TransactionAware#commitTx()} on all the given {@link TransactionAware}s concurrently using the
+   * persist executor. The first one is persisted by the current thread. This method waits for all of them
+   * to complete before aborting the transaction if any of them failed. The persist executor threads use the
+   * context ClassLoader of the current thread while persisting.
+   */
+  private void persistConcurrently(List<TransactionAware> txAwares) throws TransactionFailureException {
+    final long txId = currentTx.getTransactionId();
+    final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    List<FutureTask<TransactionFailureException>> tasks = new ArrayList<>(txAwares.size() - 1);
+    for (final TransactionAware txAware : txAwares.subList(1, txAwares.size())) {
+      FutureTask<TransactionFailureException> task = new FutureTask<>(new Callable<TransactionFailureException>() {
+        @Override
+        public TransactionFailureException call() {
+          ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(contextClassLoader);
+          try {
+            return persist(txAware, txId);
+          } finally {
+            ClassLoaders.setContextClassLoader(oldClassLoader);
+          }
+        }
+      });
+      tasks.add(task);
       try {
-        success = txAware.commitTx();
-      } catch (Throwable e) {
-        cause = e;
+        persistExecutor.execute(task);
+      } catch (RejectedExecutionException e) {
+        // Persist in the current thread if the executor cannot take it
+        task.run();
       }
-      if (!success) {
-        abort(new TransactionFailureException(
+    }
+
+    TransactionFailureException cause = persist(txAwares.get(0), txId);
+    for (int i = 0; i < tasks.size(); i++) {
+      TransactionFailureException failure;
+      try {
+        // Must wait for all persists to complete before rolling back, hence waiting uninterruptibly
+        failure = Uninterruptibles.getUninterruptibly(tasks.get(i));
+      } catch (ExecutionException e) {
+        failure = new TransactionFailureException(
           String.format("Unable to persist changes of transaction-aware '%s' for transaction %d. ",
-                        txAware.getTransactionAwareName(), currentTx.getTransactionId()), cause));
+                        txAwares.get(i + 1).getTransactionAwareName(), txId), e.getCause());
+      }
+      if (failure == null) {
+        continue;
       }
+      if (cause == null) {
+        cause = failure;
+      } else {
+        cause.addSuppressed(failure);
+      }
+    }
+    if (cause != null) {
+      abort(cause);
+    }
+  }
+
+  /**
+   * Calls {@link TransactionAware#commitTx()} on the given {@link TransactionAware}.
+   *
+   * @return {@code null} if the changes are persisted successfully, otherwise a {@link TransactionFailureException}
+   *         describing the failure
+   */
+  @Nullable
+  private TransactionFailureException persist(TransactionAware txAware, long txId) {
+    boolean success = false;
+    Throwable cause = null;
+    try {
+      success = txAware.commitTx();
+    } catch (Throwable e) {
+      cause = e;
+    }
+    if (success) {
+      return null;
     }
+    return new TransactionFailureException(
+      String.format("Unable to persist changes of transaction-aware '%s' for transaction %d. ",
+                    txAware.getTransactionAwareName(), txId), cause);
   }
 
   /**
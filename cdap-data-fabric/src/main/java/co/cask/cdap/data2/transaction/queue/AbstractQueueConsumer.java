@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -64,6 +64,8 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
   // Multiple of batches to fetch per scan.
   // Number of rows to scan = max(MIN_FETCH_ROWS, dequeueBatchSize * groupSize * PREFETCH_BATCHES)
   private static final int PREFETCH_BATCHES = 10;
+  // Maximum number of rows to scan when probing for available entries.
+  private static final int PROBE_ROWS = MIN_FETCH_ROWS;
 
   private static final Function<SimpleQueueEntry, byte[]> ENTRY_TO_BYTE_ARRAY =
     new Function<SimpleQueueEntry, byte[]>() {
@@ -145,6 +147,56 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return result;
   }
 
+  @Override
+  public boolean mayHaveEntries() throws IOException {
+    if (!entryCache.isEmpty() || transaction == null) {
+      return true;
+    }
+
+    // Scan from the current start row with the last transaction snapshot. Entries that are not visible to that
+    // snapshot are considered as available, as they may be visible to a new transaction.
+    QueueScanner scanner = getProbeScanner(scanStartRow, Bytes.stopKeyForPrefix(queueRowPrefix), PROBE_ROWS);
+    if (scanner == null) {
+      return true;
+    }
+    try {
+      for (int i = 0; i < PROBE_ROWS; i++) {
+        ImmutablePair<byte[], Map<byte[], byte[]>> entry = scanner.next();
+        if (entry == null) {
+          return false;
+        }
+
+        byte[] rowKey = entry.getFirst();
+        long writePointer = QueueEntryRow.getWritePointer(rowKey, queueRowPrefix.length);
+        if (writePointer > transaction.getReadPointer() || transaction.isExcluded(writePointer)) {
+          // Entries written by invalid transactions will never be visible
+          if (Arrays.binarySearch(transaction.getInvalids(), writePointer) < 0) {
+            return true;
+          }
+          continue;
+        }
+
+        byte[] dataBytes = entry.getSecond().get(QueueEntryRow.DATA_COLUMN);
+        byte[] metaBytes = entry.getSecond().get(QueueEntryRow.META_COLUMN);
+        if (dataBytes == null || metaBytes == null) {
+          continue;
+        }
+
+        int counter = Bytes.toInt(rowKey, rowKey.length - 4, Ints.BYTES);
+        QueueEntryRow.CanConsume canConsume = QueueEntryRow.canConsume(getConfig(), transaction, writePointer,
+                                                                       counter, metaBytes,
+                                                                       entry.getSecond().get(stateColumnName));
+        if (canConsume == QueueEntryRow.CanConsume.YES) {
+          return true;
+        }
+      }
+      // Too many rows to go through, let the dequeue figure it out
+      return true;
+    } finally {
+      scanner.close();
+    }
+  }
+
   @Override
   public void startTx(Transaction tx) {
     consumingEntries.clear();
@@ -202,6 +254,17 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return true;
   }
 
+  /**
+   * Returns a {@link QueueScanner} for probing available entries without a transaction. By default it is the same
+   * as {@link #getScanner(byte[], byte[], int)}.
+   *
+   * @return a {@link QueueScanner} or {@code null} if the consumer cannot be probed in its current state
+   */
+  @Nullable
+  protected QueueScanner getProbeScanner(byte[] startRow, byte[] stopRow, int numRows) throws IOException {
+    return getScanner(startRow, stopRow, numRows);
+  }
+
   /**
    * Called when the start row is updated.
    */
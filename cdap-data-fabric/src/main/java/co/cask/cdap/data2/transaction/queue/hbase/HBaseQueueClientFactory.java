@@ -304,6 +304,20 @@ public class HBaseQueueClientFactory implements QueueClientFactory, ProgramConte
       return consumers.peek().dequeue(maxBatchSize);
     }
 
+    @Override
+    public boolean mayHaveEntries() throws IOException {
+      // Consumers are rotated after each transaction, hence need to check all of them
+      if (consumers.isEmpty()) {
+        return true;
+      }
+      for (HBaseQueueConsumer consumer : consumers) {
+        if (consumer.mayHaveEntries()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
     @Override
     public void close() throws IOException {
       for (HBaseQueueConsumer consumer : consumers) {
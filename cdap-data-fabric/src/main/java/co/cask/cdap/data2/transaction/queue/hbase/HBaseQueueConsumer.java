@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -37,6 +37,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Queue consumer for HBase.
@@ -141,6 +142,21 @@ abstract class HBaseQueueConsumer extends AbstractQueueConsumer {
     return queueStrategy.createScanner(getConfig(), hTable, scan, numRows);
   }
 
+  @Nullable
+  @Override
+  protected QueueScanner getProbeScanner(byte[] startRow, byte[] stopRow, int numRows) throws IOException {
+    // Whether it can consume is determined through the transactional state store, and a consumer
+    // that has a next barrier needs to dequeue to mark itself as completed. Hence no probing in both cases.
+    if (!canConsume || state.getNextBarrier() != null) {
+      return null;
+    }
+
+    // Scan without the transaction attribute so that no filtering happens on the server side
+    Map<String, byte[]> attributes = DequeueScanAttributes.addAttribute(getConfig(), new HashMap<String, byte[]>());
+    Scan scan = createScan(startRow, stopRow, numRows, attributes);
+    return queueStrategy.createScanner(getConfig(), hTable, scan, numRows);
+  }
+
   @Override
   public void close() throws IOException {
     if (closed) {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -91,6 +91,12 @@ public class InMemoryQueueConsumer implements QueueConsumer, TransactionAware {
     }
   }
 
+  @Override
+  public boolean mayHaveEntries() throws IOException {
+    // Entries are only removed from the queue after they are processed by all consumer groups
+    return getQueue().getSize() > 0;
+  }
+
   @Override
   public void startTx(Transaction tx) {
     currentTx = tx;
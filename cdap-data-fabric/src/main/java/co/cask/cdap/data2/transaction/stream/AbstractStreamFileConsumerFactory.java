@@ -18,6 +18,7 @@ package co.cask.cdap.data2.transaction.stream;
 
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.data.file.FileReader;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.cdap.data.file.filter.TTLReadFilter;
@@ -37,6 +38,7 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +47,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -97,17 +100,57 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
                                 int generation) throws IOException {
     // TODO: Support dynamic writer instances discovery
     // Current assume it won't change and is based on cConf
-    int instances = cConf.getInt(Constants.Stream.CONTAINER_INSTANCES);
-    String filePrefix = cConf.get(Constants.Stream.FILE_PREFIX);
-    for (int i = 0; i < instances; i++) {
-      // The actual file prefix is formed by file prefix in cConf + writer instance id
-      String streamFilePrefix = filePrefix + '.' + i;
+    for (String streamFilePrefix : getFilePrefixes()) {
       Location eventLocation = StreamUtils.createStreamLocation(partitionLocation, streamFilePrefix,
                                                                 0, StreamFileType.EVENT);
       fileOffsets.add(new StreamFileOffset(eventLocation, 0, generation));
     }
   }
 
+  /**
+   * Returns the file name prefixes of all stream writer instances and write shards.
+   */
+  private List<String> getFilePrefixes() {
+    int instances = cConf.getInt(Constants.Stream.CONTAINER_INSTANCES);
+    int shards = cConf.getInt(Constants.Stream.WRITER_SHARDS, 1);
+    String filePrefix = cConf.get(Constants.Stream.FILE_PREFIX);
+    List<String> prefixes = Lists.newArrayListWithCapacity(instances * shards);
+    for (int i = 0; i < instances; i++) {
+      for (int shard = 0; shard < shards; shard++) {
+        // The actual file prefix is formed by file prefix in cConf + writer instance id + write shard
+        prefixes.add(StreamUtils.getShardFilePrefix(filePrefix + '.' + i, shard));
+      }
+    }
+    return prefixes;
+  }
+
+  /**
+   * Adds file offsets for the writer instances and shards that don't have offset in the given offsets, which
+   * happens when the number of write shards is increased. The new offsets start from the partition of the
+   * earliest existing offset.
+   */
+  private Iterable<StreamFileOffset> addMissingFileOffsets(Iterable<StreamFileOffset> offsets) throws IOException {
+    Set<String> prefixes = Sets.newLinkedHashSet(getFilePrefixes());
+    StreamFileOffset earliest = null;
+    for (StreamFileOffset offset : offsets) {
+      prefixes.remove(offset.getNamePrefix());
+      if (earliest == null || offset.getPartitionStart() < earliest.getPartitionStart()) {
+        earliest = offset;
+      }
+    }
+    if (prefixes.isEmpty() || earliest == null) {
+      return offsets;
+    }
+
+    List<StreamFileOffset> result = Lists.newArrayList(offsets);
+    Location partitionLocation = Locations.getParent(earliest.getEventLocation());
+    for (String prefix : prefixes) {
+      Location eventLocation = StreamUtils.createStreamLocation(partitionLocation, prefix, 0, StreamFileType.EVENT);
+      result.add(new StreamFileOffset(eventLocation, 0, earliest.getGeneration()));
+    }
+    return result;
+  }
+
   @Override
   public final StreamConsumer create(StreamId streamId, String namespace,
                                      ConsumerConfig consumerConfig) throws IOException {
@@ -173,7 +216,8 @@ public abstract class AbstractStreamFileConsumerFactory implements StreamConsume
       if (useStoredStates) {
         LOG.info("Create file reader with consumer state: {}", consumerState);
         // Has existing offsets, just resume from there.
-        MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, consumerState.getState());
+        Iterable<StreamFileOffset> offsets = addMissingFileOffsets(consumerState.getState());
+        MultiLiveStreamFileReader reader = new MultiLiveStreamFileReader(streamConfig, offsets);
         reader.initialize();
         return reader;
       }
@@ -19,6 +19,7 @@ import co.cask.cdap.api.Predicate;
 import co.cask.cdap.api.data.format.FormatSpecification;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.stream.StreamSpecification;
+import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.StreamNotFoundException;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -27,6 +28,7 @@ import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.common.utils.OSDetector;
 import co.cask.cdap.data.stream.CoordinatorStreamProperties;
+import co.cask.cdap.data.stream.StreamBlockCodec;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
 import co.cask.cdap.data.stream.StreamFileOffset;
 import co.cask.cdap.data.stream.StreamUtils;
@@ -84,6 +86,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.List;
@@ -320,7 +323,8 @@ public class FileStreamAdmin implements StreamAdmin {
           }
 
           return new StreamConfig(streamId, config.getPartitionDuration(), config.getIndexInterval(),
-                                  config.getTTL(), getStreamLocation(streamId), config.getFormat(), threshold);
+                                  config.getTTL(), getStreamLocation(streamId), config.getFormat(), threshold,
+                                  config.getCompression());
         }
       });
     } catch (Exception ex) {
@@ -416,6 +420,8 @@ public class FileStreamAdmin implements StreamAdmin {
     ensureAccess(streamNamespace, Action.WRITE);
 
     final Properties properties = (props == null) ? new Properties() : props;
+    // Reject an invalid compression before anything is created for the stream
+    getCompression(properties);
     String specifiedOwnerPrincipal = properties.containsKey(Constants.Security.PRINCIPAL) ?
       properties.getProperty(Constants.Security.PRINCIPAL) : null;
 
@@ -606,6 +612,7 @@ public class FileStreamAdmin implements StreamAdmin {
             Constants.Stream.TTL, cConf.get(Constants.Stream.TTL)));
           int threshold = Integer.parseInt(properties.getProperty(
             Constants.Stream.NOTIFICATION_THRESHOLD, cConf.get(Constants.Stream.NOTIFICATION_THRESHOLD)));
+          StreamBlockCodec compression = getCompression(properties);
           String description = properties.getProperty(Constants.Stream.DESCRIPTION);
           FormatSpecification formatSpec = null;
           if (properties.containsKey(Constants.Stream.FORMAT_SPECIFICATION)) {
@@ -614,7 +621,7 @@ public class FileStreamAdmin implements StreamAdmin {
           }
 
           final StreamConfig config = new StreamConfig(streamId, partitionDuration, indexInterval,
-                                                       ttl, streamLocation, formatSpec, threshold);
+                                                       ttl, streamLocation, formatSpec, threshold, compression);
           impersonator.doAs(streamId, new Callable<Void>() {
             @Override
             public Void call() throws Exception {
@@ -771,6 +778,53 @@ public class FileStreamAdmin implements StreamAdmin {
     return new StreamProperties(config.getTTL(), config.getFormat(), config.getNotificationThresholdMB());
   }
 
+  /**
+   * Returns the codec for the data blocks of a new stream, which defaults to the one in the cConf.
+   *
+   * @throws BadRequestException if the codec of the stream is not a known codec
+   * @throws IllegalArgumentException if the default codec in the cConf is not a known codec
+   */
+  private StreamBlockCodec getCompression(Properties properties) throws BadRequestException {
+    String name = properties.getProperty(Constants.Stream.COMPRESSION);
+    if (name != null) {
+      StreamBlockCodec codec = parseCompression(name);
+      if (codec == null) {
+        throw new BadRequestException(String.format("Invalid compression '%s'. Compression must be one of %s.",
+                                                    name, getCompressionNames()));
+      }
+      return codec;
+    }
+
+    String defaultName = cConf.get(Constants.Stream.COMPRESSION);
+    StreamBlockCodec defaultCodec = parseCompression(defaultName);
+    if (defaultCodec == null) {
+      throw new IllegalArgumentException(String.format("Invalid value '%s' for %s. Compression must be one of %s.",
+                                                       defaultName, Constants.Stream.COMPRESSION,
+                                                       getCompressionNames()));
+    }
+    return defaultCodec;
+  }
+
+  private static List<String> getCompressionNames() {
+    List<String> names = new ArrayList<>();
+    for (StreamBlockCodec codec : StreamBlockCodec.values()) {
+      names.add(codec.name().toLowerCase());
+    }
+    return names;
+  }
+
+  @Nullable
+  private static StreamBlockCodec parseCompression(@Nullable String name) {
+    if (name == null) {
+      return null;
+    }
+    try {
+      return StreamBlockCodec.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
   private void writeConfig(StreamConfig config) throws IOException {
     Location configLocation = config.getLocation().append(CONFIG_FILE_NAME);
     Location tmpConfigLocation = configLocation.getTempFile(null);
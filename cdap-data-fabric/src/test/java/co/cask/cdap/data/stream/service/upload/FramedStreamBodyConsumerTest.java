@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service.upload;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.proto.id.StreamId;
+import co.cask.http.BodyConsumer;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.InputSupplier;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Unit test for {@link FramedStreamBodyConsumer}.
+ */
+public class FramedStreamBodyConsumerTest extends StreamBodyConsumerTestBase {
+
+  @Override
+  protected ContentInfo generateFile(final int recordCount) throws IOException {
+    File file = TMP_FOLDER.newFile();
+    try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+      for (int i = 0; i < recordCount; i++) {
+        byte[] body = getBody(i);
+        output.writeInt(body.length);
+        output.write(body);
+      }
+    }
+    return new FileContentInfo(file) {
+      @Override
+      public boolean verify(Map<String, String> headers,
+                            InputSupplier<? extends InputStream> contentSupplier) throws IOException {
+        try (InputStream input = contentSupplier.getInput()) {
+          for (int i = 0; i < recordCount; i++) {
+            byte[] expected = getBody(i);
+            byte[] actual = new byte[expected.length];
+            ByteStreams.readFully(input, actual);
+            if (!Bytes.equals(expected, actual)) {
+              return false;
+            }
+          }
+          return input.read() < 0;
+        }
+      }
+    };
+  }
+
+  @Override
+  protected BodyConsumer createBodyConsumer(ContentWriterFactory contentWriterFactory) {
+    return new FramedStreamBodyConsumer(contentWriterFactory, FramedStreamBodyConsumer.Framing.LENGTH_PREFIXED,
+                                        1024, new NoopMetricsContext());
+  }
+
+  @Test
+  public void testAvroFraming() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    int recordCount = 300;
+    for (int i = 0; i < recordCount; i++) {
+      // Use increasing sizes so that the lengths are encoded with different number of bytes
+      byte[] body = new byte[i];
+      for (int j = 0; j < i; j++) {
+        body[j] = (byte) (i + j);
+      }
+      encoder.writeBytes(body);
+    }
+    encoder.writeBytes(new byte[0]);
+
+    TestContentWriter contentWriter = new TestContentWriter();
+    TestHttpResponder responder = new TestHttpResponder();
+    BodyConsumer bodyConsumer = new FramedStreamBodyConsumer(createContentWriterFactory(contentWriter),
+                                                             FramedStreamBodyConsumer.Framing.AVRO, 1024,
+                                                             new NoopMetricsContext());
+    // Send the content one byte at a time to exercise all partial cases
+    byte[] content = os.toByteArray();
+    for (byte b : content) {
+      bodyConsumer.chunk(ChannelBuffers.wrappedBuffer(new byte[] { b }), responder);
+    }
+    bodyConsumer.finished(responder);
+
+    Assert.assertEquals(HttpResponseStatus.OK, responder.getResponseStatus());
+    Assert.assertEquals(recordCount + 1, contentWriter.getEvents());
+    ByteBuffer written = contentWriter.getContent();
+    for (int i = 0; i < recordCount; i++) {
+      for (int j = 0; j < i; j++) {
+        Assert.assertEquals((byte) (i + j), written.get());
+      }
+    }
+    Assert.assertFalse(written.hasRemaining());
+  }
+
+  @Test
+  public void testIncompleteContent() throws Exception {
+    byte[] body = "Incomplete".getBytes(Charsets.UTF_8);
+    ByteBuffer content = ByteBuffer.allocate(4 + body.length);
+    content.putInt(body.length + 1).put(body).flip();
+
+    TestContentWriter contentWriter = new TestContentWriter();
+    TestHttpResponder responder = new TestHttpResponder();
+    BodyConsumer bodyConsumer = createBodyConsumer(createContentWriterFactory(contentWriter));
+    bodyConsumer.chunk(ChannelBuffers.wrappedBuffer(content), responder);
+    bodyConsumer.finished(responder);
+
+    Assert.assertEquals(HttpResponseStatus.BAD_REQUEST, responder.getResponseStatus());
+    Assert.assertEquals(0, contentWriter.getEvents());
+  }
+
+  @Test
+  public void testEventTooLarge() throws Exception {
+    ByteBuffer content = ByteBuffer.allocate(4 + 4 + 2048);
+    content.putInt(4).putInt(1).putInt(2048).flip();
+
+    TestContentWriter contentWriter = new TestContentWriter();
+    TestHttpResponder responder = new TestHttpResponder();
+    BodyConsumer bodyConsumer = createBodyConsumer(createContentWriterFactory(contentWriter));
+    try {
+      bodyConsumer.chunk(ChannelBuffers.wrappedBuffer(content), responder);
+      Assert.fail("Expected failure for event larger than the maximum size");
+    } catch (RuntimeException e) {
+      // Expected
+    }
+    Assert.assertEquals(HttpResponseStatus.BAD_REQUEST, responder.getResponseStatus());
+    // Events before the invalid one in the same chunk are not written
+    Assert.assertEquals(0, contentWriter.getEvents());
+  }
+
+  private byte[] getBody(int i) {
+    return ("Event number " + i).getBytes(Charsets.UTF_8);
+  }
+
+  private ContentWriterFactory createContentWriterFactory(final ContentWriter contentWriter) {
+    return new ContentWriterFactory() {
+      @Override
+      public StreamId getStream() {
+        return new StreamId("test_namespace", "test-stream");
+      }
+
+      @Override
+      public ContentWriter create(Map<String, String> headers) throws IOException {
+        return contentWriter;
+      }
+    };
+  }
+}
@@ -155,7 +155,7 @@ public abstract class StreamBodyConsumerTestBase {
   /**
    * A {@link ContentWriter} for testing. It keeps all content written in memory.
    */
-  private static class TestContentWriter implements ContentWriter {
+  protected static class TestContentWriter implements ContentWriter {
     private final List<ChannelBuffer> contents;
     private final CountDownLatch completion;
     private int events;
@@ -205,7 +205,7 @@ public abstract class StreamBodyConsumerTestBase {
   /**
    * A {@link HttpResponder} for testing. It only saved the first response status event sent.
    */
-  private static class TestHttpResponder extends AbstractHttpResponder {
+  protected static class TestHttpResponder extends AbstractHttpResponder {
     private final AtomicReference<HttpResponseStatus> responseStatus = new AtomicReference<>();
 
     @Override
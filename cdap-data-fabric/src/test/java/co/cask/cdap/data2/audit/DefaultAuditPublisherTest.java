@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.audit;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.common.utils.Tasks;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
+import co.cask.cdap.proto.audit.AuditPayload;
+import co.cask.cdap.proto.audit.AuditType;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link DefaultAuditPublisher}.
+ */
+public class DefaultAuditPublisherTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static CConfiguration cConf;
+  private static MessagingService messagingService;
+  private static TopicId auditTopic;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+
+    Injector injector = Guice.createInjector(
+      new ConfigModule(cConf),
+      new DiscoveryRuntimeModule().getInMemoryModules(),
+      new MessagingServerRuntimeModule().getInMemoryModules(),
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(MetricsCollectionService.class).toInstance(new NoOpMetricsCollectionService());
+        }
+      }
+    );
+    messagingService = injector.getInstance(MessagingService.class);
+    if (messagingService instanceof Service) {
+      ((Service) messagingService).startAndWait();
+    }
+    auditTopic = NamespaceId.SYSTEM.topic(cConf.get(Constants.Audit.TOPIC));
+  }
+
+  @AfterClass
+  public static void finish() {
+    if (messagingService instanceof Service) {
+      ((Service) messagingService).stopAndWait();
+    }
+  }
+
+  @Test
+  public void testPublish() throws Exception {
+    // publish synchronously
+    CConfiguration syncConf = CConfiguration.copy(cConf);
+    syncConf.setInt(Constants.Audit.PUBLISH_QUEUE_SIZE, 0);
+    DefaultAuditPublisher syncPublisher = new DefaultAuditPublisher(syncConf, messagingService);
+    final int before = countAuditMessages();
+    syncPublisher.publish(NamespaceId.DEFAULT.dataset("sync"), AuditType.CREATE, AuditPayload.EMPTY_PAYLOAD);
+    Assert.assertEquals(before + 1, countAuditMessages());
+
+    // publish synchronously until the publisher is started
+    CConfiguration asyncConf = CConfiguration.copy(cConf);
+    asyncConf.setInt(Constants.Audit.PUBLISH_BATCH_SIZE, 10);
+    DefaultAuditPublisher asyncPublisher = new DefaultAuditPublisher(asyncConf, messagingService);
+    asyncPublisher.publish(NamespaceId.DEFAULT.dataset("notstarted"), AuditType.CREATE, AuditPayload.EMPTY_PAYLOAD);
+    Assert.assertEquals(before + 2, countAuditMessages());
+
+    // publish asynchronously, in multiple batches
+    asyncPublisher.startAndWait();
+    try {
+      for (int i = 0; i < 25; i++) {
+        asyncPublisher.publish(NamespaceId.DEFAULT.dataset("async" + i), AuditType.CREATE,
+                               AuditPayload.EMPTY_PAYLOAD);
+      }
+      Tasks.waitFor(before + 27, new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+          return countAuditMessages();
+        }
+      }, 10, TimeUnit.SECONDS, 50, TimeUnit.MILLISECONDS);
+    } finally {
+      asyncPublisher.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testStop() throws Exception {
+    // messages wait for a full batch for longer than the test runs
+    CConfiguration asyncConf = CConfiguration.copy(cConf);
+    asyncConf.setLong(Constants.Audit.PUBLISH_BATCH_DELAY_MS, TimeUnit.MINUTES.toMillis(10));
+    DefaultAuditPublisher publisher = new DefaultAuditPublisher(asyncConf, messagingService);
+    publisher.startAndWait();
+    int before = countAuditMessages();
+    for (int i = 0; i < 5; i++) {
+      publisher.publish(NamespaceId.DEFAULT.dataset("stop" + i), AuditType.CREATE, AuditPayload.EMPTY_PAYLOAD);
+    }
+
+    // all the queued messages are published once the publisher is stopped
+    publisher.stopAndWait();
+    Assert.assertEquals(before + 5, countAuditMessages());
+
+    // messages published after stopping are published synchronously
+    publisher.publish(NamespaceId.DEFAULT.dataset("stopped"), AuditType.CREATE, AuditPayload.EMPTY_PAYLOAD);
+    Assert.assertEquals(before + 6, countAuditMessages());
+  }
+
+  private int countAuditMessages() throws Exception {
+    int count = 0;
+    try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(auditTopic).fetch()) {
+      while (iterator.hasNext()) {
+        iterator.next();
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,8 @@ import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data.dataset.SystemDatasetInstantiator;
 import co.cask.cdap.data2.dataset2.DynamicDatasetCache;
 import co.cask.cdap.data2.dataset2.MultiThreadDatasetCache;
+import com.google.common.collect.ImmutableMap;
+import org.apache.tephra.TransactionContext;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -88,6 +90,74 @@ public class MultiThreadDatasetCacheTest extends DynamicDatasetCacheTest {
     }, 5, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
   }
 
+  @Test
+  public void testCacheReusedAfterThreadTerminates() throws Throwable {
+    TestDataset a1 = getInNewThread(cache, false);
+    TestDataset a2 = getInNewThread(cache, false);
+    // the second thread must have received the cache released by the first thread
+    Assert.assertSame(a1, a2);
+    Assert.assertFalse(a1.isClosed());
+
+    // a thread that terminates with an active transaction leaves a cache that must not be reused
+    TestDataset a3 = getInNewThread(cache, true);
+    Assert.assertSame(a1, a3);
+    TestDataset a4 = getInNewThread(cache, false);
+    Assert.assertNotSame(a3, a4);
+    Assert.assertTrue(a3.isClosed());
+
+    // closing the cache closes all released caches
+    cache.close();
+    Assert.assertTrue(a4.isClosed());
+  }
+
+  @Test
+  public void testCacheNotReusedIfPoolDisabled() throws Throwable {
+    SystemDatasetInstantiator instantiator =
+      new SystemDatasetInstantiator(dsFramework, getClass().getClassLoader(), null);
+    MultiThreadDatasetCache noPoolCache = new MultiThreadDatasetCache(
+      instantiator, txClient, NAMESPACE, ImmutableMap.of(MultiThreadDatasetCache.POOL_SIZE, "0"), null, null);
+    try {
+      TestDataset a1 = getInNewThread(noPoolCache, false);
+      TestDataset a2 = getInNewThread(noPoolCache, false);
+      Assert.assertNotSame(a1, a2);
+      Assert.assertTrue(a1.isClosed());
+      Assert.assertFalse(a2.isClosed());
+    } finally {
+      noPoolCache.close();
+    }
+  }
+
+  /**
+   * Gets dataset "a" from the given cache in a new thread, and waits for that thread to terminate.
+   *
+   * @param startTx whether the thread should leave a transaction active when it terminates
+   */
+  private TestDataset getInNewThread(final DynamicDatasetCache datasetCache,
+                                     final boolean startTx) throws Throwable {
+    final AtomicReference<TestDataset> datasetRef = new AtomicReference<>();
+    final AtomicReference<Throwable> errorRef = new AtomicReference<>();
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          TestDataset dataset = datasetCache.getDataset("a");
+          datasetRef.set(dataset);
+          TransactionContext txContext = datasetCache.newTransactionContext();
+          txContext.start();
+          if (!startTx) {
+            txContext.finish();
+          }
+        } catch (Throwable e) {
+          errorRef.set(e);
+        }
+      }
+    };
+    thread.start();
+    thread.join();
+    assertNoError(errorRef);
+    return datasetRef.get();
+  }
+
   private Thread createThread(final Map<String, TestDataset> datasetMap, final AtomicReference<Throwable> ref) {
     return new Thread() {
       @Override
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -29,6 +29,7 @@ import org.apache.tephra.TransactionExecutor;
 import org.junit.ClassRule;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
@@ -82,6 +83,16 @@ public class MetricsTableOnTableTest extends MetricsTableTest {
       });
     }
 
+    @Override
+    public SortedMap<byte[], byte[]> get(final List<byte[]> rows, final byte[] column) {
+      return txnl.executeUnchecked(new Callable<SortedMap<byte[], byte[]>>() {
+        @Override
+        public SortedMap<byte[], byte[]> call() {
+          return delegate.get(rows, column);
+        }
+      });
+    }
+
     @Override
     public void put(final SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates) {
       txnl.executeUnchecked(new TransactionExecutor.Subroutine() {
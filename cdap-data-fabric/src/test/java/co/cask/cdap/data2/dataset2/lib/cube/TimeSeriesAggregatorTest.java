@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Tests for {@link TimeSeriesAggregator}.
+ */
+public class TimeSeriesAggregatorTest {
+
+  private static final List<String> GROUP_BY = ImmutableList.of("dim1");
+  private static final Map<String, AggregationFunction> MEASUREMENTS = ImmutableMap.of(
+    "sum", AggregationFunction.SUM, "max", AggregationFunction.MAX,
+    "min", AggregationFunction.MIN, "latest", AggregationFunction.LATEST);
+
+  @Test
+  public void testAggregationFunctions() {
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(GROUP_BY, MEASUREMENTS, 10);
+    for (String measure : MEASUREMENTS.keySet()) {
+      // two results for the same series, with overlapping time ranges
+      Assert.assertTrue(aggregator.add(result(measure, "a", "x", timeValue(100, 5), timeValue(110, 2))));
+      Assert.assertTrue(aggregator.add(result(measure, "a", "y", timeValue(110, 7), timeValue(120, 1))));
+    }
+    Assert.assertEquals(4, aggregator.size());
+
+    Map<String, TimeSeries> byMeasure = Maps.newHashMap();
+    for (TimeSeries timeSeries : aggregator.getTimeSeries()) {
+      Assert.assertEquals(ImmutableMap.of("dim1", "a"), timeSeries.getDimensionValues());
+      byMeasure.put(timeSeries.getMeasureName(), timeSeries);
+    }
+    assertTimeValues(byMeasure.get("sum"), timeValue(100, 5), timeValue(110, 9), timeValue(120, 1));
+    assertTimeValues(byMeasure.get("max"), timeValue(100, 5), timeValue(110, 7), timeValue(120, 1));
+    assertTimeValues(byMeasure.get("min"), timeValue(100, 5), timeValue(110, 2), timeValue(120, 1));
+    assertTimeValues(byMeasure.get("latest"), timeValue(100, 5), timeValue(110, 7), timeValue(120, 1));
+  }
+
+  @Test
+  public void testGrouping() {
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(GROUP_BY, MEASUREMENTS, 1);
+    aggregator.add(result("sum", "a", "x", timeValue(1, 1)));
+    aggregator.add(result("sum", "b", "x", timeValue(1, 2)));
+    aggregator.add(result("sum", "a", "y", timeValue(1, 3)));
+    // null value for a group by dimension is skipped
+    Assert.assertFalse(aggregator.add(result("sum", null, "y", timeValue(1, 4))));
+    // missing group by dimension is its own series
+    Assert.assertTrue(aggregator.add(new FactScanResult("sum", ImmutableList.of(new DimensionValue("dim2", "x")),
+                                                        ImmutableList.of(timeValue(1, 5)))));
+    // result without time values does not create a series
+    Assert.assertTrue(aggregator.add(result("sum", "c", "x")));
+
+    Map<Map<String, String>, TimeSeries> byDimensions = Maps.newHashMap();
+    for (TimeSeries timeSeries : aggregator.getTimeSeries()) {
+      byDimensions.put(timeSeries.getDimensionValues(), timeSeries);
+    }
+    Assert.assertEquals(3, byDimensions.size());
+    assertTimeValues(byDimensions.get(ImmutableMap.of("dim1", "a")), timeValue(1, 4));
+    assertTimeValues(byDimensions.get(ImmutableMap.of("dim1", "b")), timeValue(1, 2));
+    assertTimeValues(byDimensions.get(ImmutableMap.<String, String>of()), timeValue(1, 5));
+  }
+
+  @Test
+  public void testRandomOrderAndOffGrid() {
+    // timestamps in random order over a wide range, including some that are not on the resolution grid
+    Random random = new Random(0);
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(GROUP_BY, MEASUREMENTS, 60);
+    TreeMap<Long, Long> expected = new TreeMap<>();
+    for (int i = 0; i < 2000; i++) {
+      long ts = 1000000L + random.nextInt(1000) * 60L + (random.nextInt(10) == 0 ? 7 : 0);
+      long value = random.nextInt(100);
+      Long current = expected.get(ts);
+      expected.put(ts, current == null ? value : current + value);
+      aggregator.add(result("sum", "a", "x", timeValue(ts, value)));
+    }
+
+    List<TimeValue> expectedValues = Lists.newArrayList();
+    for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+      expectedValues.add(timeValue(entry.getKey(), entry.getValue()));
+    }
+    Assert.assertEquals(1, aggregator.size());
+    Assert.assertEquals(expectedValues, aggregator.getTimeSeries().get(0).getTimeValues());
+  }
+
+  @Test
+  public void testSparseSeries() {
+    // few values that are far apart, over a range that doesn't fit in an array at resolution 1
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(GROUP_BY, MEASUREMENTS, 1);
+    long[] timestamps = { 5000000000L, 0L, 2500000000L, 10L, 5000000000L, 2500000001L };
+    for (long ts : timestamps) {
+      aggregator.add(result("max", "a", "x", timeValue(ts, ts % 1000)));
+    }
+    aggregator.add(result("max", "a", "x", timeValue(0L, 500L)));
+
+    Assert.assertEquals(1, aggregator.size());
+    assertTimeValues(aggregator.getTimeSeries().get(0), timeValue(0L, 500L), timeValue(10L, 10L),
+                     timeValue(2500000000L, 0L), timeValue(2500000001L, 1L), timeValue(5000000000L, 0L));
+  }
+
+  private void assertTimeValues(TimeSeries timeSeries, TimeValue... timeValues) {
+    Assert.assertEquals(ImmutableList.copyOf(timeValues), timeSeries.getTimeValues());
+  }
+
+  private FactScanResult result(String measure, String dim1, String dim2, TimeValue... timeValues) {
+    return new FactScanResult(measure, ImmutableList.of(new DimensionValue("dim1", dim1),
+                                                        new DimensionValue("dim2", dim2)),
+                              ImmutableList.copyOf(timeValues));
+  }
+
+  private TimeValue timeValue(long ts, long value) {
+    return new TimeValue(ts, value);
+  }
+}
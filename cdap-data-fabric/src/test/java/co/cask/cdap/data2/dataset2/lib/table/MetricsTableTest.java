@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -99,6 +99,26 @@ public abstract class MetricsTableTest {
     Assert.assertArrayEquals(Y, table.get(A, Q));
   }
 
+  @Test
+  public void testMultiGet() throws Exception {
+    MetricsTable table = getTable("testMultiGet");
+    table.put(ImmutableSortedMap.<byte[], SortedMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+              .put(A, mapOf(P, Bytes.toLong(X), Q, Bytes.toLong(Y)))
+              .put(B, mapOf(Q, Bytes.toLong(Z))).build());
+
+    // Rows without the column and rows that don't exist are not in the result
+    SortedMap<byte[], byte[]> result = table.get(ImmutableList.of(C, B, A), P);
+    Assert.assertEquals(1, result.size());
+    Assert.assertArrayEquals(X, result.get(A));
+
+    result = table.get(ImmutableList.of(A, B, C), Q);
+    Assert.assertEquals(2, result.size());
+    Assert.assertArrayEquals(Y, result.get(A));
+    Assert.assertArrayEquals(Z, result.get(B));
+
+    Assert.assertTrue(table.get(ImmutableList.<byte[]>of(), Q).isEmpty());
+  }
+
   protected class IncThread extends Thread implements Closeable {
     final MetricsTable table;
     final byte[] row;
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -15,12 +15,19 @@
  */
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Map;
+
 /**
  *
  */
@@ -60,7 +67,7 @@ public class EntityTableTest {
     InMemoryTableService.create("testRecycleId");
     MetricsTable table = new InMemoryMetricsTable("testRecycleId");
 
-    EntityTable entityTable = new EntityTable(table, 101);
+    EntityTable entityTable = new EntityTable(table, 101L, EntityTable.DEFAULT_CACHE_SIZE);
 
     // Generate 500 entries, the (101-200) will replace the (1-100) values and so on as we
     // only have 100 entries as maxId.
@@ -91,4 +98,102 @@ public class EntityTableTest {
       Assert.assertEquals("app" + i, entityTable.getName(i, "app"));
     }
   }
+
+  @Test
+  public void testGetIds() throws Exception {
+    InMemoryTableService.create("testGetIds");
+    MetricsTable table = new InMemoryMetricsTable("testGetIds");
+
+    EntityTable entityTable = new EntityTable(table);
+    for (int i = 1; i <= 5; i++) {
+      Assert.assertEquals((long) i, entityTable.getId("app", "app" + i));
+    }
+
+    // Use a new EntityTable so that existing entities are loaded from the table, mixed with new ones
+    entityTable = new EntityTable(table);
+    Assert.assertEquals(2L, entityTable.getId("app", "app2"));
+    Map<String, Long> ids = entityTable.getIds("app", Arrays.asList("app1", "app2", "app6", null, "app7", "app6",
+                                                                     "app5"));
+    Assert.assertEquals(6, ids.size());
+    Assert.assertEquals(Long.valueOf(1L), ids.get("app1"));
+    Assert.assertEquals(Long.valueOf(2L), ids.get("app2"));
+    Assert.assertEquals(Long.valueOf(5L), ids.get("app5"));
+    Assert.assertEquals(Long.valueOf(6L), ids.get("app6"));
+    Assert.assertEquals(Long.valueOf(7L), ids.get("app7"));
+    Assert.assertEquals(Long.valueOf(0L), ids.get(null));
+
+    // Should be consistent with single lookup and reverse lookup, from another EntityTable as well
+    for (EntityTable et : ImmutableList.of(entityTable, new EntityTable(table))) {
+      for (int i = 1; i <= 7; i++) {
+        Assert.assertEquals((long) i, et.getId("app", "app" + i));
+        Assert.assertEquals("app" + i, et.getName(i, "app"));
+      }
+    }
+  }
+
+  @Test
+  public void testWarmUp() throws Exception {
+    InMemoryTableService.create("testWarmUp");
+    MetricsTable table = new InMemoryMetricsTable("testWarmUp");
+
+    EntityTable entityTable = new EntityTable(table);
+    for (int i = 1; i <= 10; i++) {
+      Assert.assertEquals((long) i, entityTable.getId("app", "app" + i));
+      Assert.assertEquals((long) i, entityTable.getId("flow", "flow" + i));
+    }
+
+    // Warm up a new EntityTable with the last 5 IDs of the "app" type and an unknown type
+    entityTable = new EntityTable(table);
+    entityTable.warmUp(ImmutableSet.of("app", "unknown"), 5);
+
+    // Remove all entries from the table. Only the warmed up entities can be found from the cache.
+    for (int i = 1; i <= 10; i++) {
+      for (String type : ImmutableList.of("app", "flow")) {
+        table.delete(Bytes.toBytes(type + "." + type + i), new byte[][] { Bytes.toBytes("id") });
+        table.delete(Bytes.concat(Bytes.toBytes(type + "."), Bytes.toBytes((long) i)),
+                     new byte[][] { Bytes.toBytes("name") });
+      }
+    }
+    for (int i = 6; i <= 10; i++) {
+      Assert.assertEquals((long) i, entityTable.getId("app", "app" + i));
+      Assert.assertEquals("app" + i, entityTable.getName(i, "app"));
+    }
+    try {
+      entityTable.getName(5, "app");
+      Assert.fail("Expected name of not warmed up id not found");
+    } catch (UncheckedExecutionException e) {
+      // Expected
+      Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+    try {
+      entityTable.getName(10, "flow");
+      Assert.fail("Expected name of not warmed up type not found");
+    } catch (UncheckedExecutionException e) {
+      // Expected
+      Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+  }
+
+  @Test
+  public void testWarmUpAfterRecycle() throws Exception {
+    InMemoryTableService.create("testWarmUpAfterRecycle");
+    MetricsTable table = new InMemoryMetricsTable("testWarmUpAfterRecycle");
+
+    EntityTable entityTable = new EntityTable(table, 101L, EntityTable.DEFAULT_CACHE_SIZE);
+    // The last ID assigned is 10 after recycling, with the 91-100 from the previous round
+    for (long i = 1; i <= 110; i++) {
+      entityTable.getId("app", "app" + i);
+    }
+
+    entityTable = new EntityTable(table, 101L, EntityTable.DEFAULT_CACHE_SIZE);
+    entityTable.warmUp(ImmutableList.of("app"), 20);
+    for (long i = 1; i <= 100; i++) {
+      table.delete(Bytes.concat(Bytes.toBytes("app."), Bytes.toBytes(i)), new byte[][] { Bytes.toBytes("name") });
+    }
+    // IDs 1-10 are for app101-app110 and IDs 91-100 are for app91-app100
+    for (long i = 1; i <= 10; i++) {
+      Assert.assertEquals("app" + (100 + i), entityTable.getName(i, "app"));
+      Assert.assertEquals("app" + (90 + i), entityTable.getName(90 + i, "app"));
+    }
+  }
 }
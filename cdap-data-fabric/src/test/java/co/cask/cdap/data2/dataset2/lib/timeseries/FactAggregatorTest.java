@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.timeseries;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
+import co.cask.cdap.data2.dataset2.lib.cube.TimeSeriesAggregator;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests for {@link FactAggregator}.
+ */
+public class FactAggregatorTest {
+
+  private static final int RESOLUTION = 10;
+
+  @Test
+  public void testAggregatedScan() throws Exception {
+    InMemoryTableService.create("AggregatorEntityTable");
+    InMemoryTableService.create("AggregatorDataTable");
+    FactTable table = new FactTable(new InMemoryMetricsTable("AggregatorDataTable"),
+                                    new EntityTable(new InMemoryMetricsTable("AggregatorEntityTable")),
+                                    RESOLUTION, 5);
+
+    long ts = ((System.currentTimeMillis() / 1000) / RESOLUTION) * RESOLUTION;
+    Random random = new Random(42);
+    String[] values = { "a", "b", "c", null };
+    List<Fact> facts = Lists.newArrayList();
+    for (int i = 0; i < 1000; i++) {
+      List<DimensionValue> dimensionValues = ImmutableList.of(
+        new DimensionValue("dim1", values[random.nextInt(values.length)]),
+        new DimensionValue("dim2", values[random.nextInt(values.length - 1)]));
+      long factTs = ts + random.nextInt(20) * RESOLUTION;
+      facts.add(new Fact(factTs, dimensionValues, ImmutableList.of(
+        new Measurement("count", MeasureType.COUNTER, random.nextInt(100)),
+        new Measurement("gauge", MeasureType.GAUGE, random.nextInt(100)))));
+    }
+    table.add(facts);
+
+    List<DimensionValue> scanValues = ImmutableList.of(new DimensionValue("dim1", null),
+                                                       new DimensionValue("dim2", null));
+    List<String> groupBy = ImmutableList.of("dim1");
+    // whole range, and a range that is not aligned with the time bases of the rows
+    for (long[] range : new long[][] { { ts, ts + 20 * RESOLUTION }, { ts + 3 * RESOLUTION, ts + 7 * RESOLUTION } }) {
+      for (AggregationFunction function : AggregationFunction.values()) {
+        Map<String, AggregationFunction> measurements = ImmutableMap.of("count", function,
+                                                                        "gauge", AggregationFunction.LATEST);
+        FactScan scan = new FactScan(range[0], range[1], measurements.keySet(), scanValues);
+        Assert.assertEquals(getTimeSeries(table.scan(scan), groupBy, measurements),
+                            getTimeSeries(table.scan(scan, groupBy, measurements), groupBy, measurements));
+      }
+    }
+
+    // one partial row per measure and value of dim1, null values are skipped
+    Map<String, AggregationFunction> measurements = ImmutableMap.of("count", AggregationFunction.SUM,
+                                                                    "gauge", AggregationFunction.LATEST);
+    FactScan scan = new FactScan(ts, ts + 20 * RESOLUTION, measurements.keySet(), scanValues);
+    Assert.assertEquals(6, count(table.scan(scan, groupBy, measurements)));
+
+    // no aggregation if a measure of the scan has no aggregation function
+    Assert.assertEquals(count(table.scan(scan)),
+                        count(table.scan(scan, groupBy, ImmutableMap.of("count", AggregationFunction.SUM))));
+  }
+
+  // the order of the time series is not defined
+  private Set<TimeSeries> getTimeSeries(FactScanner scanner, List<String> groupBy,
+                                        Map<String, AggregationFunction> measurements) {
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(groupBy, measurements, RESOLUTION);
+    try {
+      while (scanner.hasNext()) {
+        aggregator.add(scanner.next());
+      }
+    } finally {
+      scanner.close();
+    }
+    return ImmutableSet.copyOf(aggregator.getTimeSeries());
+  }
+
+  private int count(FactScanner scanner) {
+    int count = 0;
+    try {
+      while (scanner.hasNext()) {
+        scanner.next();
+        count++;
+      }
+    } finally {
+      scanner.close();
+    }
+    return count;
+  }
+}
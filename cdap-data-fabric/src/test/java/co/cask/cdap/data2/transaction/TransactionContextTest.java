@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.transaction;
 
+import co.cask.cdap.common.lang.ClassLoaders;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -35,11 +36,19 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Unit test for {@link AbstractTransactionContext}.
@@ -512,6 +521,92 @@ public class TransactionContextTest {
     }
   }
 
+  @Test
+  public void testConcurrentPersist() throws Exception {
+    // Both tx awares can only complete the persist if they are persisted concurrently
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    DummyTxAware txAware1 = new BarrierTxAware(barrier);
+    DummyTxAware txAware2 = new BarrierTxAware(barrier);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      TransactionContext context = new SimpleTransactionContext(txClient, executor, txAware1, txAware2);
+      context.start();
+      txAware1.addChange(A);
+      txAware2.addChange(B);
+      context.finish();
+
+      Assert.assertTrue(txAware1.committed);
+      Assert.assertTrue(txAware2.committed);
+      Assert.assertTrue(txAware1.postCommitted);
+      Assert.assertTrue(txAware2.postCommitted);
+      Assert.assertFalse(txAware1.rolledBack);
+      Assert.assertFalse(txAware2.rolledBack);
+      Assert.assertEquals(txClient.state, DummyTxClient.CommitState.Committed);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testConcurrentPersistContextClassLoader() throws Exception {
+    final CyclicBarrier barrier = new CyclicBarrier(2);
+    BarrierTxAware txAware1 = new BarrierTxAware(barrier);
+    BarrierTxAware txAware2 = new BarrierTxAware(barrier);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    ClassLoader contextClassLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+    ClassLoader oldClassLoader = ClassLoaders.setContextClassLoader(contextClassLoader);
+    try {
+      TransactionContext context = new SimpleTransactionContext(txClient, executor, txAware1, txAware2);
+      context.start();
+      txAware1.addChange(A);
+      txAware2.addChange(B);
+      context.finish();
+
+      // Both tx awares are persisted with the context ClassLoader of the thread that finishes the transaction
+      Assert.assertSame(contextClassLoader, txAware1.commitClassLoader);
+      Assert.assertSame(contextClassLoader, txAware2.commitClassLoader);
+      Assert.assertNotSame(txAware1.commitThread, txAware2.commitThread);
+    } finally {
+      ClassLoaders.setContextClassLoader(oldClassLoader);
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testConcurrentPersistFailure() throws Exception {
+    DummyTxAware ds3 = new DummyTxAware();
+    ds2.failCommitTxOnce = InduceFailure.ThrowException;
+    ds3.failCommitTxOnce = InduceFailure.ReturnFalse;
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      TransactionContext context = new SimpleTransactionContext(txClient, executor, ds1, ds2, ds3);
+      context.start();
+      ds1.addChange(A);
+      ds2.addChange(B);
+      try {
+        context.finish();
+        Assert.fail("Persist should have failed - exception should be thrown");
+      } catch (TransactionFailureException e) {
+        // The failure from ds2 is the cause, with the failure of ds3 suppressed
+        Assert.assertEquals("persist failure", e.getCause().getMessage());
+        Assert.assertEquals(1, e.getSuppressed().length);
+      }
+      // All tx awares are persisted concurrently, and all of them are rolled back
+      Assert.assertTrue(ds1.committed);
+      Assert.assertTrue(ds2.committed);
+      Assert.assertTrue(ds3.committed);
+      Assert.assertFalse(ds1.postCommitted);
+      Assert.assertFalse(ds2.postCommitted);
+      Assert.assertFalse(ds3.postCommitted);
+      Assert.assertTrue(ds1.rolledBack);
+      Assert.assertTrue(ds2.rolledBack);
+      Assert.assertTrue(ds3.rolledBack);
+      Assert.assertEquals(txClient.state, DummyTxClient.CommitState.Aborted);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   enum InduceFailure { NoFailure, ReturnFalse, ThrowException }
 
   static class DummyTxAware implements TransactionAware {
@@ -613,6 +708,28 @@ public class TransactionContextTest {
     }
   }
 
+  /**
+   * A {@link DummyTxAware} that waits on a {@link CyclicBarrier} when persisting changes.
+   */
+  private static final class BarrierTxAware extends DummyTxAware {
+
+    private final CyclicBarrier barrier;
+    private volatile Thread commitThread;
+    private volatile ClassLoader commitClassLoader;
+
+    BarrierTxAware(CyclicBarrier barrier) {
+      this.barrier = barrier;
+    }
+
+    @Override
+    public boolean commitTx() throws Exception {
+      commitThread = Thread.currentThread();
+      commitClassLoader = commitThread.getContextClassLoader();
+      barrier.await(10, TimeUnit.SECONDS);
+      return super.commitTx();
+    }
+  }
+
   private static final class DummyTxClient extends InMemoryTxSystemClient {
 
     private boolean failCanCommitOnce;
@@ -707,7 +824,12 @@ public class TransactionContextTest {
     private final Set<TransactionAware> txAwares;
 
     SimpleTransactionContext(TransactionSystemClient txClient, TransactionAware...txAwares) {
-      super(txClient);
+      this(txClient, null, txAwares);
+    }
+
+    SimpleTransactionContext(TransactionSystemClient txClient, @Nullable Executor persistExecutor,
+                             TransactionAware...txAwares) {
+      super(txClient, persistExecutor);
       this.txAwares = new LinkedHashSet<>(Arrays.asList(txAwares));
     }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -339,6 +339,42 @@ public abstract class QueueTest {
     testOneEnqueueDequeue(DequeueStrategy.ROUND_ROBIN);
   }
 
+  @Test
+  public void testMayHaveEntries() throws Exception {
+    QueueName queueName = QueueName.fromFlowlet(NamespaceId.DEFAULT.getEntityName(), "app", "flow", "flowlet",
+                                                "mayhave");
+    ConsumerConfig consumerConfig = new ConsumerConfig(0L, 0, 1, DequeueStrategy.FIFO, null);
+    configureGroups(queueName, ImmutableList.of(consumerConfig));
+
+    try (
+      QueueProducer producer = queueClientFactory.createProducer(queueName);
+      QueueConsumer consumer = queueClientFactory.createConsumer(queueName, consumerConfig, 1)
+    ) {
+      TransactionContext consumerTxContext = createTxContext(consumer);
+      consumerTxContext.start();
+      Assert.assertTrue(consumer.dequeue().isEmpty());
+      consumerTxContext.finish();
+
+      // Nothing in the queue
+      Assert.assertFalse(consumer.mayHaveEntries());
+
+      TransactionContext producerTxContext = createTxContext(producer);
+      producerTxContext.start();
+      producer.enqueue(new QueueEntry(Bytes.toBytes(1)));
+      producerTxContext.finish();
+
+      // The entry is written after the last consumer transaction
+      Assert.assertTrue(consumer.mayHaveEntries());
+
+      consumerTxContext.start();
+      Assert.assertEquals(1, Bytes.toInt(consumer.dequeue().iterator().next()));
+      consumerTxContext.finish();
+
+      // The only entry is processed
+      Assert.assertFalse(consumer.mayHaveEntries());
+    }
+  }
+
   @Test
   public void testClearAllForFlow() throws Exception {
     testClearOrDropAllForFlow(false);
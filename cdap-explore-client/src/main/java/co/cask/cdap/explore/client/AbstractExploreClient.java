@@ -33,6 +33,7 @@ import co.cask.cdap.proto.QueryStatus;
 import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.StreamId;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
@@ -45,6 +46,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.Gson;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
@@ -56,7 +58,12 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -68,10 +75,13 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
   private static final Logger LOG = LoggerFactory.getLogger(AbstractExploreClient.class);
 
   private final ListeningScheduledExecutorService executor;
+  // Used to fetch the next page of results while the current page is consumed
+  private final ExecutorService prefetchExecutor;
 
   protected AbstractExploreClient() {
     executor = MoreExecutors.listeningDecorator(
       Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("explore-client-executor")));
+    prefetchExecutor = Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("explore-client-prefetch-%d"));
   }
 
   @Override
@@ -79,6 +89,7 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
     // This will cancel all the running tasks, with interruption - that means that all
     // queries submitted by this executor will be closed
     executor.shutdownNow();
+    prefetchExecutor.shutdownNow();
   }
 
   @Override
@@ -371,7 +382,8 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
           if (QueryStatus.OpStatus.ERROR.equals(status.getStatus())) {
             throw new SQLException(status.getErrorMessage(), status.getSqlState());
           }
-          ExploreExecutionResult result = new ClientExploreExecutionResult(AbstractExploreClient.this, handle, status);
+          ExploreExecutionResult result = new ClientExploreExecutionResult(AbstractExploreClient.this, handle, status,
+                                                                           prefetchExecutor);
           mustCloseHandle = !resultFuture.set(result) || !status.hasResults();
         } catch (Exception e) {
           mustCloseHandle = true;
@@ -402,25 +414,32 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
   }
 
   /**
-   * Result iterator which polls Explore service using HTTP to get next results.
+   * Result iterator which polls Explore service using HTTP to get next results. Once a page of results
+   * is received, the next page is fetched in the background, while the current page is consumed.
    */
-  private static final class ClientExploreExecutionResult extends AbstractIterator<QueryResult>
+  @VisibleForTesting
+  static final class ClientExploreExecutionResult extends AbstractIterator<QueryResult>
     implements ExploreExecutionResult {
     private static final Logger LOG = LoggerFactory.getLogger(ClientExploreExecutionResult.class);
     private static final int DEFAULT_FETCH_SIZE = 100;
 
     private int fetchSize = DEFAULT_FETCH_SIZE;
     private Iterator<QueryResult> delegate;
+    private Future<List<QueryResult>> nextPage;
     private List<ColumnDesc> resultSchema = null;
+    private volatile boolean closed;
 
     private final ExploreHttpClient exploreClient;
     private final QueryHandle handle;
     private final QueryStatus status;
+    private final ExecutorService prefetchExecutor;
 
-    ClientExploreExecutionResult(ExploreHttpClient exploreClient, QueryHandle handle, QueryStatus status) {
+    ClientExploreExecutionResult(ExploreHttpClient exploreClient, QueryHandle handle, QueryStatus status,
+                                 ExecutorService prefetchExecutor) {
       this.exploreClient = exploreClient;
       this.handle = handle;
       this.status = status;
+      this.prefetchExecutor = prefetchExecutor;
     }
 
     @Override
@@ -430,7 +449,7 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
 
     @Override
     protected QueryResult computeNext() {
-      if (!status.hasResults()) {
+      if (!status.hasResults() || closed) {
         return endOfData();
       }
 
@@ -438,14 +457,15 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
         return delegate.next();
       }
       try {
-        // call the endpoint 'next' to get more results and set delegate
-        List<QueryResult> nextResults = convertRows(exploreClient.nextResults(handle, fetchSize));
+        // call the endpoint 'next' to get more results, unless they were prefetched, and set delegate
+        List<QueryResult> nextResults = nextPage == null ? fetchNextPage() : getPrefetchedPage();
         delegate = nextResults.iterator();
 
         // At this point, if delegate has no result, there are no more results at all
         if (!delegate.hasNext()) {
           return endOfData();
         }
+        prefetchNextPage();
         return delegate.next();
       } catch (ExploreException e) {
         LOG.error("Exception while iterating through the results of query {}", handle.getHandle(), e);
@@ -457,6 +477,41 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
       }
     }
 
+    private List<QueryResult> fetchNextPage() throws ExploreException, HandleNotFoundException {
+      return convertRows(exploreClient.nextResults(handle, fetchSize));
+    }
+
+    private void prefetchNextPage() {
+      if (closed) {
+        return;
+      }
+      try {
+        nextPage = prefetchExecutor.submit(new Callable<List<QueryResult>>() {
+          @Override
+          public List<QueryResult> call() throws Exception {
+            return fetchNextPage();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // The client is closed, the next page will be fetched when it is needed
+        LOG.debug("Not prefetching results of query {}", handle.getHandle(), e);
+      }
+    }
+
+    private List<QueryResult> getPrefetchedPage() throws ExploreException, HandleNotFoundException {
+      Future<List<QueryResult>> page = nextPage;
+      nextPage = null;
+      try {
+        return Uninterruptibles.getUninterruptibly(page);
+      } catch (ExecutionException e) {
+        Throwables.propagateIfInstanceOf(e.getCause(), ExploreException.class);
+        Throwables.propagateIfInstanceOf(e.getCause(), HandleNotFoundException.class);
+        throw new ExploreException(e.getCause());
+      } catch (CancellationException e) {
+        throw new ExploreException(e);
+      }
+    }
+
     private List<QueryResult> convertRows(List<QueryResult> rows) throws ExploreException {
       List<ColumnDesc> schema = getResultSchema();
       ImmutableList.Builder<QueryResult> builder = ImmutableList.builder();
@@ -480,9 +535,9 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
             } else if (schemaColumn.getType().equals("TINYINT")) {
               columnValue = ((Double) columnValue).byteValue();
             }
-          } else if ("BINARY".equals(columnType)) {
+          } else if ("BINARY".equals(columnType) && !(columnValue instanceof byte[])) {
             // A BINARY value is a byte array, which is deserialized by GSon into a list of
-            // double objects - here we recreate a byte[] object.
+            // double objects - here we recreate a byte[] object. In a binary page, it is already a byte[].
             List<Object> binary;
             if (columnValue instanceof List) {
               binary = (List) columnValue;
@@ -520,6 +575,12 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
 
     @Override
     public void close() throws IOException {
+      // A page that is being prefetched is discarded, and no more pages are fetched
+      closed = true;
+      if (nextPage != null) {
+        nextPage.cancel(true);
+        nextPage = null;
+      }
       try {
         exploreClient.close(handle);
       } catch (HandleNotFoundException e) {
@@ -33,6 +33,7 @@ import co.cask.cdap.explore.service.MetaDataInfo;
 import co.cask.cdap.explore.service.TableNotFoundException;
 import co.cask.cdap.explore.utils.ColumnsArgs;
 import co.cask.cdap.explore.utils.FunctionsArgs;
+import co.cask.cdap.explore.utils.QueryResultsCodec;
 import co.cask.cdap.explore.utils.SchemasArgs;
 import co.cask.cdap.explore.utils.TablesArgs;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
@@ -56,6 +57,7 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HttpHeaders;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParseException;
@@ -103,6 +105,11 @@ abstract class ExploreHttpClient implements Explore {
 
   protected abstract boolean verifySSLCert();
 
+  protected boolean isBinaryResultsEnabled() {
+    // by default, results are fetched as JSON, which all versions of the Explore service support
+    return false;
+  }
+
   @Nullable
   protected String getUserId() {
     // by default, return null, it is only required to be set by DiscoveryExploreClient
@@ -290,10 +297,21 @@ abstract class ExploreHttpClient implements Explore {
 
   @Override
   public List<QueryResult> nextResults(QueryHandle handle, int size) throws ExploreException, HandleNotFoundException {
+    Map<String, Object> args = isBinaryResultsEnabled()
+      ? ImmutableMap.<String, Object>of("size", size, "format", QueryResultsCodec.FORMAT)
+      : ImmutableMap.<String, Object>of("size", size);
     HttpResponse response = doPost(String.format("data/explore/queries/%s/%s",
                                                  handle.getHandle(), "next"),
-                                   GSON.toJson(ImmutableMap.of("size", size)), null);
+                                   GSON.toJson(args), null);
     if (response.getResponseCode() == HttpURLConnection.HTTP_OK) {
+      // An Explore service that doesn't know the binary format ignores it, and returns JSON
+      if (QueryResultsCodec.CONTENT_TYPE.equals(getContentType(response))) {
+        try {
+          return QueryResultsCodec.decode(response.getResponseBody());
+        } catch (IOException e) {
+          throw new ExploreException("Cannot decode next results", e);
+        }
+      }
       return parseJson(response, ROW_LIST_TYPE);
     } else if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
       throw new HandleNotFoundException("Handle " + handle.getHandle() + "not found.");
@@ -505,6 +523,16 @@ abstract class ExploreHttpClient implements Explore {
     }
   }
 
+  @Nullable
+  private String getContentType(HttpResponse response) {
+    for (Map.Entry<String, String> header : response.getHeaders().entries()) {
+      if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(header.getKey())) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
   private HttpResponse doGet(String resource) throws ExploreException {
     return doRequest(resource, HttpMethod.GET, null, null);
   }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -28,13 +28,20 @@ public class FixedAddressExploreClient extends AbstractExploreClient {
   private final String authToken;
   private final boolean sslEnabled;
   private final boolean verifySSLCert;
+  private final boolean binaryResults;
 
   public FixedAddressExploreClient(String host, int port, @Nullable String authToken,
                                    boolean sslEnabled, boolean verifySSLCert) {
+    this(host, port, authToken, sslEnabled, verifySSLCert, false);
+  }
+
+  public FixedAddressExploreClient(String host, int port, @Nullable String authToken,
+                                   boolean sslEnabled, boolean verifySSLCert, boolean binaryResults) {
     this.addr = InetSocketAddress.createUnresolved(host, port);
     this.authToken = authToken;
     this.sslEnabled = sslEnabled;
     this.verifySSLCert = verifySSLCert;
+    this.binaryResults = binaryResults;
   }
 
   @Override
@@ -55,4 +62,9 @@ public class FixedAddressExploreClient extends AbstractExploreClient {
   protected boolean verifySSLCert() {
     return verifySSLCert;
   }
+
+  @Override
+  protected boolean isBinaryResultsEnabled() {
+    return binaryResults;
+  }
 }
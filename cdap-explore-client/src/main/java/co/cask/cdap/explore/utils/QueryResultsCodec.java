@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.utils;
+
+import co.cask.cdap.proto.QueryResult;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Compact binary encoding of a page of query results, used by the 'next' endpoint of the Explore service
+ * when the client asks for it with the {@link #FORMAT} argument. It avoids serializing every value as JSON,
+ * and parsing it back as a double or a list of doubles on the client side.
+ *
+ * <p>A page is the number of rows, followed by each row as its number of columns and its values. A value is a
+ * one byte type, followed by its content. Values of types that have no binary representation are encoded as
+ * JSON, so that they are decoded the same way as in a JSON page.</p>
+ */
+public final class QueryResultsCodec {
+
+  /**
+   * Value of the 'format' argument of the 'next' endpoint to ask for a binary page.
+   */
+  public static final String FORMAT = "binary";
+
+  /**
+   * Content type of a binary page.
+   */
+  public static final String CONTENT_TYPE = "application/x-cdap-query-results";
+
+  private static final Gson GSON = new Gson();
+
+  private static final byte NULL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte BYTE = 2;
+  private static final byte SHORT = 3;
+  private static final byte INT = 4;
+  private static final byte LONG = 5;
+  private static final byte DOUBLE = 6;
+  private static final byte STRING = 7;
+  private static final byte BINARY = 8;
+  private static final byte JSON = 9;
+
+  private QueryResultsCodec() {
+  }
+
+  /**
+   * Encodes a page of query results.
+   */
+  public static byte[] encode(List<QueryResult> rows) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(rows.size());
+    for (QueryResult row : rows) {
+      List<Object> columns = row.getColumns();
+      out.writeInt(columns.size());
+      for (Object value : columns) {
+        writeValue(out, value);
+      }
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Decodes a page of query results encoded with {@link #encode(List)}.
+   */
+  public static List<QueryResult> decode(byte[] page) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(page));
+    int rowCount = in.readInt();
+    ImmutableList.Builder<QueryResult> rows = ImmutableList.builder();
+    for (int i = 0; i < rowCount; i++) {
+      int columnCount = in.readInt();
+      List<Object> columns = Lists.newArrayListWithCapacity(columnCount);
+      for (int j = 0; j < columnCount; j++) {
+        columns.add(readValue(in));
+      }
+      rows.add(new QueryResult(columns));
+    }
+    return rows.build();
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      // A float is a double in a JSON page, with the digits of the float and not of its widened value
+      out.writeByte(DOUBLE);
+      out.writeDouble(Double.parseDouble(value.toString()));
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeBytes(out, ((String) value).getBytes(Charsets.UTF_8));
+    } else if (value instanceof byte[]) {
+      out.writeByte(BINARY);
+      writeBytes(out, (byte[]) value);
+    } else {
+      out.writeByte(JSON);
+      writeBytes(out, GSON.toJson(value).getBytes(Charsets.UTF_8));
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return in.readBoolean();
+      case BYTE:
+        return in.readByte();
+      case SHORT:
+        return in.readShort();
+      case INT:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case STRING:
+        return new String(readBytes(in), Charsets.UTF_8);
+      case BINARY:
+        return readBytes(in);
+      case JSON:
+        return GSON.fromJson(new String(readBytes(in), Charsets.UTF_8), Object.class);
+      default:
+        throw new IOException("Unknown type " + type + " of value in query results");
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+}
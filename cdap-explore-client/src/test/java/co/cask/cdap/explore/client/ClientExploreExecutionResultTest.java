@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.client;
+
+import co.cask.cdap.explore.service.ExploreException;
+import co.cask.cdap.explore.service.HandleNotFoundException;
+import co.cask.cdap.proto.ColumnDesc;
+import co.cask.cdap.proto.QueryHandle;
+import co.cask.cdap.proto.QueryResult;
+import co.cask.cdap.proto.QueryStatus;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link AbstractExploreClient.ClientExploreExecutionResult}.
+ */
+public class ClientExploreExecutionResultTest {
+
+  @Test
+  public void testPrefetch() throws Exception {
+    BlockingExploreClient exploreClient = new BlockingExploreClient(3, false);
+    ExecutorService prefetchExecutor = Executors.newCachedThreadPool();
+    try {
+      AbstractExploreClient.ClientExploreExecutionResult result =
+        new AbstractExploreClient.ClientExploreExecutionResult(exploreClient, QueryHandle.generate(),
+                                                               new QueryStatus(QueryStatus.OpStatus.FINISHED, true),
+                                                               prefetchExecutor);
+      result.setFetchSize(2);
+      int count = 0;
+      while (result.hasNext()) {
+        Assert.assertEquals(ImmutableList.<Object>of(count), result.next().getColumns());
+        count++;
+      }
+      Assert.assertEquals(6, count);
+      result.close();
+      // the three pages, and the empty page that ends the results
+      Assert.assertEquals(4, exploreClient.fetches.get());
+      Assert.assertEquals(1, exploreClient.closes.get());
+    } finally {
+      prefetchExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testCloseWhilePrefetching() throws Exception {
+    BlockingExploreClient exploreClient = new BlockingExploreClient(3, true);
+    ExecutorService prefetchExecutor = Executors.newCachedThreadPool();
+    try {
+      AbstractExploreClient.ClientExploreExecutionResult result =
+        new AbstractExploreClient.ClientExploreExecutionResult(exploreClient, QueryHandle.generate(),
+                                                               new QueryStatus(QueryStatus.OpStatus.FINISHED, true),
+                                                               prefetchExecutor);
+      result.setFetchSize(2);
+      Assert.assertEquals(ImmutableList.<Object>of(0), result.next().getColumns());
+      // the second page is being prefetched while the first one is consumed
+      Assert.assertTrue(exploreClient.prefetchStarted.await(10, TimeUnit.SECONDS));
+
+      result.close();
+      // the prefetch is interrupted, and the results end with the close
+      Assert.assertTrue(exploreClient.prefetchInterrupted.await(10, TimeUnit.SECONDS));
+      Assert.assertFalse(result.hasNext());
+      Assert.assertEquals(1, exploreClient.closes.get());
+
+      // no more pages are fetched, and no task is left running
+      prefetchExecutor.shutdown();
+      Assert.assertTrue(prefetchExecutor.awaitTermination(10, TimeUnit.SECONDS));
+      Assert.assertEquals(2, exploreClient.fetches.get());
+    } finally {
+      prefetchExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * An {@link ExploreHttpClient} that returns pages of one integer column, and that can block when fetching
+   * every page after the first one, until it is interrupted.
+   */
+  private static final class BlockingExploreClient extends ExploreHttpClient {
+
+    private final int pages;
+    private final boolean blockPrefetch;
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicInteger closes = new AtomicInteger();
+    private final CountDownLatch prefetchStarted = new CountDownLatch(1);
+    private final CountDownLatch prefetchInterrupted = new CountDownLatch(1);
+    private int nextValue;
+
+    BlockingExploreClient(int pages, boolean blockPrefetch) {
+      this.pages = pages;
+      this.blockPrefetch = blockPrefetch;
+    }
+
+    @Override
+    public List<QueryResult> nextResults(QueryHandle handle, int size) throws ExploreException {
+      if (fetches.getAndIncrement() > 0 && blockPrefetch) {
+        prefetchStarted.countDown();
+        try {
+          TimeUnit.MINUTES.sleep(1);
+        } catch (InterruptedException e) {
+          prefetchInterrupted.countDown();
+          throw new ExploreException(e);
+        }
+      }
+      if (fetches.get() > pages) {
+        return ImmutableList.of();
+      }
+      ImmutableList.Builder<QueryResult> page = ImmutableList.builder();
+      for (int i = 0; i < size; i++) {
+        page.add(new QueryResult(ImmutableList.<Object>of(nextValue++)));
+      }
+      return page.build();
+    }
+
+    @Override
+    public List<ColumnDesc> getResultSchema(QueryHandle handle) {
+      return ImmutableList.of(new ColumnDesc("value", "INT", 1, null));
+    }
+
+    @Override
+    public void close(QueryHandle handle) throws ExploreException, HandleNotFoundException {
+      closes.incrementAndGet();
+    }
+
+    @Override
+    protected InetSocketAddress getExploreServiceAddress() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected String getAuthToken() {
+      return null;
+    }
+
+    @Override
+    protected boolean isSSLEnabled() {
+      return false;
+    }
+
+    @Override
+    protected boolean verifySSLCert() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.utils;
+
+import co.cask.cdap.proto.QueryResult;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link QueryResultsCodec}.
+ */
+public class QueryResultsCodecTest {
+
+  @Test
+  public void testEncodeDecode() throws Exception {
+    List<QueryResult> rows = ImmutableList.of(
+      new QueryResult(Arrays.<Object>asList(true, (byte) 1, (short) 2, 3, 4L, 5.5d, "six", null)),
+      new QueryResult(Arrays.<Object>asList(false, (byte) -1, (short) -2, -3, Long.MAX_VALUE, -0.5d, "", "é")),
+      new QueryResult(ImmutableList.<Object>of()));
+
+    Assert.assertEquals(rows, QueryResultsCodec.decode(QueryResultsCodec.encode(rows)));
+    Assert.assertEquals(ImmutableList.of(), QueryResultsCodec.decode(QueryResultsCodec.encode(
+      ImmutableList.<QueryResult>of())));
+  }
+
+  @Test
+  public void testConvertedValues() throws Exception {
+    byte[] binary = new byte[] { 98, 111, 98 };
+    List<QueryResult> rows = QueryResultsCodec.decode(QueryResultsCodec.encode(ImmutableList.of(
+      new QueryResult(Arrays.<Object>asList(0.1f, binary, new BigDecimal("12.5"))))));
+
+    List<Object> columns = rows.get(0).getColumns();
+    // floats and values without a binary representation are decoded like in a JSON page
+    Assert.assertEquals(0.1d, columns.get(0));
+    Assert.assertArrayEquals(binary, (byte[]) columns.get(1));
+    Assert.assertEquals(12.5d, columns.get(2));
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -40,7 +40,8 @@ public class ExploreConnectionParams {
     NAMESPACE("namespace"),
     SSL_ENABLED("ssl.enabled"),
     VERIFY_SSL_CERT("verify.ssl.cert"),
-    FETCH_SIZE("fetch.size");
+    FETCH_SIZE("fetch.size"),
+    BINARY_RESULTS("binary.results");
 
     private final String name;
 
@@ -21,6 +21,7 @@ import co.cask.cdap.explore.service.ExploreException;
 import co.cask.cdap.explore.service.ExploreService;
 import co.cask.cdap.explore.service.HandleNotFoundException;
 import co.cask.cdap.explore.service.hive.OperationInfo;
+import co.cask.cdap.explore.utils.QueryResultsCodec;
 import co.cask.cdap.proto.ColumnDesc;
 import co.cask.cdap.proto.QueryHandle;
 import co.cask.cdap.proto.QueryResult;
@@ -28,8 +29,10 @@ import co.cask.cdap.proto.QueryStatus;
 import co.cask.cdap.security.impersonation.ImpersonationUtils;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
@@ -167,10 +170,12 @@ public class ExploreQueryExecutorHttpHandler extends AbstractExploreQueryExecuto
     try {
       final QueryHandle handle = QueryHandle.fromId(id);
       List<QueryResult> results;
+      String format = null;
       if (handle.equals(QueryHandle.NO_OP)) {
         results = Lists.newArrayList();
       } else {
         Map<String, String> args = decodeArguments(request);
+        format = args.get("format");
         final int size = args.containsKey("size") ? Integer.valueOf(args.get("size")) : 100;
         results = doAs(handle, new Callable<List<QueryResult>>() {
           @Override
@@ -179,7 +184,12 @@ public class ExploreQueryExecutorHttpHandler extends AbstractExploreQueryExecuto
           }
         });
       }
-      responder.sendJson(HttpResponseStatus.OK, results);
+      if (QueryResultsCodec.FORMAT.equals(format)) {
+        responder.sendByteArray(HttpResponseStatus.OK, QueryResultsCodec.encode(results),
+                                ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, QueryResultsCodec.CONTENT_TYPE));
+      } else {
+        responder.sendJson(HttpResponseStatus.OK, results);
+      }
     } catch (IllegalArgumentException e) {
       LOG.debug("Got exception:", e);
       responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
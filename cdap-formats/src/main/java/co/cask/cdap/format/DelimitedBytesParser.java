@@ -0,0 +1,329 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.format;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Splits delimited text directly on the encoded bytes and parses the fields in place, without first decoding
+ * the whole text into a {@link String}. Strings are only created for fields that are read as strings.
+ * <p>
+ * Splitting on bytes is only done for charsets in which the encoded delimiter cannot appear as part of another
+ * character, which are UTF-8, US-ASCII and ISO-8859-1. Text in other charsets is transcoded to UTF-8 first.
+ * The fields and values produced are the same as splitting the decoded text with
+ * {@link com.google.common.base.Splitter#on(String)} and parsing each field with the {@code parseXXX} methods
+ * of the corresponding Java types.
+ * </p>
+ */
+@NotThreadSafe
+final class DelimitedBytesParser {
+
+  private static final int MAX_INT_DIGITS = 9;
+  private static final int MAX_LONG_DIGITS = 18;
+  // Maximum number of digits that can be exactly represented by a double and a float respectively
+  private static final int MAX_DOUBLE_DIGITS = 15;
+  private static final int MAX_FLOAT_DIGITS = 7;
+  // Powers of ten that are exactly representable by a double and a float respectively
+  private static final double[] DOUBLE_POW10 = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  private static final float[] FLOAT_POW10 = {
+    1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+  private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+  private final Charset sourceCharset;
+  private final boolean transcode;
+  private final Charset charset;
+  private final byte[] delimiter;
+
+  private byte[] copyBuffer = new byte[0];
+  private byte[] bytes;
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private int size;
+
+  DelimitedBytesParser(String delimiter, Charset charset) {
+    Preconditions.checkArgument(!delimiter.isEmpty(), "The delimiter may not be the empty string.");
+    this.sourceCharset = charset;
+    this.transcode = !isByteSplittable(delimiter, charset);
+    this.charset = transcode ? Charsets.UTF_8 : charset;
+    this.delimiter = delimiter.getBytes(this.charset);
+  }
+
+  /**
+   * Splits the remaining bytes of the given buffer into fields. The position of the buffer is not changed.
+   *
+   * @param body the encoded delimited text
+   * @param maxFields maximum number of fields to split into; the rest of the text is ignored
+   * @return the number of fields
+   */
+  int split(ByteBuffer body, int maxFields) {
+    int offset;
+    int limit;
+    if (transcode) {
+      bytes = Bytes.toString(body, sourceCharset).getBytes(charset);
+      offset = 0;
+      limit = bytes.length;
+    } else if (body.hasArray()) {
+      bytes = body.array();
+      offset = body.arrayOffset() + body.position();
+      limit = offset + body.remaining();
+    } else {
+      if (copyBuffer.length < body.remaining()) {
+        copyBuffer = new byte[body.remaining()];
+      }
+      body.duplicate().get(copyBuffer, 0, body.remaining());
+      bytes = copyBuffer;
+      offset = 0;
+      limit = body.remaining();
+    }
+
+    size = 0;
+    int start = offset;
+    while (size < maxFields) {
+      int idx = indexOfDelimiter(start, limit);
+      addField(start, idx < 0 ? limit : idx);
+      if (idx < 0) {
+        break;
+      }
+      start = idx + delimiter.length;
+    }
+    return size;
+  }
+
+  /**
+   * Returns the number of fields from the last {@link #split(ByteBuffer, int)} call.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns {@code true} if the given field is an empty string.
+   */
+  boolean isEmpty(int field) {
+    return starts[field] == ends[field];
+  }
+
+  /**
+   * Returns the given field as a {@link String}.
+   */
+  String getString(int field) {
+    return new String(bytes, starts[field], ends[field] - starts[field], charset);
+  }
+
+  /**
+   * Returns all fields starting from the given one as an array of {@link String}.
+   */
+  String[] getStrings(int fromField) {
+    String[] result = new String[Math.max(0, size - fromField)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = getString(fromField + i);
+    }
+    return result;
+  }
+
+  /**
+   * Parses the given field as a value of the given simple schema type.
+   *
+   * @throws NumberFormatException if the field is not a valid number for numeric types
+   */
+  @Nullable
+  Object parse(int field, Schema.Type type) {
+    switch (type) {
+      case BOOLEAN:
+        return parseBoolean(field);
+      case INT:
+        return parseInt(field);
+      case LONG:
+        return parseLong(field);
+      case FLOAT:
+        return parseFloat(field);
+      case DOUBLE:
+        return parseDouble(field);
+      case BYTES:
+        return Bytes.toBytesBinary(getString(field));
+      case STRING:
+        return getString(field);
+      case NULL:
+        return null;
+      default:
+        throw new UnexpectedFormatException("Cannot parse a delimited field to type " + type);
+    }
+  }
+
+  private boolean parseBoolean(int field) {
+    int start = starts[field];
+    if (ends[field] - start != TRUE.length) {
+      return false;
+    }
+    for (int i = 0; i < TRUE.length; i++) {
+      // ASCII lower case conversion; non-letter bytes never match
+      if ((bytes[start + i] | 0x20) != TRUE[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int parseInt(int field) {
+    long value = parseIntegral(field, MAX_INT_DIGITS);
+    return value == Long.MIN_VALUE ? Integer.parseInt(getString(field)) : (int) value;
+  }
+
+  private long parseLong(int field) {
+    long value = parseIntegral(field, MAX_LONG_DIGITS);
+    return value == Long.MIN_VALUE ? Long.parseLong(getString(field)) : value;
+  }
+
+  private float parseFloat(int field) {
+    long value = parseDecimal(field, MAX_FLOAT_DIGITS, FLOAT_POW10.length - 1);
+    if (value == Long.MIN_VALUE) {
+      return Float.parseFloat(getString(field));
+    }
+    // Both the mantissa and the power of ten are exact floats, hence the division is correctly rounded
+    float result = (float) (value >> 8) / FLOAT_POW10[(int) (value & 0x7f)];
+    return (value & 0x80) != 0 ? -result : result;
+  }
+
+  private double parseDouble(int field) {
+    long value = parseDecimal(field, MAX_DOUBLE_DIGITS, DOUBLE_POW10.length - 1);
+    if (value == Long.MIN_VALUE) {
+      return Double.parseDouble(getString(field));
+    }
+    // Both the mantissa and the power of ten are exact doubles, hence the division is correctly rounded
+    double result = (double) (value >> 8) / DOUBLE_POW10[(int) (value & 0x7f)];
+    return (value & 0x80) != 0 ? -result : result;
+  }
+
+  /**
+   * Parses a field of the form {@code [+-]digits} with at most the given number of digits.
+   *
+   * @return the parsed value, or {@link Long#MIN_VALUE} if the field is not in the simple form
+   */
+  private long parseIntegral(int field, int maxDigits) {
+    int pos = starts[field];
+    int end = ends[field];
+    boolean negative = false;
+    if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+      negative = bytes[pos] == '-';
+      pos++;
+    }
+    if (pos == end || end - pos > maxDigits) {
+      return Long.MIN_VALUE;
+    }
+    long value = 0;
+    for (; pos < end; pos++) {
+      int digit = bytes[pos] - '0';
+      if (digit < 0 || digit > 9) {
+        return Long.MIN_VALUE;
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses a field of the form {@code [+-]digits[.digits]} with at most the given number of digits in total.
+   *
+   * @return the mantissa shifted left by 8 bits, with the sign in bit 7 and the number of fraction
+   *         digits in the lower 7 bits, or {@link Long#MIN_VALUE} if the field is not in the simple form
+   */
+  private long parseDecimal(int field, int maxDigits, int maxFractionDigits) {
+    int pos = starts[field];
+    int end = ends[field];
+    boolean negative = false;
+    if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+      negative = bytes[pos] == '-';
+      pos++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = -1;
+    for (; pos < end; pos++) {
+      byte b = bytes[pos];
+      if (b == '.' && fractionDigits < 0) {
+        fractionDigits = 0;
+        continue;
+      }
+      int digit = b - '0';
+      if (digit < 0 || digit > 9 || ++digits > maxDigits) {
+        return Long.MIN_VALUE;
+      }
+      mantissa = mantissa * 10 + digit;
+      if (fractionDigits >= 0) {
+        fractionDigits++;
+      }
+    }
+    fractionDigits = Math.max(fractionDigits, 0);
+    if (digits == 0 || fractionDigits > maxFractionDigits) {
+      return Long.MIN_VALUE;
+    }
+    return (mantissa << 8) | (negative ? 0x80 : 0) | fractionDigits;
+  }
+
+  private int indexOfDelimiter(int from, int limit) {
+    byte first = delimiter[0];
+    int last = limit - delimiter.length;
+    for (int i = from; i <= last; i++) {
+      if (bytes[i] != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < delimiter.length && bytes[i + j] == delimiter[j]) {
+        j++;
+      }
+      if (j == delimiter.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void addField(int start, int end) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    size++;
+  }
+
+  /**
+   * Returns {@code true} if the encoded delimiter can be searched directly in text encoded with the given charset.
+   */
+  private static boolean isByteSplittable(String delimiter, Charset charset) {
+    if (!Charsets.UTF_8.equals(charset) && !Charsets.US_ASCII.equals(charset)
+      && !Charsets.ISO_8859_1.equals(charset)) {
+      return false;
+    }
+    return charset.newEncoder().canEncode(delimiter);
+  }
+}
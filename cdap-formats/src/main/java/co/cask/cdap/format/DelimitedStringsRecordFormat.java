@@ -16,7 +16,6 @@
 
 package co.cask.cdap.format;
 
-import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.Schema;
@@ -26,10 +25,9 @@ import co.cask.cdap.spi.stream.AbstractStreamEventRecordFormat;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Iterator;
@@ -53,6 +51,11 @@ import java.util.Map;
  * For example, if "mapping" is "1:name,2:age", then a stream event like "sdf,bob,32,sdf,lkj" would be transformed into
  * a record {@code {"name":"bob", "age":32}}.
  * </p>
+ *
+ * <p>
+ * The body is split and the fields are parsed directly from the bytes of the event body, without decoding the
+ * whole body into a string first. See {@link DelimitedBytesParser} for details.
+ * </p>
  */
 public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordFormat<StructuredRecord> {
   public static final String CHARSET = "charset";
@@ -61,12 +64,11 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   private Charset charset = Charsets.UTF_8;
   private String delimiter = ",";
   private RecordMaker recordMaker = new DefaultRecordMaker();
+  private DelimitedBytesParser parser = new DelimitedBytesParser(delimiter, charset);
 
   @Override
   public StructuredRecord read(StreamEvent event) throws UnexpectedFormatException {
-    String bodyAsStr = Bytes.toString(event.getBody(), charset);
-    Iterator<String> bodyFields = Splitter.on(delimiter).split(bodyAsStr).iterator();
-    return recordMaker.make(schema, bodyFields);
+    return recordMaker.make(schema, parser, event.getBody());
   }
 
   @Override
@@ -107,11 +109,12 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
     if (delimiter != null) {
       this.delimiter = delimiter;
     }
+    this.parser = new DelimitedBytesParser(this.delimiter, this.charset);
 
     if (!getDefaultSchema().equals(schema)) {
       String mapping = settings.get(MAPPING);
       if (mapping != null) {
-        this.recordMaker = new MappedSchemaRecordMaker(parseMapping(mapping, schema));
+        this.recordMaker = new MappedSchemaRecordMaker(parseMapping(mapping, schema), schema);
         for (Schema.Field field : schema.getFields()) {
           if (!field.getSchema().isSimpleOrNullableSimple()) {
             throw new IllegalArgumentException(
@@ -141,12 +144,20 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
     return false;
   }
 
-  private static String parseBodyValue(String val, Schema fieldSchema) {
+  /**
+   * Sets the value of a simple or nullable simple field from the given body field.
+   */
+  private static void setField(StructuredRecord.Builder builder, int fieldIndex, Schema fieldSchema,
+                               DelimitedBytesParser parser, int bodyField) {
     // if the body field is an empty string and the column is not a string type, interpret it as a null.
-    if (val != null && val.isEmpty() && (fieldSchema.getType() != Schema.Type.STRING)) {
-      return null;
+    if (bodyField >= parser.size() || (parser.isEmpty(bodyField) && fieldSchema.getType() != Schema.Type.STRING)) {
+      builder.set(fieldIndex, null);
+      return;
+    }
+    Schema.Type type = fieldSchema.isNullable() ? fieldSchema.getNonNullable().getType() : fieldSchema.getType();
+    if (type != Schema.Type.NULL) {
+      builder.set(fieldIndex, parser.parse(bodyField, type));
     }
-    return val;
   }
 
   private Map<String, Integer> parseMapping(String mappingString, Schema schema) {
@@ -179,7 +190,7 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
    * Makes a {@link StructuredRecord} in {@link DelimitedStringsRecordFormat#read(StreamEvent)}.
    */
   private interface RecordMaker {
-    StructuredRecord make(Schema schema, Iterator<String> bodyFields);
+    StructuredRecord make(Schema schema, DelimitedBytesParser parser, ByteBuffer body);
   }
 
   /**
@@ -188,11 +199,11 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   private static class DefaultRecordMaker implements RecordMaker {
 
     @Override
-    public StructuredRecord make(Schema schema, Iterator<String> bodyFields) {
+    public StructuredRecord make(Schema schema, DelimitedBytesParser parser, ByteBuffer body) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
 
-      List<String> fields = Lists.newArrayList(bodyFields);
-      builder.set("body", fields.toArray(new String[fields.size()]));
+      parser.split(body, Integer.MAX_VALUE);
+      builder.set(0, parser.getStrings(0));
 
       return builder.build();
     }
@@ -204,27 +215,23 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
   private static class SchemaRecordMaker implements RecordMaker {
 
     @Override
-    public StructuredRecord make(Schema schema, Iterator<String> bodyFields) {
+    public StructuredRecord make(Schema schema, DelimitedBytesParser parser, ByteBuffer body) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-      Iterator<Schema.Field> fieldsIterator = schema.getFields().iterator();
-      while (fieldsIterator.hasNext()) {
-        Schema.Field field = fieldsIterator.next();
-        Schema fieldSchema = field.getSchema();
-        String fieldName = field.getName();
+      List<Schema.Field> fields = schema.getFields();
+      parser.split(body, Integer.MAX_VALUE);
+      for (int i = 0; i < fields.size(); i++) {
+        Schema fieldSchema = fields.get(i).getSchema();
         if (isStringArray(fieldSchema)) {
-          if (!fieldsIterator.hasNext()) {
+          if (i == fields.size() - 1) {
             // only do varargs-style string array parsing on bodyField if it's the last field
-            List<String> fields = Lists.newArrayList(bodyFields);
-            builder.set(fieldName, fields.toArray(new String[fields.size()]));
+            builder.set(i, parser.getStrings(i));
           } else {
             throw new UnexpectedFormatException(
-              String.format("string array type field '%s' must be the last schema field", fieldName));
+              String.format("string array type field '%s' must be the last schema field", fields.get(i).getName()));
           }
         } else {
           // simple type (not string array)
-          String bodyField = bodyFields.hasNext() ? bodyFields.next() : null;
-          String val = parseBodyValue(bodyField, fieldSchema);
-          builder.convertAndSet(fieldName, val);
+          setField(builder, i, fieldSchema, parser, i);
         }
       }
       return builder.build();
@@ -235,26 +242,28 @@ public class DelimitedStringsRecordFormat extends AbstractStreamEventRecordForma
    * {@link RecordMaker} that uses the "mapping" setting and a schema.
    */
   private static class MappedSchemaRecordMaker implements RecordMaker {
-    private final Map<String, Integer> mapping;
+    // Body field index for each schema field, by schema field position
+    private final int[] mapping;
     private final int lastMappingIndex;
 
-    private MappedSchemaRecordMaker(Map<String, Integer> mapping) {
-      this.mapping = mapping;
+    private MappedSchemaRecordMaker(Map<String, Integer> mapping, Schema schema) {
+      List<Schema.Field> fields = schema.getFields();
+      this.mapping = new int[fields.size()];
+      for (int i = 0; i < fields.size(); i++) {
+        this.mapping[i] = mapping.get(fields.get(i).getName());
+      }
       this.lastMappingIndex = Collections.max(mapping.values());
     }
 
     @Override
-    public StructuredRecord make(Schema schema, Iterator<String> bodyFields) {
+    public StructuredRecord make(Schema schema, DelimitedBytesParser parser, ByteBuffer body) {
       StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-      // TODO: only read what's necessary from event.getBody() (e.g. if mapping is "0:f0", then only read first entry)
-      List<String> fields = Lists.newArrayList(Iterators.limit(bodyFields, lastMappingIndex + 1));
-      for (Schema.Field field : schema.getFields()) {
-        Schema fieldSchema = field.getSchema();
-        String fieldName = field.getName();
-        int index = mapping.get(fieldName);
-        if (index < fields.size()) {
-          String val = parseBodyValue(fields.get(index), fieldSchema);
-          builder.convertAndSet(fieldName, val);
+      // Only split up to the last mapped field
+      int size = parser.split(body, lastMappingIndex + 1);
+      List<Schema.Field> fields = schema.getFields();
+      for (int i = 0; i < fields.size(); i++) {
+        if (mapping[i] < size) {
+          setField(builder, i, fields.get(i).getSchema(), parser, mapping[i]);
         }
       }
       return builder.build();
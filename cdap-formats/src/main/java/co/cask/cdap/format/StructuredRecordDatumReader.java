@@ -110,11 +110,11 @@ public class StructuredRecordDatumReader extends GenericDatumReader<StructuredRe
     StructuredRecord.Builder builder = StructuredRecord.builder(currentSchema);
 
     for (org.apache.avro.Schema.Field f : in.readFieldOrder()) {
-      String name = f.name();
       Schema tmpSchema = currentSchema;
       try {
-        currentSchema = getFieldSchema(name, currentSchema);
-        builder.set(name, read(null, f.schema(), in));
+        int idx = getFieldIndex(f.name(), currentSchema);
+        currentSchema = tmpSchema.getFields().get(idx).getSchema();
+        builder.set(idx, read(null, f.schema(), in));
       } finally {
         currentSchema = tmpSchema;
       }
@@ -123,15 +123,15 @@ public class StructuredRecordDatumReader extends GenericDatumReader<StructuredRe
   }
 
   /**
-   * Returns the {@link Schema} of the given field in the record.
+   * Returns the position of the given field in the record.
    *
    * @throws IllegalArgumentException if the field does not exist in the record schema.
    */
-  private Schema getFieldSchema(String fieldName, Schema recordSchema) {
-    Schema.Field field = recordSchema.getField(fieldName);
-    if (field == null) {
+  private int getFieldIndex(String fieldName, Schema recordSchema) {
+    int idx = recordSchema.getFieldIndex(fieldName);
+    if (idx < 0) {
       throw new IllegalArgumentException("Field '" + fieldName + "' not exists in record '" + recordSchema + "'");
     }
-    return field.getSchema();
+    return idx;
   }
 }
@@ -22,10 +22,7 @@ import co.cask.cdap.format.io.JsonDecoder;
 import co.cask.cdap.format.io.JsonEncoder;
 import co.cask.cdap.format.io.JsonStructuredRecordDatumReader;
 import co.cask.cdap.format.io.JsonStructuredRecordDatumWriter;
-import com.google.common.base.Function;
-import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
-import com.google.common.collect.Iterables;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
 
@@ -65,14 +62,16 @@ public final class StructuredRecordStringConverter {
   /**
    * Converts a {@link StructuredRecord} to a delimited string.
    */
-  public static String toDelimitedString(final StructuredRecord record, String delimiter) {
-    return Joiner.on(delimiter).join(
-      Iterables.transform(record.getSchema().getFields(), new Function<Schema.Field, String>() {
-        @Override
-        public String apply(Schema.Field field) {
-          return record.get(field.getName()).toString();
-        }
-      }));
+  public static String toDelimitedString(StructuredRecord record, String delimiter) {
+    StringBuilder builder = new StringBuilder();
+    int size = record.getSchema().getFields().size();
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        builder.append(delimiter);
+      }
+      builder.append(record.get(i).toString());
+    }
+    return builder.toString();
   }
 
   /**
@@ -24,6 +24,7 @@ import co.cask.cdap.api.flow.flowlet.StreamEvent;
 import co.cask.cdap.spi.stream.AbstractStreamEventRecordFormat;
 import com.google.common.base.Charsets;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
@@ -34,12 +35,18 @@ import java.util.Map;
 public class TextRecordFormat extends AbstractStreamEventRecordFormat<StructuredRecord> {
   public static final String CHARSET = "charset";
   private Charset charset = Charsets.UTF_8;
-  private String fieldName = "body";
 
   @Override
   public StructuredRecord read(StreamEvent event) {
-    String bodyAsStr = Bytes.toString(event.getBody(), charset);
-    return StructuredRecord.builder(schema).set(fieldName, bodyAsStr).build();
+    ByteBuffer body = event.getBody();
+    String bodyAsStr;
+    if (body.hasArray()) {
+      // Decode directly from the backing array to avoid the intermediate CharBuffer
+      bodyAsStr = new String(body.array(), body.arrayOffset() + body.position(), body.remaining(), charset);
+    } else {
+      bodyAsStr = Bytes.toString(body, charset);
+    }
+    return StructuredRecord.builder(schema).set(0, bodyAsStr).build();
   }
 
   @Override
@@ -61,6 +68,5 @@ public class TextRecordFormat extends AbstractStreamEventRecordFormat<Structured
     if (charsetStr != null) {
       this.charset = Charset.forName(charsetStr);
     }
-    this.fieldName = schema.getFields().get(0).getName();
   }
 }
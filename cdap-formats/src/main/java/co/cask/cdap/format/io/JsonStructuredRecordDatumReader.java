@@ -108,14 +108,14 @@ public class JsonStructuredRecordDatumReader extends StructuredRecordDatumReader
 
     jsonReader.beginObject();
     while (jsonReader.peek() != JsonToken.END_OBJECT) {
-      Schema.Field field = schema.getField(jsonReader.nextName());
-      if (field == null) {
+      int idx = schema.getFieldIndex(jsonReader.nextName());
+      if (idx < 0) {
         // Ignore unrecognized fields
         jsonReader.skipValue();
         continue;
       }
 
-      builder.set(field.getName(), decode(decoder, field.getSchema()));
+      builder.set(idx, decode(decoder, schema.getFields().get(idx).getSchema()));
     }
     jsonReader.endObject();
 
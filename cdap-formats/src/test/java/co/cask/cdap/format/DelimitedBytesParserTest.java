@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.format;
+
+import co.cask.cdap.api.data.format.FormatSpecification;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link DelimitedBytesParser}.
+ */
+public class DelimitedBytesParserTest {
+
+  private static final List<String> NUMBERS = ImmutableList.of(
+    "0", "-0", "+0", "1", "-1", "+17", "123456789", "-123456789", "1234567890", "2147483647", "-2147483648",
+    "2147483648", "999999999999999999", "-999999999999999999", "9223372036854775807", "-9223372036854775808",
+    "9223372036854775808", "0.0", "-0.0", "1.5", "-1.5", "3.14159", ".5", "1.", "+.25", "0.1", "0.3",
+    "123456.7", "1234567.8", "0.000001", "0.0000000001", "0.00000000001", "123456789012345", "1234567890123456",
+    "1.23456789012345", "9007199254740993", "3.4028235E38", "1e10", "NaN", "-Infinity", "1d", "1f", " 1",
+    "1 ", "", "-", "+", ".", "1.2.3", "--1", "abc", "١٢"
+  );
+
+  @Test
+  public void testSplit() {
+    List<String> inputs = ImmutableList.of("", ",", ",,", "a", "a,", ",a", "a,b,c", "a,,c", "é,中文,x");
+    for (Charset charset : ImmutableList.of(Charsets.UTF_8, Charsets.UTF_16, Charsets.ISO_8859_1)) {
+      DelimitedBytesParser parser = new DelimitedBytesParser(",", charset);
+      for (String input : inputs) {
+        assertSplit(parser, input, charset, ",");
+      }
+    }
+
+    // Multi-bytes delimiters
+    DelimitedBytesParser parser = new DelimitedBytesParser("::", Charsets.UTF_8);
+    for (String input : ImmutableList.of("a::b", "a:::b", "::::", "a:b::c:", "é::é")) {
+      assertSplit(parser, input, Charsets.UTF_8, "::");
+    }
+    parser = new DelimitedBytesParser("é", Charsets.UTF_8);
+    assertSplit(parser, "aébééc", Charsets.UTF_8, "é");
+
+    // Delimiter that cannot be encoded with the charset
+    parser = new DelimitedBytesParser("中", Charsets.ISO_8859_1);
+    assertSplit(parser, "a?b", Charsets.ISO_8859_1, "中");
+  }
+
+  @Test
+  public void testSplitLimit() {
+    DelimitedBytesParser parser = new DelimitedBytesParser(",", Charsets.UTF_8);
+    Assert.assertEquals(2, parser.split(ByteBuffer.wrap("a,b,c,d".getBytes(Charsets.UTF_8)), 2));
+    Assert.assertEquals("a", parser.getString(0));
+    Assert.assertEquals("b", parser.getString(1));
+    Assert.assertEquals(1, parser.split(ByteBuffer.wrap("a".getBytes(Charsets.UTF_8)), 2));
+  }
+
+  @Test
+  public void testParseNumbers() {
+    DelimitedBytesParser parser = new DelimitedBytesParser(",", Charsets.UTF_8);
+    for (String number : NUMBERS) {
+      parser.split(ByteBuffer.wrap(number.getBytes(Charsets.UTF_8)), Integer.MAX_VALUE);
+      assertParse(Schema.Type.INT, number, parser);
+      assertParse(Schema.Type.LONG, number, parser);
+      assertParse(Schema.Type.FLOAT, number, parser);
+      assertParse(Schema.Type.DOUBLE, number, parser);
+    }
+
+    // Random decimals to verify the fast path is correctly rounded
+    Random random = new Random();
+    for (int i = 0; i < 100000; i++) {
+      String number = String.format("%d.%0" + (1 + random.nextInt(8)) + "d",
+                                    random.nextInt(100000), random.nextInt(100000));
+      parser.split(ByteBuffer.wrap(number.getBytes(Charsets.UTF_8)), Integer.MAX_VALUE);
+      assertParse(Schema.Type.FLOAT, number, parser);
+      assertParse(Schema.Type.DOUBLE, number, parser);
+    }
+  }
+
+  @Test
+  public void testParseBoolean() {
+    DelimitedBytesParser parser = new DelimitedBytesParser(",", Charsets.UTF_8);
+    String input = "true,TRUE,True,tRuE,false,yes,1,,truee,tru,true";
+    int size = parser.split(ByteBuffer.wrap(input.getBytes(Charsets.UTF_8)), Integer.MAX_VALUE);
+    List<String> expected = ImmutableList.copyOf(Splitter.on(",").split(input));
+    Assert.assertEquals(expected.size(), size);
+    for (int i = 0; i < size; i++) {
+      Assert.assertEquals(Boolean.parseBoolean(expected.get(i)), parser.parse(i, Schema.Type.BOOLEAN));
+    }
+  }
+
+  @Test
+  public void testDirectBuffer() {
+    byte[] bytes = "x,1,2.5,abc".getBytes(Charsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 2);
+    buffer.put((byte) 'y').put(bytes).put((byte) 'z').flip();
+    buffer.position(1).limit(bytes.length + 1);
+
+    DelimitedBytesParser parser = new DelimitedBytesParser(",", Charsets.UTF_8);
+    Assert.assertEquals(4, parser.split(buffer, Integer.MAX_VALUE));
+    Assert.assertEquals("x", parser.getString(0));
+    Assert.assertEquals(1, parser.parse(1, Schema.Type.INT));
+    Assert.assertEquals(2.5d, parser.parse(2, Schema.Type.DOUBLE));
+    Assert.assertEquals("abc", parser.parse(3, Schema.Type.STRING));
+    // The buffer shouldn't be modified
+    Assert.assertEquals(1, buffer.position());
+  }
+
+  @Test
+  public void testFormatWithCharset() throws Exception {
+    Schema schema = Schema.recordOf("event",
+                                    Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("s", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("d", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+                                    Schema.Field.of("rest", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+    for (String charset : ImmutableList.of("UTF-8", "UTF-16", "ISO-8859-1")) {
+      DelimitedStringsRecordFormat format = new DelimitedStringsRecordFormat();
+      format.initialize(new FormatSpecification(DelimitedStringsRecordFormat.class.getName(), schema,
+                                                ImmutableMap.of(DelimitedStringsRecordFormat.CHARSET, charset,
+                                                                DelimitedStringsRecordFormat.DELIMITER, "|")));
+      String body = "-42|héllo||a|b";
+      StructuredRecord record = format.read(new StreamEvent(ByteBuffer.wrap(body.getBytes(charset))));
+      Assert.assertEquals(-42, (int) record.get("i"));
+      Assert.assertEquals("héllo", record.get("s"));
+      Assert.assertNull(record.get("d"));
+      Assert.assertArrayEquals(new String[] { "a", "b" }, (String[]) record.get("rest"));
+    }
+  }
+
+  private void assertSplit(DelimitedBytesParser parser, String input, Charset charset, String delimiter) {
+    String decoded = new String(input.getBytes(charset), charset);
+    List<String> expected = ImmutableList.copyOf(Splitter.on(delimiter).split(decoded));
+    int size = parser.split(ByteBuffer.wrap(input.getBytes(charset)), Integer.MAX_VALUE);
+    Assert.assertEquals(expected.size(), size);
+    Assert.assertEquals(expected, ImmutableList.copyOf(parser.getStrings(0)));
+    for (int i = 0; i < size; i++) {
+      Assert.assertEquals(expected.get(i).isEmpty(), parser.isEmpty(i));
+    }
+    Assert.assertEquals(ImmutableList.copyOf(Iterables.skip(expected, 1)), ImmutableList.copyOf(parser.getStrings(1)));
+  }
+
+  private void assertParse(Schema.Type type, String input, DelimitedBytesParser parser) {
+    Object expected;
+    try {
+      switch (type) {
+        case INT:
+          expected = Integer.parseInt(input);
+          break;
+        case LONG:
+          expected = Long.parseLong(input);
+          break;
+        case FLOAT:
+          expected = Float.parseFloat(input);
+          break;
+        case DOUBLE:
+          expected = Double.parseDouble(input);
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported type " + type);
+      }
+    } catch (NumberFormatException e) {
+      expected = e.getClass();
+    }
+
+    Object actual;
+    try {
+      actual = parser.parse(0, type);
+    } catch (NumberFormatException e) {
+      actual = e.getClass();
+    }
+    Assert.assertEquals("Failed to parse " + type + " from '" + input + "'", expected, actual);
+  }
+}
@@ -17,10 +17,15 @@
 package co.cask.cdap.format;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.Schema;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
@@ -55,4 +60,80 @@ public class StructuredRecordBuilderTest {
 
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void testPositionalAccess() {
+    Schema schema = Schema.recordOf("x1",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+    Assert.assertEquals(0, schema.getFieldIndex("id"));
+    Assert.assertEquals(1, schema.getFieldIndex("name"));
+    Assert.assertEquals(2, schema.getFieldIndex("score"));
+    Assert.assertEquals(-1, schema.getFieldIndex("unknown"));
+    Assert.assertEquals(-1, Schema.of(Schema.Type.STRING).getFieldIndex("id"));
+
+    StructuredRecord byName = StructuredRecord.builder(schema)
+      .set("id", 1)
+      .set("score", 2.5d)
+      .build();
+    StructuredRecord byIndex = StructuredRecord.builder(schema)
+      .set(2, 2.5d)
+      .set(0, 1)
+      .build();
+    Assert.assertEquals(byName, byIndex);
+    Assert.assertEquals(byName.hashCode(), byIndex.hashCode());
+
+    Assert.assertEquals(1, (int) byIndex.get("id"));
+    Assert.assertEquals(1, (int) byIndex.get(0));
+    Assert.assertNull(byIndex.get("name"));
+    Assert.assertNull(byIndex.get(1));
+    Assert.assertNull(byIndex.get("unknown"));
+
+    try {
+      StructuredRecord.builder(schema).set(0, null);
+      Assert.fail("Expected failure when setting null to non-nullable field");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    try {
+      StructuredRecord.builder(schema).set(3, 1);
+      Assert.fail("Expected failure when setting field with invalid index");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+    try {
+      StructuredRecord.builder(schema).set(2, 2.5d).build();
+      Assert.fail("Expected failure when a non-nullable field is not set");
+    } catch (UnexpectedFormatException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testJavaSerialization() throws Exception {
+    Schema innerSchema = Schema.recordOf("inner", Schema.Field.of("x", Schema.of(Schema.Type.LONG)));
+    Schema schema = Schema.recordOf("outer",
+                                    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("inner", innerSchema),
+                                    Schema.Field.of("opt", Schema.nullableOf(Schema.of(Schema.Type.INT))));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("name", "test")
+      .set("inner", StructuredRecord.builder(innerSchema).set("x", 10L).build())
+      .build();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(record);
+    }
+    StructuredRecord copy;
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      copy = (StructuredRecord) ois.readObject();
+    }
+
+    Assert.assertEquals(record, copy);
+    Assert.assertEquals("test", copy.get(0));
+    Assert.assertEquals(10L, (long) copy.<StructuredRecord>get("inner").get("x"));
+    Assert.assertNull(copy.get("opt"));
+  }
 }
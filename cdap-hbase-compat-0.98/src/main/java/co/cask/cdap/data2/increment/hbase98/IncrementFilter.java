@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,21 +16,46 @@
 
 package co.cask.cdap.data2.increment.hbase98;
 
+import co.cask.cdap.data2.increment.hbase.IncrementSummaryCache;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.filter.FilterBase;
+import org.apache.hadoop.hbase.util.Bytes;
 
 import java.io.IOException;
+import javax.annotation.Nullable;
 
 /**
  * Simple filter for increment columns that includes all cell values in a column with a "delta" prefix up to and
  * including the first cell it finds that is not an increment.  This allows the {@link IncrementHandler}
  * coprocessor to return the correct value for an increment column by summing the last total sum plus all newer
  * delta values.
+ *
+ * <p>If an {@link IncrementSummaryCache} is given, a cell matching the cached summary of its column is replaced
+ * with a full value holding the summarized sum, and all older cells of the column are skipped.</p>
  */
 public class IncrementFilter extends FilterBase {
+  private final IncrementSummaryCache.Reader summaries;
+  private Cell currentColumn;
+  private IncrementSummaryCache.Summary currentSummary;
+
+  public IncrementFilter() {
+    this(null);
+  }
+
+  public IncrementFilter(@Nullable IncrementSummaryCache.Reader summaries) {
+    this.summaries = summaries;
+  }
+
+  @Nullable
+  IncrementSummaryCache.Reader getSummaries() {
+    return summaries;
+  }
+
   @Override
   public ReturnCode filterKeyValue(Cell cell) throws IOException {
-    if (IncrementHandler.isIncrement(cell)) {
+    if (IncrementHandler.isIncrement(cell) && !isSummarized(cell)) {
       // all visible increments should be included until we get to a non-increment
       return ReturnCode.INCLUDE;
     } else {
@@ -38,4 +63,27 @@ public class IncrementFilter extends FilterBase {
       return ReturnCode.INCLUDE_AND_NEXT_COL;
     }
   }
+
+  @Override
+  public Cell transformCell(Cell cell) throws IOException {
+    if (!isSummarized(cell)) {
+      return cell;
+    }
+    return CellUtil.createCell(CellUtil.cloneRow(cell), CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell),
+                               cell.getTimestamp(), KeyValue.Type.Put.getCode(),
+                               Bytes.toBytes(currentSummary.getSum()));
+  }
+
+  private boolean isSummarized(Cell cell) {
+    if (summaries == null) {
+      return false;
+    }
+    // only look up the summary once for each column
+    if (currentColumn == null || !CellUtil.matchingRow(cell, currentColumn)
+      || !CellUtil.matchingFamily(cell, currentColumn) || !CellUtil.matchingQualifier(cell, currentColumn)) {
+      currentColumn = cell;
+      currentSummary = summaries.get(cell);
+    }
+    return currentSummary != null && currentSummary.getTimestamp() == cell.getTimestamp();
+  }
 }
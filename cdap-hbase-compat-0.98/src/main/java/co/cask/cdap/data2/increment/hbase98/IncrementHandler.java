@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,6 +18,9 @@ package co.cask.cdap.data2.increment.hbase98;
 
 import co.cask.cdap.data2.dataset2.lib.table.hbase.HBaseTable;
 import co.cask.cdap.data2.increment.hbase.IncrementHandlerState;
+import co.cask.cdap.data2.increment.hbase.IncrementSummaryCache;
+import co.cask.cdap.data2.increment.hbase.IncrementSummaryStore;
+import co.cask.cdap.data2.increment.hbase.IncrementSummaryStoreSupplier;
 import co.cask.cdap.data2.increment.hbase.TimestampOracle;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
@@ -37,6 +40,8 @@ import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
@@ -46,6 +51,7 @@ import org.apache.hadoop.hbase.regionserver.Store;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
 import org.apache.hadoop.hbase.regionserver.wal.WALEdit;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.util.Pair;
 import org.apache.tephra.TxConstants;
 
 import java.io.IOException;
@@ -54,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import javax.annotation.Nullable;
 
 /**
  * HBase coprocessor that handles reading and writing read-less increment operations.
@@ -68,12 +75,16 @@ import java.util.TreeMap;
  *
  * <p>To mitigate the performance impact on reading, this coprocessor also overrides the scanner used in flush and
  * compaction operations, using {@link IncrementSummingScanner} to generate a new "full" value aggregated from
- * all the successfully committed delta values.</p>
+ * all the successfully committed delta values.  Reads additionally keep the sums of the delta values that can no
+ * longer change in an {@link IncrementSummaryCache}, so that later reads only need to sum the newer delta values.
+ * The cached sums of all regions of a RegionServer share one {@link IncrementSummaryStore}.</p>
  */
 public class IncrementHandler extends BaseRegionObserver {
 
   private HRegion region;
   private IncrementHandlerState state;
+  private IncrementSummaryStoreSupplier summaryStoreSupplier;
+  private IncrementSummaryCache summaryCache;
 
   @Override
   public void start(CoprocessorEnvironment e) throws IOException {
@@ -87,6 +98,12 @@ public class IncrementHandler extends BaseRegionObserver {
       for (HColumnDescriptor columnDesc : tableDesc.getFamilies()) {
         state.initFamily(columnDesc.getName(), convertFamilyValues(columnDesc.getValues()));
       }
+
+      if (env.getConfiguration().getLong(IncrementSummaryStore.PROPERTY_MAX_SIZE_BYTES,
+                                         IncrementSummaryStore.DEFAULT_MAX_SIZE_BYTES) > 0) {
+        this.summaryStoreSupplier = new IncrementSummaryStoreSupplier(env.getConfiguration());
+        this.summaryCache = new IncrementSummaryCache(state, summaryStoreSupplier.get());
+      }
     }
   }
 
@@ -95,6 +112,10 @@ public class IncrementHandler extends BaseRegionObserver {
     if (state != null) {
       state.stop();
     }
+    if (summaryCache != null) {
+      summaryCache.close();
+      summaryStoreSupplier.release();
+    }
   }
 
   @VisibleForTesting
@@ -102,6 +123,11 @@ public class IncrementHandler extends BaseRegionObserver {
     state.setTimestampOracle(timeOracle);
   }
 
+  @VisibleForTesting
+  IncrementSummaryCache getSummaryCache() {
+    return summaryCache;
+  }
+
   private Map<byte[], byte[]> convertFamilyValues(Map<ImmutableBytesWritable, ImmutableBytesWritable> writableValues) {
     Map<byte[], byte[]> converted = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     for (Map.Entry<ImmutableBytesWritable, ImmutableBytesWritable> e : writableValues.entrySet()) {
@@ -115,10 +141,12 @@ public class IncrementHandler extends BaseRegionObserver {
     throws IOException {
     Scan scan = new Scan(get);
     scan.setMaxVersions();
-    scan.setFilter(Filters.combine(new IncrementFilter(), scan.getFilter()));
+    IncrementSummaryCache.Reader summaries = newSummaryReader(scan);
+    scan.setFilter(Filters.combine(new IncrementFilter(summaries), scan.getFilter()));
     RegionScanner scanner = null;
     try {
-      scanner = new IncrementSummingScanner(region, scan.getBatch(), region.getScanner(scan), ScanType.USER_SCAN);
+      scanner = new IncrementSummingScanner(region, scan.getBatch(), region.getScanner(scan), ScanType.USER_SCAN,
+                                            summaries);
       scanner.next(results);
       ctx.bypass();
     } finally {
@@ -183,6 +211,7 @@ public class IncrementHandler extends BaseRegionObserver {
   @Override
   public void prePut(ObserverContext<RegionCoprocessorEnvironment> ctx, Put put, WALEdit edit, Durability durability)
     throws IOException {
+    invalidateSummaries(put.getFamilyCellMap());
     // we assume that if any of the column families written to are transactional, the entire write is transactional
     boolean transactional = state.containsTransactionalFamily(put.getFamilyCellMap().keySet());
     boolean isIncrement = put.getAttribute(HBaseTable.DELTA_WRITE) != null;
@@ -215,9 +244,17 @@ public class IncrementHandler extends BaseRegionObserver {
     // put completes normally with value prefix marker
   }
 
+  @Override
+  public void postPut(ObserverContext<RegionCoprocessorEnvironment> ctx, Put put, WALEdit edit, Durability durability)
+    throws IOException {
+    // also invalidate after the write, as reads started before it completed may have cached the previous sums
+    invalidateSummaries(put.getFamilyCellMap());
+  }
+
   @Override
   public void preDelete(ObserverContext<RegionCoprocessorEnvironment> e, Delete delete, WALEdit edit,
                         Durability durability) throws IOException {
+    invalidateSummaries(delete.getFamilyCellMap());
     boolean transactional = state.containsTransactionalFamily(delete.getFamilyCellMap().keySet());
     if (!transactional) {
       long tsToAssign = state.getUniqueTimestamp();
@@ -240,12 +277,46 @@ public class IncrementHandler extends BaseRegionObserver {
     }
   }
 
+  @Override
+  public void postDelete(ObserverContext<RegionCoprocessorEnvironment> e, Delete delete, WALEdit edit,
+                         Durability durability) throws IOException {
+    invalidateSummaries(delete.getFamilyCellMap());
+  }
+
+  @Override
+  public void preBulkLoadHFile(ObserverContext<RegionCoprocessorEnvironment> ctx,
+                               List<Pair<byte[], String>> familyPaths) throws IOException {
+    if (summaryCache != null) {
+      summaryCache.invalidateAll();
+    }
+  }
+
+  @Override
+  public boolean postBulkLoadHFile(ObserverContext<RegionCoprocessorEnvironment> ctx,
+                                   List<Pair<byte[], String>> familyPaths, boolean hasLoaded) throws IOException {
+    if (summaryCache != null) {
+      summaryCache.invalidateAll();
+    }
+    return hasLoaded;
+  }
+
+  private void invalidateSummaries(Map<byte[], List<Cell>> familyCellMap) {
+    if (summaryCache != null) {
+      summaryCache.invalidate(familyCellMap);
+    }
+  }
+
+  @Nullable
+  private IncrementSummaryCache.Reader newSummaryReader(Scan scan) {
+    return summaryCache == null ? null : summaryCache.newReader(scan);
+  }
+
   @Override
   public RegionScanner preScannerOpen(ObserverContext<RegionCoprocessorEnvironment> e, Scan scan, RegionScanner s)
     throws IOException {
     // must see all versions to aggregate increments
     scan.setMaxVersions();
-    scan.setFilter(Filters.combine(new IncrementFilter(), scan.getFilter()));
+    scan.setFilter(Filters.combine(new IncrementFilter(newSummaryReader(scan)), scan.getFilter()));
     return s;
   }
 
@@ -253,7 +324,20 @@ public class IncrementHandler extends BaseRegionObserver {
   public RegionScanner postScannerOpen(ObserverContext<RegionCoprocessorEnvironment> ctx, Scan scan,
                                        RegionScanner scanner)
     throws IOException {
-    return new IncrementSummingScanner(region, scan.getBatch(), scanner, ScanType.USER_SCAN);
+    return new IncrementSummingScanner(region, scan.getBatch(), scanner, ScanType.USER_SCAN,
+                                       getSummaryReader(scan.getFilter()));
+  }
+
+  /**
+   * Returns the summary cache reader of the {@link IncrementFilter} added to the scan in {@link #preScannerOpen}.
+   */
+  @Nullable
+  private static IncrementSummaryCache.Reader getSummaryReader(@Nullable Filter filter) {
+    if (filter instanceof FilterList) {
+      List<Filter> filters = ((FilterList) filter).getFilters();
+      filter = filters.isEmpty() ? null : filters.get(filters.size() - 1);
+    }
+    return filter instanceof IncrementFilter ? ((IncrementFilter) filter).getSummaries() : null;
   }
 
   @Override
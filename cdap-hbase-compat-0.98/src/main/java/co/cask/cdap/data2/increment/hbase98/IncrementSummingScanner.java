@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.increment.hbase98;
 
 import co.cask.cdap.data2.increment.hbase.IncrementHandlerState;
+import co.cask.cdap.data2.increment.hbase.IncrementSummaryCache;
 import com.google.common.base.Preconditions;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,12 +35,15 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Transforms reads of the stored delta increments into calculated sums for each column.
  */
 class IncrementSummingScanner implements RegionScanner {
   private static final Log LOG = LogFactory.getLog(IncrementSummingScanner.class);
+  // minimum number of summarizable cells in a column for its sum to be worth caching
+  private static final int MIN_SUMMARY_CELLS = 2;
 
   private final HRegion region;
   private final WrappedScanner baseScanner;
@@ -51,13 +55,30 @@ class IncrementSummingScanner implements RegionScanner {
   private final long compactionUpperBound;
   // scan start time to use in computing TTL
   private final long oldestTsByTTL;
+  // cache to store the sums of summarizable cells in, if any
+  private final IncrementSummaryCache.Reader summaries;
+  // newest timestamp, count and sum of the summarizable cells of the current column
+  private long summaryTs;
+  private int summaryCells;
+  private long summarySum;
 
   IncrementSummingScanner(HRegion region, int batchSize, InternalScanner internalScanner, ScanType scanType) {
-    this(region, batchSize, internalScanner, scanType, Long.MAX_VALUE, -1);
+    this(region, batchSize, internalScanner, scanType, null);
+  }
+
+  IncrementSummingScanner(HRegion region, int batchSize, InternalScanner internalScanner, ScanType scanType,
+                          @Nullable IncrementSummaryCache.Reader summaries) {
+    this(region, batchSize, internalScanner, scanType, Long.MAX_VALUE, -1, summaries);
   }
 
   IncrementSummingScanner(HRegion region, int batchSize, InternalScanner internalScanner, ScanType scanType,
                           long compationUpperBound, long oldestTsByTTL) {
+    this(region, batchSize, internalScanner, scanType, compationUpperBound, oldestTsByTTL, null);
+  }
+
+  private IncrementSummingScanner(HRegion region, int batchSize, InternalScanner internalScanner, ScanType scanType,
+                                  long compationUpperBound, long oldestTsByTTL,
+                                  @Nullable IncrementSummaryCache.Reader summaries) {
     this.region = region;
     this.batchSize = batchSize;
     this.baseScanner = new WrappedScanner(internalScanner);
@@ -67,6 +88,7 @@ class IncrementSummingScanner implements RegionScanner {
     this.scanType = scanType;
     this.compactionUpperBound = compationUpperBound;
     this.oldestTsByTTL = oldestTsByTTL;
+    this.summaries = summaries;
   }
 
   @Override
@@ -154,7 +176,7 @@ class IncrementSummingScanner implements RegionScanner {
           if (LOG.isTraceEnabled()) {
             LOG.trace("Including increment: sum=" + runningSum + ", cell=" + previousIncrement);
           }
-          cells.add(newCell(previousIncrement, runningSum));
+          cells.add(newSumCell(previousIncrement, runningSum));
           addedCnt++;
           previousIncrement = null;
           runningSum = 0;
@@ -183,7 +205,7 @@ class IncrementSummingScanner implements RegionScanner {
             if (LOG.isTraceEnabled()) {
               LOG.trace("Including increment: sum=" + runningSum + ", cell=" + previousIncrement);
             }
-            cells.add(newCell(previousIncrement, runningSum));
+            cells.add(newSumCell(previousIncrement, runningSum));
             previousIncrement = null;
             addedCnt++;
             // continue without advancing, current cell will be consumed on the next iteration
@@ -191,16 +213,22 @@ class IncrementSummingScanner implements RegionScanner {
           }
           previousIncrement = cell;
           runningSum = 0;
+          summaryCells = 0;
+          summarySum = 0;
         }
         // add this increment to the tally
-        runningSum += Bytes.toLong(cell.getValueArray(),
-            cell.getValueOffset() + IncrementHandlerState.DELTA_MAGIC_PREFIX.length);
+        long value = Bytes.toLong(cell.getValueArray(),
+                                  cell.getValueOffset() + IncrementHandlerState.DELTA_MAGIC_PREFIX.length);
+        runningSum += value;
+        addToSummary(cell, value);
       } else {
         // otherwise (not an increment)
         if (previousIncrement != null) {
           if (sameCell(previousIncrement, cell) && !CellUtil.isDelete(cell)) {
             // if qualifier matches previous and this is a long, add to running sum, emit
-            runningSum += Bytes.toLong(cell.getValueArray(), cell.getValueOffset());
+            long value = Bytes.toLong(cell.getValueArray(), cell.getValueOffset());
+            runningSum += value;
+            addToSummary(cell, value);
             // this cell already processed as part of the previous increment's sum, so consume it
             baseScanner.nextCell(limit);
           }
@@ -210,7 +238,7 @@ class IncrementSummingScanner implements RegionScanner {
           // if this put is a different cell from the previous increment, then
           // we only emit the previous increment, reset it, and continue.
           // the current cell will be consumed on the next iteration, if we have not yet reached the limit
-          cells.add(newCell(previousIncrement, runningSum));
+          cells.add(newSumCell(previousIncrement, runningSum));
           addedCnt++;
           previousIncrement = null;
           runningSum = 0;
@@ -238,7 +266,7 @@ class IncrementSummingScanner implements RegionScanner {
       if (LOG.isTraceEnabled()) {
         LOG.trace("Including leftover increment: sum=" + runningSum + ", cell=" + previousIncrement);
       }
-      cells.add(newCell(previousIncrement, runningSum));
+      cells.add(newSumCell(previousIncrement, runningSum));
     }
 
     boolean hasMore = baseScanner.hasMore();
@@ -260,6 +288,24 @@ class IncrementSummingScanner implements RegionScanner {
       CellUtil.matchingQualifier(first, second);
   }
 
+  private void addToSummary(Cell cell, long value) {
+    if (summaries != null && cell.getTimestamp() <= summaries.getUpperBound(cell)) {
+      if (summaryCells == 0) {
+        summaryTs = cell.getTimestamp();
+      }
+      summaryCells++;
+      summarySum += value;
+    }
+  }
+
+  private Cell newSumCell(Cell column, long sum) {
+    // cells are read newest first, so all summarizable cells of the column have been added by now
+    if (summaries != null && summaryCells >= MIN_SUMMARY_CELLS) {
+      summaries.put(column, summaryTs, summarySum);
+    }
+    return newCell(column, sum);
+  }
+
   private Cell newCell(Cell toCopy, long value) {
     byte[] newValue = Bytes.toBytes(value);
     if (scanType == ScanType.COMPACT_RETAIN_DELETES) {
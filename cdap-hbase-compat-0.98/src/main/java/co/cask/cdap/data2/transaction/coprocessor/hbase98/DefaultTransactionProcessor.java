@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,6 +18,7 @@ package co.cask.cdap.data2.transaction.coprocessor.hbase98;
 
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.lib.table.hbase.HBaseTable;
+import co.cask.cdap.data2.increment.hbase.IncrementSummaryCache;
 import co.cask.cdap.data2.increment.hbase98.IncrementTxFilter;
 import co.cask.cdap.data2.transaction.coprocessor.CConfigurationCache;
 import co.cask.cdap.data2.transaction.coprocessor.CConfigurationCacheSupplier;
@@ -26,15 +27,19 @@ import co.cask.cdap.data2.util.hbase.HTableNameConverter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.OperationWithAttributes;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.regionserver.InternalScanner;
 import org.apache.hadoop.hbase.regionserver.KeyValueScanner;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.regionserver.Store;
 import org.apache.hadoop.hbase.regionserver.compactions.CompactionRequest;
@@ -88,6 +93,21 @@ public class DefaultTransactionProcessor extends TransactionProcessor {
     cConfCacheSupplier.release();
   }
 
+  @Override
+  public void preGetOp(ObserverContext<RegionCoprocessorEnvironment> e, Get get, List<Cell> results)
+    throws IOException {
+    // the transaction filter hides the original filter from the IncrementHandler, so check it here
+    IncrementSummaryCache.markCellFilterFree(get);
+    super.preGetOp(e, get, results);
+  }
+
+  @Override
+  public RegionScanner preScannerOpen(ObserverContext<RegionCoprocessorEnvironment> e, Scan scan, RegionScanner s)
+    throws IOException {
+    IncrementSummaryCache.markCellFilterFree(scan);
+    return super.preScannerOpen(e, scan, s);
+  }
+
   @Override
   public void postFlush(ObserverContext<RegionCoprocessorEnvironment> e) throws IOException {
     reloadPruneState(e.getEnvironment());
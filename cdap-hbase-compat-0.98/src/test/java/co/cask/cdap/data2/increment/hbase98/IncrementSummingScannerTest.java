@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,8 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data.hbase.HBase98Test;
 import co.cask.cdap.data2.dataset2.lib.table.hbase.HBaseTable;
 import co.cask.cdap.data2.increment.hbase.IncrementHandlerState;
+import co.cask.cdap.data2.increment.hbase.IncrementSummaryCache;
+import co.cask.cdap.data2.increment.hbase.IncrementSummaryStore;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtilFactory;
@@ -33,13 +35,18 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.CellUtil;
 import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.HRegionInfo;
 import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.BinaryComparator;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.ValueFilter;
 import org.apache.hadoop.hbase.regionserver.HRegion;
 import org.apache.hadoop.hbase.regionserver.HRegionFileSystem;
 import org.apache.hadoop.hbase.regionserver.RegionScanner;
@@ -47,6 +54,7 @@ import org.apache.hadoop.hbase.regionserver.ScanType;
 import org.apache.hadoop.hbase.regionserver.wal.HLog;
 import org.apache.hadoop.hbase.regionserver.wal.HLogFactory;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.tephra.TxConstants;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
 import org.junit.Test;
@@ -56,6 +64,7 @@ import java.util.List;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -447,6 +456,174 @@ public class IncrementSummingScannerTest {
     }
   }
 
+  @Test
+  public void testSummaryCache() throws Exception {
+    TableId tableId = TableId.from(NamespaceId.DEFAULT.getNamespace(), "testSummaryCache");
+    byte[] familyBytes = Bytes.toBytes("f");
+    byte[] columnBytes = Bytes.toBytes("c");
+    byte[] row = Bytes.toBytes("r1");
+    Cell column = new KeyValue(row, familyBytes, columnBytes);
+    HRegion region = createRegion(tableId, familyBytes);
+    try {
+      region.initialize();
+      BoundedState state = new BoundedState(conf, region.getTableDesc());
+      IncrementSummaryStore store = new IncrementSummaryStore(1024 * 1024);
+      IncrementSummaryCache cache = new IncrementSummaryCache(state, store);
+
+      for (long ts = 1; ts <= 10; ts++) {
+        region.put(generateIncrementPut(familyBytes, columnBytes, row, ts));
+      }
+
+      // only increments at or below the visibility upper bound are summarized
+      state.upperBound = 5;
+      assertEquals(10L, scanSum(region, cache, newTxScan()));
+      IncrementSummaryCache.Summary summary = cache.newReader(newTxScan()).get(column);
+      assertNotNull(summary);
+      assertEquals(5L, summary.getTimestamp());
+      assertEquals(5L, summary.getSum());
+
+      // a cached summary replaces the increment at its timestamp and all older ones
+      cache.newReader(newTxScan()).put(column, 5L, 100L);
+      assertEquals(105L, scanSum(region, cache, newTxScan()));
+
+      // the cache must not be used by reads that are not filtered for transaction visibility
+      assertEquals(10L, scanSum(region, cache, new Scan().setMaxVersions()));
+      // or by reads with a filter that may exclude individual cells
+      Scan filteredScan = new Scan().setMaxVersions();
+      filteredScan.setFilter(new ValueFilter(CompareFilter.CompareOp.NOT_EQUAL,
+                                             new BinaryComparator(Bytes.toBytes(0L))));
+      IncrementSummaryCache.markCellFilterFree(filteredScan);
+      filteredScan.setAttribute(TxConstants.TX_OPERATION_ATTRIBUTE_KEY, TRUE);
+      assertNull(cache.newReader(filteredScan));
+
+      // a summary that does not match an existing cell is ignored and replaced
+      cache.newReader(newTxScan()).put(column, 11L, 100L);
+      assertEquals(10L, scanSum(region, cache, newTxScan()));
+      summary = cache.newReader(newTxScan()).get(column);
+      assertNotNull(summary);
+      assertEquals(5L, summary.getTimestamp());
+      assertEquals(5L, summary.getSum());
+
+      // newer increments are summed on top of the summary, which advances with the upper bound
+      region.put(generateIncrementPut(familyBytes, columnBytes, row, 11));
+      region.put(generateIncrementPut(familyBytes, columnBytes, row, 12));
+      state.upperBound = 11;
+      assertEquals(12L, scanSum(region, cache, newTxScan()));
+      summary = cache.newReader(newTxScan()).get(column);
+      assertNotNull(summary);
+      assertEquals(11L, summary.getTimestamp());
+      assertEquals(11L, summary.getSum());
+      assertEquals(12L, scanSum(region, cache, newTxScan()));
+
+      // writes above the upper bound leave the summaries alone, writes below invalidate them
+      cache.invalidate(generateIncrementPut(familyBytes, columnBytes, row, 13).getFamilyCellMap());
+      assertNotNull(cache.newReader(newTxScan()).get(column));
+      cache.invalidate(generateIncrementPut(familyBytes, columnBytes, row, 3).getFamilyCellMap());
+      assertNull(cache.newReader(newTxScan()).get(column));
+
+      // sums computed by reads started before an invalidation are not cached
+      IncrementSummaryCache.Reader reader = cache.newReader(newTxScan());
+      cache.invalidateAll();
+      reader.put(column, 11L, 11L);
+      assertNull(cache.newReader(newTxScan()).get(column));
+
+      // regions sharing a store only see their own summaries, which are removed when the region is closed
+      IncrementSummaryCache otherCache = new IncrementSummaryCache(state, store);
+      cache.newReader(newTxScan()).put(column, 11L, 11L);
+      assertNull(otherCache.newReader(newTxScan()).get(column));
+      otherCache.newReader(newTxScan()).put(column, 5L, 5L);
+      assertEquals(11L, cache.newReader(newTxScan()).get(column).getSum());
+      assertEquals(5L, otherCache.newReader(newTxScan()).get(column).getSum());
+      cache.close();
+      assertNull(cache.newReader(newTxScan()).get(column));
+      assertEquals(5L, otherCache.newReader(newTxScan()).get(column).getSum());
+    } finally {
+      region.close();
+    }
+  }
+
+  @Test
+  public void testSummaryCacheWithFlushAndCompact() throws Exception {
+    TableId tableId = TableId.from(NamespaceId.DEFAULT.getNamespace(), "testSummaryCacheWithFlushAndCompact");
+    byte[] familyBytes = Bytes.toBytes("f");
+    byte[] columnBytes = Bytes.toBytes("c");
+    byte[] row = Bytes.toBytes("r1");
+    HColumnDescriptor columnDesc = new HColumnDescriptor(familyBytes);
+    columnDesc.setValue(IncrementHandlerState.PROPERTY_TRANSACTIONAL, "false");
+    HRegion region = createRegion(conf, cConf, tableId, columnDesc);
+    try {
+      region.initialize();
+      IncrementHandler handler =
+        (IncrementHandler) region.getCoprocessorHost().findCoprocessor(IncrementHandler.class.getName());
+      assertNotNull(handler.getSummaryCache());
+      Cell column = new KeyValue(row, familyBytes, columnBytes);
+
+      long expected = 0;
+      for (int i = 0; i < 3; i++) {
+        for (int j = 0; j < 10; j++) {
+          region.put(generateIncrementPut(familyBytes, columnBytes, row, HConstants.LATEST_TIMESTAMP));
+          expected++;
+        }
+        assertGetSum(region, familyBytes, columnBytes, expected);
+        // the sum of all non-transactional increments is cached
+        IncrementSummaryCache.Summary summary = handler.getSummaryCache().newReader(new Scan()).get(column);
+        assertNotNull(summary);
+        assertEquals(expected, summary.getSum());
+        assertGetSum(region, familyBytes, columnBytes, expected);
+
+        // merging increments on flush and compaction keeps the cached summary valid
+        region.flushcache();
+        assertGetSum(region, familyBytes, columnBytes, expected);
+        region.put(generateIncrementPut(familyBytes, columnBytes, row, HConstants.LATEST_TIMESTAMP));
+        expected++;
+        assertGetSum(region, familyBytes, columnBytes, expected);
+        region.flushcache();
+        region.compactStores(i == 2);
+        assertGetSum(region, familyBytes, columnBytes, expected);
+      }
+
+      // deletes hide summarized cells
+      Delete delete = new Delete(row);
+      delete.deleteColumns(familyBytes, columnBytes);
+      region.delete(delete);
+      assertTrue(region.get(new Get(row)).isEmpty());
+      region.put(generateIncrementPut(familyBytes, columnBytes, row, HConstants.LATEST_TIMESTAMP));
+      assertGetSum(region, familyBytes, columnBytes, 1L);
+    } finally {
+      region.close();
+    }
+  }
+
+  private void assertGetSum(HRegion region, byte[] family, byte[] column, long expected) throws Exception {
+    Result result = region.get(new Get(Bytes.toBytes("r1")));
+    Cell cell = result.getColumnLatestCell(family, column);
+    assertNotNull(cell);
+    assertEquals(expected, Bytes.toLong(CellUtil.cloneValue(cell)));
+  }
+
+  private Scan newTxScan() {
+    Scan scan = new Scan().setMaxVersions();
+    // mimics a read that has been filtered for transaction visibility
+    scan.setAttribute(TxConstants.TX_OPERATION_ATTRIBUTE_KEY, TRUE);
+    IncrementSummaryCache.markCellFilterFree(scan);
+    return scan;
+  }
+
+  private long scanSum(HRegion region, IncrementSummaryCache cache, Scan scan) throws Exception {
+    IncrementSummaryCache.Reader summaries = cache.newReader(scan);
+    scan.setFilter(Filters.combine(new IncrementFilter(summaries), scan.getFilter()));
+    RegionScanner scanner = new IncrementSummingScanner(region, -1, region.getScanner(scan), ScanType.USER_SCAN,
+                                                        summaries);
+    try {
+      List<Cell> results = Lists.newArrayList();
+      scanner.next(results);
+      assertEquals(1, results.size());
+      return Bytes.toLong(CellUtil.cloneValue(results.get(0)));
+    } finally {
+      scanner.close();
+    }
+  }
+
   private Put generateIncrementPut(byte[] familyBytes, byte[] columnBytes, byte [] row, long ts) {
     Put p = new Put(row);
     p.add(familyBytes, columnBytes, ts, Bytes.toBytes(1L));
@@ -502,6 +679,27 @@ public class IncrementSummingScannerTest {
     return createRegion(conf, cConf, tableId, new HColumnDescriptor(family));
   }
 
+  /**
+   * Treats all families as transactional, with a settable visibility upper bound.
+   */
+  private static final class BoundedState extends IncrementHandlerState {
+    private long upperBound;
+
+    BoundedState(Configuration conf, HTableDescriptor tableDesc) {
+      super(conf, tableDesc);
+    }
+
+    @Override
+    public boolean isTransactionalFamily(byte[] familyName) {
+      return true;
+    }
+
+    @Override
+    public long getCompactionBound(byte[] columnFamily) {
+      return upperBound;
+    }
+  }
+
   static HRegion createRegion(Configuration hConf, CConfiguration cConf, TableId tableId,
                               HColumnDescriptor cfd) throws Exception {
     HBaseTableUtil tableUtil = new HBaseTableUtilFactory(cConf).get();
@@ -36,6 +36,7 @@ import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.stream.StreamAdminModules;
 import co.cask.cdap.data.view.ViewAdminModules;
 import co.cask.cdap.data2.audit.AuditModule;
+import co.cask.cdap.data2.audit.AuditPublisher;
 import co.cask.cdap.data2.datafabric.dataset.service.executor.DatasetOpExecutorService;
 import co.cask.cdap.explore.guice.ExploreClientModule;
 import co.cask.cdap.gateway.handlers.meta.RemoteSystemOperationsService;
@@ -139,6 +140,10 @@ public class DatasetOpExecutorServerTwillRunnable extends AbstractMasterTwillRun
 
   @Override
   protected void addServices(List<? super Service> services) {
+    AuditPublisher auditPublisher = injector.getInstance(AuditPublisher.class);
+    if (auditPublisher instanceof Service) {
+      services.add((Service) auditPublisher);
+    }
     services.add(injector.getInstance(DatasetOpExecutorService.class));
     services.add(injector.getInstance(MetadataService.class));
     services.add(injector.getInstance(RemoteSystemOperationsService.class));
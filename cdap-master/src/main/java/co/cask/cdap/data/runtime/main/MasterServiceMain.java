@@ -51,6 +51,7 @@ import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.data.stream.StreamAdminModules;
 import co.cask.cdap.data.view.ViewAdminModules;
 import co.cask.cdap.data2.audit.AuditModule;
+import co.cask.cdap.data2.audit.AuditPublisher;
 import co.cask.cdap.data2.datafabric.dataset.service.DatasetService;
 import co.cask.cdap.data2.util.hbase.ConfigurationTable;
 import co.cask.cdap.data2.util.hbase.HBaseDDLExecutorFactory;
@@ -631,6 +632,11 @@ public class MasterServiceMain extends DaemonMain {
       injector.getInstance(AuthorizationBootstrapper.class).run();
       services.add(getAndStart(injector, KafkaClientService.class));
       services.add(getAndStart(injector, MetricsCollectionService.class));
+      // publishes the audit messages of the services below, and is stopped after them
+      AuditPublisher auditPublisher = injector.getInstance(AuditPublisher.class);
+      if (auditPublisher instanceof Service) {
+        services.add((Service) auditPublisher);
+      }
 
       services.add(getAndStart(injector, OperationalStatsService.class));
       ServiceStore serviceStore = getAndStart(injector, ServiceStore.class);
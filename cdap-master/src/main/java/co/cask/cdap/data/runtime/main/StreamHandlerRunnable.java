@@ -35,6 +35,7 @@ import co.cask.cdap.data.stream.service.StreamService;
 import co.cask.cdap.data.stream.service.StreamServiceRuntimeModule;
 import co.cask.cdap.data.view.ViewAdminModules;
 import co.cask.cdap.data2.audit.AuditModule;
+import co.cask.cdap.data2.audit.AuditPublisher;
 import co.cask.cdap.explore.guice.ExploreClientModule;
 import co.cask.cdap.logging.appender.LogAppenderInitializer;
 import co.cask.cdap.logging.guice.LoggingModules;
@@ -98,6 +99,10 @@ public class StreamHandlerRunnable extends AbstractMasterTwillRunnable {
 
   @Override
   protected void addServices(List<? super Service> services) {
+    AuditPublisher auditPublisher = injector.getInstance(AuditPublisher.class);
+    if (auditPublisher instanceof Service) {
+      services.add((Service) auditPublisher);
+    }
     services.add(injector.getInstance(StreamHttpService.class));
     services.add(injector.getInstance(StreamService.class));
   }
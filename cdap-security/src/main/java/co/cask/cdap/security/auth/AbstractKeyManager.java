@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -29,7 +29,9 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.crypto.KeyGenerator;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
@@ -53,6 +55,8 @@ public abstract class AbstractKeyManager extends AbstractIdleService implements
    */
   protected long keyExpirationPeriod = 0;
 
+  private final List<KeyChangeListener> keyChangeListeners = new CopyOnWriteArrayList<>();
+
 
   /**
    * An AbstractKeyManager that has common functionality of all keymanagers.
@@ -125,9 +129,29 @@ public abstract class AbstractKeyManager extends AbstractIdleService implements
     addKey(keyIdentifier);
     this.currentKey = keyIdentifier;
     LOG.info("Changed current key to {}", currentKey);
+    notifyKeysChanged();
     return keyIdentifier;
   }
 
+  @Override
+  public final void addKeyChangeListener(KeyChangeListener listener) {
+    keyChangeListeners.add(listener);
+  }
+
+  /**
+   * Notifies the listeners added with {@link #addKeyChangeListener(KeyChangeListener)} that the keys changed.
+   * Subclasses must call this method whenever they add or remove a key outside of {@link #generateKey()}.
+   */
+  protected final void notifyKeysChanged() {
+    for (KeyChangeListener listener : keyChangeListeners) {
+      try {
+        listener.keysChanged();
+      } catch (Throwable t) {
+        LOG.warn("Exception raised from key change listener {}", listener, t);
+      }
+    }
+  }
+
   @Override
   public final <T> void validateMAC(Codec<T> codec, Signed<T> signedMessage)
     throws InvalidDigestException, InvalidKeyException {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,7 +16,14 @@
 
 package co.cask.cdap.security.auth;
 
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Codec;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
@@ -24,24 +31,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class validates the accessToken and returns the different states
- * of accessToken validation.
+ * of accessToken validation. Valid tokens are cached by the digest of the token, so that a token that
+ * is used for many requests is only decoded and verified once. A cached token is still rejected once it
+ * expires, and the cache is cleared whenever the secret keys change. A token that was validated while the keys
+ * changed is not cached.
  */
 public class AccessTokenValidator extends AbstractIdleService implements TokenValidator {
   private static final Logger LOG = LoggerFactory.getLogger(AccessTokenValidator.class);
   private final TokenManager tokenManager;
   private final Codec<AccessToken> accessTokenCodec;
+  // Expiration timestamp of valid tokens, keyed by the digest of the token
+  private final Cache<HashCode, Long> validTokens;
+  // Incremented whenever the secret keys change, so that a token validated with the old keys is not cached
+  private final AtomicLong keyGeneration = new AtomicLong();
 
   @Inject
-  public AccessTokenValidator(TokenManager tokenManager, Codec<AccessToken> accessTokenCodec) {
+  public AccessTokenValidator(CConfiguration cConf, TokenManager tokenManager, Codec<AccessToken> accessTokenCodec) {
     this.tokenManager = tokenManager;
     this.accessTokenCodec = accessTokenCodec;
+    this.validTokens = CacheBuilder.newBuilder()
+      .maximumSize(cConf.getInt(Constants.Security.TOKEN_VALIDATION_CACHE_SIZE))
+      .build();
   }
 
   @Override
   protected void startUp() throws Exception {
+    tokenManager.addKeyChangeListener(new KeyManager.KeyChangeListener() {
+      @Override
+      public void keysChanged() {
+        keyGeneration.incrementAndGet();
+        validTokens.invalidateAll();
+      }
+    });
     tokenManager.startAndWait();
   }
 
@@ -58,11 +83,27 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
       LOG.debug("Token is missing");
       return TokenState.MISSING;
     }
+    HashCode tokenDigest = Hashing.sha256().hashString(token, Charsets.UTF_8);
+    Long expireTimestamp = validTokens.getIfPresent(tokenDigest);
+    if (expireTimestamp != null) {
+      if (expireTimestamp >= System.currentTimeMillis()) {
+        return TokenState.VALID;
+      }
+      validTokens.invalidate(tokenDigest);
+    }
     byte[] decodedToken = Base64.decodeBase64(token);
 
     try {
+      long validationGeneration = keyGeneration.get();
       accessToken = accessTokenCodec.decode(decodedToken);
       tokenManager.validateSecret(accessToken);
+      if (keyGeneration.get() == validationGeneration) {
+        validTokens.put(tokenDigest, accessToken.getIdentifier().getExpireTimestamp());
+        // the keys may have changed after the check, in which case the cache may already be cleared
+        if (keyGeneration.get() != validationGeneration) {
+          validTokens.invalidate(tokenDigest);
+        }
+      }
     } catch (IOException ioe) {
       state = TokenState.INVALID;
       LOG.debug("Unknown Schema version for Access Token. {}", ioe);
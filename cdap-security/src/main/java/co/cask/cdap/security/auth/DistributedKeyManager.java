@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -175,6 +175,7 @@ public class DistributedKeyManager extends AbstractKeyManager implements Resourc
         LOG.info("Set current key: leader={}, key={}", leader, currentKey.getKeyId());
       }
     }
+    notifyKeysChanged();
   }
 
   @Override
@@ -184,11 +185,13 @@ public class DistributedKeyManager extends AbstractKeyManager implements Resourc
       currentKey = instance;
       LOG.info("Set current key: leader={}, key={}", leader, currentKey.getKeyId());
     }
+    notifyKeysChanged();
   }
 
   @Override
   public void onResourceDelete(String name) {
     LOG.info("Removed key: leader={}, key={}", leader, name);
+    notifyKeysChanged();
   }
 
   @Override
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -64,4 +64,21 @@ public interface KeyManager extends Service {
   <T> void validateMAC(Codec<T> codec, Signed<T> signedMessage)
     throws InvalidDigestException, InvalidKeyException;
 
+  /**
+   * Adds a listener that is called whenever the secret keys change, because a key was added or removed.
+   * @param listener The listener to call.
+   */
+  void addKeyChangeListener(KeyChangeListener listener);
+
+  /**
+   * Listener for changes of the secret keys.
+   */
+  interface KeyChangeListener {
+
+    /**
+     * Called after a secret key was added or removed.
+     */
+    void keysChanged();
+  }
+
 }
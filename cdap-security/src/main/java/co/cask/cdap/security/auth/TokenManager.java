@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -64,6 +64,14 @@ public class TokenManager extends AbstractIdleService {
     }
   }
 
+  /**
+   * Adds a listener that is called whenever the secret keys used to sign and validate tokens change.
+   * @param listener The listener to call.
+   */
+  public void addKeyChangeListener(KeyManager.KeyChangeListener listener) {
+    keyManager.addKeyChangeListener(listener);
+  }
+
   /**
    * Given an {@link AccessToken} instance, checks that the token has not yet expired and that the digest matches
    * the expected value. To validate the token digest, we recompute the digest value, based on the asserted identity
@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.security.auth;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.guice.IOModule;
+import co.cask.cdap.security.guice.SecurityModules;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the caching of valid tokens in {@link AccessTokenValidator}.
+ */
+public class AccessTokenValidatorTest {
+  private static final long TOKEN_DURATION = 3600 * 1000;
+
+  private CountingTokenManager tokenManager;
+  private AccessTokenCodec tokenCodec;
+
+  @Before
+  public void setUp() {
+    Injector injector = Guice.createInjector(new IOModule(), new SecurityModules().getInMemoryModules(),
+                                             new ConfigModule(), new DiscoveryRuntimeModule().getInMemoryModules());
+    tokenManager = new CountingTokenManager(new InMemoryKeyManager(CConfiguration.create()),
+                                            injector.getInstance(AccessTokenIdentifierCodec.class));
+    tokenCodec = injector.getInstance(AccessTokenCodec.class);
+  }
+
+  @Test
+  public void testCacheHit() throws Exception {
+    AccessTokenValidator validator = new AccessTokenValidator(CConfiguration.create(), tokenManager, tokenCodec);
+    validator.startAndWait();
+    try {
+      String token = createToken("testuser");
+      for (int i = 0; i < 5; i++) {
+        Assert.assertEquals(TokenState.VALID, validator.validate(token));
+      }
+      // the token is only verified the first time
+      Assert.assertEquals(1, tokenManager.validations);
+
+      // another token is verified on its own
+      Assert.assertEquals(TokenState.VALID, validator.validate(createToken("otheruser")));
+      Assert.assertEquals(2, tokenManager.validations);
+    } finally {
+      validator.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testKeysChanged() throws Exception {
+    AccessTokenValidator validator = new AccessTokenValidator(CConfiguration.create(), tokenManager, tokenCodec);
+    validator.startAndWait();
+    try {
+      String token = createToken("testuser");
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+      Assert.assertEquals(1, tokenManager.validations);
+
+      // once the keys change, the cached token is verified again, and rejected if its key is gone
+      tokenManager.rejectAll = true;
+      tokenManager.notifyKeysChanged();
+      Assert.assertEquals(TokenState.INVALID, validator.validate(token));
+      Assert.assertEquals(2, tokenManager.validations);
+    } finally {
+      validator.stopAndWait();
+    }
+  }
+
+  @Test
+  public void testKeysChangedDuringValidation() throws Exception {
+    AccessTokenValidator validator = new AccessTokenValidator(CConfiguration.create(), tokenManager, tokenCodec);
+    validator.startAndWait();
+    try {
+      String token = createToken("testuser");
+      // the keys change after the token is verified, but before it is cached
+      tokenManager.changeKeysOnValidation = true;
+      Assert.assertEquals(TokenState.VALID, validator.validate(token));
+
+      // the token was not cached with the old keys, so it is verified again
+      tokenManager.changeKeysOnValidation = false;
+      tokenManager.rejectAll = true;
+      Assert.assertEquals(TokenState.INVALID, validator.validate(token));
+      Assert.assertEquals(2, tokenManager.validations);
+    } finally {
+      validator.stopAndWait();
+    }
+  }
+
+  private String createToken(String user) throws Exception {
+    long now = System.currentTimeMillis();
+    List<String> groups = Lists.newArrayList("users");
+    AccessToken token = tokenManager.signIdentifier(new AccessTokenIdentifier(user, groups, now,
+                                                                              now + TOKEN_DURATION));
+    return Base64.encodeBase64String(tokenCodec.encode(token));
+  }
+
+  /**
+   * A {@link TokenManager} that counts the tokens it verifies, and that can reject every token or notify
+   * its key change listeners while a token is verified.
+   */
+  private static final class CountingTokenManager extends TokenManager {
+    private final List<KeyManager.KeyChangeListener> listeners = Lists.newCopyOnWriteArrayList();
+    private volatile int validations;
+    private volatile boolean rejectAll;
+    private volatile boolean changeKeysOnValidation;
+
+    CountingTokenManager(KeyManager keyManager, AccessTokenIdentifierCodec identifierCodec) {
+      super(keyManager, identifierCodec);
+    }
+
+    @Override
+    public void addKeyChangeListener(KeyManager.KeyChangeListener listener) {
+      listeners.add(listener);
+      super.addKeyChangeListener(listener);
+    }
+
+    @Override
+    public void validateSecret(AccessToken token) throws InvalidTokenException {
+      validations++;
+      if (rejectAll) {
+        throw new InvalidTokenException(TokenState.INVALID, "Token signature is not valid!");
+      }
+      super.validateSecret(token);
+      if (changeKeysOnValidation) {
+        notifyKeysChanged();
+      }
+    }
+
+    void notifyKeysChanged() {
+      for (KeyManager.KeyChangeListener listener : ImmutableList.copyOf(listeners)) {
+        listener.keysChanged();
+      }
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,15 +17,18 @@
 package co.cask.cdap.security.auth;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.io.Codec;
 import co.cask.cdap.common.utils.ImmutablePair;
 import com.google.common.collect.Lists;
+import org.apache.commons.codec.binary.Base64;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -88,6 +91,35 @@ public abstract class TestTokenManager {
     tokenManager.stopAndWait();
   }
 
+  @Test
+  public void testTokenValidator() throws Exception {
+    ImmutablePair<TokenManager, Codec<AccessToken>> pair = getTokenManagerAndCodec();
+    TokenManager tokenManager = pair.getFirst();
+    Codec<AccessToken> tokenCodec = pair.getSecond();
+    AccessTokenValidator validator = new AccessTokenValidator(CConfiguration.create(), tokenManager, tokenCodec);
+    validator.startAndWait();
+
+    long now = System.currentTimeMillis();
+    List<String> groups = Lists.newArrayList("users", "admins");
+    AccessToken token = tokenManager.signIdentifier(new AccessTokenIdentifier("testuser", groups, now, now + 500));
+    String encodedToken = Base64.encodeBase64String(tokenCodec.encode(token));
+    // the second validation is served from the cache
+    assertEquals(TokenState.VALID, validator.validate(encodedToken));
+    assertEquals(TokenState.VALID, validator.validate(encodedToken));
+
+    // a token with the same identifier, but an invalid signature, is not valid
+    byte[] invalidDigest = token.getDigestBytes();
+    new Random().nextBytes(invalidDigest);
+    AccessToken invalidToken = new AccessToken(token.getIdentifier(), token.getKeyId(), invalidDigest);
+    assertEquals(TokenState.INVALID, validator.validate(Base64.encodeBase64String(tokenCodec.encode(invalidToken))));
+
+    // a cached token expires at the expiration time of the token
+    TimeUnit.MILLISECONDS.sleep(now + 600 - System.currentTimeMillis());
+    assertEquals(TokenState.EXPIRED, validator.validate(encodedToken));
+
+    validator.stopAndWait();
+  }
+
   @Test
   public void testTokenSerialization() throws Exception {
     ImmutablePair<TokenManager, Codec<AccessToken>> pair = getTokenManagerAndCodec();
@@ -46,6 +46,7 @@ import co.cask.cdap.data.stream.service.StreamService;
 import co.cask.cdap.data.stream.service.StreamServiceRuntimeModule;
 import co.cask.cdap.data.view.ViewAdminModules;
 import co.cask.cdap.data2.audit.AuditModule;
+import co.cask.cdap.data2.audit.AuditPublisher;
 import co.cask.cdap.data2.datafabric.dataset.service.DatasetService;
 import co.cask.cdap.explore.client.ExploreClient;
 import co.cask.cdap.explore.executor.ExploreExecutorService;
@@ -133,6 +134,7 @@ public class StandaloneMain {
   private final RemoteSystemOperationsService remoteSystemOperationsService;
   private final AuthorizationBootstrapper authorizationBootstrapper;
   private final MessagingService messagingService;
+  private final AuditPublisher auditPublisher;
   private final OperationalStatsService operationalStatsService;
 
   private ExternalAuthenticationServer externalAuthenticationServer;
@@ -154,6 +156,7 @@ public class StandaloneMain {
 
     wranglerAppCreationService = injector.getInstance(WranglerAppCreationService.class);
     messagingService = injector.getInstance(MessagingService.class);
+    auditPublisher = injector.getInstance(AuditPublisher.class);
     authorizerInstantiator = injector.getInstance(AuthorizerInstantiator.class);
     authorizationBootstrapper = injector.getInstance(AuthorizationBootstrapper.class);
     txService = injector.getInstance(InMemoryTransactionService.class);
@@ -234,6 +237,9 @@ public class StandaloneMain {
     authorizationBootstrapper.run();
     txService.startAndWait();
     metricsCollectionService.startAndWait();
+    if (auditPublisher instanceof Service) {
+      ((Service) auditPublisher).startAndWait();
+    }
     datasetService.startAndWait();
     serviceStore.startAndWait();
     streamService.startAndWait();
@@ -319,6 +325,9 @@ public class StandaloneMain {
       // all programs are stopped: dataset service, metrics, transactions can stop now
       datasetService.stopAndWait();
       metricsQueryService.stopAndWait();
+      if (auditPublisher instanceof Service) {
+        ((Service) auditPublisher).stopAndWait();
+      }
       txService.stopAndWait();
 
       if (securityEnabled) {
@@ -36,7 +36,12 @@ import javax.annotation.Nullable;
  */
 public final class LoggingUtil {
 
-  private static final String MDC_NULL_KEY = ".null";
+  /**
+   * The key used to represent the {@code null} key in MDC when encoded with Avro, which doesn't allow {@code null}
+   * map keys.
+   */
+  public static final String MDC_NULL_KEY = ".null";
+
   private static final Comparator<File> FILE_NAME_COMPARATOR = new Comparator<File>() {
     @Override
     public int compare(File o1, File o2) {
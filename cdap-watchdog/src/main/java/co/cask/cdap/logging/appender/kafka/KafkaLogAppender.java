@@ -45,6 +45,8 @@ import java.util.concurrent.TimeUnit;
 public final class KafkaLogAppender extends LogAppender {
 
   private static final int QUEUE_SIZE = 512;
+  // limits the size of a compressed batch, which has to fit into the fetch size of the log processing pipeline
+  private static final int MAX_BATCH_BYTES = 512 * 1024;
 
   private static final String APPENDER_NAME = "KafkaLogAppender";
 
@@ -202,12 +204,18 @@ public final class KafkaLogAppender extends LogAppender {
     private void publishMessages(List<KeyedMessage<String, byte[]>> buffer,
                                  boolean blockForMessage) throws InterruptedException {
       int maxBufferSize = QUEUE_SIZE;
+      int bufferBytes = 0;
+      for (KeyedMessage<String, byte[]> message : buffer) {
+        bufferBytes += message.message().length;
+      }
 
       if (blockForMessage) {
         blockingThread = Thread.currentThread();
         try {
           if (isRunning()) {
-            buffer.add(createKeyedMessage(messageQueue.take()));
+            KeyedMessage<String, byte[]> message = createKeyedMessage(messageQueue.take());
+            buffer.add(message);
+            bufferBytes += message.message().length;
             maxBufferSize--;
           }
         } catch (InterruptedException e) {
@@ -218,16 +226,18 @@ public final class KafkaLogAppender extends LogAppender {
         }
       }
 
-      while (buffer.size() < maxBufferSize) {
+      while (buffer.size() < maxBufferSize && bufferBytes < MAX_BATCH_BYTES) {
         // Poll for more messages
-        LogMessage message = messageQueue.poll();
-        if (message == null) {
+        LogMessage logMessage = messageQueue.poll();
+        if (logMessage == null) {
           break;
         }
-        buffer.add(createKeyedMessage(message));
+        KeyedMessage<String, byte[]> message = createKeyedMessage(logMessage);
+        buffer.add(message);
+        bufferBytes += message.message().length;
       }
 
-      // Publish all messages
+      // Publish all messages. Messages for the same partition are compressed together by the producer
       producer.publish(buffer);
     }
 
@@ -51,6 +51,8 @@ final class SimpleKafkaProducer {
     props.setProperty("queue.buffering.max.ms", cConf.get(LoggingConfiguration.KAFKA_PRODUCER_BUFFER_MS,
                       Long.toString(LoggingConfiguration.DEFAULT_KAFKA_PRODUCER_BUFFER_MS)));
     props.setProperty(Constants.Logging.NUM_PARTITIONS, cConf.get(Constants.Logging.NUM_PARTITIONS));
+    // messages sent together to the same partition are compressed into a single message by the Kafka producer
+    props.setProperty("compression.codec", cConf.get(Constants.Logging.LOG_PUBLISH_COMPRESSION));
 
     ProducerConfig config = new ProducerConfig(props);
     producer = createProducer(config);
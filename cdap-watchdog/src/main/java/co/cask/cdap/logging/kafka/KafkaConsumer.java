@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -86,6 +86,10 @@ public final class KafkaConsumer implements Closeable {
     ByteBufferMessageSet messageSet = fetchMessageSet(offset);
     int msgCount = 0;
     for (MessageAndOffset msg : messageSet) {
+      // fetching from an offset inside a compressed message returns all messages contained in it
+      if (msg.offset() < offset) {
+        continue;
+      }
       ++msgCount;
       callback.handle(msg.offset(), msg.message().payload());
     }
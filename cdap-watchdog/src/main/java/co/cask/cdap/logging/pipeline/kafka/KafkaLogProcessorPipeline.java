@@ -34,8 +34,8 @@ import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import kafka.api.OffsetRequest$;
+import kafka.javaapi.FetchResponse;
 import kafka.javaapi.consumer.SimpleConsumer;
-import kafka.javaapi.message.ByteBufferMessageSet;
 import kafka.message.MessageAndOffset;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.errors.LeaderNotAvailableException;
@@ -50,9 +50,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -65,6 +67,9 @@ import javax.annotation.Nullable;
 
 /**
  * A log processing pipeline that reads from Kafka and writes to configured logger context.
+ *
+ * <p>Messages of each partition are fetched and decoded by a thread per partition. The pipeline thread merges the
+ * decoded events of all partitions in event time order and writes them out.</p>
  */
 public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadService {
 
@@ -86,7 +91,9 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
   private final BrokerService brokerService;
   private final Int2LongMap offsets;
   private final Int2ObjectMap<MutableCheckpoint> checkpoints;
-  private final LoggingEventSerializer serializer;
+  // one serializer per partition, as each partition is decoded by its own fetch thread
+  private final Int2ObjectMap<LoggingEventSerializer> serializers;
+  private final Int2ObjectMap<MetricsContext> partitionMetricsContexts;
   private final KafkaPipelineConfig config;
   private final TimeEventQueue<ILoggingEvent, OffsetTime> eventQueue;
   private final Map<BrokerInfo, KafkaSimpleConsumer> kafkaConsumers;
@@ -110,7 +117,13 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
     this.offsets = new Int2LongOpenHashMap();
     this.checkpoints = new Int2ObjectOpenHashMap<>();
     this.eventQueue = new TimeEventQueue<>(config.getPartitions());
-    this.serializer = new LoggingEventSerializer();
+    this.serializers = new Int2ObjectOpenHashMap<>();
+    this.partitionMetricsContexts = new Int2ObjectOpenHashMap<>();
+    for (int partition : config.getPartitions()) {
+      serializers.put(partition, new LoggingEventSerializer());
+      partitionMetricsContexts.put(partition, context.childContext(Constants.Metrics.Tag.PARTITION,
+                                                                   String.valueOf(partition)));
+    }
     this.kafkaConsumers = new HashMap<>();
     this.metricsContext = context;
     this.offsetResolver = new KafkaOffsetResolver(brokerService, config);
@@ -149,7 +162,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
       initializeOffsets();
       LOG.info("Kafka offsets initialize for pipeline {} as {}", name, offsets);
 
-      Map<Integer, Future<Iterable<MessageAndOffset>>> futures = new HashMap<>();
+      Map<Integer, Future<List<DecodedMessage>>> futures = new HashMap<>();
       String topic = config.getTopic();
 
       lastCheckpointTime = System.currentTimeMillis();
@@ -157,7 +170,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
       while (!stopped) {
         boolean hasMessageProcessed = false;
 
-        for (Map.Entry<Integer, Future<Iterable<MessageAndOffset>>> entry : fetchAll(offsets, futures).entrySet()) {
+        for (Map.Entry<Integer, Future<List<DecodedMessage>>> entry : fetchAll(offsets, futures).entrySet()) {
           int partition = entry.getKey();
           try {
             if (processMessages(topic, partition, entry.getValue())) {
@@ -271,12 +284,12 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
   }
 
   /**
-   * Process messages fetched from a given partition.
+   * Process messages fetched and decoded from a given partition.
    */
   private boolean processMessages(String topic, int partition,
-                                  Future<Iterable<MessageAndOffset>> future) throws InterruptedException,
-                                                                                    KafkaException, IOException {
-    Iterable<MessageAndOffset> messages;
+                                  Future<List<DecodedMessage>> future) throws InterruptedException,
+                                                                              KafkaException, IOException {
+    List<DecodedMessage> messages;
     try {
       messages = future.get();
     } catch (ExecutionException e) {
@@ -297,7 +310,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
     }
 
     boolean processed = false;
-    for (MessageAndOffset message : messages) {
+    for (DecodedMessage message : messages) {
       if (eventQueue.getEventSize() >= config.getMaxBufferSize()) {
         // Log a message. If this happen too often, it indicates that more memory is needed for the log processing
         OUTAGE_LOG.info("Maximum queue size {} reached for pipeline {}.", config.getMaxBufferSize(), name);
@@ -310,38 +323,37 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
         unSyncedEvents += eventsAppended;
       }
 
-      try {
-        metricsContext.increment("kafka.bytes.read", message.message().payloadSize());
-        ILoggingEvent loggingEvent = serializer.fromBytes(message.message().payload());
+      metricsContext.increment("kafka.bytes.read", message.getPayloadSize());
+      ILoggingEvent loggingEvent = message.getEvent();
+      // The event is null if it could not be decoded, in which case it is skipped
+      if (loggingEvent != null) {
         // Use the message payload size as the size estimate of the logging event
         // Although it's not the same as the in memory object size, it should be just a constant factor, hence
         // it is proportional to the actual object size.
-        eventQueue.add(loggingEvent, loggingEvent.getTimeStamp(), message.message().payloadSize(), partition,
-                       new OffsetTime(message.nextOffset(), loggingEvent.getTimeStamp()));
-      } catch (IOException e) {
-        // This shouldn't happen. In case it happens (e.g. someone published some garbage), just skip the message.
-        LOG.trace("Fail to decode logging event from {}:{} at offset {}. Skipping it.",
-                  topic, partition, message.offset(), e);
+        eventQueue.add(loggingEvent, loggingEvent.getTimeStamp(), message.getPayloadSize(), partition,
+                       new OffsetTime(message.getNextOffset(), loggingEvent.getTimeStamp()));
       }
       processed = true;
-      offsets.put(partition, message.nextOffset());
+      offsets.put(partition, message.getNextOffset());
     }
 
     return processed;
   }
 
   /**
-   * Fetches messages from Kafka across all partitions simultaneously.
+   * Fetches and decodes messages from Kafka across all partitions simultaneously.
    */
-  private <T extends Map<Integer, Future<Iterable<MessageAndOffset>>>> T fetchAll(Int2LongMap offsets,
-                                                                                  T fetchFutures) {
+  private <T extends Map<Integer, Future<List<DecodedMessage>>>> T fetchAll(Int2LongMap offsets,
+                                                                            T fetchFutures) {
+    // the fetch threads don't decode more than the buffer can take until it is drained again
+    final long maxDecodeSize = config.getMaxBufferSize() - eventQueue.getEventSize();
     for (final int partition : config.getPartitions()) {
       final long offset = offsets.get(partition);
 
-      fetchFutures.put(partition, fetchExecutor.submit(new Callable<Iterable<MessageAndOffset>>() {
+      fetchFutures.put(partition, fetchExecutor.submit(new Callable<List<DecodedMessage>>() {
         @Override
-        public Iterable<MessageAndOffset> call() throws Exception {
-          return fetchMessages(partition, offset);
+        public List<DecodedMessage> call() throws Exception {
+          return fetchAndDecode(partition, offset, maxDecodeSize);
         }
       }));
     }
@@ -349,6 +361,47 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
     return fetchFutures;
   }
 
+  /**
+   * Fetches messages from the given partition and decodes them. This is called from the fetch thread of the partition.
+   * Decoding stops once the payloads decoded reach the given size, except for the first message, so that a full
+   * buffer can still be drained by processing it. The messages that are not decoded are fetched again later.
+   * Emits the per partition decode time, decoded events and lag metrics.
+   */
+  private List<DecodedMessage> fetchAndDecode(int partition, long offset,
+                                              long maxDecodeSize) throws KafkaException {
+    FetchResponse response = fetchMessages(partition, offset);
+    String topic = config.getTopic();
+    LoggingEventSerializer serializer = serializers.get(partition);
+
+    long startTime = System.nanoTime();
+    List<DecodedMessage> messages = new ArrayList<>();
+    long nextOffset = offset;
+    long decodedSize = 0L;
+    for (MessageAndOffset message : KafkaUtil.skipToOffset(response.messageSet(topic, partition), offset)) {
+      if (!messages.isEmpty() && decodedSize >= maxDecodeSize) {
+        break;
+      }
+      ILoggingEvent event = null;
+      try {
+        event = serializer.fromBytes(message.message().payload());
+      } catch (IOException e) {
+        // This shouldn't happen. In case it happens (e.g. someone published some garbage), just skip the message.
+        LOG.trace("Fail to decode logging event from {}:{} at offset {}. Skipping it.",
+                  topic, partition, message.offset(), e);
+      }
+      messages.add(new DecodedMessage(event, message.message().payloadSize(), message.nextOffset()));
+      decodedSize += message.message().payloadSize();
+      nextOffset = message.nextOffset();
+    }
+
+    MetricsContext partitionMetricsContext = partitionMetricsContexts.get(partition);
+    partitionMetricsContext.increment("decode.time.ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    partitionMetricsContext.increment("events.decoded", messages.size());
+    // Number of messages in the partition that are not yet decoded
+    partitionMetricsContext.gauge("lag", Math.max(0L, response.highWatermark(topic, partition) - nextOffset));
+    return messages;
+  }
+
   /**
    * Appends buffered events to appender. If the {@code force} parameter is {@code false}, buffered events
    * that are older than the buffer milliseconds will be appended and removed from the buffer.
@@ -540,7 +593,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
    *
    * @param partition the partition to fetch from
    * @param offset the Kafka offset to fetch from
-   * @return An {@link Iterable} of {@link MessageAndOffset}.
+   * @return the {@link FetchResponse} containing the messages
    *
    * @throws LeaderNotAvailableException if there is no Kafka broker to talk to.
    * @throws OffsetOutOfRangeException if the given offset is out of range.
@@ -549,7 +602,7 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
    * @throws UnknownTopicOrPartitionException if the topic or partition is not known by the Kafka server
    * @throws UnknownServerException if the Kafka server responded with error.
    */
-  private Iterable<MessageAndOffset> fetchMessages(int partition, long offset) throws KafkaException {
+  private FetchResponse fetchMessages(int partition, long offset) throws KafkaException {
     String topic = config.getTopic();
     KafkaSimpleConsumer consumer = getKafkaConsumer(topic, partition);
     if (consumer == null) {
@@ -559,9 +612,9 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
 
     LOG.trace("Fetching messages from Kafka on {}:{} for pipeline {} with offset {}", topic, partition, name, offset);
     try {
-      ByteBufferMessageSet result = KafkaUtil.fetchMessages(consumer, topic, partition,
-                                                            config.getKafkaFetchBufferSize(), offset);
-      LOG.trace("Fetched {} bytes from Kafka on {}:{} for pipeline {}", result.sizeInBytes(), topic, partition, name);
+      FetchResponse result = KafkaUtil.fetch(consumer, topic, partition, config.getKafkaFetchBufferSize(), offset);
+      LOG.trace("Fetched {} bytes from Kafka on {}:{} for pipeline {}",
+                result.messageSet(topic, partition).sizeInBytes(), topic, partition, name);
 
       return result;
     } catch (OffsetOutOfRangeException e) {
@@ -595,6 +648,37 @@ public final class KafkaLogProcessorPipeline extends AbstractExecutionThreadServ
     metricsContext.gauge("checkpoint.interval.millis", config.getCheckpointIntervalMillis());
   }
 
+  /**
+   * A message fetched from Kafka together with the event decoded from it.
+   */
+  private static final class DecodedMessage {
+    private final ILoggingEvent event;
+    private final int payloadSize;
+    private final long nextOffset;
+
+    DecodedMessage(@Nullable ILoggingEvent event, int payloadSize, long nextOffset) {
+      this.event = event;
+      this.payloadSize = payloadSize;
+      this.nextOffset = nextOffset;
+    }
+
+    /**
+     * Returns the decoded event, or {@code null} if the message could not be decoded.
+     */
+    @Nullable
+    ILoggingEvent getEvent() {
+      return event;
+    }
+
+    int getPayloadSize() {
+      return payloadSize;
+    }
+
+    long getNextOffset() {
+      return nextOffset;
+    }
+  }
+
   /**
    * A class that stores a message's next offset and log event time. Implements {@link Comparable} by comparing offsets.
    */
@@ -150,7 +150,7 @@ class KafkaOffsetResolver {
       ByteBufferMessageSet messageSet = KafkaUtil.fetchMessages(consumer, topic, partition,
                                                               config.getKafkaFetchBufferSize(), offset);
       done = true;
-      for (MessageAndOffset messageAndOffset : messageSet) {
+      for (MessageAndOffset messageAndOffset : KafkaUtil.skipToOffset(messageSet, offset)) {
         done = false;
 
         offset = messageAndOffset.nextOffset();
@@ -199,8 +199,8 @@ class KafkaOffsetResolver {
                                     int partition, long requestOffset) throws NotFoundException {
     String topic = config.getTopic();
     ByteBufferMessageSet messageSet = KafkaUtil.fetchMessages(consumer, topic, partition,
-                                                              SINGLE_MESSAGE_MAX_SIZE, requestOffset);
-    Iterator<MessageAndOffset> iterator = messageSet.iterator();
+                                                              config.getKafkaFetchBufferSize(), requestOffset);
+    Iterator<MessageAndOffset> iterator = KafkaUtil.skipToOffset(messageSet, requestOffset).iterator();
     if (!iterator.hasNext()) {
       throw new NotFoundException("No message found in " + topic + ":" + partition + " at offset " + requestOffset);
     }
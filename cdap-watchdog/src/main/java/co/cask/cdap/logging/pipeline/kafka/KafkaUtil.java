@@ -16,7 +16,9 @@
 
 package co.cask.cdap.logging.pipeline.kafka;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import kafka.api.FetchRequest;
 import kafka.api.FetchRequestBuilder;
 import kafka.api.OffsetRequest$;
@@ -27,6 +29,7 @@ import kafka.javaapi.OffsetRequest;
 import kafka.javaapi.OffsetResponse;
 import kafka.javaapi.consumer.SimpleConsumer;
 import kafka.javaapi.message.ByteBufferMessageSet;
+import kafka.message.MessageAndOffset;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.errors.NotLeaderForPartitionException;
 import org.apache.kafka.common.errors.OffsetOutOfRangeException;
@@ -104,6 +107,22 @@ public final class KafkaUtil {
   public static ByteBufferMessageSet fetchMessages(SimpleConsumer consumer, String topic,
                                                    int partition, int fetchSize,
                                                    long requestOffset) throws KafkaException {
+    return fetch(consumer, topic, partition, fetchSize, requestOffset).messageSet(topic, partition);
+  }
+
+  /**
+   * Fetches messages from the given topic, partition and offset using the provided {@link SimpleConsumer}.
+   *
+   * @return the {@link FetchResponse}, which contains the messages fetched and the high watermark of the partition
+   *
+   * @throws OffsetOutOfRangeException if the given offset is out of range.
+   * @throws NotLeaderForPartitionException if the broker that the consumer is talking to is not the leader
+   *                                        for the given topic and partition.
+   * @throws UnknownTopicOrPartitionException if the topic or partition is not known by the Kafka server
+   * @throws UnknownServerException if the Kafka server responded with error.
+   */
+  public static FetchResponse fetch(SimpleConsumer consumer, String topic,
+                                    int partition, int fetchSize, long requestOffset) throws KafkaException {
     FetchRequest req = new FetchRequestBuilder()
       .clientId(consumer.clientId())
       .addFetch(topic, partition, requestOffset, fetchSize)
@@ -114,7 +133,20 @@ public final class KafkaUtil {
       throw Errors.forCode(fetchResponse.errorCode(topic, partition)).exception();
     }
 
-    return fetchResponse.messageSet(topic, partition);
+    return fetchResponse;
+  }
+
+  /**
+   * Returns the messages in the given message set, skipping the ones before the given offset. Fetching from an
+   * offset inside a compressed message returns all messages contained in it, including the ones before the offset.
+   */
+  public static Iterable<MessageAndOffset> skipToOffset(ByteBufferMessageSet messageSet, final long offset) {
+    return Iterables.filter(messageSet, new Predicate<MessageAndOffset>() {
+      @Override
+      public boolean apply(MessageAndOffset message) {
+        return message.offset() >= offset;
+      }
+    });
   }
 
   private KafkaUtil() {
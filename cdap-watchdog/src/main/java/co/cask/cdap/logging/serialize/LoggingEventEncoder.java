@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.serialize;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ClassPackagingData;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import co.cask.cdap.logging.LoggingUtil;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Encoder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Writes {@link ILoggingEvent} directly to an {@link Encoder} with the Avro binary format of
+ * {@link LogSchema.LoggingEvent#SCHEMA}, without creating any intermediate {@link GenericRecord}.
+ * The result is the same as writing the record created by {@link LoggingEventSerializer#toGenericRecord(ILoggingEvent)}
+ * with a {@link org.apache.avro.generic.GenericDatumWriter}.
+ */
+@NotThreadSafe
+final class LoggingEventEncoder {
+
+  // Union branch indices for all the ["null", type] unions in the schema
+  private static final int NULL_INDEX = 0;
+  private static final int VALUE_INDEX = 1;
+
+  // Reusable buffer for encoding strings to UTF-8, which never grows beyond the maximum retained buffer size
+  private byte[] utf8Buffer = new byte[256];
+
+  /**
+   * Encodes the given {@link ILoggingEvent}. The {@link ILoggingEvent#prepareForDeferredProcessing()} method
+   * should be called before calling this method.
+   */
+  void encode(ILoggingEvent event, Encoder encoder) throws IOException {
+    encoder.writeLong(event.getTimeStamp());
+    encoder.writeInt(event.getLevel() == null ? Level.ERROR_INT : event.getLevel().toInt());
+    writeMap(event.getMDCPropertyMap(), encoder);
+    // Marker is never written
+    encoder.writeIndex(NULL_INDEX);
+    writeString(event.getThreadName(), encoder);
+    writeString(event.getMessage(), encoder);
+    writeArguments(event.getArgumentArray(), encoder);
+    writeString(event.getFormattedMessage(), encoder);
+    writeString(event.getLoggerName(), encoder);
+    writeLoggerContext(event.getLoggerContextVO(), encoder);
+    writeThrowableProxy(event.getThrowableProxy(), encoder);
+    encoder.writeBoolean(event.hasCallerData());
+    writeCallerData(event.hasCallerData() ? event.getCallerData() : null, encoder);
+  }
+
+  private void writeArguments(@Nullable Object[] arguments, Encoder encoder) throws IOException {
+    if (arguments == null) {
+      encoder.writeIndex(NULL_INDEX);
+      return;
+    }
+    encoder.writeIndex(VALUE_INDEX);
+    encoder.writeArrayStart();
+    encoder.setItemCount(arguments.length);
+    for (Object argument : arguments) {
+      encoder.startItem();
+      writeString(argument == null ? null : argument.toString(), encoder);
+    }
+    encoder.writeArrayEnd();
+  }
+
+  private void writeLoggerContext(@Nullable LoggerContextVO context, Encoder encoder) throws IOException {
+    if (context == null) {
+      encoder.writeIndex(NULL_INDEX);
+      return;
+    }
+    encoder.writeIndex(VALUE_INDEX);
+    writeString(context.getName(), encoder);
+    writeMap(context.getPropertyMap(), encoder);
+    encoder.writeLong(context.getBirthTime());
+  }
+
+  private void writeThrowableProxy(@Nullable IThrowableProxy throwableProxy, Encoder encoder) throws IOException {
+    if (throwableProxy == null) {
+      encoder.writeIndex(NULL_INDEX);
+      return;
+    }
+    encoder.writeIndex(VALUE_INDEX);
+    writeString(throwableProxy.getClassName(), encoder);
+    writeString(throwableProxy.getMessage(), encoder);
+    encoder.writeInt(throwableProxy.getCommonFrames());
+
+    StackTraceElementProxy[] proxies = throwableProxy.getStackTraceElementProxyArray();
+    if (proxies == null) {
+      encoder.writeIndex(NULL_INDEX);
+    } else {
+      encoder.writeIndex(VALUE_INDEX);
+      encoder.writeArrayStart();
+      encoder.setItemCount(proxies.length);
+      for (StackTraceElementProxy proxy : proxies) {
+        encoder.startItem();
+        writeStackTraceElement(proxy.getStackTraceElement(), encoder);
+        writeClassPackagingData(proxy.getClassPackagingData(), encoder);
+      }
+      encoder.writeArrayEnd();
+    }
+
+    writeThrowableProxy(throwableProxy.getCause(), encoder);
+
+    IThrowableProxy[] suppressed = throwableProxy.getSuppressed();
+    if (suppressed == null) {
+      encoder.writeIndex(NULL_INDEX);
+    } else {
+      encoder.writeIndex(VALUE_INDEX);
+      encoder.writeArrayStart();
+      encoder.setItemCount(suppressed.length);
+      for (IThrowableProxy proxy : suppressed) {
+        encoder.startItem();
+        writeThrowableProxy(proxy, encoder);
+      }
+      encoder.writeArrayEnd();
+    }
+  }
+
+  private void writeCallerData(@Nullable StackTraceElement[] callerData, Encoder encoder) throws IOException {
+    if (callerData == null) {
+      encoder.writeIndex(NULL_INDEX);
+      return;
+    }
+    encoder.writeIndex(VALUE_INDEX);
+    encoder.writeArrayStart();
+    encoder.setItemCount(callerData.length);
+    for (StackTraceElement element : callerData) {
+      encoder.startItem();
+      writeStackTraceElement(element, encoder);
+    }
+    encoder.writeArrayEnd();
+  }
+
+  private void writeStackTraceElement(@Nullable StackTraceElement element, Encoder encoder) throws IOException {
+    if (element == null) {
+      encoder.writeIndex(NULL_INDEX);
+      return;
+    }
+    encoder.writeIndex(VALUE_INDEX);
+    writeString(element.getClassName(), encoder);
+    writeString(element.getMethodName(), encoder);
+    writeString(element.getFileName(), encoder);
+    encoder.writeInt(element.getLineNumber());
+  }
+
+  private void writeClassPackagingData(@Nullable ClassPackagingData data, Encoder encoder) throws IOException {
+    if (data == null) {
+      encoder.writeIndex(NULL_INDEX);
+      return;
+    }
+    encoder.writeIndex(VALUE_INDEX);
+    writeString(data.getCodeLocation(), encoder);
+    writeString(data.getVersion(), encoder);
+    encoder.writeBoolean(data.isExact());
+  }
+
+  /**
+   * Writes a map with nullable string values. A {@code null} key is written as {@link LoggingUtil#MDC_NULL_KEY},
+   * which is the same as {@link LoggingUtil#encodeMDC(Map)}.
+   */
+  private void writeMap(@Nullable Map<String, String> map, Encoder encoder) throws IOException {
+    if (map == null) {
+      encoder.writeIndex(NULL_INDEX);
+      return;
+    }
+    encoder.writeIndex(VALUE_INDEX);
+    encoder.writeMapStart();
+    encoder.setItemCount(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      encoder.startItem();
+      String key = entry.getKey();
+      writeUTF8(key == null ? LoggingUtil.MDC_NULL_KEY : key, encoder);
+      writeString(entry.getValue(), encoder);
+    }
+    encoder.writeMapEnd();
+  }
+
+  /**
+   * Writes a ["null", "string"] union.
+   */
+  private void writeString(@Nullable String str, Encoder encoder) throws IOException {
+    if (str == null) {
+      encoder.writeIndex(NULL_INDEX);
+      return;
+    }
+    encoder.writeIndex(VALUE_INDEX);
+    writeUTF8(str, encoder);
+  }
+
+  /**
+   * Writes a string. Avro strings and bytes have the same binary encoding, hence the string is encoded
+   * to the reusable buffer and written as bytes to avoid creating a new byte array for every string.
+   * Unpaired surrogates are replaced with {@code '?'}, which is the same as {@link String#getBytes(String)}.
+   */
+  private void writeUTF8(String str, Encoder encoder) throws IOException {
+    int length = str.length();
+    // Each char takes at most three bytes. Surrogate pair takes four bytes for two chars.
+    if ((long) length * 3 > LoggingEventSerializer.MAX_RETAINED_BUFFER_SIZE) {
+      // A large string is encoded to a new array, so that the reusable buffer is not grown for it
+      encoder.writeBytes(str.getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+    if (utf8Buffer.length < length * 3) {
+      utf8Buffer = new byte[Math.min(Math.max(length * 3, utf8Buffer.length * 2),
+                                     LoggingEventSerializer.MAX_RETAINED_BUFFER_SIZE)];
+    }
+
+    byte[] buffer = utf8Buffer;
+    int pos = 0;
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      if (c < 0x80) {
+        buffer[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[pos++] = (byte) (0xc0 | (c >> 6));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, str.charAt(++i));
+        buffer[pos++] = (byte) (0xf0 | (codePoint >> 18));
+        buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        buffer[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        buffer[pos++] = '?';
+      } else {
+        buffer[pos++] = (byte) (0xe0 | (c >> 12));
+        buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    encoder.writeBytes(buffer, 0, pos);
+  }
+}
@@ -25,7 +25,6 @@ import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
@@ -45,8 +44,15 @@ import javax.annotation.concurrent.NotThreadSafe;
 @NotThreadSafe
 public final class LoggingEventSerializer {
 
+  private static final int INITIAL_BUFFER_SIZE = 1024;
+  // Encode buffer grown beyond this size is not retained after encoding, to avoid holding memory for a large event
+  static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
   private final GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(getAvroSchema());
+  private final LoggingEventEncoder eventEncoder = new LoggingEventEncoder();
   private BinaryDecoder decoder;
+  private ByteArrayOutputStream encodeBuffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+  private BinaryEncoder encoder;
 
   /**
    * Returns the {@link Schema} for logging event, which is the same as {@link LogSchema.LoggingEvent#SCHEMA}.
@@ -56,21 +62,25 @@ public final class LoggingEventSerializer {
   }
 
   /**
-   * Encodes a {@link ILoggingEvent} to byte array.
+   * Encodes a {@link ILoggingEvent} to byte array. The event is encoded directly into a buffer that is reused
+   * across calls, hence the only object created per call is the resulting byte array.
    */
   public byte[] toBytes(ILoggingEvent event) {
     event.prepareForDeferredProcessing();
 
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
-    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(getAvroSchema());
+    encodeBuffer.reset();
+    encoder = EncoderFactory.get().directBinaryEncoder(encodeBuffer, encoder);
     try {
-      writer.write(toGenericRecord(event), encoder);
+      eventEncoder.encode(event, encoder);
     } catch (IOException e) {
       // This shouldn't happen since we are writing to byte array output stream.
       throw Throwables.propagate(e);
     }
-    return out.toByteArray();
+    byte[] bytes = encodeBuffer.toByteArray();
+    if (bytes.length > MAX_RETAINED_BUFFER_SIZE) {
+      encodeBuffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+    }
+    return bytes;
   }
 
   /**
@@ -24,6 +24,7 @@ import co.cask.cdap.api.metrics.MetricDataQuery;
 import co.cask.cdap.api.metrics.MetricSearchQuery;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.TagValue;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.utils.TimeMathParser;
@@ -120,6 +121,12 @@ public class MetricsQueryHelper {
     this.metricStore = metricStore;
   }
 
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // reports the metrics of the queries, such as the hit rate of the query result cache
+    metricStore.setMetricsContext(metricsCollectionService.getContext(Constants.Metrics.METRICS_QUERY_CONTEXT));
+  }
+
   public List<MetricTagValue> searchTags(List<String> tags) throws Exception {
     // we want to search the entire range, so startTimestamp is '0' and end Timestamp is Integer.MAX_VALUE and
     // limit is -1 , to include the entire search result.
@@ -23,9 +23,11 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.datafabric.dataset.DatasetsUtil;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
+import co.cask.cdap.data2.dataset2.lib.cube.Aggregation;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.hbase.HBaseTableAdmin;
 import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactCodec;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.metrics.process.MetricsConsumerMetaTable;
@@ -43,6 +45,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  *
@@ -65,11 +69,34 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
       public EntityTable get() {
         String tableName = cConf.get(Constants.Metrics.ENTITY_TABLE_NAME,
                                      Constants.Metrics.DEFAULT_ENTITY_TABLE_NAME);
-        return new EntityTable(getOrCreateMetricsTable(tableName, DatasetProperties.EMPTY));
+        EntityTable table = new EntityTable(getOrCreateMetricsTable(tableName, DatasetProperties.EMPTY),
+                                            cConf.getInt(Constants.Metrics.ENTITY_CACHE_SIZE));
+        warmUp(table, cConf.getInt(Constants.Metrics.ENTITY_CACHE_WARMUP_COUNT));
+        return table;
       }
     });
   }
 
+  /**
+   * Loads the most recently assigned IDs of all entity types used by the metrics fact tables into the cache,
+   * so that the metrics processor doesn't need to lookup the entity table one entity at a time after a restart.
+   */
+  private void warmUp(EntityTable table, int count) {
+    if (count <= 0) {
+      return;
+    }
+    Set<String> dimensionNames = new LinkedHashSet<>();
+    for (Aggregation aggregation : DefaultMetricStore.AGGREGATIONS.values()) {
+      dimensionNames.addAll(aggregation.getDimensionNames());
+    }
+    try {
+      table.warmUp(FactCodec.getEntityTypes(dimensionNames), count);
+    } catch (Exception e) {
+      // Warming up the cache is only an optimization
+      LOG.warn("Failed to warm up the metrics entity table cache", e);
+    }
+  }
+
   // todo: figure out roll time based on resolution from config? See DefaultMetricsTableFactory for example
   @Override
   public FactTable getOrCreateFactTable(int resolution) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -35,7 +35,9 @@ import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.api.metrics.TagValue;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.data2.dataset2.lib.cube.Aggregation;
 import co.cask.cdap.data2.dataset2.lib.cube.AggregationAlias;
 import co.cask.cdap.data2.dataset2.lib.cube.DefaultAggregation;
@@ -85,6 +87,8 @@ public class DefaultMetricStore implements MetricStore {
 
   private final int resolutions[];
   private final Supplier<Cube> cube;
+  @Nullable
+  private final MetricQueryCache queryCache;
   private MetricsContext metricsContext;
 
 
@@ -197,13 +201,22 @@ public class DefaultMetricStore implements MetricStore {
   }
 
   @Inject
-  public DefaultMetricStore(final MetricDatasetFactory dsFactory) {
+  public DefaultMetricStore(final MetricDatasetFactory dsFactory, CConfiguration cConf) {
     // 1 sec, 1 min, 1 hour and "all time totals"
-    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION});
+    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION},
+         cConf.getLong(Constants.Metrics.QUERY_CACHE_MAX_TIME_VALUES),
+         cConf.getLong(Constants.Metrics.QUERY_CACHE_IMMUTABLE_DELAY_SECONDS),
+         cConf.getLong(Constants.Metrics.QUERY_CACHE_MAX_ENTRY_AGE_SECONDS));
   }
 
   // NOTE: should never be used apart from data migration during cdap upgrade
   public DefaultMetricStore(final MetricDatasetFactory dsFactory, final int resolutions[]) {
+    this(dsFactory, resolutions, 0, 0, 0);
+  }
+
+  private DefaultMetricStore(final MetricDatasetFactory dsFactory, final int resolutions[],
+                             long queryCacheMaxTimeValues, long queryCacheImmutableDelaySeconds,
+                             long queryCacheMaxEntryAgeSeconds) {
     this.resolutions = resolutions;
     final FactTableSupplier factTableSupplier = new FactTableSupplier() {
       @Override
@@ -220,11 +233,25 @@ public class DefaultMetricStore implements MetricStore {
         return cube;
       }
     });
+    if (queryCacheMaxTimeValues > 0) {
+      this.queryCache = new MetricQueryCache(new Function<MetricDataQuery, Collection<MetricTimeSeries>>() {
+        @Override
+        public Collection<MetricTimeSeries> apply(MetricDataQuery query) {
+          return queryCube(query);
+        }
+      }, queryCacheMaxTimeValues, queryCacheImmutableDelaySeconds, queryCacheMaxEntryAgeSeconds,
+         TOTALS_RESOLUTION, TimeProvider.SYSTEM_TIME);
+    } else {
+      this.queryCache = null;
+    }
   }
 
   @Override
   public void setMetricsContext(MetricsContext metricsContext) {
     this.metricsContext = metricsContext;
+    if (queryCache != null) {
+      queryCache.setMetricsContext(metricsContext);
+    }
   }
   
   @Override
@@ -255,6 +282,13 @@ public class DefaultMetricStore implements MetricStore {
 
   @Override
   public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+    if (queryCache != null) {
+      return queryCache.query(query);
+    }
+    return queryCube(query);
+  }
+
+  private Collection<MetricTimeSeries> queryCube(MetricDataQuery query) {
     Collection<TimeSeries> cubeResult = cube.get().query(buildCubeQuery(query));
     List<MetricTimeSeries> result = Lists.newArrayList();
     for (TimeSeries timeSeries : cubeResult) {
@@ -300,11 +334,19 @@ public class DefaultMetricStore implements MetricStore {
       CubeDeleteQuery query = new CubeDeleteQuery(0, timestamp, resolution, Maps.<String, String>newHashMap());
       cube.get().delete(query);
     }
+    invalidateQueryCache();
+  }
+
+  private void invalidateQueryCache() {
+    if (queryCache != null) {
+      queryCache.invalidateAll();
+    }
   }
 
   @Override
   public void delete(MetricDeleteQuery query) throws Exception {
     cube.get().delete(buildCubeDeleteQuery(query));
+    invalidateQueryCache();
   }
 
   @Override
@@ -0,0 +1,302 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.utils.TimeProvider;
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Caches the results of metric queries, so that repeated queries over the same time range, such as the ones of
+ * dashboards that refresh every few seconds, only scan the metrics tables for the buckets that can still change.
+ *
+ * <p>A bucket is treated as immutable once it ended more than the configured delay plus the resolution ago, because
+ * metrics are written by the metrics processor shortly after they are emitted. The cache keeps the immutable buckets
+ * of the last result of each query, keyed by everything but the time range of the query. A later query that starts
+ * within the cached range returns the cached buckets, and only scans the buckets after them, which are added to the
+ * cache once they are immutable too.</p>
+ *
+ * <p>The cache is local to the process. Metrics that are written late into immutable buckets, and metrics that are
+ * deleted by other processes, stay hidden or visible in the cached results until the cached buckets of a query are
+ * scanned again, once they were first cached more than the maximum entry age ago, even if the query is repeated all
+ * the time.</p>
+ *
+ * <p>Queries with an interpolator or a limit that can truncate the result are not cached, because their result is
+ * not the concatenation of the results of the sub ranges.</p>
+ */
+final class MetricQueryCache {
+
+  private static final long EXPIRE_AFTER_ACCESS_MINUTES = 60;
+
+  private final Function<MetricDataQuery, Collection<MetricTimeSeries>> scanner;
+  private final long immutableDelaySeconds;
+  private final long maxEntryAgeSeconds;
+  private final int totalsResolution;
+  private final TimeProvider timeProvider;
+  private final Cache<Key, Entry> cache;
+  private volatile MetricsContext metricsContext;
+
+  /**
+   * Creates a cache.
+   *
+   * @param scanner function to execute queries against the metrics tables
+   * @param maxTimeValues maximum number of time values to keep in the cache
+   * @param immutableDelaySeconds how long after it ended a bucket is treated as immutable, in addition to the
+   *                              resolution
+   * @param maxEntryAgeSeconds how long the cached buckets of a query are used before they are scanned again
+   * @param totalsResolution resolution of the totals, which are never cached
+   * @param timeProvider provides the current time
+   */
+  MetricQueryCache(Function<MetricDataQuery, Collection<MetricTimeSeries>> scanner, long maxTimeValues,
+                   long immutableDelaySeconds, long maxEntryAgeSeconds, int totalsResolution,
+                   TimeProvider timeProvider) {
+    this.scanner = scanner;
+    this.immutableDelaySeconds = immutableDelaySeconds;
+    this.maxEntryAgeSeconds = maxEntryAgeSeconds;
+    this.totalsResolution = totalsResolution;
+    this.timeProvider = timeProvider;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxTimeValues)
+      .weigher(new Weigher<Key, Entry>() {
+        @Override
+        public int weigh(Key key, Entry entry) {
+          return entry.size;
+        }
+      })
+      .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES)
+      .build();
+  }
+
+  void setMetricsContext(@Nullable MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Executes the given query, using the cached buckets where possible.
+   */
+  Collection<MetricTimeSeries> query(MetricDataQuery query) {
+    if (!isCacheable(query)) {
+      return scanner.apply(query);
+    }
+
+    int resolution = query.getResolution();
+    long nowInSeconds = TimeUnit.MILLISECONDS.toSeconds(timeProvider.currentTimeMillis());
+    // buckets before this are immutable, and so are all buckets after the end of the query that it scanned
+    long immutableEnd = Math.min(floor(nowInSeconds - immutableDelaySeconds - resolution, resolution),
+                                 floor(query.getEndTs(), resolution) + resolution);
+
+    Key key = new Key(query);
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null || query.getStartTs() < entry.startTs || query.getStartTs() >= entry.endTs
+      || nowInSeconds - entry.createTime >= maxEntryAgeSeconds) {
+      incrementMetric("query.cache.miss.count");
+      Collection<MetricTimeSeries> result = scanner.apply(query);
+      if (immutableEnd > query.getStartTs()) {
+        cache.put(key, new Entry(query.getStartTs(), immutableEnd, nowInSeconds, result));
+      }
+      return result;
+    }
+
+    incrementMetric("query.cache.hit.count");
+    Collection<MetricTimeSeries> tail = ImmutableList.of();
+    if (query.getEndTs() >= entry.endTs) {
+      tail = scanner.apply(new MetricDataQuery(entry.endTs, query.getEndTs(), resolution, query.getLimit(),
+                                               query.getMetrics(), query.getSliceByTags(), query.getGroupByTags(),
+                                               null));
+    }
+    if (immutableEnd > entry.endTs) {
+      cache.put(key, entry.append(tail, immutableEnd));
+    }
+    return entry.merge(query.getStartTs(), query.getEndTs(), tail);
+  }
+
+  /**
+   * Invalidates the whole cache, for example after metrics were deleted through the same process.
+   */
+  void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private boolean isCacheable(MetricDataQuery query) {
+    return query.getInterpolator() == null
+      && query.getResolution() != totalsResolution
+      && query.getStartTs() <= query.getEndTs()
+      // the number of buckets in the time range is at most the limit, so that the result is never truncated
+      && (query.getEndTs() - query.getStartTs()) / query.getResolution() < query.getLimit();
+  }
+
+  private void incrementMetric(String metricName) {
+    MetricsContext metricsContext = this.metricsContext;
+    if (metricsContext != null) {
+      metricsContext.increment(metricName, 1L);
+    }
+  }
+
+  private static long floor(long ts, int resolution) {
+    return ts / resolution * resolution;
+  }
+
+  /**
+   * The part of a query that is the same for all time ranges.
+   */
+  private static final class Key {
+    private final int resolution;
+    private final Map<String, AggregationFunction> metrics;
+    private final Map<String, String> sliceByTags;
+    private final List<String> groupByTags;
+
+    Key(MetricDataQuery query) {
+      this.resolution = query.getResolution();
+      this.metrics = new HashMap<>(query.getMetrics());
+      this.sliceByTags = new HashMap<>(query.getSliceByTags());
+      this.groupByTags = ImmutableList.copyOf(query.getGroupByTags());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return resolution == other.resolution
+        && metrics.equals(other.metrics)
+        && sliceByTags.equals(other.sliceByTags)
+        && groupByTags.equals(other.groupByTags);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(resolution, metrics, sliceByTags, groupByTags);
+    }
+  }
+
+  /**
+   * The immutable buckets of a query, from its start time (inclusive) to its end time (exclusive).
+   */
+  private static final class Entry {
+    private final long startTs;
+    private final long endTs;
+    // time in seconds when the first buckets of the entry were scanned
+    private final long createTime;
+    private final List<MetricTimeSeries> timeSeries;
+    private final int size;
+
+    Entry(long startTs, long endTs, long createTime, Collection<MetricTimeSeries> timeSeries) {
+      this.startTs = startTs;
+      this.endTs = endTs;
+      this.createTime = createTime;
+      ImmutableList.Builder<MetricTimeSeries> builder = ImmutableList.builder();
+      int size = 0;
+      for (MetricTimeSeries series : timeSeries) {
+        List<TimeValue> timeValues = slice(series.getTimeValues(), startTs, endTs - 1);
+        if (!timeValues.isEmpty()) {
+          builder.add(new MetricTimeSeries(series.getMetricName(), series.getTagValues(), timeValues));
+          size += timeValues.size();
+        }
+      }
+      this.timeSeries = builder.build();
+      this.size = size;
+    }
+
+    /**
+     * Returns a new entry with the given time series, which were scanned from the end of this entry, appended up to
+     * the given end time.
+     */
+    Entry append(Collection<MetricTimeSeries> tail, long newEndTs) {
+      return new Entry(startTs, newEndTs, createTime, concat(timeSeries, tail));
+    }
+
+    /**
+     * Returns the result of a query from the cached buckets in the given time range, and the given time series,
+     * which were scanned from the end of this entry.
+     */
+    Collection<MetricTimeSeries> merge(long queryStartTs, long queryEndTs, Collection<MetricTimeSeries> tail) {
+      List<MetricTimeSeries> result = Lists.newArrayList();
+      for (MetricTimeSeries series : concat(timeSeries, tail)) {
+        List<TimeValue> timeValues = slice(series.getTimeValues(), queryStartTs, queryEndTs);
+        if (!timeValues.isEmpty()) {
+          result.add(new MetricTimeSeries(series.getMetricName(), series.getTagValues(), timeValues));
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Concatenates the time values of the time series with the same name and tags, keeping the order of the
+     * time series.
+     */
+    private static Collection<MetricTimeSeries> concat(Collection<MetricTimeSeries> head,
+                                                       Collection<MetricTimeSeries> tail) {
+      if (tail.isEmpty()) {
+        return head;
+      }
+      Map<Map.Entry<String, Map<String, String>>, List<TimeValue>> timeValues = Maps.newLinkedHashMap();
+      for (MetricTimeSeries series : Iterables.concat(head, tail)) {
+        Map.Entry<String, Map<String, String>> seriesKey = Maps.immutableEntry(series.getMetricName(),
+                                                                              series.getTagValues());
+        List<TimeValue> values = timeValues.get(seriesKey);
+        if (values == null) {
+          values = Lists.newArrayList();
+          timeValues.put(seriesKey, values);
+        }
+        values.addAll(series.getTimeValues());
+      }
+      List<MetricTimeSeries> result = Lists.newArrayListWithCapacity(timeValues.size());
+      for (Map.Entry<Map.Entry<String, Map<String, String>>, List<TimeValue>> entry : timeValues.entrySet()) {
+        result.add(new MetricTimeSeries(entry.getKey().getKey(), entry.getKey().getValue(), entry.getValue()));
+      }
+      return result;
+    }
+
+    /**
+     * Returns the time values in the given time range, both inclusive. The time values are sorted by timestamp.
+     */
+    private static List<TimeValue> slice(List<TimeValue> timeValues, long startTs, long endTs) {
+      int from = 0;
+      while (from < timeValues.size() && timeValues.get(from).getTimestamp() < startTs) {
+        from++;
+      }
+      int to = timeValues.size();
+      while (to > from && timeValues.get(to - 1).getTimestamp() > endTs) {
+        to--;
+      }
+      return timeValues.subList(from, to);
+    }
+  }
+}
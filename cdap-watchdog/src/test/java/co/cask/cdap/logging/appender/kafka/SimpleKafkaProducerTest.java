@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender.kafka;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.logging.LoggingContext;
+import co.cask.cdap.logging.KafkaTestBase;
+import co.cask.cdap.logging.appender.LogMessage;
+import co.cask.cdap.logging.context.GenericLoggingContext;
+import co.cask.cdap.logging.pipeline.kafka.KafkaUtil;
+import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.proto.id.NamespaceId;
+import kafka.javaapi.consumer.SimpleConsumer;
+import kafka.javaapi.message.ByteBufferMessageSet;
+import kafka.message.MessageAndOffset;
+import kafka.producer.KeyedMessage;
+import org.apache.twill.kafka.client.BrokerInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for compression in {@link SimpleKafkaProducer}.
+ */
+public class SimpleKafkaProducerTest extends KafkaTestBase {
+
+  private static final int FETCH_SIZE = 4 * 1024 * 1024;
+
+  @Test
+  public void testCompression() throws Exception {
+    List<byte[]> payloads = createPayloads(500);
+
+    long uncompressedBytes = publish("testCompressionNone", "none", payloads);
+    long gzipBytes = publish("testCompressionGZip", "gzip", payloads);
+    long compressedBytes = publish("testCompressionSnappy", "snappy", payloads);
+    long lz4Bytes = publish("testCompressionLZ4", "lz4", payloads);
+
+    // similar log events compress well, and the per message overhead is only paid once per batch
+    Assert.assertTrue("Compressed " + gzipBytes + ", uncompressed " + uncompressedBytes,
+                      gzipBytes * 4 < uncompressedBytes);
+    Assert.assertTrue("Compressed " + compressedBytes + ", uncompressed " + uncompressedBytes,
+                      compressedBytes * 4 < uncompressedBytes);
+    Assert.assertTrue("Compressed " + lz4Bytes + ", uncompressed " + uncompressedBytes,
+                      lz4Bytes * 4 < uncompressedBytes);
+  }
+
+  /**
+   * Publishes the payloads to the given topic with the given compression codec, verifies that they can be read
+   * back from any offset, and returns the number of bytes stored in Kafka.
+   */
+  private long publish(String topic, String codec, List<byte[]> payloads) throws Exception {
+    KAFKA_TESTER.createTopic(topic, 1);
+
+    CConfiguration cConf = CConfiguration.copy(KAFKA_TESTER.getCConf());
+    cConf.set(Constants.Logging.LOG_PUBLISH_COMPRESSION, codec);
+    cConf.set(Constants.Logging.NUM_PARTITIONS, "1");
+
+    List<KeyedMessage<String, byte[]>> messages = new ArrayList<>();
+    for (byte[] payload : payloads) {
+      messages.add(new KeyedMessage<>(topic, "key", payload));
+    }
+    SimpleKafkaProducer producer = new SimpleKafkaProducer(cConf);
+    try {
+      producer.publish(messages);
+    } finally {
+      producer.stop();
+    }
+
+    BrokerInfo brokerInfo = KAFKA_TESTER.getBrokerService().getLeader(topic, 0);
+    SimpleConsumer consumer = new SimpleConsumer(brokerInfo.getHost(), brokerInfo.getPort(),
+                                                 3000, FETCH_SIZE, "test");
+    try {
+      for (long offset : new long[] { 0, 1, payloads.size() / 2, payloads.size() - 1 }) {
+        ByteBufferMessageSet messageSet = KafkaUtil.fetchMessages(consumer, topic, 0, FETCH_SIZE, offset);
+        long expectedOffset = offset;
+        for (MessageAndOffset message : KafkaUtil.skipToOffset(messageSet, offset)) {
+          Assert.assertEquals(expectedOffset, message.offset());
+          byte[] payload = new byte[message.message().payloadSize()];
+          message.message().payload().get(payload);
+          Assert.assertArrayEquals(payloads.get((int) expectedOffset), payload);
+          expectedOffset++;
+        }
+        Assert.assertEquals(payloads.size(), expectedOffset);
+      }
+      return KafkaUtil.fetchMessages(consumer, topic, 0, FETCH_SIZE, 0).sizeInBytes();
+    } finally {
+      consumer.close();
+    }
+  }
+
+  private List<byte[]> createPayloads(int count) {
+    LoggingContext loggingContext = new GenericLoggingContext(NamespaceId.DEFAULT.getNamespace(), "app", "entity");
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    long now = System.currentTimeMillis();
+
+    List<byte[]> payloads = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      LoggingEvent event = new LoggingEvent();
+      event.setLevel(Level.INFO);
+      event.setLoggerName("co.cask.cdap.logging.appender.kafka.SimpleKafkaProducerTest");
+      event.setThreadName("executor-thread-" + (i % 4));
+      event.setMessage("Processed record " + i + " of partition " + (i % 8) + " in stage transform");
+      event.setTimeStamp(now + i);
+      payloads.add(serializer.toBytes(new LogMessage(event, loggingContext)));
+    }
+    return payloads;
+  }
+}
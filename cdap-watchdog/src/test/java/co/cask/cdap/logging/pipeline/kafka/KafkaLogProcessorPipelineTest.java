@@ -62,6 +62,7 @@ import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.inject.AbstractModule;
 import com.google.inject.Injector;
@@ -96,8 +97,11 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -209,6 +213,65 @@ public class KafkaLogProcessorPipelineTest {
     Assert.assertNull(appender.getEvents());
   }
 
+  @Test
+  public void testMultiplePartitions() throws Exception {
+    String topic = "testMultiplePartitions";
+    LoggerContext loggerContext = createLoggerContext("WARN", ImmutableMap.of("test.logger", "INFO"),
+                                                      TestAppender.class.getName());
+    final TestAppender appender = getAppender(loggerContext.getLogger(Logger.ROOT_LOGGER_NAME),
+                                              "Test", TestAppender.class);
+    TestCheckpointManager checkpointManager = new TestCheckpointManager();
+    KafkaPipelineConfig config = new KafkaPipelineConfig(topic, ImmutableSet.of(0, 1), 1048576L, 1000L, 1048576,
+                                                         500L);
+    KAFKA_TESTER.createTopic(topic, 2);
+
+    // Publish events with interleaving timestamps from multiple logging contexts, which are spread over partitions.
+    // The events are buffered for the event delay, hence events from all partitions get sorted.
+    long now = System.currentTimeMillis();
+    int eventCount = 0;
+    for (int i = 0; i < 10; i++) {
+      List<ILoggingEvent> events = new ArrayList<>();
+      for (int j = 0; j < 10; j++) {
+        events.add(createLoggingEvent("test.logger", Level.INFO, Integer.toString(j * 10 + i),
+                                      now + j * 10 + i));
+        eventCount++;
+      }
+      publishLog(topic, events, new GenericLoggingContext(NamespaceId.DEFAULT.getNamespace(), "app", "entity" + i));
+    }
+
+    RecordingMetricsContext metricsContext = new RecordingMetricsContext();
+    loggerContext.start();
+    KafkaLogProcessorPipeline pipeline = new KafkaLogProcessorPipeline(
+      new LogProcessorPipelineContext(CConfiguration.create(), "test", loggerContext, metricsContext, 0),
+      checkpointManager,
+      KAFKA_TESTER.getBrokerService(), config);
+    pipeline.startAndWait();
+
+    final int expectedEvents = eventCount;
+    Tasks.waitFor(expectedEvents, new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return appender.getEvents().size();
+      }
+    }, 10, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+
+    // Events decoded by the different partition threads are still written in time order
+    for (int i = 0; i < expectedEvents; i++) {
+      Assert.assertEquals(Integer.toString(i), appender.getEvents().poll().getMessage());
+    }
+
+    // Decoding and lag metrics are emitted with the partition as a tag
+    Map<String, String> partition0Tags = getPartitionTags(0);
+    Map<String, String> partition1Tags = getPartitionTags(1);
+    Assert.assertEquals(expectedEvents, metricsContext.getValue(partition0Tags, "events.decoded") +
+      metricsContext.getValue(partition1Tags, "events.decoded"));
+    Assert.assertEquals(Long.valueOf(0L), metricsContext.getValue(partition0Tags, "lag"));
+    Assert.assertEquals(Long.valueOf(0L), metricsContext.getValue(partition1Tags, "lag"));
+
+    pipeline.stopAndWait();
+    loggerContext.stop();
+  }
+
   @Test
   public void testRegularFlush() throws Exception {
     String topic = "testFlush";
@@ -507,6 +570,12 @@ public class KafkaLogProcessorPipelineTest {
   /**
    * Creates a new {@link ILoggingEvent} with the given information.
    */
+  private Map<String, String> getPartitionTags(int partition) {
+    return ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                           Constants.Metrics.Tag.COMPONENT, Constants.Service.LOGSAVER,
+                           Constants.Metrics.Tag.PARTITION, Integer.toString(partition));
+  }
+
   private ILoggingEvent createLoggingEvent(String loggerName, Level level, String message, long timestamp) {
     LoggingEvent event = new LoggingEvent();
     event.setLevel(level);
@@ -639,4 +708,62 @@ public class KafkaLogProcessorPipelineTest {
       return new Checkpoint(-1, -1, -1);
     }
   }
+
+  /**
+   * A {@link MetricsContext} that keeps the latest value of all gauges and the sum of all increments.
+   */
+  private static final class RecordingMetricsContext implements MetricsContext {
+
+    private final Map<String, String> tags;
+    // values of all contexts of the same root, keyed by the context tags and the metric name
+    private final ConcurrentMap<String, Long> values;
+
+    RecordingMetricsContext() {
+      this(Collections.<String, String>emptyMap(), new ConcurrentHashMap<String, Long>());
+    }
+
+    private RecordingMetricsContext(Map<String, String> tags, ConcurrentMap<String, Long> values) {
+      this.tags = tags;
+      this.values = values;
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      Map<String, String> childTags = new TreeMap<>(this.tags);
+      childTags.putAll(tags);
+      return new RecordingMetricsContext(Collections.unmodifiableMap(childTags), values);
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return childContext(Collections.singletonMap(tagName, tagValue));
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return tags;
+    }
+
+    @Override
+    public void increment(String metricName, long value) {
+      String key = getKey(tags, metricName);
+      Long oldValue = values.putIfAbsent(key, value);
+      while (oldValue != null && !values.replace(key, oldValue, oldValue + value)) {
+        oldValue = values.get(key);
+      }
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      values.put(getKey(tags, metricName), value);
+    }
+
+    Long getValue(Map<String, String> tags, String metricName) {
+      return values.get(getKey(tags, metricName));
+    }
+
+    private String getKey(Map<String, String> tags, String metricName) {
+      return new TreeMap<>(tags) + metricName;
+    }
+  }
 }
@@ -27,16 +27,22 @@ import co.cask.cdap.common.logging.ServiceLoggingContext;
 import co.cask.cdap.common.logging.logback.TestLoggingContext;
 import co.cask.cdap.logging.appender.LogMessage;
 import co.cask.cdap.logging.context.LoggingContextHelper;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.EncoderFactory;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -182,6 +188,68 @@ public class LoggingEventSerializerTest {
     Assert.assertEquals(timestamp, serializer.decodeEventTimestamp(ByteBuffer.wrap(bytes)));
   }
 
+  @Test
+  public void testGenericRecordCompatibility() throws Exception {
+    Exception suppressed = new IllegalStateException("Suppressed \u00e9\u65e5\u672c");
+    Exception cause = new IllegalArgumentException("Cause");
+    Exception exception = new Exception("Exception", cause);
+    exception.addSuppressed(suppressed);
+
+    ch.qos.logback.classic.spi.LoggingEvent fullEvent = new ch.qos.logback.classic.spi.LoggingEvent();
+    fullEvent.setThreadName("thread \u00e9");
+    fullEvent.setLevel(Level.WARN);
+    // Message with two bytes, three bytes, four bytes (surrogate pair) and unpaired surrogate characters
+    fullEvent.setMessage("Message \u00e9 \u65e5\u672c \ud83d\ude00 \ud800 {} {}");
+    fullEvent.setArgumentArray(new Object[] { null, 100 });
+    fullEvent.setLoggerName("loggerName");
+    fullEvent.setLoggerContextRemoteView(new LoggerContextVO("context", ImmutableMap.of("p1", "v1"), 1234L));
+    Map<String, String> mdc = new HashMap<>();
+    mdc.put(null, "null key");
+    fullEvent.setMDCPropertyMap(mdc);
+    fullEvent.setThrowableProxy(new ThrowableProxy(exception));
+    fullEvent.prepareForDeferredProcessing();
+    ((ThrowableProxy) fullEvent.getThrowableProxy()).calculatePackagingData();
+    fullEvent.setCallerData(new StackTraceElement[] {
+      new StackTraceElement("com.Class1", "methodName1", "fileName1", 10),
+      null,
+      new StackTraceElement("com.Class2", "methodName2", null, 20)
+    });
+    fullEvent.setTimeStamp(1234567890L);
+
+    ch.qos.logback.classic.spi.LoggingEvent emptyEvent = new ch.qos.logback.classic.spi.LoggingEvent();
+    emptyEvent.setMDCPropertyMap(new HashMap<String, String>());
+    emptyEvent.setTimeStamp(1234567891L);
+
+    char[] largeMessage = new char[2 * 1024 * 1024];
+    Arrays.fill(largeMessage, 'x');
+    ch.qos.logback.classic.spi.LoggingEvent largeEvent = new ch.qos.logback.classic.spi.LoggingEvent();
+    largeEvent.setMessage(new String(largeMessage));
+    largeEvent.setMDCPropertyMap(new HashMap<String, String>());
+    largeEvent.setTimeStamp(1234567892L);
+
+    // Use the same serializer for all events to verify the encoding buffer is reused correctly
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(serializer.getAvroSchema());
+    for (ILoggingEvent event : Arrays.asList(fullEvent, emptyEvent, largeEvent, fullEvent, emptyEvent)) {
+      byte[] bytes = serializer.toBytes(event);
+
+      // It should be the same as encoding the generic record
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      writer.write(serializer.toGenericRecord(event), EncoderFactory.get().directBinaryEncoder(os, null));
+      Assert.assertArrayEquals(os.toByteArray(), bytes);
+
+      ILoggingEvent decoded = serializer.fromBytes(ByteBuffer.wrap(bytes));
+      // Unpaired surrogate is not preserved by UTF-8 encoding
+      String expectedMessage = event.getFormattedMessage() == null
+        ? null : new String(event.getFormattedMessage().getBytes(Charsets.UTF_8), Charsets.UTF_8);
+      Assert.assertEquals(expectedMessage, decoded.getFormattedMessage());
+      Assert.assertEquals(event.getMDCPropertyMap(), decoded.getMDCPropertyMap());
+      Assert.assertEquals(event.getLoggerContextVO(), decoded.getLoggerContextVO());
+      Assert.assertEquals(event.getTimeStamp(), serializer.decodeEventTimestamp(ByteBuffer.wrap(bytes)));
+      assertThrowableProxyEquals(event.getThrowableProxy(), decoded.getThrowableProxy());
+    }
+  }
+
   static void assertLoggingEventEquals(ILoggingEvent expected, ILoggingEvent actual) {
     expected.getMDCPropertyMap().putAll(
       ImmutableMap.of(".namespaceId", "TEST_ACCT_ID1", ".applicationId", "TEST_APP_ID1", ".runId", "RUN1",
@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.Interpolators;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.api.metrics.MetricDataQuery;
+import co.cask.cdap.api.metrics.MetricTimeSeries;
+import co.cask.cdap.common.utils.TimeProvider;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link MetricQueryCache}.
+ */
+public class MetricQueryCacheTest {
+
+  private static final int RESOLUTION = 60;
+  private static final long DELAY = 120;
+  private static final long MAX_AGE = 3600;
+
+  @Test
+  public void testImmutableBuckets() {
+    TestScanner scanner = new TestScanner();
+    TestTimeProvider timeProvider = new TestTimeProvider();
+    MetricQueryCache cache = new MetricQueryCache(scanner, 1000, DELAY, MAX_AGE, Integer.MAX_VALUE, timeProvider);
+
+    // one value per minute for the last hour, like a dashboard that shows the last hour
+    long now = 100 * 3600;
+    for (long ts = now - 3600; ts <= now; ts += RESOLUTION) {
+      scanner.add("a", ts, ts / RESOLUTION);
+      scanner.add("b", ts, 1);
+    }
+    timeProvider.setTime(now);
+    Assert.assertEquals(scanner.scan(query(now - 3600, now)), cache.query(query(now - 3600, now)));
+    Assert.assertEquals(ImmutableList.of(now - 3600), scanner.scannedStartTimes);
+
+    // the same query again only scans the buckets that ended less than the delay and the resolution ago
+    scanner.scannedStartTimes.clear();
+    Assert.assertEquals(scanner.scan(query(now - 3600, now)), cache.query(query(now - 3600, now)));
+    Assert.assertEquals(ImmutableList.of(now - DELAY - RESOLUTION), scanner.scannedStartTimes);
+
+    // the dashboard refreshes a few minutes later, and the recent buckets have changed
+    for (int i = 0; i < 5; i++) {
+      scanner.add("a", now + i * RESOLUTION, 100);
+      scanner.add("b", now + i * RESOLUTION, 100);
+    }
+    scanner.add("c", now + RESOLUTION, 7);
+    now += 5 * RESOLUTION;
+    timeProvider.setTime(now);
+    scanner.scannedStartTimes.clear();
+    Assert.assertEquals(scanner.scan(query(now - 3600, now)), cache.query(query(now - 3600, now)));
+    Assert.assertEquals(ImmutableList.of(now - 5 * RESOLUTION - DELAY - RESOLUTION), scanner.scannedStartTimes);
+
+    // a time range entirely in the immutable buckets does not scan at all
+    scanner.scannedStartTimes.clear();
+    Assert.assertEquals(scanner.scan(query(now - 1800, now - 1200)), cache.query(query(now - 1800, now - 1200)));
+    Assert.assertTrue(scanner.scannedStartTimes.isEmpty());
+
+    // a time range that starts before the cached buckets is scanned in full
+    Assert.assertEquals(scanner.scan(query(now - 7200, now)), cache.query(query(now - 7200, now)));
+    Assert.assertEquals(ImmutableList.of(now - 7200), scanner.scannedStartTimes);
+
+    // invalidating the cache, as done after metrics are deleted, scans the whole range again
+    scanner.add("a", now - 1800, 1000);
+    cache.invalidateAll();
+    scanner.scannedStartTimes.clear();
+    Assert.assertEquals(scanner.scan(query(now - 3600, now)), cache.query(query(now - 3600, now)));
+    Assert.assertEquals(ImmutableList.of(now - 3600), scanner.scannedStartTimes);
+  }
+
+  @Test
+  public void testMaxEntryAge() {
+    TestScanner scanner = new TestScanner();
+    TestTimeProvider timeProvider = new TestTimeProvider();
+    MetricQueryCache cache = new MetricQueryCache(scanner, 1000, DELAY, MAX_AGE, Integer.MAX_VALUE, timeProvider);
+    long start = 100 * 3600;
+    long now = start + 3600;
+    for (long ts = start; ts <= now; ts += RESOLUTION) {
+      scanner.add("a", ts, 1);
+    }
+
+    // the query is repeated every minute, and the cached buckets are scanned again once they are too old
+    timeProvider.setTime(now);
+    cache.query(query(start, now));
+    for (long time = now + RESOLUTION; time < now + MAX_AGE; time += RESOLUTION) {
+      timeProvider.setTime(time);
+      scanner.scannedStartTimes.clear();
+      cache.query(query(start, time));
+      Assert.assertNotEquals(ImmutableList.of(start), scanner.scannedStartTimes);
+    }
+
+    // a metric written late by another process is visible once the cached buckets expired
+    scanner.add("a", start, 1000);
+    timeProvider.setTime(now + MAX_AGE);
+    scanner.scannedStartTimes.clear();
+    Assert.assertEquals(scanner.scan(query(start, now + MAX_AGE)), cache.query(query(start, now + MAX_AGE)));
+    Assert.assertEquals(ImmutableList.of(start), scanner.scannedStartTimes);
+  }
+
+  @Test
+  public void testNotCacheable() {
+    TestScanner scanner = new TestScanner();
+    TestTimeProvider timeProvider = new TestTimeProvider();
+    MetricQueryCache cache = new MetricQueryCache(scanner, 1000, DELAY, MAX_AGE, Integer.MAX_VALUE, timeProvider);
+    long now = 100 * 3600;
+    timeProvider.setTime(now);
+    scanner.add("a", now - 3600, 1);
+
+    List<MetricDataQuery> queries = ImmutableList.of(
+      // the limit can truncate the result
+      new MetricDataQuery(now - 3600, now, RESOLUTION, 10, ImmutableMap.of("metric", AggregationFunction.SUM),
+                          ImmutableMap.<String, String>of(), ImmutableList.of("tag"), null),
+      // interpolated
+      new MetricDataQuery(now - 3600, now, RESOLUTION, Integer.MAX_VALUE,
+                          ImmutableMap.of("metric", AggregationFunction.SUM), ImmutableMap.<String, String>of(),
+                          ImmutableList.of("tag"), new Interpolators.Step()),
+      // totals
+      new MetricDataQuery(0, now, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                          ImmutableMap.of("metric", AggregationFunction.SUM), ImmutableMap.<String, String>of(),
+                          ImmutableList.of("tag"), null));
+    for (MetricDataQuery query : queries) {
+      scanner.scannedStartTimes.clear();
+      cache.query(query);
+      cache.query(query);
+      Assert.assertEquals(ImmutableList.of(query.getStartTs(), query.getStartTs()), scanner.scannedStartTimes);
+    }
+  }
+
+  private MetricDataQuery query(long startTs, long endTs) {
+    return new MetricDataQuery(startTs, endTs, RESOLUTION, Integer.MAX_VALUE,
+                               ImmutableMap.of("metric", AggregationFunction.SUM),
+                               ImmutableMap.<String, String>of(), ImmutableList.of("tag"), null);
+  }
+
+  /**
+   * Scans time series kept in memory, grouped by a "tag", and records the start time of each scan.
+   */
+  private static final class TestScanner implements Function<MetricDataQuery, Collection<MetricTimeSeries>> {
+
+    private final Map<String, NavigableMap<Long, Long>> timeSeries = Maps.newTreeMap();
+    private final List<Long> scannedStartTimes = Lists.newArrayList();
+
+    void add(String tag, long ts, long value) {
+      NavigableMap<Long, Long> values = timeSeries.get(tag);
+      if (values == null) {
+        values = new TreeMap<>();
+        timeSeries.put(tag, values);
+      }
+      Long current = values.get(ts);
+      values.put(ts, current == null ? value : current + value);
+    }
+
+    @Override
+    public Collection<MetricTimeSeries> apply(MetricDataQuery query) {
+      scannedStartTimes.add(query.getStartTs());
+      return scan(query);
+    }
+
+    Collection<MetricTimeSeries> scan(MetricDataQuery query) {
+      List<MetricTimeSeries> result = Lists.newArrayList();
+      for (Map.Entry<String, NavigableMap<Long, Long>> entry : timeSeries.entrySet()) {
+        List<TimeValue> timeValues = Lists.newArrayList();
+        for (Map.Entry<Long, Long> value : entry.getValue().subMap(query.getStartTs(), true,
+                                                                   query.getEndTs(), true).entrySet()) {
+          timeValues.add(new TimeValue(value.getKey(), value.getValue()));
+        }
+        if (!timeValues.isEmpty()) {
+          result.add(new MetricTimeSeries("metric", ImmutableMap.of("tag", entry.getKey()), timeValues));
+        }
+      }
+      return result;
+    }
+  }
+
+  private static final class TestTimeProvider implements TimeProvider {
+
+    private long timeInSeconds;
+
+    void setTime(long timeInSeconds) {
+      this.timeInSeconds = timeInSeconds;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+      return TimeUnit.SECONDS.toMillis(timeInSeconds);
+    }
+  }
+}